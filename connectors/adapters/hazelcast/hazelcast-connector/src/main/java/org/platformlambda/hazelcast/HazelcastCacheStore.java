@@ -0,0 +1,66 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.hazelcast;
+
+import com.hazelcast.map.IMap;
+import org.platformlambda.core.models.RemoteCacheStore;
+
+/**
+ * Remote tier of a near-cache using a Hazelcast distributed map
+ * <p>
+ * e.g. NearCache.createCache("reference.data", 60000, 5000, new HazelcastCacheStore("reference.data"))
+ */
+public class HazelcastCacheStore implements RemoteCacheStore {
+
+    private static final String SYSTEM = "system";
+    private static final String CLOUD_CLIENT_PROPERTIES = "cloud.client.properties";
+
+    private final IMap<String, byte[]> map;
+
+    /**
+     * Use a distributed map in the Hazelcast cluster of the cloud connector
+     *
+     * @param mapName of the distributed map
+     */
+    public HazelcastCacheStore(String mapName) {
+        this(HazelcastConnector.getClient(SYSTEM,
+                HazelcastConnector.getClusterProperties(CLOUD_CLIENT_PROPERTIES)).getMap(mapName));
+    }
+
+    public HazelcastCacheStore(IMap<String, byte[]> map) {
+        this.map = map;
+    }
+
+    @Override
+    public byte[] get(String key) {
+        return map.get(key);
+    }
+
+    @Override
+    public boolean compareAndSet(String key, byte[] expected, byte[] update) {
+        // Hazelcast compares the serialized form so byte arrays are matched by content
+        return expected == null? map.putIfAbsent(key, update) == null : map.replace(key, expected, update);
+    }
+
+    @Override
+    public boolean remove(String key, byte[] expected) {
+        return map.remove(key, expected);
+    }
+
+}
@@ -22,6 +22,7 @@ import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.topic.ITopic;
 import com.hazelcast.topic.Message;
 import com.hazelcast.topic.MessageListener;
+import org.platformlambda.cloud.EventBatch;
 import org.platformlambda.cloud.EventProducer;
 import org.platformlambda.cloud.ServiceLifeCycle;
 import org.platformlambda.core.models.EventEnvelope;
@@ -159,27 +160,17 @@ public class EventConsumer {
                 }
                 EventEnvelope message = new EventEnvelope();
                 if (embedEvent) {
-                    try {
-                        message.load(data);
-                        message.setEndOfRoute();
-                    } catch (Exception e) {
-                        log.error("Unable to decode incoming event for {} - {}", topicPartition, e.getMessage());
-                        return;
-                    }
-                    try {
-                        String to = message.getTo();
-                        if (to != null) {
-                            // remove special routing qualifier for presence monitor events
-                            if (to.contains(TO_MONITOR)) {
-                                message.setTo(to.substring(0, to.indexOf(TO_MONITOR)));
+                    if (originalHeaders.containsKey(EventProducer.BATCH_EVENT)) {
+                        // payload is a batch of embedded events that must be delivered in order
+                        try {
+                            for (byte[] block: EventBatch.unpack(data)) {
+                                deliverEmbeddedEvent(block, topicPartition);
                             }
-                            po.send(message);
-                        } else {
-                            MultipartPayload.getInstance().incoming(message);
+                        } catch (IOException e) {
+                            log.error("Unable to decode incoming batch for {} - {}", topicPartition, e.getMessage());
                         }
-                    } catch (Exception e) {
-                        log.error("Unable to process incoming event for {} - {} {}",
-                                topicPartition, e.getClass().getSimpleName(), e.getMessage());
+                    } else {
+                        deliverEmbeddedEvent(data, topicPartition);
                     }
                 } else {
                     if (offset == INITIALIZE) {
@@ -215,6 +206,33 @@ public class EventConsumer {
         }
     }
 
+    private void deliverEmbeddedEvent(byte[] data, String topicPartition) {
+        // payload is an embedded event
+        EventEnvelope message = new EventEnvelope();
+        try {
+            message.load(data);
+            message.setEndOfRoute();
+        } catch (Exception e) {
+            log.error("Unable to decode incoming event for {} - {}", topicPartition, e.getMessage());
+            return;
+        }
+        try {
+            String to = message.getTo();
+            if (to != null) {
+                // remove special routing qualifier for presence monitor events
+                if (to.contains(TO_MONITOR)) {
+                    message.setTo(to.substring(0, to.indexOf(TO_MONITOR)));
+                }
+                EventEmitter.getInstance().send(message);
+            } else {
+                MultipartPayload.getInstance().incoming(message);
+            }
+        } catch (Exception e) {
+            log.error("Unable to process incoming event for {} - {} {}",
+                    topicPartition, e.getClass().getSimpleName(), e.getMessage());
+        }
+    }
+
     private Map<String, String> getSimpleHeaders(Map<String, Object> headers) {
         Map<String, String> result = new HashMap<>();
         for (String h: headers.keySet()) {
@@ -29,6 +29,7 @@ import org.apache.kafka.common.header.Headers;
 import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.platformlambda.cloud.ConnectorConfig;
+import org.platformlambda.cloud.EventBatch;
 import org.platformlambda.cloud.EventProducer;
 import org.platformlambda.cloud.ServiceLifeCycle;
 import org.platformlambda.core.models.EventEnvelope;
@@ -223,28 +224,17 @@ public class EventConsumer extends Thread {
                     byte[] data = record.value();
                     EventEnvelope message = new EventEnvelope();
                     if (embedEvent) {
-                        // payload is an embedded event
-                        try {
-                            message.load(data);
-                            message.setEndOfRoute();
-                        } catch (Exception e) {
-                            log.error("Unable to decode incoming event for {} - {}", topicPartition, e.getMessage());
-                            continue;
-                        }
-                        try {
-                            String to = message.getTo();
-                            if (to != null) {
-                                // remove special routing qualifier for presence monitor events
-                                if (to.contains(TO_MONITOR)) {
-                                    message.setTo(to.substring(0, to.indexOf(TO_MONITOR)));
+                        if (originalHeaders.containsKey(EventProducer.BATCH_EVENT)) {
+                            // payload is a batch of embedded events that must be delivered in order
+                            try {
+                                for (byte[] block: EventBatch.unpack(data)) {
+                                    deliverEmbeddedEvent(block, topicPartition);
                                 }
-                                po.send(message);
-                            } else {
-                                MultipartPayload.getInstance().incoming(message);
+                            } catch (IOException e) {
+                                log.error("Unable to decode incoming batch for {} - {}", topicPartition, e.getMessage());
                             }
-                        } catch (Exception e) {
-                            log.error("Unable to process incoming event for {} - {} {}",
-                                    topicPartition, e.getClass().getSimpleName(), e.getMessage());
+                        } else {
+                            deliverEmbeddedEvent(data, topicPartition);
                         }
                     } else {
                         if (offset == INITIALIZE) {
@@ -312,6 +302,33 @@ public class EventConsumer extends Thread {
         }
     }
 
+    private void deliverEmbeddedEvent(byte[] data, String topicPartition) {
+        // payload is an embedded event
+        EventEnvelope message = new EventEnvelope();
+        try {
+            message.load(data);
+            message.setEndOfRoute();
+        } catch (Exception e) {
+            log.error("Unable to decode incoming event for {} - {}", topicPartition, e.getMessage());
+            return;
+        }
+        try {
+            String to = message.getTo();
+            if (to != null) {
+                // remove special routing qualifier for presence monitor events
+                if (to.contains(TO_MONITOR)) {
+                    message.setTo(to.substring(0, to.indexOf(TO_MONITOR)));
+                }
+                EventEmitter.getInstance().send(message);
+            } else {
+                MultipartPayload.getInstance().incoming(message);
+            }
+        } catch (Exception e) {
+            log.error("Unable to process incoming event for {} - {} {}",
+                    topicPartition, e.getClass().getSimpleName(), e.getMessage());
+        }
+    }
+
     private Map<String, String> getSimpleHeaders(Headers headers) {
         Utility util = Utility.getInstance();
         Map<String, String> result = new HashMap<>();
@@ -0,0 +1,124 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.cloud;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Framing for a batch of embedded events that share a single broker record
+ * <p>
+ * Layout: number of events (int), followed by length (int) and bytes of each event.
+ */
+public class EventBatch {
+    private static final int INT_SIZE = 4;
+
+    private final List<byte[]> events = new ArrayList<>();
+    private final String topic;
+    private final int partition;
+    private int size = INT_SIZE;
+    private long timer = -1;
+
+    public EventBatch(String topic, int partition) {
+        this.topic = topic;
+        this.partition = partition;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    public long getTimer() {
+        return timer;
+    }
+
+    public void setTimer(long timer) {
+        this.timer = timer;
+    }
+
+    public void add(byte[] event) {
+        events.add(event);
+        size += INT_SIZE + event.length;
+    }
+
+    public int count() {
+        return events.size();
+    }
+
+    public boolean isEmpty() {
+        return events.isEmpty();
+    }
+
+    /**
+     * Framed size of this batch
+     *
+     * @return number of bytes
+     */
+    public int size() {
+        return size;
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(events.size());
+        for (byte[] event: events) {
+            buffer.putInt(event.length);
+            buffer.put(event);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Unpack a framed batch into the original list of embedded events
+     *
+     * @param data of a batch record
+     * @return list of events in the original order
+     * @throws IOException if the framing is invalid
+     */
+    public static List<byte[]> unpack(byte[] data) throws IOException {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            int count = buffer.getInt();
+            if (count < 0 || count > data.length / INT_SIZE) {
+                throw new IOException("Invalid event batch - count="+count);
+            }
+            List<byte[]> result = new ArrayList<>(count);
+            for (int i=0; i < count; i++) {
+                int len = buffer.getInt();
+                if (len < 0 || len > buffer.remaining()) {
+                    throw new IOException("Invalid event batch - block "+(i+1)+" of "+count);
+                }
+                byte[] event = new byte[len];
+                buffer.get(event);
+                result.add(event);
+            }
+            return result;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Invalid event batch - incomplete data");
+        }
+    }
+
+}
@@ -18,9 +18,12 @@
 
 package org.platformlambda.cloud;
 
+import org.platformlambda.core.models.EventEnvelope;
 import org.platformlambda.core.models.LambdaFunction;
+import org.platformlambda.core.system.EventEmitter;
 import org.platformlambda.core.system.Platform;
 import org.platformlambda.core.system.PubSub;
+import org.platformlambda.core.util.AppConfigReader;
 import org.platformlambda.core.util.SimpleCache;
 import org.platformlambda.core.util.Utility;
 import org.platformlambda.core.websocket.common.MultipartPayload;
@@ -28,6 +31,7 @@ import org.platformlambda.cloud.services.ServiceRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.*;
 
 public class EventProducer implements LambdaFunction {
@@ -36,9 +40,10 @@ public class EventProducer implements LambdaFunction {
      * DO NOT REMOVE THE DATA TYPES BELOW
      * -----------------------------------
      * Embedded data types are used for encoding by the concrete implementation of cloud connector
-     * EMBED_EVENT, RECIPIENT, DATA_TYPE, TEXT_DATA, BYTES_DATA, MAP_DATA, LIST_DATA
+     * EMBED_EVENT, BATCH_EVENT, RECIPIENT, DATA_TYPE, TEXT_DATA, BYTES_DATA, MAP_DATA, LIST_DATA
      */
     public static final String EMBED_EVENT = "_event_";
+    public static final String BATCH_EVENT = "_batch_";
     public static final String RECIPIENT = "_rx_";
     public static final String DATA_TYPE = "_data_";
     public static final String TEXT_DATA = "text";
@@ -55,10 +60,42 @@ public class EventProducer implements LambdaFunction {
     private static final String TOTAL = MultipartPayload.TOTAL;
     private static final String TO = MultipartPayload.TO;
     private static final String BROADCAST = MultipartPayload.BROADCAST;
- 
+    private static final String FLUSH = "_flush_";
+    private static final String TIMER = "_timer_";
+    private static final String MONITOR = "monitor-";
+    /*
+     * batches: destination origin -> pending events
+     *
+     * Since the event producer is registered as a singleton function,
+     * the batches are only accessed by a single worker.
+     */
+    private final Map<String, EventBatch> batches = new HashMap<>();
+    private final boolean batching;
+    private final long linger;
+    private final int maxBatchSize;
+
+    public EventProducer() {
+        Utility util = Utility.getInstance();
+        AppConfigReader config = AppConfigReader.getInstance();
+        batching = "true".equalsIgnoreCase(config.getProperty("cloud.event.batching", "false"));
+        // range: 1 - 1000 ms and 8 - 960 KB
+        linger = Math.min(1000, Math.max(1, util.str2long(config.getProperty("cloud.event.batch.linger", "5"))));
+        maxBatchSize = Math.min(960 * 1024,
+                Math.max(8 * 1024, util.str2int(config.getProperty("cloud.event.batch.size", "65536"))));
+        if (batching) {
+            log.info("Event batching enabled - linger {} ms, max {} bytes", linger, maxBatchSize);
+        }
+    }
+
     @Override
     public Object handleEvent(Map<String, String> headers, Object input, int instance) throws Exception {
-        if (headers.containsKey(TO) && input instanceof byte[]) {
+        if (headers.containsKey(FLUSH)) {
+            String dest = headers.get(FLUSH);
+            EventBatch batch = batches.get(dest);
+            if (batch != null && batch.getTimer() == Utility.getInstance().str2long(headers.get(TIMER))) {
+                flush(dest);
+            }
+        } else if (headers.containsKey(TO) && input instanceof byte[]) {
             List<String> destinations = getDestinations(headers);
             if (!destinations.isEmpty()) {
                 PubSub ps = PubSub.getInstance();
@@ -76,10 +113,17 @@ public class EventProducer implements LambdaFunction {
                         } else {
                             topic = topicPartition;
                         }
-                        Map<String, String> parameters = new HashMap<>();
-                        parameters.put(EMBED_EVENT, "1");
-                        parameters.put(RECIPIENT, dest);
-                        ps.publish(topic, partition, parameters, payload);
+                        if (batching && !dest.startsWith(MONITOR) && ServiceRegistry.acceptsBatch(dest)
+                                && payload.length < maxBatchSize) {
+                            addToBatch(dest, topic, partition, payload);
+                        } else {
+                            // flush pending events first to guarantee event ordering
+                            flush(dest);
+                            Map<String, String> parameters = new HashMap<>();
+                            parameters.put(EMBED_EVENT, "1");
+                            parameters.put(RECIPIENT, dest);
+                            ps.publish(topic, partition, parameters, payload);
+                        }
                     }
                 }
             }
@@ -87,6 +131,44 @@ public class EventProducer implements LambdaFunction {
         return true;
     }
 
+    private void addToBatch(String dest, String topic, int partition, byte[] payload) throws IOException {
+        EventBatch batch = batches.get(dest);
+        if (batch != null && (batch.getPartition() != partition || !batch.getTopic().equals(topic) ||
+                batch.size() + payload.length + 4 > maxBatchSize)) {
+            flush(dest);
+            batch = null;
+        }
+        if (batch == null) {
+            EventBatch current = new EventBatch(topic, partition);
+            batches.put(dest, current);
+            // the flush request is sent to this function so that publishing is done by the same worker
+            long timer = Platform.getInstance().getVertx().setTimer(linger, t -> {
+                try {
+                    EventEmitter.getInstance().send(new EventEnvelope().setTo(EventEmitter.CLOUD_CONNECTOR)
+                            .setHeader(FLUSH, dest).setHeader(TIMER, current.getTimer()));
+                } catch (IOException e) {
+                    log.error("Unable to flush event batch for {} - {}", dest, e.getMessage());
+                }
+            });
+            current.setTimer(timer);
+            batch = current;
+        }
+        batch.add(payload);
+    }
+
+    private void flush(String dest) throws IOException {
+        EventBatch batch = batches.remove(dest);
+        if (batch != null && !batch.isEmpty()) {
+            Platform.getInstance().getVertx().cancelTimer(batch.getTimer());
+            Map<String, String> parameters = new HashMap<>();
+            parameters.put(EMBED_EVENT, "1");
+            parameters.put(BATCH_EVENT, String.valueOf(batch.count()));
+            parameters.put(RECIPIENT, dest);
+            PubSub.getInstance().publish(batch.getTopic(), batch.getPartition(), parameters, batch.toBytes());
+            log.debug("Sent batch of {} events to {} - {} bytes", batch.count(), dest, batch.size());
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private List<String> getDestinations(Map<String, String> headers) {
         String to = headers.get(TO);
@@ -69,6 +69,8 @@ public class PresenceConnector implements LambdaFunction {
     private static final String VERSION = "version";
     private static final String GROUP = "group";
     private static final String TOPIC = "topic";
+    private static final String BATCH = "batch";
+    private static final String RV = "rv";
     private static final PresenceConnector CONNECTOR_INSTANCE = new PresenceConnector();
     private final String begin;
     private final String monitorTopic;
@@ -247,7 +249,8 @@ public class PresenceConnector implements LambdaFunction {
                             new Kv(TYPE, ALIVE), new Kv(TOPIC, topicPartition),
                             new Kv(NAME, platform.getName()),
                             new Kv(VERSION, util.getVersion()),
-                            new Kv(ORIGIN, platform.getOrigin()));
+                            new Kv(ORIGIN, platform.getOrigin()), new Kv(BATCH, true),
+                            new Kv(RV, ServiceRegistry.getRoutingTableVersion()));
                 }
 
             } catch (IOException e) {
@@ -275,7 +278,8 @@ public class PresenceConnector implements LambdaFunction {
                     if (topicPending.get()) {
                         topicPending.set(false);
                         po.send(ServiceDiscovery.SERVICE_REGISTRY + APP_GROUP + closedUserGroup,
-                                new Kv(TYPE, JOIN), new Kv(ORIGIN, platform.getOrigin()), new Kv(TOPIC, topicPartition));
+                                new Kv(TYPE, JOIN), new Kv(ORIGIN, platform.getOrigin()), new Kv(TOPIC, topicPartition),
+                                new Kv(BATCH, true));
                     }
                     String initHandler = INIT + "." + monitorTopic + "." + closedUserGroup;
                     if (platform.hasRoute(initHandler)) {
@@ -0,0 +1,233 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.cloud.services;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versioning of routing tables among peers
+ * <p>
+ * Each node increments its routing table version when it adds or removes a route
+ * and attaches the version to the route changes that it broadcasts. A peer applies
+ * the changes in sequence and requests a full snapshot only when it detects a gap.
+ */
+public class RoutingTableSync {
+    public enum Delta {
+        NEXT, DUPLICATED, GAP, UNKNOWN
+    }
+    private static final long SYNC_INTERVAL = 5000;
+    private final AtomicLong version = new AtomicLong(0);
+    private final ConcurrentMap<String, Long> peerVersions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> syncRequests = new ConcurrentHashMap<>();
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public long nextVersion() {
+        return version.incrementAndGet();
+    }
+
+    public Long getPeerVersion(String origin) {
+        return peerVersions.get(origin);
+    }
+
+    /**
+     * Check the version of a single route change from a peer
+     *
+     * @param origin of the peer
+     * @param v version of the change
+     * @return NEXT if the change is in sequence, DUPLICATED if it has been applied,
+     *         GAP if one or more changes are missing or UNKNOWN if no snapshot has been received
+     */
+    public Delta checkDelta(String origin, long v) {
+        Long current = peerVersions.get(origin);
+        if (current == null) {
+            return Delta.UNKNOWN;
+        }
+        if (v <= current) {
+            return Delta.DUPLICATED;
+        }
+        if (v == current + 1 && peerVersions.replace(origin, current, v)) {
+            return Delta.NEXT;
+        }
+        return Delta.GAP;
+    }
+
+    /**
+     * Accept a full snapshot from a peer unless it is older than the changes already applied
+     *
+     * @param origin of the peer
+     * @param v version of the snapshot
+     * @return true if the snapshot should be applied
+     */
+    public boolean acceptSnapshot(String origin, long v) {
+        while (true) {
+            Long current = peerVersions.get(origin);
+            if (current == null) {
+                if (peerVersions.putIfAbsent(origin, v) == null) {
+                    break;
+                }
+            } else if (v < current) {
+                return false;
+            } else if (peerVersions.replace(origin, current, v)) {
+                break;
+            }
+        }
+        syncRequests.remove(origin);
+        return true;
+    }
+
+    /**
+     * Check if the routing table of a peer is behind the version that it advertises
+     *
+     * @param origin of the peer
+     * @param v version advertised by the peer
+     * @return true if a snapshot is required
+     */
+    public boolean isBehind(String origin, long v) {
+        Long current = peerVersions.get(origin);
+        return current == null || current < v;
+    }
+
+    /**
+     * Rate limit snapshot requests so that a burst of out-of-sequence changes
+     * results in a single snapshot
+     *
+     * @param origin of the peer
+     * @return true if a snapshot request should be sent
+     */
+    public boolean requestSnapshot(String origin) {
+        long now = System.currentTimeMillis();
+        Long last = syncRequests.get(origin);
+        if (last != null && now - last < SYNC_INTERVAL) {
+            return false;
+        }
+        syncRequests.put(origin, now);
+        return true;
+    }
+
+    public void remove(String origin) {
+        peerVersions.remove(origin);
+        syncRequests.remove(origin);
+    }
+
+    /**
+     * Add or update the personality of an origin for a route
+     * <p>
+     * The origin map of a route is never modified after it is published.
+     * It is replaced by an updated copy so that a reader never sees a partially updated entry.
+     *
+     * @param routes routing table of route name to (origin, personality)
+     * @param route name
+     * @param origin of the peer
+     * @param personality of the peer
+     * @return true if the routing table is changed
+     */
+    public static boolean addOrigin(ConcurrentMap<String, ConcurrentMap<String, String>> routes,
+                                    String route, String origin, String personality) {
+        ConcurrentMap<String, String> originMap = routes.get(route);
+        if (originMap != null && personality.equals(originMap.get(origin))) {
+            return false;
+        }
+        routes.compute(route, (k, v) -> {
+            ConcurrentMap<String, String> updated = v == null?
+                                            new ConcurrentHashMap<>() : new ConcurrentHashMap<>(v);
+            updated.put(origin, personality);
+            return updated;
+        });
+        return true;
+    }
+
+    /**
+     * Remove an origin from a route using the same copy-on-write update as addOrigin
+     *
+     * @param routes routing table of route name to (origin, personality)
+     * @param route name
+     * @param origin of the peer
+     * @return true if the routing table is changed
+     */
+    public static boolean removeOrigin(ConcurrentMap<String, ConcurrentMap<String, String>> routes,
+                                       String route, String origin) {
+        ConcurrentMap<String, String> originMap = routes.get(route);
+        if (originMap == null || !originMap.containsKey(origin)) {
+            return false;
+        }
+        routes.computeIfPresent(route, (k, v) -> {
+            ConcurrentMap<String, String> updated = new ConcurrentHashMap<>(v);
+            updated.remove(origin);
+            return updated.isEmpty()? null : updated;
+        });
+        return true;
+    }
+
+    /**
+     * Apply a full snapshot of a peer to the routing table as a diff
+     * <p>
+     * The new origin maps of all changed routes are prepared before any of them is published.
+     * The routing table is a map of routes so the updated routes are published one after
+     * another, each as a single copy-on-write replacement.
+     * <p>
+     * The caller must serialize changes to the routing table. ServiceRegistry does this
+     * by running as a single instance.
+     *
+     * @param routes routing table of route name to (origin, personality)
+     * @param origin of the peer
+     * @param snapshot of route name to personality
+     * @return number of routes added and removed
+     */
+    public static int[] applySnapshot(ConcurrentMap<String, ConcurrentMap<String, String>> routes,
+                                      String origin, Map<String, String> snapshot) {
+        Map<String, ConcurrentMap<String, String>> view = new HashMap<>();
+        int added = 0;
+        int removed = 0;
+        for (Map.Entry<String, ConcurrentMap<String, String>> kv: routes.entrySet()) {
+            if (kv.getValue().containsKey(origin) && !snapshot.containsKey(kv.getKey())) {
+                ConcurrentMap<String, String> updated = new ConcurrentHashMap<>(kv.getValue());
+                updated.remove(origin);
+                view.put(kv.getKey(), updated);
+                removed++;
+            }
+        }
+        for (Map.Entry<String, String> kv: snapshot.entrySet()) {
+            String personality = kv.getValue();
+            ConcurrentMap<String, String> originMap = routes.get(kv.getKey());
+            if (originMap == null || !personality.equals(originMap.get(origin))) {
+                ConcurrentMap<String, String> updated = originMap == null?
+                                                new ConcurrentHashMap<>() : new ConcurrentHashMap<>(originMap);
+                updated.put(origin, personality);
+                view.put(kv.getKey(), updated);
+                added++;
+            }
+        }
+        for (Map.Entry<String, ConcurrentMap<String, String>> kv: view.entrySet()) {
+            if (kv.getValue().isEmpty()) {
+                routes.remove(kv.getKey());
+            } else {
+                routes.put(kv.getKey(), kv.getValue());
+            }
+        }
+        return new int[] {added, removed};
+    }
+
+}
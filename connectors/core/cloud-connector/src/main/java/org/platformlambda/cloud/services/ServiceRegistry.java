@@ -68,6 +68,9 @@ public class ServiceRegistry implements LambdaFunction {
     private static final String WHEN = "when";
     private static final String NOW = "now";
     private static final String MONITOR = "monitor-";
+    private static final String BATCH = "batch";
+    private static final String RV = "rv";
+    private static final String SYNC = "sync";
     private static final long EXPIRY = 90 * 1000L;
 
     // static because this is a shared lambda function
@@ -77,18 +80,25 @@ public class ServiceRegistry implements LambdaFunction {
      * cloudRoutes: route_name -> (origin, personality)
      * cloudOrigins: origin -> last seen
      * originTopic: origin -> topic and partition
+     * batchOrigins: origins that can unpack batched events
+     * routeSync: routing table versions of this node and its peers
+     *
+     * ServiceRegistry must be registered with a single instance so that changes to the
+     * routing table are serialized. All changes are copy-on-write updates of the origin map
+     * of a route (see RoutingTableSync).
      */
     private static final EventEmitter po = EventEmitter.getInstance();
     private static final ConcurrentMap<String, ConcurrentMap<String, String>> cloudRoutes = po.getCloudRoutes();
     private static final ConcurrentMap<String, Long> cloudOrigins = po.getCloudOrigins();
     private static final ConcurrentMap<String, String> originTopic = new ConcurrentHashMap<>();
     private static final ConcurrentMap<String, String> originAppVersion = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Boolean> batchOrigins = new ConcurrentHashMap<>();
     private static final ConcurrentMap<String, Boolean> lifeCycleSubscribers = new ConcurrentHashMap<>();
     private static final ConcurrentMap<String, Boolean> pmSubscribers = new ConcurrentHashMap<>();
+    private static final RoutingTableSync routeSync = new RoutingTableSync();
     private static final ManagedCache cache = ManagedCache.createCache("member.life.cycle.events", 5000);
 
     private static String monitorTopic;
-    private long lastBroadcastAdd = 0;
 
     public ServiceRegistry() {
         Utility util = Utility.getInstance();
@@ -143,6 +153,27 @@ public class ServiceRegistry implements LambdaFunction {
         }
     }
 
+    /**
+     * Event batching is negotiated using the "batch" header in the keep-alive and join events
+     * so that a mixed-version cluster will continue to work.
+     *
+     * @param origin of a peer
+     * @return true if the peer can unpack batched events
+     */
+    public static boolean acceptsBatch(String origin) {
+        return origin != null && batchOrigins.containsKey(origin);
+    }
+
+    /**
+     * The routing table version is advertised in the keep-alive event
+     * so that a peer can detect missing route changes.
+     *
+     * @return routing table version of this node
+     */
+    public static long getRoutingTableVersion() {
+        return routeSync.getVersion();
+    }
+
     public static String getTopic(String dest) {
         return dest.startsWith(MONITOR)? monitorTopic+"-"+dest.substring(MONITOR.length()) : originTopic.get(dest);
     }
@@ -187,6 +218,9 @@ public class ServiceRegistry implements LambdaFunction {
             String topic = headers.get(TOPIC);
             cloudOrigins.put(origin, System.currentTimeMillis());
             originTopic.put(origin, topic);
+            if (headers.containsKey(BATCH)) {
+                batchOrigins.put(origin, true);
+            }
             if (!presenceMonitor) {
                 if (origin.equals(myOrigin)) {
                     if (headers.containsKey(VERSION)) {
@@ -199,7 +233,7 @@ public class ServiceRegistry implements LambdaFunction {
 
                 } else {
                     // send routing table of this node to the newly joined node
-                    sendMyRoutes(true);
+                    sendMyRoutes(origin, true);
                 }
             }
         }
@@ -214,7 +248,7 @@ public class ServiceRegistry implements LambdaFunction {
                     connector.setActive(myOrigin, user, RESUME.equals(type));
                     if (NOW.equals(headers.get(WHEN))) {
                         if (RESUME.equals(type)) {
-                            sendMyRoutes(true);
+                            sendMyRoutes(null, true);
                             log.info("Restore {} by {}", myOrigin, user);
                         } else {
                             po.send(ServiceDiscovery.SERVICE_REGISTRY + APP_GROUP + closedUserGroup,
@@ -244,11 +278,19 @@ public class ServiceRegistry implements LambdaFunction {
                         log.info("Peer {} joins ({} {})", origin, name, version);
                         po.send(ServiceDiscovery.SERVICE_REGISTRY, new Kv(TYPE, JOIN),
                                 new Kv(ORIGIN, origin), new Kv(TOPIC, topic));
+                    } else if (headers.containsKey(RV) &&
+                                routeSync.isBehind(origin, Utility.getInstance().str2long(headers.get(RV)))) {
+                        requestSnapshot(origin);
                     }
                 }
             }
             cloudOrigins.put(origin, System.currentTimeMillis());
             originTopic.put(origin, topic);
+            if (headers.containsKey(BATCH)) {
+                batchOrigins.put(origin, true);
+            } else {
+                batchOrigins.remove(origin);
+            }
             if (!originAppVersion.containsKey(origin) && !myOrigin.equals(origin)) {
                 log.info("Peer {} active ({} {})", origin, name, version);
             }
@@ -260,6 +302,8 @@ public class ServiceRegistry implements LambdaFunction {
             String appVersion = originAppVersion.get(origin);
             originTopic.remove(origin);
             originAppVersion.remove(origin);
+            batchOrigins.remove(origin);
+            routeSync.remove(origin);
             if (presenceMonitor) {
                 cloudOrigins.remove(origin);
             } else {
@@ -293,12 +337,14 @@ public class ServiceRegistry implements LambdaFunction {
                     String route = headers.get(ROUTE);
                     String personality = headers.get(PERSONALITY);
                     // add to routing table
-                    addRoute(origin, route, personality);
+                    if (isNewChange(origin, myOrigin, headers)) {
+                        addRoute(origin, route, personality);
+                    }
                     if (origin.equals(myOrigin) && !headers.containsKey(IS_FINAL)) {
                         // broadcast to peers
                         EventEnvelope request = new EventEnvelope();
                         request.setTo(ServiceDiscovery.SERVICE_REGISTRY + APP_GROUP + closedUserGroup)
-                                .setHeaders(headers).setHeader(IS_FINAL, true);
+                                .setHeaders(headers).setHeader(IS_FINAL, true).setHeader(RV, routeSync.nextVersion());
                         po.send(request);
                     }
 
@@ -306,13 +352,29 @@ public class ServiceRegistry implements LambdaFunction {
                     // add a list of routes
                     Map<String, String> routeMap = (Map<String, String>) input;
                     int count = routeMap.size();
-                    int n = 0;
-                    for (Map.Entry<String, String> kv : routeMap.entrySet()) {
-                        String personality = kv.getValue();
-                        if (addRoute(origin, kv.getKey(), personality)) n++;
-                    }
-                    if (n > 0) {
-                        log.info("Loaded {} route{} from {}", count, count == 1 ? "" : "s", origin);
+                    if (headers.containsKey(RV)) {
+                        // a versioned snapshot replaces all routes of the origin
+                        long rv = Utility.getInstance().str2long(headers.get(RV));
+                        if (routeSync.acceptSnapshot(origin, rv)) {
+                            cloudOrigins.put(origin, System.currentTimeMillis());
+                            int[] diff = RoutingTableSync.applySnapshot(cloudRoutes, origin, routeMap);
+                            if (diff[0] + diff[1] > 0) {
+                                po.routingTableChanged();
+                                log.info("Loaded {} route{} from {} v{} (added {}, removed {})",
+                                        count, count == 1 ? "" : "s", origin, rv, diff[0], diff[1]);
+                            }
+                        } else {
+                            log.debug("Outdated routing table v{} from {} ignored", rv, origin);
+                        }
+                    } else {
+                        int n = 0;
+                        for (Map.Entry<String, String> kv : routeMap.entrySet()) {
+                            String personality = kv.getValue();
+                            if (addRoute(origin, kv.getKey(), personality)) n++;
+                        }
+                        if (n > 0) {
+                            log.info("Loaded {} route{} from {}", count, count == 1 ? "" : "s", origin);
+                        }
                     }
                     if (headers.containsKey(TOPIC)) {
                         originTopic.put(origin, headers.get(TOPIC));
@@ -323,21 +385,31 @@ public class ServiceRegistry implements LambdaFunction {
                                 new Kv(ORIGIN, origin), new Kv(NAME, headers.get(NAME)));
                     }
                     if (headers.containsKey(EXCHANGE)) {
-                        sendMyRoutes(false);
+                        // reply to the sender only
+                        sendMyRoutes(origin, false);
                     }
                 }
             }
+            // a peer has detected a gap in the route changes from this node
+            if (SYNC.equals(type) && headers.containsKey(ORIGIN)) {
+                String origin = headers.get(ORIGIN);
+                if (!origin.equals(myOrigin)) {
+                    sendMyRoutes(origin, false);
+                }
+            }
             // clear a route
             if (UNREGISTER.equals(type) && headers.containsKey(ROUTE) && headers.containsKey(ORIGIN)) {
                 String route = headers.get(ROUTE);
                 String origin = headers.get(ORIGIN);
                 // remove from routing table
-                removeRoute(origin, route);
+                if (isNewChange(origin, myOrigin, headers)) {
+                    removeRoute(origin, route);
+                }
                 if (origin.equals(myOrigin) && !headers.containsKey(IS_FINAL)) {
                     // broadcast to peers
                     EventEnvelope request = new EventEnvelope();
                     request.setTo(ServiceDiscovery.SERVICE_REGISTRY + APP_GROUP + closedUserGroup)
-                            .setHeaders(headers).setHeader(IS_FINAL, true);
+                            .setHeaders(headers).setHeader(IS_FINAL, true).setHeader(RV, routeSync.nextVersion());
                     po.send(request);
                 }
             }
@@ -345,15 +417,50 @@ public class ServiceRegistry implements LambdaFunction {
         return true;
     }
 
-    private void sendMyRoutes(boolean exchange) throws IOException {
-        long now = System.currentTimeMillis();
-        if (!exchange && now - lastBroadcastAdd < 100) {
-            log.debug("Duplicated broadcast add ignored");
-            return;
+    /**
+     * Check the version of a single route change from a peer
+     *
+     * @param origin of the route change
+     * @param myOrigin of this node
+     * @param headers of the route change
+     * @return false if the change has already been applied
+     * @throws IOException in case of routing error
+     */
+    private boolean isNewChange(String origin, String myOrigin, Map<String, String> headers) throws IOException {
+        if (origin.equals(myOrigin) || !headers.containsKey(RV)) {
+            return true;
+        }
+        RoutingTableSync.Delta delta = routeSync.checkDelta(origin, Utility.getInstance().str2long(headers.get(RV)));
+        if (delta == RoutingTableSync.Delta.DUPLICATED) {
+            return false;
+        }
+        if (delta == RoutingTableSync.Delta.GAP) {
+            // the change is applied and a snapshot will correct any missing changes
+            requestSnapshot(origin);
         }
-        lastBroadcastAdd = now;
+        return true;
+    }
+
+    private void requestSnapshot(String origin) throws IOException {
+        if (routeSync.requestSnapshot(origin)) {
+            log.info("Request routing table from {}", origin);
+            po.send(ServiceDiscovery.SERVICE_REGISTRY + "@" + origin,
+                    new Kv(TYPE, SYNC), new Kv(ORIGIN, Platform.getInstance().getOrigin()));
+        }
+    }
+
+    /**
+     * Send routing table of this node
+     *
+     * @param target origin of a peer or null to broadcast to all peers
+     * @param exchange is true if the peer should reply with its routing table
+     * @throws IOException in case of routing error
+     */
+    private void sendMyRoutes(String target, boolean exchange) throws IOException {
         Platform platform = Platform.getInstance();
         String myOrigin = platform.getOrigin();
+        // obtain the version before the routes so that a concurrent change will not be skipped by the peer
+        long rv = routeSync.getVersion();
         Map<String, String> routeMap = new HashMap<>();
         for (Map.Entry<String, ConcurrentMap<String, String>> kv : cloudRoutes.entrySet()) {
             ConcurrentMap<String, String> originMap = kv.getValue();
@@ -362,9 +469,9 @@ public class ServiceRegistry implements LambdaFunction {
             }
         }
         EventEnvelope request = new EventEnvelope()
-                .setTo(ServiceDiscovery.SERVICE_REGISTRY + APP_GROUP + closedUserGroup)
+                .setTo(ServiceDiscovery.SERVICE_REGISTRY + (target == null? APP_GROUP + closedUserGroup : "@" + target))
                 .setHeader(TOPIC, PresenceConnector.getInstance().getTopic())
-                .setHeader(NAME, platform.getName())
+                .setHeader(NAME, platform.getName()).setHeader(RV, rv)
                 .setHeader(TYPE, ADD).setHeader(ORIGIN, myOrigin).setBody(routeMap);
         if (exchange) {
             request.setHeader(EXCHANGE, true);
@@ -373,33 +480,21 @@ public class ServiceRegistry implements LambdaFunction {
     }
 
     private boolean addRoute(String origin, String route, String personality) {
-        if (!cloudRoutes.containsKey(route)) {
-            cloudRoutes.put(route, new ConcurrentHashMap<>());
-        }
         ConcurrentMap<String, String> originMap = cloudRoutes.get(route);
-        if (originMap.containsKey(origin)) {
+        if (originMap != null && originMap.containsKey(origin)) {
             return false;
         } else {
-            originMap.put(origin, personality);
+            RoutingTableSync.addOrigin(cloudRoutes, route, origin, personality);
             cloudOrigins.put(origin, System.currentTimeMillis());
+            po.routingTableChanged();
             log.info("{} ({}.{}) registered", route, personality, origin);
             return true;
         }
     }
 
     private void removeRoute(String origin, String route) {
-        boolean deleted = false;
-        if (cloudRoutes.containsKey(route)) {
-            ConcurrentMap<String, String> originMap = cloudRoutes.get(route);
-            if (originMap.containsKey(origin)) {
-                originMap.remove(origin);
-                deleted = true;
-            }
-            if (originMap.isEmpty()) {
-                cloudRoutes.remove(route);
-            }
-        }
-        if (deleted) {
+        if (RoutingTableSync.removeOrigin(cloudRoutes, route, origin)) {
+            po.routingTableChanged();
             log.info("{} {} unregistered", route, origin);
         }
     }
@@ -411,6 +506,8 @@ public class ServiceRegistry implements LambdaFunction {
         }
         cloudOrigins.remove(origin);
         originTopic.remove(origin);
+        batchOrigins.remove(origin);
+        routeSync.remove(origin);
     }
 
     private void registerMyRoutes() {
@@ -22,23 +22,30 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.platformlambda.cloud.reporter.PresenceConnector;
+import org.platformlambda.cloud.services.RoutingTableSync;
 import org.platformlambda.core.models.EventEnvelope;
 import org.platformlambda.core.models.Kv;
 import org.platformlambda.core.system.EventEmitter;
 import org.platformlambda.core.system.Platform;
 import org.platformlambda.core.system.ServiceDiscovery;
 import org.platformlambda.core.util.MultiLevelMap;
+import org.platformlambda.mock.MockPubSub;
 import org.platformlambda.mock.TestBase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -46,6 +53,7 @@ public class ConnectorTest extends TestBase {
     private static final Logger log = LoggerFactory.getLogger(ConnectorTest.class);
 
     private static final String CLOUD_CONNECTOR_HEALTH = "cloud.connector.health";
+    private static final String BATCH_RECEIVER = "batch.receiver";
 
     private static final AtomicBoolean firstRun = new AtomicBoolean(true);
 
@@ -181,6 +189,294 @@ public class ConnectorTest extends TestBase {
         po.send(ServiceDiscovery.SERVICE_REGISTRY, new Kv("type", "leave"), new Kv("origin", origin));
     }
 
+    @Test
+    public void eventBatchTest() throws IOException {
+        EventBatch batch = new EventBatch("multiplex.0001", 1);
+        for (int i=0; i < 10; i++) {
+            batch.add(new EventEnvelope().setTo("hello.world").setBody("hello "+i).toBytes());
+        }
+        Assert.assertEquals(10, batch.count());
+        byte[] data = batch.toBytes();
+        Assert.assertEquals(batch.size(), data.length);
+        List<byte[]> events = EventBatch.unpack(data);
+        Assert.assertEquals(10, events.size());
+        for (int i=0; i < events.size(); i++) {
+            EventEnvelope event = new EventEnvelope(events.get(i));
+            Assert.assertEquals("hello.world", event.getTo());
+            Assert.assertEquals("hello "+i, event.getBody());
+        }
+        byte[] incomplete = Arrays.copyOfRange(data, 0, data.length - 1);
+        IOException ex = Assert.assertThrows(IOException.class, () -> EventBatch.unpack(incomplete));
+        Assert.assertEquals("Invalid event batch - block 10 of 10", ex.getMessage());
+    }
+
+    @Test
+    public void batchIsFlushedAfterLinger() throws IOException, InterruptedException {
+        String peer = "batch-peer-1";
+        joinPeer(peer, "multiplex.0001-011", true);
+        sendToPeer(peer, 0, 3, 10);
+        // nothing else triggers a flush so the batch is published by the linger timer
+        List<MockPubSub.MockRecord> records = waitForRecords(peer, 3);
+        Assert.assertEquals(1, records.size());
+        Assert.assertTrue(records.get(0).batched);
+        Assert.assertEquals(Arrays.asList("0", "1", "2"), getSequence(records));
+    }
+
+    @Test
+    public void batchIsFlushedBeforeUnbatchedEvent() throws IOException, InterruptedException {
+        String peer = "batch-peer-2";
+        joinPeer(peer, "multiplex.0001-012", true);
+        sendToPeer(peer, 0, 2, 10);
+        // an event that is larger than the batch size is published as a single record
+        sendToPeer(peer, 2, 1, 9000);
+        List<MockPubSub.MockRecord> records = waitForRecords(peer, 3);
+        Assert.assertEquals(2, records.size());
+        Assert.assertTrue(records.get(0).batched);
+        Assert.assertEquals(2, countTestEvents(records.get(0)));
+        Assert.assertFalse(records.get(1).batched);
+        Assert.assertEquals(1, countTestEvents(records.get(1)));
+        Assert.assertEquals(Arrays.asList("0", "1", "2"), getSequence(records));
+    }
+
+    @Test
+    public void batchIsFlushedWhenFull() throws IOException, InterruptedException {
+        String peer = "batch-peer-3";
+        joinPeer(peer, "multiplex.0001-013", true);
+        // two events of 3000 bytes fit in a batch of 8192 bytes
+        sendToPeer(peer, 0, 5, 3000);
+        List<MockPubSub.MockRecord> records = waitForRecords(peer, 5);
+        Assert.assertEquals(3, records.size());
+        Assert.assertEquals(2, countTestEvents(records.get(0)));
+        Assert.assertEquals(2, countTestEvents(records.get(1)));
+        Assert.assertEquals(1, countTestEvents(records.get(2)));
+        for (MockPubSub.MockRecord record: records) {
+            Assert.assertTrue(record.batched);
+        }
+        Assert.assertEquals(Arrays.asList("0", "1", "2", "3", "4"), getSequence(records));
+    }
+
+    @Test
+    public void peerWithoutBatchingReceivesSingleEvents() throws IOException, InterruptedException {
+        // a peer that does not advertise batching when it joins
+        String legacy = "batch-peer-4";
+        joinPeer(legacy, "multiplex.0001-014", false);
+        sendToPeer(legacy, 0, 3, 10);
+        List<MockPubSub.MockRecord> records = waitForRecords(legacy, 3);
+        Assert.assertEquals(3, records.size());
+        for (MockPubSub.MockRecord record: records) {
+            Assert.assertFalse(record.batched);
+        }
+        Assert.assertEquals(Arrays.asList("0", "1", "2"), getSequence(records));
+        // a peer that stops advertising batching in its keep-alive
+        String downgraded = "batch-peer-5";
+        String topic = "multiplex.0001-015";
+        joinPeer(downgraded, topic, true);
+        EventEnvelope alive = new EventEnvelope().setTo(ServiceDiscovery.SERVICE_REGISTRY)
+                .setHeader("type", "keep-alive").setHeader("origin", downgraded).setHeader("topic", topic)
+                .setHeader("name", "legacy").setHeader("version", "1.0.0");
+        final BlockingQueue<EventEnvelope> bench = new ArrayBlockingQueue<>(1);
+        EventEmitter.getInstance().asyncRequest(alive, 5000).onSuccess(bench::offer);
+        Assert.assertNotNull(bench.poll(10, TimeUnit.SECONDS));
+        sendToPeer(downgraded, 0, 3, 10);
+        records = waitForRecords(downgraded, 3);
+        Assert.assertEquals(3, records.size());
+        for (MockPubSub.MockRecord record: records) {
+            Assert.assertFalse(record.batched);
+        }
+        Assert.assertEquals(Arrays.asList("0", "1", "2"), getSequence(records));
+    }
+
+    private void joinPeer(String origin, String topic, boolean batch) throws IOException, InterruptedException {
+        Platform platform = Platform.getInstance();
+        if (!platform.hasRoute(BATCH_RECEIVER)) {
+            platform.registerPrivate(BATCH_RECEIVER, (headers, input, instance) -> true, 1);
+        }
+        EventEnvelope join = new EventEnvelope().setTo(ServiceDiscovery.SERVICE_REGISTRY)
+                .setHeader("type", "join").setHeader("origin", origin).setHeader("topic", topic);
+        if (batch) {
+            join.setHeader("batch", true);
+        }
+        final BlockingQueue<EventEnvelope> bench = new ArrayBlockingQueue<>(1);
+        EventEmitter.getInstance().asyncRequest(join, 5000).onSuccess(bench::offer);
+        Assert.assertNotNull(bench.poll(10, TimeUnit.SECONDS));
+    }
+
+    /*
+     * Emulate the outgoing path of the event system that hands serialized events to the cloud connector
+     */
+    private void sendToPeer(String origin, int start, int n, int size) throws IOException {
+        EventEmitter po = EventEmitter.getInstance();
+        for (int i=start; i < start + n; i++) {
+            char[] padding = new char[size];
+            Arrays.fill(padding, 'x');
+            EventEnvelope event = new EventEnvelope().setTo(BATCH_RECEIVER)
+                                        .setHeader("seq", i).setBody(new String(padding));
+            po.send(new EventEnvelope().setTo(EventEmitter.CLOUD_CONNECTOR)
+                        .setHeader("to", BATCH_RECEIVER + "@" + origin).setBody(event.toBytes()));
+        }
+    }
+
+    private List<MockPubSub.MockRecord> waitForRecords(String origin, int expected) throws InterruptedException {
+        long begin = System.currentTimeMillis();
+        while (getSequence(getTestRecords(origin)).size() < expected &&
+                System.currentTimeMillis() - begin < 5000) {
+            Thread.sleep(20);
+        }
+        // wait beyond the linger period so that an unexpected record would be seen
+        Thread.sleep(300);
+        return getTestRecords(origin);
+    }
+
+    /*
+     * Return the records that carry test events, ignoring the records of the service registry
+     */
+    private List<MockPubSub.MockRecord> getTestRecords(String origin) {
+        List<MockPubSub.MockRecord> result = new ArrayList<>();
+        for (MockPubSub.MockRecord record: MockPubSub.getRecords(origin)) {
+            if (countTestEvents(record) > 0) {
+                result.add(record);
+            }
+        }
+        return result;
+    }
+
+    private int countTestEvents(MockPubSub.MockRecord record) {
+        int n = 0;
+        for (EventEnvelope event: record.events) {
+            if (BATCH_RECEIVER.equals(event.getTo())) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private List<String> getSequence(List<MockPubSub.MockRecord> records) {
+        List<String> result = new ArrayList<>();
+        for (MockPubSub.MockRecord record: records) {
+            for (EventEnvelope event: record.events) {
+                if (BATCH_RECEIVER.equals(event.getTo())) {
+                    result.add(event.getHeader("seq"));
+                }
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void routingTableSyncTest() {
+        final int NODES = 100;
+        final int ROUTES = 30;
+        final int REMOVED = 5;
+        Random random = new Random(100);
+        List<VirtualNode> nodes = new ArrayList<>();
+        for (int i=0; i < NODES; i++) {
+            nodes.add(new VirtualNode("node-"+i));
+        }
+        // each node joins with an empty routing table
+        for (VirtualNode node: nodes) {
+            for (VirtualNode peer: nodes) {
+                if (node != peer) {
+                    Assert.assertTrue(peer.sync.acceptSnapshot(node.origin, 0));
+                }
+            }
+        }
+        // route changes are broadcast as deltas and some of them are lost
+        int deltas = 0;
+        int lost = 0;
+        List<VirtualNode[]> requests = new ArrayList<>();
+        for (int r=0; r < ROUTES + REMOVED; r++) {
+            for (VirtualNode node: nodes) {
+                boolean add = r < ROUTES;
+                String route = "hello.route."+ (add? r : r - ROUTES);
+                if (add) {
+                    node.myRoutes.put(route, "APP");
+                } else {
+                    node.myRoutes.remove(route);
+                }
+                long rv = node.sync.nextVersion();
+                for (VirtualNode peer: nodes) {
+                    if (node != peer) {
+                        deltas++;
+                        if (random.nextInt(100) < 2) {
+                            lost++;
+                            continue;
+                        }
+                        RoutingTableSync.Delta delta = peer.sync.checkDelta(node.origin, rv);
+                        Assert.assertNotEquals(RoutingTableSync.Delta.UNKNOWN, delta);
+                        if (delta != RoutingTableSync.Delta.DUPLICATED) {
+                            if (add) {
+                                peer.routes.computeIfAbsent(route, k -> new ConcurrentHashMap<>())
+                                        .put(node.origin, "APP");
+                            } else {
+                                peer.routes.computeIfPresent(route, (k, v) -> {
+                                    v.remove(node.origin);
+                                    return v.isEmpty()? null : v;
+                                });
+                            }
+                        }
+                        if (delta == RoutingTableSync.Delta.GAP && peer.sync.requestSnapshot(node.origin)) {
+                            requests.add(new VirtualNode[] {peer, node});
+                        }
+                    }
+                }
+            }
+        }
+        // a gap is repaired with a snapshot from the peer
+        for (VirtualNode[] pair: requests) {
+            VirtualNode peer = pair[0];
+            VirtualNode node = pair[1];
+            if (peer.sync.acceptSnapshot(node.origin, node.sync.getVersion())) {
+                RoutingTableSync.applySnapshot(peer.routes, node.origin, new HashMap<>(node.myRoutes));
+            }
+        }
+        // the version advertised in keep-alive reveals any loss of the last change
+        int repaired = 0;
+        for (VirtualNode node: nodes) {
+            for (VirtualNode peer: nodes) {
+                if (node != peer && peer.sync.isBehind(node.origin, node.sync.getVersion())) {
+                    Assert.assertTrue(peer.sync.requestSnapshot(node.origin));
+                    Assert.assertTrue(peer.sync.acceptSnapshot(node.origin, node.sync.getVersion()));
+                    RoutingTableSync.applySnapshot(peer.routes, node.origin, new HashMap<>(node.myRoutes));
+                    repaired++;
+                }
+                if (node != peer) {
+                    Assert.assertFalse(peer.sync.isBehind(node.origin, node.sync.getVersion()));
+                }
+            }
+        }
+        for (VirtualNode peer: nodes) {
+            Assert.assertEquals(ROUTES - REMOVED, peer.routes.size());
+            for (int r=0; r < ROUTES; r++) {
+                int expected = r < REMOVED? 0 : NODES - 1;
+                ConcurrentMap<String, String> origins = peer.routes.get("hello.route."+r);
+                Assert.assertEquals(expected, origins == null? 0 : origins.size());
+            }
+        }
+        Assert.assertTrue(lost > 0);
+        Assert.assertTrue(requests.size() + repaired <= lost);
+        log.info("{} virtual nodes, {} route changes, {} lost, {} snapshots requested",
+                NODES, deltas, lost, requests.size() + repaired);
+        // an outdated snapshot is ignored
+        VirtualNode first = nodes.get(0);
+        VirtualNode second = nodes.get(1);
+        Assert.assertFalse(second.sync.acceptSnapshot(first.origin, 1));
+        Assert.assertEquals(RoutingTableSync.Delta.DUPLICATED,
+                second.sync.checkDelta(first.origin, first.sync.getVersion()));
+        second.sync.remove(first.origin);
+        Assert.assertTrue(second.sync.isBehind(first.origin, 0));
+    }
+
+    private static class VirtualNode {
+        private final String origin;
+        private final RoutingTableSync sync = new RoutingTableSync();
+        private final Map<String, String> myRoutes = new HashMap<>();
+        private final ConcurrentMap<String, ConcurrentMap<String, String>> routes = new ConcurrentHashMap<>();
+
+        private VirtualNode(String origin) {
+            this.origin = origin;
+        }
+    }
+
     @Test
     public void checkTopicNameWithoutDot() throws IOException {
         String name = "hello.world";
@@ -59,7 +59,7 @@ public class MockCloud implements CloudSetup {
         try {
             platform.registerPrivate(EventEmitter.CLOUD_CONNECTOR, new EventProducer(), 1);
             platform.registerPrivate(ServiceDiscovery.SERVICE_QUERY, new ServiceQuery(), 10);
-            platform.registerPrivate(ServiceDiscovery.SERVICE_REGISTRY, new ServiceRegistry(), 10);
+            platform.registerPrivate(ServiceDiscovery.SERVICE_REGISTRY, new ServiceRegistry(), 1);
             platform.registerPrivate(CLOUD_CONNECTOR_HEALTH, new CloudHealthCheck(), 2);
             platform.startCloudServices();
         } catch (IOException e) {
@@ -18,6 +18,7 @@
 
 package org.platformlambda.mock;
 
+import org.platformlambda.cloud.EventBatch;
 import org.platformlambda.cloud.EventProducer;
 import org.platformlambda.cloud.ServiceLifeCycle;
 import org.platformlambda.core.models.EventEnvelope;
@@ -30,11 +31,24 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class MockPubSub implements PubSubProvider {
     private static final Logger log = LoggerFactory.getLogger(MockPubSub.class);
     private static final Map<String, Integer> topicStore = new HashMap<>();
     private static final Map<String, LambdaFunction> subscriptions = new HashMap<>();
+    private static final Map<String, List<MockRecord>> records = new ConcurrentHashMap<>();
+
+    /**
+     * Get the records that have been published to a peer
+     *
+     * @param recipient origin of the peer
+     * @return records in the order of publishing
+     */
+    public static List<MockRecord> getRecords(String recipient) {
+        return new ArrayList<>(records.getOrDefault(recipient, Collections.emptyList()));
+    }
 
     @Override
     public boolean createTopic(String topic) throws IOException {
@@ -86,11 +100,25 @@ public class MockPubSub implements PubSubProvider {
             EventEmitter po = EventEmitter.getInstance();
             Map<String, String> eventHeaders = headers == null ? new HashMap<>() : headers;
             if (eventHeaders.containsKey(EventProducer.EMBED_EVENT) && body instanceof byte[]) {
-                EventEnvelope event = new EventEnvelope();
-                event.load((byte[]) body);
-                String to = event.getTo();
-                int sep = to.indexOf("@monitor");
-                po.send(sep > 1 ? event.setTo(to.substring(0, sep)) : event);
+                boolean batched = eventHeaders.containsKey(EventProducer.BATCH_EVENT);
+                List<byte[]> events = batched?
+                        EventBatch.unpack((byte[]) body) : Collections.singletonList((byte[]) body);
+                List<EventEnvelope> envelopes = new ArrayList<>();
+                for (byte[] b: events) {
+                    EventEnvelope event = new EventEnvelope();
+                    event.load(b);
+                    envelopes.add(event);
+                }
+                String recipient = eventHeaders.get(EventProducer.RECIPIENT);
+                if (recipient != null) {
+                    records.computeIfAbsent(recipient, k -> new CopyOnWriteArrayList<>())
+                            .add(new MockRecord(batched, envelopes));
+                }
+                for (EventEnvelope event: envelopes) {
+                    String to = event.getTo();
+                    int sep = to.indexOf("@monitor");
+                    po.send(sep > 1 ? event.setTo(to.substring(0, sep)) : event);
+                }
             } else {
                 po.send(new EventEnvelope().setTo(route).setHeaders(headers).setBody(body));
             }
@@ -185,4 +213,14 @@ public class MockPubSub implements PubSubProvider {
     public void cleanup() {
         // no-op
     }
+
+    public static class MockRecord {
+        public final boolean batched;
+        public final List<EventEnvelope> events;
+
+        private MockRecord(boolean batched, List<EventEnvelope> events) {
+            this.batched = batched;
+            this.events = events;
+        }
+    }
 }
@@ -41,6 +41,9 @@ public class RoutingEntry {
     private static final String UPLOAD = "upload";
     private static final String THRESHOLD = "threshold";
     private static final String TRACING = "tracing";
+    private static final String JSON = "json";
+    private static final String COMPACT = "compact";
+    private static final String PRETTY = "pretty";
     private static final String SERVICE = "service";
     private static final String FLOW = "flow";
     private static final String METHODS = "methods";
@@ -472,6 +475,15 @@ public class RoutingEntry {
         if ("true".equalsIgnoreCase(tracing)) {
             info.tracing = true;
         }
+        String json = config.getProperty(REST+"["+idx+"]."+JSON);
+        if (COMPACT.equalsIgnoreCase(json)) {
+            info.compactJson = true;
+        } else if (PRETTY.equalsIgnoreCase(json)) {
+            info.compactJson = false;
+        } else if (json != null) {
+            log.warn("Ignored invalid json format '{}' in {} - use {} or {}",
+                    json, config.get(REST+"["+idx+"]"), COMPACT, PRETTY);
+        }
         // drop query string when parsing URL
         if (url.contains("?")) {
             url = url.substring(0, url.indexOf('?'));
@@ -465,7 +465,8 @@ public class AsyncHttpClient implements TypedLambdaFunction<EventEnvelope, Void>
         return Future.future(promise -> {
             File temp = getTempFile(streamId);
             long timeout = Math.max(5000, timeoutSeconds * 1000L);
-            AsyncObjectStreamReader in = new AsyncObjectStreamReader(streamId, timeout);
+            AsyncObjectStreamReader in = new AsyncObjectStreamReader(streamId, timeout,
+                                                        AsyncObjectStreamReader.getDefaultCredits());
             try {
                 fetchNextBlock(promise, temp, in, new FileOutputStream(temp));
             } catch (FileNotFoundException e) {
@@ -643,7 +644,8 @@ public class AsyncHttpClient implements TypedLambdaFunction<EventEnvelope, Void>
                                 } else {
                                     if (out == null) {
                                         stream = new ObjectStreamIO(timeoutSeconds);
-                                        out = new ObjectStreamWriter(stream.getOutputStreamId());
+                                        out = new ObjectStreamWriter(stream.getOutputStreamId(),
+                                                                     ObjectStreamWriter.getDefaultBlockSize());
                                     }
                                     len += b.length;
                                     out.write(b);
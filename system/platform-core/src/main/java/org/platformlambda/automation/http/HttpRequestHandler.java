@@ -69,8 +69,12 @@ public class HttpRequestHandler implements Handler<HttpServerRequest> {
     private static final String[] HEALTH_SERVICE = {"/health", "health"};
     private static final String[] ENV_SERVICE = {"/env", "env"};
     private static final String[] LIVENESSPROBE = {"/livenessprobe", "livenessprobe"};
+    private static final String[] METRICS = {"/metrics", "metrics"};
+    private static final String[] PROFILE = {"/profile", "profile"};
     private static final String[][] ADMIN_ENDPOINTS = {INFO_SERVICE, INFO_LIB, INFO_ROUTES,
-                                                        HEALTH_SERVICE, ENV_SERVICE, LIVENESSPROBE};
+                                                        HEALTH_SERVICE, ENV_SERVICE, LIVENESSPROBE, METRICS, PROFILE};
+    private static final String[][] PROFILER_CONTROLS = {{"/profile/start", "profile_start"},
+                                                        {"/profile/stop", "profile_stop"}};
     private static final long GRACE_PERIOD = 5000;
 
     private final ServiceGateway gateway;
@@ -116,6 +120,12 @@ public class HttpRequestHandler implements Handler<HttpServerRequest> {
                 suspendResume(requestId, request);
                 return;
             }
+            for (String[] control: PROFILER_CONTROLS) {
+                if (control[0].equals(uri)) {
+                    profilerControl(requestId, request, control[1]);
+                    return;
+                }
+            }
         }
         RoutingEntry re = RoutingEntry.getInstance();
         AssignedRoute route = uri.startsWith(WS_PREFIX)? null : re.getRouteInfo(method, uri);
@@ -183,6 +193,16 @@ public class HttpRequestHandler implements Handler<HttpServerRequest> {
         return true;
     }
 
+    private void profilerControl(String requestId, HttpServerRequest request, String type) {
+        // like shutdown, a profiler control changes the state of an application instance
+        if (request.getHeader(APP_INSTANCE) == null) {
+            SimpleHttpUtility.getInstance().sendError(requestId, request, 400,
+                                                        "Missing "+ APP_INSTANCE +" in request header");
+            return;
+        }
+        executeActuator(requestId, request, type);
+    }
+
     private void shutdown(String requestId, HttpServerRequest request) {
         EventEmitter po = EventEmitter.getInstance();
         SimpleHttpUtility httpUtil = SimpleHttpUtility.getInstance();
@@ -26,6 +26,7 @@ public class AsyncContextHolder {
     public long timeout;
     public long lastAccess;
     public String url, resHeaderId, accept, method;
+    public Boolean compactJson;
 
     public AsyncContextHolder(HttpServerRequest request) {
         this.request = request;
@@ -59,6 +60,11 @@ public class AsyncContextHolder {
         return this;
     }
 
+    public AsyncContextHolder setCompactJson(Boolean compactJson) {
+        this.compactJson = compactJson;
+        return this;
+    }
+
     public AsyncContextHolder setAccept(String accept) {
         this.accept = accept;
         return this;
@@ -23,12 +23,24 @@ import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.streams.WriteStream;
+import org.platformlambda.core.system.ObjectStreamWriter;
 import org.platformlambda.core.util.ElasticQueue;
 import org.platformlambda.core.util.Utility;
 
+import java.util.Arrays;
+
 public class OutputStreamQueue implements WriteStream<Buffer> {
+    private static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
     private final ElasticQueue queue = new ElasticQueue("http."+Utility.getInstance().getUuid());
     private final AcknowledgeResult acknowledgement = new AcknowledgeResult();
+    private final int blockSize;
+    private byte[] pending;
+    private int pendingLen = 0;
+
+    public OutputStreamQueue() {
+        int size = ObjectStreamWriter.getDefaultBlockSize();
+        this.blockSize = size > 0? size : DEFAULT_BLOCK_SIZE;
+    }
 
     public byte[] read() {
         return queue.read();
@@ -52,15 +64,39 @@ public class OutputStreamQueue implements WriteStream<Buffer> {
 
     @Override
     public void write(Buffer block, Handler<AsyncResult<Void>> handler) {
-        queue.write(block.getBytes());
+        // coalesce the small HTTP chunks into blocks to reduce the number of queue entries and stream events
+        int len = block.length();
+        int pos = 0;
+        while (pos < len) {
+            if (pending == null) {
+                pending = new byte[blockSize];
+                pendingLen = 0;
+            }
+            int n = Math.min(len - pos, blockSize - pendingLen);
+            block.getBytes(pos, pos + n, pending, pendingLen);
+            pos += n;
+            pendingLen += n;
+            if (pendingLen == blockSize) {
+                flush();
+            }
+        }
         handler.handle(acknowledgement);
     }
 
     @Override
     public void end(Handler<AsyncResult<Void>> handler) {
+        flush();
         handler.handle(acknowledgement);
     }
 
+    private void flush() {
+        if (pending != null && pendingLen > 0) {
+            queue.write(pendingLen == pending.length? pending : Arrays.copyOfRange(pending, 0, pendingLen));
+        }
+        pending = null;
+        pendingLen = 0;
+    }
+
     @Override
     public WriteStream<Buffer> setWriteQueueMaxSize(int maxSize) {
         // no need to implement
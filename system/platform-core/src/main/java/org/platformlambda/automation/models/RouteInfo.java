@@ -32,6 +32,8 @@ public class RouteInfo {
     public List<String> methods;
     public int timeoutSeconds = 30;
     public boolean upload = false;
+    // null means the global compact.json.output setting
+    public Boolean compactJson;
     // optional for HTTP relay
     public String host;
     public String flowId;
@@ -20,6 +20,7 @@ package org.platformlambda.automation.models;
 
 import org.platformlambda.core.system.ObjectStreamIO;
 import org.platformlambda.core.system.ObjectStreamWriter;
+import org.platformlambda.core.system.StreamMultiplexer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,6 +28,9 @@ import java.io.IOException;
 
 public class StreamHolder {
     private static final Logger log = LoggerFactory.getLogger(StreamHolder.class);
+    // number of blocks in transit to the stream service
+    private static final int HIGH_WATERMARK = 16;
+    private static final int LOW_WATERMARK = 4;
 
     private ObjectStreamIO stream = null;
     private ObjectStreamWriter out = null;
@@ -40,7 +44,7 @@ public class StreamHolder {
         if (out == null) {
             try {
                 stream = new ObjectStreamIO(timeoutSeconds);
-                out = new ObjectStreamWriter(stream.getOutputStreamId());
+                out = new ObjectStreamWriter(stream.getOutputStreamId(), ObjectStreamWriter.getDefaultBlockSize());
             } catch (IOException e) {
                 log.error("Unable to create stream - {}", e.getMessage());
             }
@@ -52,6 +56,40 @@ public class StreamHolder {
         return stream == null? null : stream.getInputStreamId();
     }
 
+    /**
+     * Check if the stream service is falling behind the writer
+     *
+     * @return true if the number of blocks in transit is above the high watermark
+     */
+    public boolean isCongested() {
+        if (out == null) {
+            return false;
+        }
+        long written = StreamMultiplexer.getInstance().getWrittenBlocks(getLocalInputRoute());
+        return written >= 0 && out.getBlockCount() - written > HIGH_WATERMARK;
+    }
+
+    /**
+     * Run a task when the number of blocks in transit drops to the low watermark
+     * <p>
+     * The task runs in the thread of the stream service or immediately if the stream is closed.
+     *
+     * @param task to run
+     */
+    public void whenDrained(Runnable task) {
+        if (out == null) {
+            task.run();
+        } else {
+            StreamMultiplexer.getInstance().whenWritten(getLocalInputRoute(),
+                                                        out.getBlockCount() - LOW_WATERMARK, task);
+        }
+    }
+
+    private String getLocalInputRoute() {
+        String id = stream.getInputStreamId();
+        return id.contains("@")? id.substring(0, id.indexOf('@')) : id;
+    }
+
     public void close() {
         if (out != null) {
             try {
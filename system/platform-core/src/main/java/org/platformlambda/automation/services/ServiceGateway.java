@@ -18,11 +18,14 @@
 
 package org.platformlambda.automation.services;
 
+import io.vertx.core.Context;
 import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.Cookie;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.streams.ReadStream;
 import org.platformlambda.automation.config.RoutingEntry;
 import org.platformlambda.automation.models.*;
 import org.platformlambda.automation.util.SimpleHttpUtility;
@@ -78,7 +81,6 @@ public class ServiceGateway {
     private static final String FILEPATH = "file:";
     private static final String ETAG = "ETag";
     private static final String IF_NONE_MATCH = "If-None-Match";
-    private static final int BUFFER_SIZE = 4 * 1024;
     private static final long FILTER_TIMEOUT = 10000;
     // requestId -> context
     private static final ConcurrentMap<String, AsyncContextHolder> contexts = new ConcurrentHashMap<>();
@@ -412,7 +414,8 @@ public class ServiceGateway {
         HttpServerRequest request = holder.request;
         String uri = util.getUrlDecodedPath(request.path());
         String method = request.method().name();
-        holder.setUrl(uri).setMethod(method).setResHeaderId(route.info.responseTransformId);
+        holder.setUrl(uri).setMethod(method).setResHeaderId(route.info.responseTransformId)
+                .setCompactJson(route.info.compactJson);
         SimpleHttpUtility httpUtil = SimpleHttpUtility.getInstance();
         if (OPTIONS.equals(method)) {
             // insert CORS headers for OPTIONS
@@ -572,6 +575,7 @@ public class ServiceGateway {
                         if (len > 0) {
                             total.addAndGet(len);
                             pipeHttpInputToStream(stream.getOutputStream(), block, len);
+                            applyBackPressure(stream, upload);
                         }
                     }).endHandler(end -> {
                         int size = total.get();
@@ -665,22 +669,23 @@ public class ServiceGateway {
                 } else {
                     final AtomicInteger total = new AtomicInteger();
                     final StreamHolder stream = new StreamHolder(route.info.timeoutSeconds);
-                    request.bodyHandler(block -> {
+                    // pipe the blocks as they arrive instead of aggregating the whole body in memory
+                    request.handler(block -> {
                         int len = block.length();
                         if (len > 0) {
                             total.addAndGet(len);
                             pipeHttpInputToStream(stream.getOutputStream(), block, len);
+                            applyBackPressure(stream, request);
                         }
-                        if (inputComplete.get()) {
-                            int size = total.get();
-                            req.setContentLength(size);
-                            if (size > 0) {
-                                req.setStreamRoute(stream.getInputStreamId());
-                                stream.close();
-                            }
-                            sendRequestToService(request, requestEvent.setHttpRequest(req));
+                    }).endHandler(end -> {
+                        int size = total.get();
+                        req.setContentLength(size);
+                        if (size > 0) {
+                            req.setStreamRoute(stream.getInputStreamId());
+                            stream.close();
                         }
-                    }).endHandler(end -> inputComplete.set(true));
+                        sendRequestToService(request, requestEvent.setHttpRequest(req));
+                    });
                 }
             }
         } else {
@@ -738,25 +743,23 @@ public class ServiceGateway {
     private void pipeHttpInputToStream(ObjectStreamWriter out, Buffer block, int len) {
         if (out != null && block != null && len > 0) {
             try {
-                byte[] data = block.getBytes(0, len);
-                if (data.length > BUFFER_SIZE) {
-                    int bytesRead = 0;
-                    byte[] buffer = new byte[BUFFER_SIZE];
-                    ByteArrayInputStream in = new ByteArrayInputStream(data);
-                    while (bytesRead < data.length) {
-                        int n = in.read(buffer);
-                        bytesRead += n;
-                        out.write(buffer, 0, n);
-                    }
-                } else {
-                    out.write(data);
-                }
+                // the writer coalesces the blocks into larger events
+                out.write(block);
             } catch (IOException e) {
                 log.error("Unexpected error while reading HTTP input stream", e);
             }
         }
     }
 
+    private void applyBackPressure(StreamHolder stream, ReadStream<Buffer> input) {
+        // pause the HTTP input when the stream service falls behind and resume it when it catches up
+        if (stream.isCongested()) {
+            input.pause();
+            Context context = Vertx.currentContext();
+            stream.whenDrained(() -> context.runOnContext(v -> input.resume()));
+        }
+    }
+
     /**
      * Get X-Trace-Id from HTTP request headers if any.
      * Otherwise, generate a unique ID.
@@ -29,6 +29,7 @@ import org.platformlambda.core.annotations.EventInterceptor;
 import org.platformlambda.core.models.EventEnvelope;
 import org.platformlambda.core.models.TypedLambdaFunction;
 import org.platformlambda.core.serializers.SimpleMapper;
+import org.platformlambda.core.serializers.SimpleObjectMapper;
 import org.platformlambda.core.serializers.SimpleXmlWriter;
 import org.platformlambda.core.system.AsyncObjectStreamReader;
 import org.platformlambda.core.util.Utility;
@@ -69,6 +70,14 @@ public class ServiceResponseHandler implements TypedLambdaFunction<EventEnvelope
         this.contexts = contexts;
     }
 
+    private SimpleObjectMapper getJsonMapper(AsyncContextHolder holder) {
+        SimpleMapper mapper = SimpleMapper.getInstance();
+        if (holder.compactJson == null) {
+            return mapper.getMapper();
+        }
+        return holder.compactJson? mapper.getCompactMapper() : mapper.getPrettyMapper();
+    }
+
     private long getReadTimeout(String timeoutOverride, long contextTimeout) {
         if (timeoutOverride == null) {
             return contextTimeout;
@@ -178,14 +187,15 @@ public class ServiceResponseHandler implements TypedLambdaFunction<EventEnvelope
                         // output is a stream?
                         response.setChunked(true);
                         AsyncObjectStreamReader in = new AsyncObjectStreamReader(streamId,
-                                                         getReadTimeout(streamTimeout, holder.timeout));
+                                                         getReadTimeout(streamTimeout, holder.timeout),
+                                                         AsyncObjectStreamReader.getDefaultCredits());
                         fetchNextBlock(requestId, in, response);
                         return null;
 
                     } else if (responseBody instanceof Map) {
                         if (contentType.startsWith(TEXT_HTML)) {
                             byte[] start = util.getUTF(HTML_START);
-                            byte[] payload = SimpleMapper.getInstance().getMapper().writeValueAsBytes(responseBody);
+                            byte[] payload = SimpleMapper.getInstance().getPrettyMapper().writeValueAsBytes(responseBody);
                             byte[] end = util.getUTF(HTML_END);
                             response.putHeader(CONTENT_LEN, String.valueOf(start.length+payload.length+end.length));
                             response.write(HTML_START);
@@ -196,14 +206,14 @@ public class ServiceResponseHandler implements TypedLambdaFunction<EventEnvelope
                             response.putHeader(CONTENT_LEN, String.valueOf(payload.length));
                             response.write(Buffer.buffer(payload));
                         } else {
-                            byte[] payload = SimpleMapper.getInstance().getMapper().writeValueAsBytes(responseBody);
+                            byte[] payload = getJsonMapper(holder).writeValueAsBytes(responseBody);
                             response.putHeader(CONTENT_LEN, String.valueOf(payload.length));
                             response.write(Buffer.buffer(payload));
                         }
                     } else if (responseBody instanceof List) {
                         if (contentType.startsWith(TEXT_HTML)) {
                             byte[] start = util.getUTF(HTML_START);
-                            byte[] payload = SimpleMapper.getInstance().getMapper().writeValueAsBytes(responseBody);
+                            byte[] payload = SimpleMapper.getInstance().getPrettyMapper().writeValueAsBytes(responseBody);
                             byte[] end = util.getUTF(HTML_END);
                             response.putHeader(CONTENT_LEN, String.valueOf(start.length+payload.length+end.length));
                             response.write(HTML_START);
@@ -217,7 +227,7 @@ public class ServiceResponseHandler implements TypedLambdaFunction<EventEnvelope
                             response.putHeader(CONTENT_LEN, String.valueOf(payload.length));
                             response.write(Buffer.buffer(payload));
                         } else {
-                            byte[] payload = SimpleMapper.getInstance().getMapper().writeValueAsBytes(responseBody);
+                            byte[] payload = getJsonMapper(holder).writeValueAsBytes(responseBody);
                             response.putHeader(CONTENT_LEN, String.valueOf(payload.length));
                             response.write(Buffer.buffer(payload));
                         }
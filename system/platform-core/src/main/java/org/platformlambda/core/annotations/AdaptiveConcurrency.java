@@ -0,0 +1,40 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core.annotations;
+
+import java.lang.annotation.*;
+
+/**
+ * Add this annotation to a function class to adjust the number of active workers automatically.
+ * <p>
+ * The number of active workers is kept between "min" and the number of instances given when the function
+ * is registered. It grows when events are queued and the execution time stays close to its baseline.
+ * It shrinks when the execution time rises because of contention or when the function becomes idle.
+ * <p>
+ * The minimum can also be set with the "adaptive.concurrency.{route}" parameter in application.properties
+ * for a function that does not have this annotation.
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface AdaptiveConcurrency {
+
+    int min() default 1;
+
+}
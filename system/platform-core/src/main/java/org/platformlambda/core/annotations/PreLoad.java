@@ -32,6 +32,16 @@ import java.lang.annotation.*;
  * The parameter may fetch value from an environment variable using "${ENV_VAR:default_value}" format.
  * If the parameter does not exist, or it does not resolve to a numeric value, the "instances" value in this
  * annotation will be used instead.
+ * <p>
+ * partitionKey is optional. If present, an event that carries a header of this name is always dispatched to
+ * the same worker instance, selected by consistent hashing of the header value, so that events with the same
+ * key are processed in the order they arrive. Events without the header are dispatched to any available worker.
+ * Adaptive concurrency is not used for a partitioned function because the number of workers must stay the same.
+ * <p>
+ * threads is optional. If it is more than zero, a function that uses the KernelThreadRunner annotation is
+ * executed by a dedicated pool of this number of kernel threads instead of the shared kernel thread pool.
+ * The pool size is not derived from "instances". Since each worker processes one event at a time,
+ * threads more than instances are not used.
  */
 @Target({ElementType.TYPE})
 @Retention(RetentionPolicy.RUNTIME)
@@ -43,5 +53,7 @@ public @interface PreLoad {
     int instances() default 1;
     String envInstances() default "";
     boolean isPrivate() default true;
+    String partitionKey() default "";
+    int threads() default 0;
 
 }
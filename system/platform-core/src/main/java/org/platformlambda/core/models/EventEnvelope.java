@@ -21,6 +21,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 public class EventEnvelope {
@@ -773,9 +774,23 @@ public class EventEnvelope {
      * @param bytes encoded payload
      * @throws IOException in case of decoding errors
      */
-    @SuppressWarnings("unchecked")
     public void load(byte[] bytes) throws IOException {
-        Object o = msgPack.unpack(bytes);
+        loadMap(msgPack.unpack(bytes));
+    }
+
+    /**
+     * DeSerialize the EventEnvelope from a byte buffer without copying it into a byte array
+     * (e.g. a direct buffer that holds a reassembled event)
+     *
+     * @param buffer encoded payload from current position to limit
+     * @throws IOException in case of decoding errors
+     */
+    public void load(ByteBuffer buffer) throws IOException {
+        loadMap(msgPack.unpack(buffer));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void loadMap(Object o) {
         if (o instanceof Map) {
             Utility util = Utility.getInstance();
             Map<String, Object> message = (Map<String, Object>) o;
@@ -0,0 +1,69 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core.models;
+
+/**
+ * Callback for streaming decode of a packed map or list
+ * <p>
+ * Each element is identified by its composite path in the same notation as MultiLevelMap.
+ * e.g. "hello.world", "items[0].name" or "[2]" for an element of a list at the top level.
+ */
+public interface MsgPackVisitor {
+
+    /**
+     * Select an element before it is decoded
+     *
+     * @param path of the element
+     * @return true to decode the element or false to skip it including all its children
+     */
+    default boolean select(String path) {
+        return true;
+    }
+
+    /**
+     * Called when a map is found
+     *
+     * @param path of the map
+     * @param size number of entries in the map
+     */
+    default void onMap(String path, int size) {
+        // no-op
+    }
+
+    /**
+     * Called when a list is found
+     *
+     * @param path of the list
+     * @param size number of elements in the list
+     */
+    default void onList(String path, int size) {
+        // no-op
+    }
+
+    /**
+     * Called when a value is decoded
+     * <p>
+     * Null value in a map is ignored. Null value in a list is delivered to preserve the sequence.
+     *
+     * @param path of the value
+     * @param value of String, Integer, Long, Float, Double, Boolean, byte[] or null
+     */
+    void onValue(String path, Object value);
+
+}
@@ -0,0 +1,57 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core.models;
+
+/**
+ * Shared storage behind a near-cache
+ * <p>
+ * Entries are opaque byte arrays that are encoded by the near-cache with their versions.
+ * An implementation only needs to provide atomic compare-and-set so that a newer version
+ * is never overwritten by an older one.
+ */
+public interface RemoteCacheStore {
+
+    /**
+     * Read an entry
+     *
+     * @param key of the entry
+     * @return encoded entry or null if not found
+     */
+    byte[] get(String key);
+
+    /**
+     * Atomically replace an entry if its current content is the expected one
+     *
+     * @param key of the entry
+     * @param expected current content or null if the entry must not exist
+     * @param update new content
+     * @return true if the entry is updated
+     */
+    boolean compareAndSet(String key, byte[] expected, byte[] update);
+
+    /**
+     * Atomically remove an entry if its current content is the expected one
+     *
+     * @param key of the entry
+     * @param expected current content
+     * @return true if the entry is removed
+     */
+    boolean remove(String key, byte[] expected);
+
+}
@@ -0,0 +1,59 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core.models;
+
+import io.vertx.core.eventbus.MessageConsumer;
+import org.platformlambda.core.system.Platform;
+import org.platformlambda.core.util.Utility;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Long-lived inbox to receive blocks that are pushed by an object stream
+ * <p>
+ * Unlike an RPC inbox, it stays open for multiple events until it is closed.
+ */
+public class StreamInbox extends InboxBase {
+    private static final Logger log = LoggerFactory.getLogger(StreamInbox.class);
+
+    private final MessageConsumer<byte[]> listener;
+
+    public StreamInbox(Consumer<EventEnvelope> handler) {
+        this.id = "r."+ Utility.getInstance().getUuid();
+        this.listener = Platform.getInstance().getEventSystem().localConsumer(id, message -> {
+            try {
+                handler.accept(new EventEnvelope(message.body()));
+            } catch (IOException e) {
+                log.error("Unable to decode event - {}", e.getMessage());
+            }
+        });
+        inboxes.put(id, this);
+    }
+
+    public void close() {
+        inboxes.remove(id);
+        if (listener.isRegistered()) {
+            listener.unregister();
+        }
+    }
+
+}
@@ -19,14 +19,20 @@
 package org.platformlambda.core.serializers;
 
 import org.msgpack.core.*;
+import org.msgpack.core.buffer.ArrayBufferInput;
+import org.msgpack.core.buffer.InputStreamBufferInput;
+import org.msgpack.core.buffer.MessageBuffer;
 import org.msgpack.value.ValueType;
+import org.platformlambda.core.models.MsgPackVisitor;
 import org.platformlambda.core.models.TypedPayload;
 import org.platformlambda.core.util.Utility;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -37,6 +43,14 @@ public class MsgPack {
 
     private static final String DATA = "_D";
     private static final String TYPE = "_T";
+    private static final byte[] EMPTY = new byte[0];
+    // avoid holding a large buffer in a thread after packing a large payload
+    private static final int MAX_RETAINED_BUFFER = 256 * 1024;
+    // header counts are untrusted input so pre-sizing of a map or list is capped
+    private static final int MAX_PRESIZE = 4096;
+    private static final ThreadLocal<PackerHolder> packers = ThreadLocal.withInitial(PackerHolder::new);
+    private static final ThreadLocal<UnpackerHolder> unpackers = ThreadLocal.withInitial(UnpackerHolder::new);
+
     /**
      * Unpack method for generic map or list object
      *
@@ -45,9 +59,40 @@ public class MsgPack {
      *
      * @throws IOException for mapping exception
      */
-    @SuppressWarnings("unchecked")
     public Object unpack(byte[] bytes) throws IOException  {
-        Object result = unpack(bytes, 0, bytes.length);
+        return decodeTypedPayload(unpack(bytes, 0, bytes.length));
+    }
+
+    /**
+     * Unpack method for generic map or list object from a heap or direct byte buffer
+     * <p>
+     * This avoids copying the buffer into another byte array.
+     * The content is read from the current position up to the limit of the buffer.
+     *
+     * @param buffer - packed structure
+     * @return result - Map, List or PoJo object
+     *
+     * @throws IOException for mapping exception
+     */
+    public Object unpack(ByteBuffer buffer) throws IOException  {
+        if (buffer.hasArray()) {
+            return decodeTypedPayload(
+                    unpack(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining()));
+        }
+        /*
+         * A direct buffer is streamed instead of being wrapped
+         * because msgpack requires JVM options to access the address of a direct buffer
+         */
+        MessageUnpacker unpacker = getUnpacker(new ByteBufferInputStream(buffer.duplicate()));
+        try {
+            return decodeTypedPayload(unpack(unpacker));
+        } finally {
+            releaseUnpacker(unpacker);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object decodeTypedPayload(Object result) throws IOException {
         if (result instanceof Map) {
             // is this an encoded payload
             Map<String, Object> map = (Map<String, Object>) result;
@@ -66,6 +111,7 @@ public class MsgPack {
         }
         return result;
     }
+
     /**
      * Optimized unpack method for generic map or list object
      *
@@ -76,45 +122,155 @@ public class MsgPack {
      * @throws IOException for mapping exception
      */
     public Object unpack(byte[] bytes, int offset, int length) throws IOException  {
-        MessageUnpacker unpacker = null;
+        MessageUnpacker unpacker = getUnpacker(bytes, offset, length);
+        try {
+            return unpack(unpacker);
+        } finally {
+            releaseUnpacker(unpacker);
+        }
+    }
+
+    /**
+     * Decode a packed map or list as a stream of elements without building the whole structure
+     * <p>
+     * The visitor can skip elements that it does not need so that they are not decoded.
+     * Note that a packed PoJo is visited in its encoded form where the data is under the "_D" key.
+     *
+     * @param bytes - packed structure
+     * @param visitor to receive the elements
+     * @throws IOException for mapping exception
+     */
+    public void visit(byte[] bytes, MsgPackVisitor visitor) throws IOException {
+        visit(bytes, 0, bytes.length, visitor);
+    }
+
+    /**
+     * Decode a packed map or list as a stream of elements without building the whole structure
+     *
+     * @param bytes - packed structure
+     * @param offset of array
+     * @param length from offset
+     * @param visitor to receive the elements
+     * @throws IOException for mapping exception
+     */
+    public void visit(byte[] bytes, int offset, int length, MsgPackVisitor visitor) throws IOException {
+        MessageUnpacker unpacker = getUnpacker(bytes, offset, length);
         try {
-            unpacker = MessagePack.newDefaultUnpacker(bytes, offset, length);
             if (unpacker.hasNext()) {
-                MessageFormat mf = unpacker.getNextFormat();
-                ValueType type = mf.getValueType();
+                ValueType type = unpacker.getNextFormat().getValueType();
                 if (type == ValueType.MAP) {
-                    return unpack(unpacker, new HashMap<>());
+                    visitMap(unpacker, "", visitor);
                 } else if (type == ValueType.ARRAY) {
-                    return unpack(unpacker, new ArrayList<>());
+                    visitList(unpacker, "", visitor);
                 } else {
                     throw new MessageFormatException("Packed input should be Map or List, Actual: "+type);
                 }
             }
-            unpacker.close();
-            unpacker = null;
         } finally {
-            if (unpacker != null) {
-                unpacker.close();
+            releaseUnpacker(unpacker);
+        }
+    }
+
+    private void visitMap(MessageUnpacker unpacker, String path, MsgPackVisitor visitor) throws IOException {
+        int n = unpacker.unpackMapHeader();
+        visitor.onMap(path, n);
+        for (int i=0; i < n; i++) {
+            String key = unpacker.unpackString();
+            visitElement(unpacker, path.isEmpty()? key : path+"."+key, visitor, false);
+        }
+    }
+
+    private void visitList(MessageUnpacker unpacker, String path, MsgPackVisitor visitor) throws IOException {
+        int len = unpacker.unpackArrayHeader();
+        visitor.onList(path, len);
+        for (int i=0; i < len; i++) {
+            visitElement(unpacker, path+"["+i+"]", visitor, true);
+        }
+    }
+
+    private void visitElement(MessageUnpacker unpacker, String path, MsgPackVisitor visitor, boolean inList)
+            throws IOException {
+        if (!visitor.select(path)) {
+            unpacker.skipValue();
+            return;
+        }
+        MessageFormat mf = unpacker.getNextFormat();
+        ValueType type = mf.getValueType();
+        if (type == ValueType.MAP) {
+            visitMap(unpacker, path, visitor);
+        } else if (type == ValueType.ARRAY) {
+            visitList(unpacker, path, visitor);
+        } else {
+            Object value = unpackValue(unpacker, mf);
+            // null value in a list is delivered to preserve the sequence
+            if (value != null || inList) {
+                visitor.onValue(path, value);
+            }
+        }
+    }
+
+    private MessageUnpacker getUnpacker(byte[] bytes, int offset, int length) throws IOException {
+        UnpackerHolder holder = unpackers.get();
+        if (holder.busy) {
+            return MessagePack.newDefaultUnpacker(bytes, offset, length);
+        }
+        holder.busy = true;
+        holder.input.reset(bytes, offset, length);
+        holder.unpacker.reset(holder.input);
+        return holder.unpacker;
+    }
+
+    private MessageUnpacker getUnpacker(InputStream in) throws IOException {
+        UnpackerHolder holder = unpackers.get();
+        if (holder.busy) {
+            return MessagePack.newDefaultUnpacker(in);
+        }
+        holder.busy = true;
+        holder.unpacker.reset(new InputStreamBufferInput(in));
+        return holder.unpacker;
+    }
+
+    private void releaseUnpacker(MessageUnpacker unpacker) throws IOException {
+        UnpackerHolder holder = unpackers.get();
+        if (holder.unpacker == unpacker) {
+            holder.busy = false;
+            // drop the reference to the input so that it can be garbage collected
+            holder.input.reset(EMPTY);
+            unpacker.reset(holder.input);
+        } else {
+            unpacker.close();
+        }
+    }
+
+    private Object unpack(MessageUnpacker unpacker) throws IOException {
+        if (unpacker.hasNext()) {
+            MessageFormat mf = unpacker.getNextFormat();
+            ValueType type = mf.getValueType();
+            if (type == ValueType.MAP) {
+                return unpackMap(unpacker);
+            } else if (type == ValueType.ARRAY) {
+                return unpackList(unpacker);
+            } else {
+                throw new MessageFormatException("Packed input should be Map or List, Actual: "+type);
             }
         }
         // this should not occur
         return new HashMap<String, Object>();
     }
 
-    private Map<String, Object> unpack(MessageUnpacker unpacker, Map<String, Object> map) throws IOException {
+    private Map<String, Object> unpackMap(MessageUnpacker unpacker) throws IOException {
         int n = unpacker.unpackMapHeader();
+        // pre-size the map to avoid rehashing
+        int size = Math.min(n, MAX_PRESIZE);
+        Map<String, Object> map = new HashMap<>(size < 3? size + 1 : (int) (size / 0.75f) + 1);
         for (int i=0; i < n; i++) {
             String key = unpacker.unpackString();
             MessageFormat mf = unpacker.getNextFormat();
             ValueType type = mf.getValueType();
             if (type == ValueType.MAP) {
-                Map<String, Object> submap = new HashMap<>();
-                map.put(key, submap);
-                unpack(unpacker, submap);
+                map.put(key, unpackMap(unpacker));
             } else if (type == ValueType.ARRAY) {
-                List<Object> array = new ArrayList<>();
-                map.put(key, array);
-                unpack(unpacker, array);
+                map.put(key, unpackList(unpacker));
             } else {
                 // skip null value
                 Object value = unpackValue(unpacker, mf);
@@ -126,19 +282,16 @@ public class MsgPack {
         return map;
     }
 
-    private List<Object> unpack(MessageUnpacker unpacker, List<Object> list) throws IOException {
+    private List<Object> unpackList(MessageUnpacker unpacker) throws IOException {
         int len = unpacker.unpackArrayHeader();
+        List<Object> list = new ArrayList<>(Math.min(len, MAX_PRESIZE));
         for (int i=0; i < len; i++) {
             MessageFormat mf = unpacker.getNextFormat();
             ValueType type = mf.getValueType();
             if (type == ValueType.MAP) {
-                Map<String, Object> submap = new HashMap<>();
-                list.add(submap);
-                unpack(unpacker, submap);
+                list.add(unpackMap(unpacker));
             } else if (type == ValueType.ARRAY) {
-                List<Object> array = new ArrayList<>();
-                list.add(array);
-                unpack(unpacker, array);
+                list.add(unpackList(unpacker));
             } else {
                 // null value is allowed to preserve the original sequence of the list
                 list.add(unpackValue(unpacker, mf));
@@ -204,32 +357,86 @@ public class MsgPack {
      * @throws IOException for msgpack object mapping exception
      */
     public byte[] pack(Object obj) throws IOException {
+        Object data = getPackable(obj);
+        MessageBufferPacker packer = getPacker();
+        boolean done = false;
+        try {
+            byte[] result = pack(packer, data).toByteArray();
+            done = true;
+            return result;
+        } finally {
+            releasePacker(packer, done);
+        }
+    }
+
+    /**
+     * Pack input into a heap or direct byte buffer provided by the caller
+     * <p>
+     * The packed structure is written from the current position of the buffer.
+     * The buffer is not changed if there is not enough space.
+     *
+     * @param obj - Map, List or a PoJo Object that contains get/set methods for variables
+     * @param buffer to receive the packed structure
+     * @return number of bytes written
+     *
+     * @throws IOException for msgpack object mapping exception
+     * @throws BufferOverflowException if the remaining space of the buffer is not sufficient
+     */
+    public int pack(Object obj, ByteBuffer buffer) throws IOException {
+        Object data = getPackable(obj);
+        MessageBufferPacker packer = getPacker();
+        boolean done = false;
+        try {
+            pack(packer, data).flush();
+            int size = packer.getBufferSize();
+            if (size > buffer.remaining()) {
+                throw new BufferOverflowException();
+            }
+            for (MessageBuffer b: packer.toBufferList()) {
+                buffer.put(b.sliceAsByteBuffer());
+            }
+            done = true;
+            return size;
+        } finally {
+            releasePacker(packer, done);
+        }
+    }
+
+    private Object getPackable(Object obj) {
         if (obj instanceof Map || obj instanceof List) {
-            // select low level processing for faster performance
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            MessagePacker packer = null;
-            try {
-                packer = MessagePack.newDefaultPacker(out);
-                pack(packer, obj).close();
-                packer = null;
-            } finally {
-                if (packer != null) {
-                    packer.close();
-                }
+            return obj;
+        }
+        // PoJo
+        TypedPayload typed = converter.encode(obj, true);
+        Map<String, Object> map = new HashMap<>();
+        map.put(TYPE, typed.getType());
+        map.put(DATA, typed.getPayload());
+        return map;
+    }
+
+    private MessageBufferPacker getPacker() {
+        PackerHolder holder = packers.get();
+        if (holder.busy) {
+            return MessagePack.newDefaultBufferPacker();
+        }
+        holder.busy = true;
+        return holder.packer;
+    }
+
+    private void releasePacker(MessageBufferPacker packer, boolean reusable) {
+        PackerHolder holder = packers.get();
+        if (holder.packer == packer) {
+            if (reusable && packer.getBufferSize() <= MAX_RETAINED_BUFFER) {
+                packer.clear();
+                holder.busy = false;
+            } else {
+                packers.remove();
             }
-            return out.toByteArray();
-        } else {
-            // PoJo
-            TypedPayload typed = converter.encode(obj, true);
-            Map<String, Object> map = new HashMap<>();
-            map.put(TYPE, typed.getType());
-            map.put(DATA, typed.getPayload());
-            return pack(map);
         }
     }
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
-    private MessagePacker pack(MessagePacker packer, Object o) throws IOException {
+    private MessageBufferPacker pack(MessageBufferPacker packer, Object o) throws IOException {
         if (o == null) {
             // preserving null element in an array list
             packer.packNil();
@@ -237,21 +444,22 @@ public class MsgPack {
             // In json, the key may not be a string
             Map<Object, Object> map = (Map<Object, Object>) o;
             int mapSize = map.size();
-            for (Object key: map.keySet()) {
+            for (Object value: map.values()) {
                 // reduce map size if null value
-                if (map.get(key) == null) {
+                if (value == null) {
                     mapSize--;
                 }
             }
             packer.packMapHeader(mapSize);
             if (mapSize > 0) {
-                for (Object key: map.keySet()) {
+                for (Map.Entry<Object, Object> kv: map.entrySet()) {
                     // ignore null value
-                    Object value = map.get(key);
+                    Object value = kv.getValue();
                     if (value != null) {
                         // convert key to string
+                        Object key = kv.getKey();
                         packer.packString(key instanceof String? (String) key : key.toString());
-                        pack(packer, map.get(key));
+                        pack(packer, value);
                     }
                 }
             }
@@ -308,4 +516,46 @@ public class MsgPack {
         return packer;
     }
 
+    private static class PackerHolder {
+        private final MessageBufferPacker packer = MessagePack.newDefaultBufferPacker();
+        private boolean busy = false;
+    }
+
+    private static class UnpackerHolder {
+        private final ArrayBufferInput input = new ArrayBufferInput(EMPTY);
+        private final MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(input);
+        private boolean busy = false;
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining()? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
 }
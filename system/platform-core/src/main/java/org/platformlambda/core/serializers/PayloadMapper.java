@@ -101,7 +101,9 @@ public class PayloadMapper {
         if (binary) {
             return new TypedPayload(obj.getClass().getName(), mapper.readValue(obj, Map.class));
         } else {
-            return new TypedPayload(obj.getClass().getName(), mapper.writeValueAsBytes(obj));
+            // the JSON payload is for machine consumption only
+            return new TypedPayload(obj.getClass().getName(),
+                                    SimpleMapper.getInstance().getCompactMapper().writeValueAsBytes(obj));
         }
     }
 
@@ -0,0 +1,666 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core.serializers;
+
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.annotations.SerializedName;
+import org.platformlambda.core.util.Utility;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * IMPORTANT: Reserved for internal uses.
+ * <p>
+ * Direct conversion between PoJo and Map using cached field accessors.
+ * <p>
+ * The result is the same as a round trip through a Gson JSON tree using the
+ * custom serializers in SimpleMapper. When a class or value cannot be handled here,
+ * the converter returns null and the caller falls back to Gson.
+ * The field that disables direct conversion of a class is logged once.
+ */
+public class PoJoConverter {
+    private static final Logger log = LoggerFactory.getLogger(PoJoConverter.class);
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType CONSTRUCTOR = MethodType.methodType(Object.class);
+    private static final String[] JDK_PACKAGES = {"java.", "javax.", "jdk.", "sun.", "com.sun."};
+    private static final ConcurrentMap<Class<?>, ClassInfo> classes = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, EnumInfo> enums = new ConcurrentHashMap<>();
+    // a class or type that must be handled by Gson
+    private static final Unsupported UNSUPPORTED_TYPE = new Unsupported();
+    // a value that must be handled by Gson
+    private static final Unsupported UNSUPPORTED_VALUE = new Unsupported();
+    private final boolean snake;
+
+    public PoJoConverter(boolean snake) {
+        this.snake = snake;
+    }
+
+    /**
+     * Convert a PoJo into a map
+     *
+     * @param pojo to be converted
+     * @return map or null if the PoJo must be converted by Gson
+     */
+    public Map<String, Object> toMap(Object pojo) {
+        ClassInfo info = getClassInfo(pojo.getClass());
+        if (info.toMapDisabled) {
+            return null;
+        }
+        try {
+            return pojoToMap(pojo, info);
+        } catch (Unsupported e) {
+            if (e == UNSUPPORTED_TYPE) {
+                info.toMapDisabled = true;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Restore a PoJo from a map
+     *
+     * @param map containing the PoJo fields
+     * @param cls of the PoJo
+     * @param <T> class type
+     * @return PoJo or null if the map must be converted by Gson
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T fromMap(Map<?, ?> map, Class<T> cls) {
+        ClassInfo info = getClassInfo(cls);
+        if (info.fromMapDisabled) {
+            return null;
+        }
+        try {
+            return (T) mapToPoJo(map, info);
+        } catch (Unsupported e) {
+            if (e == UNSUPPORTED_TYPE) {
+                info.fromMapDisabled = true;
+            }
+            return null;
+        }
+    }
+
+    private Map<String, Object> pojoToMap(Object pojo, ClassInfo info) {
+        if (info.toMapDisabled) {
+            throw UNSUPPORTED_TYPE;
+        }
+        Map<String, Object> result = new HashMap<>();
+        for (FieldInfo f: info.fields) {
+            Object value;
+            try {
+                value = (Object) f.getter.invokeExact(pojo);
+            } catch (Throwable e) {
+                info.disableToMap(f);
+                throw UNSUPPORTED_TYPE;
+            }
+            if (value != null) {
+                try {
+                    result.put(snake? f.snakeName : f.camelName, toValue(value));
+                } catch (Unsupported e) {
+                    if (e == UNSUPPORTED_TYPE) {
+                        info.disableToMap(f);
+                    }
+                    throw e;
+                }
+            }
+        }
+        return result;
+    }
+
+    private Object toValue(Object value) {
+        if (value instanceof String || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).intValue();
+        }
+        if (value instanceof Long) {
+            long n = (Long) value;
+            return n > Integer.MAX_VALUE || n < Integer.MIN_VALUE? value : Integer.valueOf((int) n);
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double n = ((Number) value).doubleValue();
+            if (Double.isNaN(n) || Double.isInfinite(n)) {
+                throw UNSUPPORTED_VALUE;
+            }
+            return n;
+        }
+        if (value instanceof Character) {
+            return String.valueOf(value);
+        }
+        if (value instanceof BigDecimal) {
+            // avoid scientific notation
+            String result = ((BigDecimal) value).toPlainString();
+            return SimpleMapper.getInstance().isZero(result)? "0" : result;
+        }
+        if (value instanceof BigInteger) {
+            return value.toString();
+        }
+        Class<?> cls = value.getClass();
+        if (cls == Date.class) {
+            return Utility.getInstance().date2str((Date) value);
+        }
+        if (cls == java.sql.Date.class || cls == java.sql.Time.class) {
+            return value.toString();
+        }
+        if (cls == LocalDateTime.class) {
+            return value.toString().replace('T', ' ');
+        }
+        if (value instanceof Enum) {
+            return getEnumInfo(((Enum<?>) value).getDeclaringClass()).names.get(value);
+        }
+        if (value instanceof Map) {
+            Map<String, Object> result = new HashMap<>();
+            for (Map.Entry<?, ?> kv: ((Map<?, ?>) value).entrySet()) {
+                if (kv.getValue() != null) {
+                    result.put(String.valueOf(kv.getKey()), toValue(kv.getValue()));
+                }
+            }
+            return result;
+        }
+        if (value instanceof Collection) {
+            Collection<?> items = (Collection<?>) value;
+            List<Object> result = new ArrayList<>(items.size());
+            for (Object item: items) {
+                result.add(item == null? null : toValue(item));
+            }
+            return result;
+        }
+        if (cls.isArray()) {
+            int len = Array.getLength(value);
+            List<Object> result = new ArrayList<>(len);
+            for (int i=0; i < len; i++) {
+                Object item = Array.get(value, i);
+                result.add(item == null? null : toValue(item));
+            }
+            return result;
+        }
+        return pojoToMap(value, getClassInfo(cls));
+    }
+
+    private Object mapToPoJo(Map<?, ?> map, ClassInfo info) {
+        if (info.fromMapDisabled || info.constructor == null) {
+            throw UNSUPPORTED_TYPE;
+        }
+        Object result;
+        try {
+            result = (Object) info.constructor.invokeExact();
+        } catch (Throwable e) {
+            throw UNSUPPORTED_TYPE;
+        }
+        Map<String, FieldInfo> names = snake? info.snakeNames : info.camelNames;
+        for (Map.Entry<?, ?> kv: map.entrySet()) {
+            if (!(kv.getKey() instanceof String)) {
+                throw UNSUPPORTED_VALUE;
+            }
+            FieldInfo f = names.get(kv.getKey());
+            if (f != null && kv.getValue() != null) {
+                Object value;
+                try {
+                    value = convert(kv.getValue(), f.type, f.genericType);
+                } catch (Unsupported e) {
+                    if (e == UNSUPPORTED_TYPE) {
+                        info.disableFromMap(f);
+                    }
+                    throw e;
+                }
+                if (value != null || !f.type.isPrimitive()) {
+                    try {
+                        f.setter.invokeExact(result, value);
+                    } catch (Throwable e) {
+                        info.disableFromMap(f);
+                        throw UNSUPPORTED_TYPE;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Convert a map value into the type of a field with the same coercion rules as Gson
+     *
+     * @param value from the map
+     * @param type of the field
+     * @param genericType of the field
+     * @return converted value
+     */
+    private Object convert(Object value, Class<?> type, Type genericType) {
+        if (value instanceof Map) {
+            if (type == Object.class) {
+                return toObject(value);
+            }
+            if (Map.class.isAssignableFrom(type)) {
+                return toMapField((Map<?, ?>) value, type, genericType);
+            }
+            return isJdkClass(type)? failed() : mapToPoJo((Map<?, ?>) value, getClassInfo(type));
+        }
+        if (value instanceof Collection || value.getClass().isArray()) {
+            return toListField(value, type, genericType);
+        }
+        // a scalar value is normalized in the same way as a JSON primitive
+        Object json = toValue(value);
+        if (json instanceof Map || json instanceof List) {
+            return convert(json, type, genericType);
+        }
+        if (type == String.class) {
+            return value instanceof Float? failed() : json.toString();
+        }
+        if (type == Object.class) {
+            return toObject(json);
+        }
+        if (type == int.class || type == Integer.class) {
+            return json instanceof Integer? json : failed();
+        }
+        if (type == long.class || type == Long.class) {
+            return json instanceof Integer || json instanceof Long? ((Number) json).longValue() : failed();
+        }
+        if (type == double.class || type == Double.class) {
+            return json instanceof Number? ((Number) json).doubleValue() : failed();
+        }
+        if (type == float.class || type == Float.class) {
+            return json instanceof Number? (float) ((Number) json).doubleValue() : failed();
+        }
+        if (type == short.class || type == Short.class) {
+            return json instanceof Integer && (Integer) json == ((Integer) json).shortValue()?
+                    ((Integer) json).shortValue() : failed();
+        }
+        if (type == byte.class || type == Byte.class) {
+            return json instanceof Integer && (Integer) json == ((Integer) json).byteValue()?
+                    ((Integer) json).byteValue() : failed();
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            if (json instanceof Boolean) {
+                return json;
+            }
+            return json instanceof String? Boolean.parseBoolean((String) json) : failed();
+        }
+        if (type == char.class || type == Character.class) {
+            return json instanceof String && ((String) json).length() == 1? ((String) json).charAt(0) : failed();
+        }
+        // the string value of a float is not the same after widening to double
+        if (json instanceof Boolean || value instanceof Float) {
+            return failed();
+        }
+        String text = json.toString();
+        try {
+            if (type == BigDecimal.class) {
+                return new BigDecimal(text);
+            }
+            if (type == BigInteger.class) {
+                return new BigInteger(text);
+            }
+        } catch (NumberFormatException e) {
+            return failed();
+        }
+        if (type == Date.class) {
+            return Utility.getInstance().str2date(text);
+        }
+        if (type == LocalDateTime.class) {
+            return Utility.getInstance().str2localtime(text);
+        }
+        if (type.isEnum()) {
+            return json instanceof String? getEnumInfo(type).constants.get(text) : failed();
+        }
+        throw UNSUPPORTED_TYPE;
+    }
+
+    private Object failed() {
+        throw UNSUPPORTED_VALUE;
+    }
+
+    private Object toMapField(Map<?, ?> map, Class<?> type, Type genericType) {
+        Map<String, Object> result;
+        if (type == Map.class || type == LinkedHashMap.class) {
+            result = new LinkedHashMap<>();
+        } else if (type == HashMap.class) {
+            result = new HashMap<>();
+        } else {
+            throw UNSUPPORTED_TYPE;
+        }
+        Type valueType = getTypeArgument(genericType, 1);
+        Type keyType = getTypeArgument(genericType, 0);
+        if (keyType != String.class && keyType != Object.class) {
+            throw UNSUPPORTED_TYPE;
+        }
+        Class<?> valueCls = getRawType(valueType);
+        for (Map.Entry<?, ?> kv: map.entrySet()) {
+            if (kv.getValue() != null) {
+                result.put(String.valueOf(kv.getKey()), convert(kv.getValue(), valueCls, valueType));
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object toListField(Object value, Class<?> type, Type genericType) {
+        List<Object> items;
+        if (value instanceof List) {
+            items = (List<Object>) value;
+        } else {
+            items = toListValue(value);
+        }
+        if (type.isArray()) {
+            Class<?> component = type.getComponentType();
+            Object result = Array.newInstance(component, items.size());
+            for (int i=0; i < items.size(); i++) {
+                Object item = items.get(i);
+                if (item == null) {
+                    if (component.isPrimitive()) {
+                        throw UNSUPPORTED_VALUE;
+                    }
+                } else {
+                    Array.set(result, i, convert(item, component, component));
+                }
+            }
+            return result;
+        }
+        if (type == Object.class) {
+            return toObject(items);
+        }
+        if (type != List.class && type != ArrayList.class && type != Collection.class) {
+            throw UNSUPPORTED_TYPE;
+        }
+        Type itemType = getTypeArgument(genericType, 0);
+        Class<?> itemCls = getRawType(itemType);
+        List<Object> result = new ArrayList<>(items.size());
+        for (Object item: items) {
+            result.add(item == null? null : convert(item, itemCls, itemType));
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> toListValue(Object value) {
+        if (value instanceof Collection) {
+            return new ArrayList<>((Collection<Object>) value);
+        }
+        int len = Array.getLength(value);
+        List<Object> result = new ArrayList<>(len);
+        for (int i=0; i < len; i++) {
+            result.add(Array.get(value, i));
+        }
+        return result;
+    }
+
+    /**
+     * Gson restores untyped numbers as double, objects as map and arrays as list
+     *
+     * @param value from the map
+     * @return untyped value
+     */
+    private Object toObject(Object value) {
+        if (value instanceof Map) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> kv: ((Map<?, ?>) value).entrySet()) {
+                if (kv.getValue() != null) {
+                    result.put(String.valueOf(kv.getKey()), toObject(kv.getValue()));
+                }
+            }
+            return result;
+        }
+        if (value instanceof Collection || value.getClass().isArray()) {
+            List<Object> items = toListValue(value);
+            List<Object> result = new ArrayList<>(items.size());
+            for (Object item: items) {
+                result.add(item == null? null : toObject(item));
+            }
+            return result;
+        }
+        Object json = toValue(value);
+        if (json instanceof Map || json instanceof List) {
+            return toObject(json);
+        }
+        return json instanceof Number? (Object) ((Number) json).doubleValue() : json;
+    }
+
+    private Type getTypeArgument(Type genericType, int n) {
+        if (genericType instanceof ParameterizedType) {
+            Type[] args = ((ParameterizedType) genericType).getActualTypeArguments();
+            if (n < args.length && (args[n] instanceof Class || args[n] instanceof ParameterizedType)) {
+                return args[n];
+            }
+        }
+        throw UNSUPPORTED_TYPE;
+    }
+
+    private Class<?> getRawType(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType && ((ParameterizedType) type).getRawType() instanceof Class) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        throw UNSUPPORTED_TYPE;
+    }
+
+    private static ClassInfo getClassInfo(Class<?> cls) {
+        ClassInfo info = classes.get(cls);
+        if (info == null) {
+            info = new ClassInfo(cls);
+            ClassInfo existing = classes.putIfAbsent(cls, info);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        return info;
+    }
+
+    private static EnumInfo getEnumInfo(Class<?> cls) {
+        return enums.computeIfAbsent(cls, EnumInfo::new);
+    }
+
+    private static boolean isJdkClass(Class<?> cls) {
+        String name = cls.getName();
+        for (String p: JDK_PACKAGES) {
+            if (name.startsWith(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gson naming policy of LOWER_CASE_WITH_UNDERSCORES
+     *
+     * @param name of a field
+     * @return snake case name
+     */
+    private static String toSnakeCase(String name) {
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c) && sb.length() > 0) {
+                sb.append('_');
+            }
+            sb.append(c);
+        }
+        return sb.toString().toLowerCase(Locale.ENGLISH);
+    }
+
+    private static class ClassInfo {
+        private final String name;
+        private final List<FieldInfo> fields = new ArrayList<>();
+        private final Map<String, FieldInfo> camelNames = new HashMap<>();
+        private final Map<String, FieldInfo> snakeNames = new HashMap<>();
+        private MethodHandle constructor;
+        private volatile boolean toMapDisabled = false;
+        private volatile boolean fromMapDisabled = false;
+
+        private ClassInfo(Class<?> cls) {
+            this.name = cls.getName();
+            if (isJdkClass(cls) || cls.isInterface() || cls.isArray() || cls.isPrimitive() ||
+                    cls.isAnonymousClass() || cls.isLocalClass() || cls.isEnum() ||
+                    cls.getAnnotation(JsonAdapter.class) != null) {
+                toMapDisabled = true;
+                fromMapDisabled = true;
+                return;
+            }
+            try {
+                scan(cls);
+            } catch (RuntimeException | IllegalAccessException e) {
+                toMapDisabled = true;
+                fromMapDisabled = true;
+                log.info("Direct conversion of {} disabled - {}", name, e.getMessage());
+            }
+        }
+
+        private void disableToMap(FieldInfo f) {
+            if (!toMapDisabled) {
+                toMapDisabled = true;
+                log.info("Direct conversion of {} to map disabled by field {} - using Gson", name, f.camelName);
+            }
+        }
+
+        private void disableFromMap(FieldInfo f) {
+            if (!fromMapDisabled) {
+                fromMapDisabled = true;
+                log.info("Direct conversion of map to {} disabled by field {} - using Gson", name, f.camelName);
+            }
+        }
+
+        private void scan(Class<?> cls) throws IllegalAccessException {
+            Set<String> camelSeen = new HashSet<>();
+            Set<String> snakeSeen = new HashSet<>();
+            for (Class<?> c = cls; c != null && c != Object.class; c = c.getSuperclass()) {
+                if (isJdkClass(c)) {
+                    throw new IllegalArgumentException("Unsupported superclass "+c.getName());
+                }
+                for (Field field: c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                        continue;
+                    }
+                    if (field.getAnnotation(JsonAdapter.class) != null) {
+                        throw new IllegalArgumentException("Custom adapter for "+field.getName());
+                    }
+                    field.setAccessible(true);
+                    FieldInfo f = new FieldInfo(field);
+                    if (!camelSeen.add(f.camelName) || !snakeSeen.add(f.snakeName)) {
+                        throw new IllegalArgumentException("Duplicated field "+f.camelName);
+                    }
+                    f.getter = LOOKUP.unreflectGetter(field).asType(GETTER);
+                    if (Modifier.isFinal(modifiers)) {
+                        fromMapDisabled = true;
+                    } else {
+                        f.setter = LOOKUP.unreflectSetter(field).asType(SETTER);
+                    }
+                    fields.add(f);
+                    camelNames.put(f.camelName, f);
+                    snakeNames.put(f.snakeName, f);
+                    for (String alternate: f.alternates) {
+                        camelNames.put(alternate, f);
+                        snakeNames.put(alternate, f);
+                    }
+                }
+            }
+            if (Modifier.isAbstract(cls.getModifiers())) {
+                fromMapDisabled = true;
+            } else {
+                try {
+                    Constructor<?> c = cls.getDeclaredConstructor();
+                    c.setAccessible(true);
+                    constructor = LOOKUP.unreflectConstructor(c).asType(CONSTRUCTOR);
+                } catch (NoSuchMethodException e) {
+                    fromMapDisabled = true;
+                }
+            }
+        }
+    }
+
+    private static class FieldInfo {
+        private final String camelName;
+        private final String snakeName;
+        private final String[] alternates;
+        private final Class<?> type;
+        private final Type genericType;
+        private MethodHandle getter;
+        private MethodHandle setter;
+
+        private FieldInfo(Field field) {
+            SerializedName annotation = field.getAnnotation(SerializedName.class);
+            if (annotation != null) {
+                this.camelName = annotation.value();
+                this.snakeName = annotation.value();
+                this.alternates = annotation.alternate();
+            } else {
+                this.camelName = field.getName();
+                this.snakeName = toSnakeCase(field.getName());
+                this.alternates = new String[0];
+            }
+            this.type = field.getType();
+            this.genericType = field.getGenericType();
+        }
+    }
+
+    private static class EnumInfo {
+        private final Map<Object, String> names = new HashMap<>();
+        private final Map<String, Object> constants = new HashMap<>();
+
+        private EnumInfo(Class<?> cls) {
+            Map<String, Object> toStringValues = new HashMap<>();
+            for (Object constant: cls.getEnumConstants()) {
+                String name = ((Enum<?>) constant).name();
+                toStringValues.put(constant.toString(), constant);
+                try {
+                    SerializedName annotation = cls.getField(name).getAnnotation(SerializedName.class);
+                    if (annotation != null) {
+                        name = annotation.value();
+                        for (String alternate: annotation.alternate()) {
+                            constants.put(alternate, constant);
+                        }
+                    }
+                } catch (NoSuchFieldException e) {
+                    // not possible for an enum constant
+                }
+                names.put(constant, name);
+                constants.put(name, constant);
+            }
+            // Gson also accepts the string value of a constant
+            for (Map.Entry<String, Object> kv: toStringValues.entrySet()) {
+                constants.putIfAbsent(kv.getKey(), kv.getValue());
+            }
+        }
+    }
+
+    private static class Unsupported extends RuntimeException {
+        private Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+}
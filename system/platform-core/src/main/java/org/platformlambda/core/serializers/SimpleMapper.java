@@ -34,11 +34,14 @@ public class SimpleMapper {
     private static final Logger log = LoggerFactory.getLogger(SimpleMapper.class);
 
     private static final String SNAKE_CASE_SERIALIZATION = "snake.case.serialization";
+    private static final String COMPACT_JSON_OUTPUT = "compact.json.output";
     private static final Set<String> safeModels = new HashSet<>();
     private static final String[] SAFE_GROUPS = {"java.util.", "java.lang."};
     private final SimpleObjectMapper mapper;
     private final SimpleObjectMapper snakeMapper;
     private final SimpleObjectMapper camelMapper;
+    private final SimpleObjectMapper compactMapper;
+    private final SimpleObjectMapper prettyMapper;
     private static final SimpleMapper SIMPLE_MAPPER_INSTANCE = new SimpleMapper();
 
     private SimpleMapper() {
@@ -48,9 +51,16 @@ public class SimpleMapper {
         if (snake) {
             log.info("{} enabled", SNAKE_CASE_SERIALIZATION);
         }
-        this.mapper = new SimpleObjectMapper(getJson(snake, true), getJson(snake, false));
-        this.snakeMapper = new SimpleObjectMapper(getJson(true, true), getJson(true, false));
-        this.camelMapper = new SimpleObjectMapper(getJson(false, true), getJson(false, false));
+        // Compact or pretty JSON output
+        boolean pretty = !"true".equals(config.getProperty(COMPACT_JSON_OUTPUT, "false"));
+        if (!pretty) {
+            log.info("{} enabled", COMPACT_JSON_OUTPUT);
+        }
+        this.compactMapper = new SimpleObjectMapper(getJson(snake, true, false), getJson(snake, false, false), snake);
+        this.prettyMapper = new SimpleObjectMapper(getJson(snake, true, true), getJson(snake, false, true), snake);
+        this.mapper = pretty? prettyMapper : compactMapper;
+        this.snakeMapper = new SimpleObjectMapper(getJson(true, true, pretty), getJson(true, false, pretty), true);
+        this.camelMapper = new SimpleObjectMapper(getJson(false, true, pretty), getJson(false, false, pretty), false);
         /*
          * Optionally, load white list for authorized PoJo
          */
@@ -66,6 +76,18 @@ public class SimpleMapper {
     }
 
     public Gson getJson(boolean snake, boolean isMap) {
+        return getJson(snake, isMap, true);
+    }
+
+    /**
+     * Create a Gson serializer
+     *
+     * @param snake is true for snake case and false for camel case
+     * @param isMap is true when the serializer is used for map and list
+     * @param pretty is true for indented JSON output and false for compact output
+     * @return Gson serializer
+     */
+    public Gson getJson(boolean snake, boolean isMap, boolean pretty) {
         // configure Gson engine
         GsonBuilder builder = new GsonBuilder();
         // avoid equal sign to become 003d unicode
@@ -99,7 +121,9 @@ public class SimpleMapper {
             builder.registerTypeAdapter(List.class, new ListDeserializer());
         }
         // Indent JSON output
-        builder.setPrettyPrinting();
+        if (pretty) {
+            builder.setPrettyPrinting();
+        }
         // Camel or snake case
         if (snake) {
             builder.setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES);
@@ -138,6 +162,24 @@ public class SimpleMapper {
         return camelMapper;
     }
 
+    /**
+     * Get object mapper that writes compact JSON without indentation
+     * <p>
+     * @return object mapper
+     */
+    public SimpleObjectMapper getCompactMapper() {
+        return compactMapper;
+    }
+
+    /**
+     * Get object mapper that writes indented JSON for human-facing output
+     * <p>
+     * @return object mapper
+     */
+    public SimpleObjectMapper getPrettyMapper() {
+        return prettyMapper;
+    }
+
     public SimpleObjectMapper getSafeMapper(Class<?> cls) {
         return getSafeMapper(cls.getTypeName());
     }
@@ -22,25 +22,80 @@ import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import org.platformlambda.core.util.Utility;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 public class SimpleObjectMapper {
+    private static final int INITIAL_BUFFER = 1024;
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+    private static final ThreadLocal<JsonBuffer> buffers = ThreadLocal.withInitial(JsonBuffer::new);
 
     private final Gson mapGson;
     private final Gson objGson;
+    private final PoJoConverter converter;
 
     public SimpleObjectMapper(Gson mapGson, Gson objGson) {
         this.mapGson = mapGson;
         this.objGson = objGson;
+        this.converter = null;
+    }
+
+    /**
+     * Object mapper with direct PoJo and Map conversion
+     *
+     * @param mapGson serializer for map and list
+     * @param objGson serializer for PoJo
+     * @param snake is true if the serializers use snake case
+     */
+    public SimpleObjectMapper(Gson mapGson, Gson objGson, boolean snake) {
+        this.mapGson = mapGson;
+        this.objGson = objGson;
+        this.converter = new PoJoConverter(snake);
     }
 
     public String writeValueAsString(Object value) {
         return mapGson.toJson(value);
     }
 
+    /**
+     * Serialize an object as UTF-8 JSON bytes
+     * <p>
+     * The JSON output is encoded directly into a reusable per-thread buffer
+     * without creating an intermediate string.
+     *
+     * @param value to be serialized
+     * @return JSON bytes
+     */
     public byte[] writeValueAsBytes(Object value) {
-        return Utility.getInstance().getUTF(writeValueAsString(value));
+        JsonBuffer buffer = buffers.get();
+        if (buffer.busy) {
+            // nested serialization from a custom serializer
+            return Utility.getInstance().getUTF(writeValueAsString(value));
+        }
+        buffer.busy = true;
+        boolean done = false;
+        try {
+            mapGson.toJson(value, buffer.writer);
+            buffer.writer.flush();
+            byte[] result = buffer.toByteArray();
+            done = true;
+            return result;
+        } catch (IOException e) {
+            // this would not happen because the buffer is in memory
+            throw new IllegalArgumentException(e.getMessage());
+        } finally {
+            if (done) {
+                buffer.release();
+            } else {
+                // discard any partially encoded output
+                buffers.remove();
+            }
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -91,6 +146,18 @@ public class SimpleObjectMapper {
             if (isPrimitive(fromValue)) {
                 throw new IllegalArgumentException("Unable to convert a primitive into "+toValueType);
             }
+            // convert between PoJo and Map directly without building a JSON tree
+            if (converter != null) {
+                Object result = null;
+                if (outputIsMap) {
+                    result = converter.toMap(fromValue);
+                } else if (!outputIsList && fromValue instanceof Map) {
+                    result = converter.fromMap((Map<?, ?>) fromValue, toValueType);
+                }
+                if (result != null) {
+                    return (T) result;
+                }
+            }
             if (outputIsList || outputIsMap) {
                 return mapGson.fromJson(mapGson.toJsonTree(fromValue), toValueType);
             } else {
@@ -132,4 +199,22 @@ public class SimpleObjectMapper {
         return (obj instanceof Number || obj instanceof Boolean || obj instanceof Date);
     }
 
+    private static class JsonBuffer extends ByteArrayOutputStream {
+        private final Writer writer = new OutputStreamWriter(this, StandardCharsets.UTF_8);
+        private boolean busy = false;
+
+        private JsonBuffer() {
+            super(INITIAL_BUFFER);
+        }
+
+        private void release() {
+            // avoid holding a large buffer after serializing a large object
+            if (buf.length > MAX_RETAINED_BUFFER) {
+                buf = new byte[INITIAL_BUFFER];
+            }
+            reset();
+            busy = false;
+        }
+    }
+
 }
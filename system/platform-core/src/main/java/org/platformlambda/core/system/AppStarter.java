@@ -18,7 +18,6 @@
 
 package org.platformlambda.core.system;
 
-import io.github.classgraph.ClassInfo;
 import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerOptions;
@@ -59,7 +58,9 @@ public class AppStarter {
     private static final String JAVA_VM_VERSION = "java.vm.version";
     private static final String JAVA_RUNTIME_VERSION = "java.runtime.version";
 
+    private static final String PRELOAD_PARALLELISM = "preload.parallelism";
     private static final int MAX_SEQ = 999;
+    private static final int MAX_PRELOAD_THREADS = 8;
     private static boolean loaded = false;
     private static boolean mainAppLoaded = false;
     private static boolean springBoot = false;
@@ -107,6 +108,7 @@ public class AppStarter {
                 mainAppLoaded = true;
                 log.info("Loading user application");
                 instance.doApps(args, true);
+                SimpleClassScanner.getInstance().clearCache();
             }
         }
     }
@@ -119,6 +121,7 @@ public class AppStarter {
         if (instance != null && !mainAppLoaded) {
             mainAppLoaded = true;
             instance.doApps(args, true);
+            SimpleClassScanner.getInstance().clearCache();
         }
     }
 
@@ -134,11 +137,11 @@ public class AppStarter {
         int n = 0;
         Map<String, Class<?>> steps = new HashMap<>();
         for (String p : packages) {
-            List<ClassInfo> services = scanner.getAnnotatedClasses(p, main?
+            List<String> services = scanner.getAnnotatedClassNames(p, main?
                                         MainApplication.class : BeforeApplication.class);
-            for (ClassInfo info : services) {
+            for (String service : services) {
                 try {
-                    Class<?> cls = Class.forName(info.getName());
+                    Class<?> cls = Class.forName(service);
                     if (Feature.isRequired(cls)) {
                         int seq = getSequence(cls, main);
                         String key = util.zeroFill(seq, MAX_SEQ) + "." + util.zeroFill(++n, MAX_SEQ);
@@ -147,7 +150,7 @@ public class AppStarter {
                         log.info(SKIP_OPTIONAL, cls);
                     }
                 } catch (ClassNotFoundException e) {
-                    log.error(CLASS_NOT_FOUND, info.getName());
+                    log.error(CLASS_NOT_FOUND, service);
                 }
             }
         }
@@ -197,85 +200,180 @@ public class AppStarter {
         }
     }
 
-    @SuppressWarnings("rawtypes")
     private static void preload() {
         EventEmitter po = EventEmitter.getInstance();
         log.info("Preloading started - {}", po.getId());
-        Utility util = Utility.getInstance();
-        Platform platform = Platform.getInstance();
+        long begin = System.currentTimeMillis();
         SimpleClassScanner scanner = SimpleClassScanner.getInstance();
         Set<String> packages = scanner.getPackages(true);
+        List<String> services = new ArrayList<>();
         for (String p : packages) {
-            List<ClassInfo> services = scanner.getAnnotatedClasses(p, PreLoad.class);
-            for (ClassInfo info : services) {
-                String serviceName = info.getName();
-                log.info("Loading service {}", serviceName);
+            services.addAll(scanner.getAnnotatedClassNames(p, PreLoad.class));
+        }
+        /*
+         * Preloaded services are independent of each other so they are
+         * instantiated and registered in parallel using a bounded thread pool.
+         * Services that declare the same route are loaded in scan order by the same thread
+         * so that the last one overrides the route as before.
+         */
+        List<List<String>> groups = groupByRoute(services);
+        AppConfigReader config = AppConfigReader.getInstance();
+        int parallelism = Math.max(1, Utility.getInstance().str2int(config.getProperty(PRELOAD_PARALLELISM,
+                                String.valueOf(Math.min(MAX_PRELOAD_THREADS, Runtime.getRuntime().availableProcessors())))));
+        int threads = Math.min(parallelism, Math.max(1, groups.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (List<String> group : groups) {
+                tasks.add(executor.submit(() -> {
+                    for (String serviceName : group) {
+                        try {
+                            preload(serviceName);
+                        } catch (RuntimeException e) {
+                            log.error("Unable to preload {} - {}", serviceName, e.getMessage());
+                        }
+                    }
+                }));
+            }
+            for (int i=0; i < tasks.size(); i++) {
                 try {
-                    Class<?> cls = Class.forName(serviceName);
-                    if (Feature.isRequired(cls)) {
-                        PreLoad svc = cls.getAnnotation(PreLoad.class);
-                        List<String> routes = util.split(svc.route(), ", ");
-                        if (routes.isEmpty()) {
-                            log.error("Unable to preload {} - missing service route(s)", serviceName);
-                        } else {
-                            int instances = getInstancesFromEnv(svc.envInstances(), svc.instances());
-                            boolean isPrivate = svc.isPrivate();
-                            Object o = cls.getDeclaredConstructor().newInstance();
-                            CustomSerializer mapper = null;
-                            if (svc.customSerializer() != Void.class) {
-                                try {
-                                    Object mapperObj = svc.customSerializer().getDeclaredConstructor().newInstance();
-                                    if (mapperObj instanceof CustomSerializer) {
-                                        mapper = (CustomSerializer) mapperObj;
-                                    } else {
-                                        throw new IllegalArgumentException("invalid implementation of CustomSerializer");
-                                    }
-                                } catch (Exception ce) {
-                                    log.error("Skipping custom serializer {} for {} - {}: {}",
-                                            svc.customSerializer(), routes,
-                                            ce.getClass().getSimpleName(), ce.getMessage());
-                                }
+                    tasks.get(i).get();
+                } catch (ExecutionException e) {
+                    log.error("Unable to preload {} - {}", groups.get(i), e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Preloading interrupted");
+        } finally {
+            executor.shutdown();
+        }
+        log.info("Preloading completed - {} service{} in {} ms using {} thread{}", services.size(),
+                services.size() == 1? "" : "s", System.currentTimeMillis() - begin,
+                threads, threads == 1? "" : "s");
+    }
+
+    /**
+     * Group preloaded services that share a route
+     *
+     * @param services in scan order
+     * @return groups of services, each in scan order
+     */
+    private static List<List<String>> groupByRoute(List<String> services) {
+        Utility util = Utility.getInstance();
+        Map<String, List<String>> routeGroups = new HashMap<>();
+        List<List<String>> groups = new ArrayList<>();
+        for (String serviceName : services) {
+            List<String> routes = Collections.emptyList();
+            try {
+                // the class is not initialized until it is loaded by the preload thread
+                Class<?> cls = Class.forName(serviceName, false, AppStarter.class.getClassLoader());
+                PreLoad svc = cls.getAnnotation(PreLoad.class);
+                if (svc != null) {
+                    routes = util.split(svc.route(), ", ");
+                }
+            } catch (ClassNotFoundException e) {
+                // the error will be reported when the service is loaded
+            }
+            List<String> group = null;
+            for (String r : routes) {
+                List<String> existing = routeGroups.get(r);
+                if (existing != null && existing != group) {
+                    if (group == null) {
+                        group = existing;
+                    } else {
+                        // this service joins two groups so they are merged in scan order
+                        group.addAll(existing);
+                        group.sort(Comparator.comparingInt(services::indexOf));
+                        groups.removeIf(g -> g == existing);
+                        for (Map.Entry<String, List<String>> entry : routeGroups.entrySet()) {
+                            if (entry.getValue() == existing) {
+                                entry.setValue(group);
+                            }
+                        }
+                    }
+                }
+            }
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.add(group);
+            }
+            group.add(serviceName);
+            for (String r : routes) {
+                routeGroups.put(r, group);
+            }
+        }
+        return groups;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static void preload(String serviceName) {
+        Utility util = Utility.getInstance();
+        Platform platform = Platform.getInstance();
+        log.info("Loading service {}", serviceName);
+        try {
+            Class<?> cls = Class.forName(serviceName);
+            if (Feature.isRequired(cls)) {
+                PreLoad svc = cls.getAnnotation(PreLoad.class);
+                List<String> routes = util.split(svc.route(), ", ");
+                if (routes.isEmpty()) {
+                    log.error("Unable to preload {} - missing service route(s)", serviceName);
+                } else {
+                    int instances = getInstancesFromEnv(svc.envInstances(), svc.instances());
+                    boolean isPrivate = svc.isPrivate();
+                    Object o = cls.getDeclaredConstructor().newInstance();
+                    CustomSerializer mapper = null;
+                    if (svc.customSerializer() != Void.class) {
+                        try {
+                            Object mapperObj = svc.customSerializer().getDeclaredConstructor().newInstance();
+                            if (mapperObj instanceof CustomSerializer) {
+                                mapper = (CustomSerializer) mapperObj;
+                            } else {
+                                throw new IllegalArgumentException("invalid implementation of CustomSerializer");
+                            }
+                        } catch (Exception ce) {
+                            log.error("Skipping custom serializer {} for {} - {}: {}",
+                                    svc.customSerializer(), routes,
+                                    ce.getClass().getSimpleName(), ce.getMessage());
+                        }
+                    }
+                    if (o instanceof TypedLambdaFunction) {
+                        for (String r : routes) {
+                            if (isPrivate) {
+                                platform.registerPrivate(r, (TypedLambdaFunction) o, instances);
+                            } else {
+                                platform.register(r, (TypedLambdaFunction) o, instances);
+                            }
+                            if (mapper != null) {
+                                platform.setCustomSerializer(r, mapper);
                             }
-                            if (o instanceof TypedLambdaFunction) {
-                                for (String r : routes) {
-                                    if (isPrivate) {
-                                        platform.registerPrivate(r, (TypedLambdaFunction) o, instances);
-                                    } else {
-                                        platform.register(r, (TypedLambdaFunction) o, instances);
-                                    }
-                                    if (mapper != null) {
-                                        platform.setCustomSerializer(r, mapper);
-                                    }
-                                }
-                            } else if (o instanceof KotlinLambdaFunction) {
-                                for (String r : routes) {
-                                    if (isPrivate) {
-                                        platform.registerKotlinPrivate(r, (KotlinLambdaFunction) o, instances);
-                                    } else {
-                                        platform.registerKotlin(r, (KotlinLambdaFunction) o, instances);
-                                    }
-                                    if (mapper != null) {
-                                        platform.setCustomSerializer(r, mapper);
-                                    }
-                                }
+                        }
+                    } else if (o instanceof KotlinLambdaFunction) {
+                        for (String r : routes) {
+                            if (isPrivate) {
+                                platform.registerKotlinPrivate(r, (KotlinLambdaFunction) o, instances);
                             } else {
-                                log.error("Unable to preload {} - {} does not implement {} or {}", serviceName,
-                                        o.getClass(),
-                                        TypedLambdaFunction.class.getSimpleName(),
-                                        KotlinLambdaFunction.class.getSimpleName());
+                                platform.registerKotlin(r, (KotlinLambdaFunction) o, instances);
+                            }
+                            if (mapper != null) {
+                                platform.setCustomSerializer(r, mapper);
                             }
                         }
                     } else {
-                        log.info(SKIP_OPTIONAL, cls);
+                        log.error("Unable to preload {} - {} does not implement {} or {}", serviceName,
+                                o.getClass(),
+                                TypedLambdaFunction.class.getSimpleName(),
+                                KotlinLambdaFunction.class.getSimpleName());
                     }
-
-                } catch (ClassNotFoundException | InvocationTargetException | InstantiationException |
-                         IllegalAccessException | NoSuchMethodException | IOException e) {
-                    log.error("Unable to preload {} - {}", serviceName, e.getMessage());
                 }
+            } else {
+                log.info(SKIP_OPTIONAL, cls);
             }
+
+        } catch (ClassNotFoundException | InvocationTargetException | InstantiationException |
+                 IllegalAccessException | NoSuchMethodException | IOException e) {
+            log.error("Unable to preload {} - {}", serviceName, e.getMessage());
         }
-        log.info("Preloading completed");
     }
 
     private static int getInstancesFromEnv(String envInstances, int instances) {
@@ -294,10 +392,10 @@ public class AppStarter {
         final SimpleClassScanner scanner = SimpleClassScanner.getInstance();
         final Set<String> packages = scanner.getPackages(true);
         for (String p : packages) {
-            List<ClassInfo> services = scanner.getAnnotatedClasses(p, WebSocketService.class);
-            for (ClassInfo info : services) {
+            List<String> services = scanner.getAnnotatedClassNames(p, WebSocketService.class);
+            for (String service : services) {
                 try {
-                    Class<?> cls = Class.forName(info.getName());
+                    Class<?> cls = Class.forName(service);
                     if (Feature.isRequired(cls)) {
                         WebSocketService annotation = cls.getAnnotation(WebSocketService.class);
                         if (!annotation.value().isEmpty()) {
@@ -311,7 +409,7 @@ public class AppStarter {
                         log.info(SKIP_OPTIONAL, cls);
                     }
                 } catch (ClassNotFoundException e) {
-                    log.error(CLASS_NOT_FOUND, info.getName());
+                    log.error(CLASS_NOT_FOUND, service);
                 }
             }
         }
@@ -326,8 +424,8 @@ public class AppStarter {
             if (port > 0) {
                 final BlockingQueue<Boolean> serverStatus = new ArrayBlockingQueue<>(1);
                 final ConcurrentMap<String, AsyncContextHolder> contexts;
-                // create a dedicated vertx event loop instance for the HTTP server
-                final Vertx vertx = Vertx.vertx();
+                // the HTTP server shares the platform vertx runtime and is assigned its own event loop
+                final Vertx vertx = Platform.getInstance().getVertx();
                 final HttpServer server = vertx.createHttpServer(new HttpServerOptions().setTcpKeepAlive(true));
                 if (enableRest) {
                     // start REST automation system
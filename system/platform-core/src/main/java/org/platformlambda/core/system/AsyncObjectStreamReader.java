@@ -20,11 +20,19 @@ package org.platformlambda.core.system;
 
 import io.vertx.core.Future;
 
+import io.vertx.core.Promise;
 import org.platformlambda.core.models.EventEnvelope;
 import org.platformlambda.core.models.Kv;
+import org.platformlambda.core.models.StreamInbox;
+import org.platformlambda.core.util.AppConfigReader;
+import org.platformlambda.core.util.Utility;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeoutException;
 
 public class AsyncObjectStreamReader implements AutoCloseable {
 
@@ -33,15 +41,65 @@ public class AsyncObjectStreamReader implements AutoCloseable {
     private static final String DATA = "data";
     private static final String END_OF_STREAM = "eof";
     private static final String CLOSE = "close";
+    private static final String CREDITS = "credits";
+    private static final String SEQ = "seq";
+    private static final int MAX_CREDITS = 256;
+    private static final int DEFAULT_CREDITS = getConfiguredCredits();
 
     private final long timeout;
     private final String streamId;
+    private final int credits;
+    private final Deque<EventEnvelope> blocks = new ArrayDeque<>();
+    private final Map<Long, EventEnvelope> outOfOrder = new HashMap<>();
+    private StreamInbox inbox;
+    private Promise<Object> waiting;
+    private long timer = -1;
+    private long nextSeq = 1;
+    private int consumed = 0;
     private boolean closed = false;
     private boolean eof = false;
 
+    /**
+     * Create a stream reader that fetches one block per request
+     *
+     * @param streamId of the object stream
+     * @param timeout in milliseconds to wait for the next block
+     */
     public AsyncObjectStreamReader(String streamId, long timeout) {
+        this(streamId, timeout, 0);
+    }
+
+    /**
+     * Create a stream reader with credit-based prefetching
+     * <p>
+     * The reader grants a number of credits to the stream so that the stream can push
+     * up to this number of blocks without individual read requests. More credits are granted
+     * when half of the window has been consumed. Therefore, no more than this number of blocks
+     * are buffered in the reader.
+     *
+     * @param streamId of the object stream
+     * @param timeout in milliseconds to wait for the next block
+     * @param credits window size in number of blocks. Zero means one read request per block.
+     */
+    public AsyncObjectStreamReader(String streamId, long timeout, int credits) {
         this.streamId = streamId;
         this.timeout = Math.max(2000, timeout);
+        this.credits = Math.min(MAX_CREDITS, Math.max(0, credits));
+    }
+
+    /**
+     * Get the window size from the "stream.prefetch.credits" parameter for system components
+     *
+     * @return number of credits
+     */
+    public static int getDefaultCredits() {
+        return DEFAULT_CREDITS;
+    }
+
+    private static int getConfiguredCredits() {
+        AppConfigReader config = AppConfigReader.getInstance();
+        int n = Utility.getInstance().str2int(config.getProperty("stream.prefetch.credits", "16"));
+        return Math.min(MAX_CREDITS, Math.max(0, n));
     }
 
     public String getId() {
@@ -49,6 +107,9 @@ public class AsyncObjectStreamReader implements AutoCloseable {
     }
 
     public Future<Object> get() {
+        if (credits > 0) {
+            return Future.future(this::getWithCredits);
+        }
         final EventEmitter po = EventEmitter.getInstance();
         return Future.future(promise -> {
             Platform platform = Platform.getInstance();
@@ -77,6 +138,122 @@ public class AsyncObjectStreamReader implements AutoCloseable {
         });
     }
 
+    private void getWithCredits(Promise<Object> promise) {
+        Platform platform = Platform.getInstance();
+        EventEnvelope block;
+        synchronized (this) {
+            if (waiting != null) {
+                platform.getEventExecutor().submit(() ->
+                        promise.fail(new IllegalArgumentException("Concurrent read is not supported")));
+                return;
+            }
+            if (eof || closed) {
+                block = null;
+            } else {
+                try {
+                    if (inbox == null) {
+                        inbox = new StreamInbox(this::receive);
+                        grant(credits);
+                    }
+                } catch (IOException e) {
+                    platform.getEventExecutor().submit(() -> promise.fail(e));
+                    return;
+                }
+                block = blocks.poll();
+                if (block == null) {
+                    waiting = promise;
+                    timer = platform.getVertx().setTimer(timeout, t -> abort());
+                    return;
+                }
+            }
+        }
+        if (block == null) {
+            platform.getEventExecutor().submit(() -> promise.complete(null));
+        } else {
+            deliver(promise, block);
+        }
+    }
+
+    private void receive(EventEnvelope event) {
+        Promise<Object> promise = null;
+        EventEnvelope block = null;
+        synchronized (this) {
+            if (inbox == null) {
+                return;
+            }
+            // the blocks are delivered in sequence even if the events arrive out of order
+            outOfOrder.put(Utility.getInstance().str2long(event.getHeader(SEQ)), event);
+            EventEnvelope next;
+            while ((next = outOfOrder.remove(nextSeq)) != null) {
+                blocks.offer(next);
+                nextSeq++;
+            }
+            if (waiting != null && !blocks.isEmpty()) {
+                promise = waiting;
+                waiting = null;
+                Platform.getInstance().getVertx().cancelTimer(timer);
+                block = blocks.poll();
+            }
+        }
+        if (promise != null) {
+            deliver(promise, block);
+        }
+    }
+
+    private void deliver(Promise<Object> promise, EventEnvelope block) {
+        Platform platform = Platform.getInstance();
+        if (END_OF_STREAM.equals(block.getHeader(TYPE))) {
+            synchronized (this) {
+                eof = true;
+                releaseInbox();
+            }
+            platform.getEventExecutor().submit(() -> promise.complete(null));
+        } else {
+            synchronized (this) {
+                // grant more credits when half of the window has been consumed
+                if (++consumed >= Math.max(1, credits / 2) && !closed) {
+                    try {
+                        grant(consumed);
+                        consumed = 0;
+                    } catch (IOException e) {
+                        platform.getEventExecutor().submit(() -> promise.fail(e));
+                        return;
+                    }
+                }
+            }
+            // complete asynchronously to avoid deep recursion when the caller fetches the next block
+            Object data = block.getBody();
+            platform.getEventExecutor().submit(() -> promise.complete(data));
+        }
+    }
+
+    private void abort() {
+        Promise<Object> promise;
+        synchronized (this) {
+            promise = waiting;
+            waiting = null;
+        }
+        if (promise != null) {
+            String error = "Timeout for " + timeout + " ms";
+            Platform.getInstance().getEventExecutor().submit(() -> promise.fail(new TimeoutException(error)));
+        }
+    }
+
+    private void grant(int n) throws IOException {
+        EventEnvelope request = new EventEnvelope().setTo(streamId).setHeader(TYPE, READ)
+                                    .setHeader(CREDITS, n).setReplyTo(inbox.getId()+"@"+Platform.getInstance().getOrigin());
+        EventEmitter.getInstance().send(request);
+    }
+
+    private void releaseInbox() {
+        if (inbox != null) {
+            inbox.close();
+            inbox = null;
+            blocks.clear();
+            outOfOrder.clear();
+        }
+    }
+
     public boolean isClosed() {
         return closed;
     }
@@ -89,6 +266,16 @@ public class AsyncObjectStreamReader implements AutoCloseable {
     public void close() throws IOException {
         if (!closed) {
             closed = true;
+            Promise<Object> promise;
+            synchronized (this) {
+                releaseInbox();
+                promise = waiting;
+                waiting = null;
+            }
+            if (promise != null) {
+                Platform.getInstance().getVertx().cancelTimer(timer);
+                Platform.getInstance().getEventExecutor().submit(() -> promise.complete(null));
+            }
             EventEmitter.getInstance().send(streamId, new Kv(TYPE, CLOSE));
         }
     }
@@ -0,0 +1,166 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core.system;
+
+import java.util.*;
+
+/**
+ * Adaptive concurrency limit of a function
+ * <p>
+ * The limit is evaluated once per window from the number of completed events, their mean execution time,
+ * the queue depth and the number of busy workers.
+ * <p>
+ * 1. Little's law - the workers needed to keep up with the arrival rate is the arrival rate multiplied by
+ *    the execution time. A backlog adds the workers needed to drain it within one window.
+ * <p>
+ * 2. Latency gradient - the ratio of the baseline execution time to the current execution time.
+ *    When the execution time rises beyond the tolerance, the workers are contending for a shared resource
+ *    and the limit is reduced in proportion to the gradient.
+ * <p>
+ * Like TCP slow start, the limit doubles until it reaches the level where contention was last detected and
+ * it grows by one worker beyond that level. Without a backlog, the limit moves halfway towards the workers
+ * that are needed in each window so that an idle function returns to the minimum in a few windows.
+ * <p>
+ * The baseline follows a lower execution time immediately and a higher one slowly so that it adapts
+ * to a change of workload.
+ */
+public class ConcurrencyController {
+    private static final double TOLERANCE = 1.5;
+    private static final double HEADROOM = 1.2;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double DRIFT = 0.01;
+    private static final int MAX_DECISIONS = 20;
+    private final int min;
+    private final int max;
+    private final Deque<Map<String, Object>> decisions = new ArrayDeque<>();
+    private volatile int limit;
+    private int threshold;
+    private double baseline = 0;
+    private long lastQueueDepth = 0;
+    private long evaluations = 0;
+
+    /**
+     * Create a controller that starts with the minimum limit
+     *
+     * @param min number of workers
+     * @param max number of workers
+     */
+    public ConcurrencyController(int min, int max) {
+        this.max = Math.max(1, max);
+        this.min = Math.max(1, Math.min(min, this.max));
+        this.limit = this.min;
+        this.threshold = this.max;
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * Number of workers that may process events
+     *
+     * @return current limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Evaluate the limit at the end of a window
+     *
+     * @param completed number of events completed in the window
+     * @param latency mean execution time in milliseconds of the completed events
+     * @param queueDepth number of events waiting for a worker
+     * @param busy number of workers processing events
+     * @param window duration in milliseconds
+     * @return new limit
+     */
+    public synchronized int update(long completed, double latency, long queueDepth, int busy, long window) {
+        evaluations++;
+        double seconds = Math.max(1, window) / 1000.0;
+        if (completed > 0 && latency > 0) {
+            baseline = baseline == 0 || latency < baseline? latency : baseline + (latency - baseline) * DRIFT;
+        }
+        // arrival rate is the completion rate plus the growth of the backlog
+        double arrivalRate = Math.max(0, (completed + queueDepth - lastQueueDepth) / seconds);
+        lastQueueDepth = queueDepth;
+        double executionTime = latency > 0? latency : baseline;
+        double gradient = baseline > 0 && latency > 0?
+                            Math.max(MIN_GRADIENT, Math.min(1.0, baseline * TOLERANCE / latency)) : 1.0;
+        int needed = (int) Math.ceil((arrivalRate * HEADROOM + queueDepth / seconds) * executionTime / 1000);
+        int previous = limit;
+        int next;
+        String reason;
+        if (gradient < 1.0) {
+            next = (int) (previous * gradient);
+            threshold = Math.max(min, next);
+            reason = "contention";
+        } else if ((queueDepth > 0 || busy >= previous) && needed > previous) {
+            int growth = previous < threshold? Math.min(previous * 2, threshold) : previous + 1;
+            next = Math.min(needed, Math.max(previous + 1, growth));
+            reason = "backlog";
+        } else if (needed < previous) {
+            next = (previous + needed) / 2;
+            reason = "surplus";
+        } else {
+            next = previous;
+            reason = "steady";
+        }
+        next = Math.max(min, Math.min(max, next));
+        if (next != previous) {
+            limit = next;
+            Map<String, Object> decision = new HashMap<>();
+            decision.put("time", new Date());
+            decision.put("from", previous);
+            decision.put("to", next);
+            decision.put("reason", reason);
+            decision.put("arrival_rate", Math.round(arrivalRate * 100) / 100.0);
+            decision.put("exec_time", Math.round(executionTime * 1000) / 1000.0);
+            decision.put("baseline", Math.round(baseline * 1000) / 1000.0);
+            decision.put("queue", queueDepth);
+            decision.put("busy", busy);
+            decisions.addLast(decision);
+            if (decisions.size() > MAX_DECISIONS) {
+                decisions.removeFirst();
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Retrieve the current limit and the most recent decisions
+     *
+     * @return status
+     */
+    public synchronized Map<String, Object> getStatus() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("min", min);
+        result.put("max", max);
+        result.put("limit", limit);
+        result.put("baseline", Math.round(baseline * 1000) / 1000.0);
+        result.put("evaluations", evaluations);
+        result.put("decisions", new ArrayList<>(decisions));
+        return result;
+    }
+
+}
@@ -20,6 +20,7 @@ package org.platformlambda.core.system;
 
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.EventBus;
 import org.platformlambda.core.models.*;
 import org.platformlambda.core.util.AppConfigReader;
@@ -47,7 +48,10 @@ public class EventEmitter {
     public static final String MISSING_ROUTING_PATH = "Missing routing path";
     public static final String MISSING_EVENT = "Missing outgoing event";
     public static final String RPC = "rpc";
+    public static final String PRIORITY = "priority";
+    public static final String DEADLINE = "deadline";
     private static final long ASYNC_EVENT_HTTP_TIMEOUT = 30 * 1000L; // assume 30 seconds
+    private static final long CLOCK_SKEW_ALLOWANCE = 1000L; // assume clocks are synchronized within 1 second
     private static final String TYPE = "type";
     private static final String ERROR = "error";
     private static final String MESSAGE = "message";
@@ -76,6 +80,7 @@ public class EventEmitter {
     private static final ConcurrentMap<String, ConcurrentMap<String, String>> cloudRoutes = new ConcurrentHashMap<>();
     private static final ConcurrentMap<String, Long> cloudOrigins = new ConcurrentHashMap<>();
     private static final ConcurrentMap<String, Boolean> journaledRoutes = new ConcurrentHashMap<>();
+    private final RouteCache routeCache = new RouteCache(cloudRoutes);
     private boolean multicastEnabled = false;
     private boolean journalEnabled = false;
     private boolean eventHttpEnabled = false;
@@ -160,6 +165,16 @@ public class EventEmitter {
         return cloudOrigins;
     }
 
+    /**
+     * Internal API - DO NOT use it in user application code
+     * <p>
+     * This must be called after a route is added to or removed from
+     * the local routing table or the distributed routing table.
+     */
+    public void routingTableChanged() {
+        routeCache.invalidate();
+    }
+
     public boolean isJournaled(String route) {
         return journaledRoutes.getOrDefault(route, false);
     }
@@ -403,8 +418,9 @@ public class EventEmitter {
             String origin = to.substring(at+1);
             String target = to.substring(0, at);
             if (origin.equals(platform.getOrigin())) {
-                if (platform.hasRoute(target)) {
-                    return new TargetRoute(platform.getManager(target), false);
+                TargetRoute local = getLocalRoute(target);
+                if (local != null) {
+                    return local;
                 }
             } else if (checkCloud) {
                 TargetRoute cloud = getCloudRoute();
@@ -414,8 +430,9 @@ public class EventEmitter {
             }
 
         } else {
-            if (platform.hasRoute(to)) {
-                return new TargetRoute(platform.getManager(to), false);
+            TargetRoute local = getLocalRoute(to);
+            if (local != null) {
+                return local;
             } else if (checkCloud) {
                 TargetRoute cloud = getCloudRoute();
                 if (cloud != null && exists(to)) {
@@ -426,12 +443,96 @@ public class EventEmitter {
         throw new IOException("Route "+to+" not found");
     }
 
+    private TargetRoute getLocalRoute(String route) {
+        TargetRoute local = routeCache.getLocal(route);
+        StreamMultiplexer multiplexer = StreamMultiplexer.getInstance();
+        if (local == null && multiplexer.isActive(route)) {
+            // logical object stream hosted by a shard of the stream multiplexer
+            return routeCache.getLocal(multiplexer.getServiceRoute(route));
+        }
+        return local;
+    }
+
     public TargetRoute getCloudRoute() {
-        Platform platform = Platform.getInstance();
-        if (platform.hasRoute(CLOUD_CONNECTOR)) {
-            return new TargetRoute(platform.getManager(CLOUD_CONNECTOR), true);
+        return routeCache.getCloud();
+    }
+
+    /**
+     * Deliver an event to a function in the same memory space
+     * <p>
+     * The "priority" tag of the event, if any, selects the priority lane of the target function.
+     * If the target function is partitioned, the partition key header of the event selects its worker.
+     *
+     * @param manager of the target function
+     * @param event to be delivered
+     * @throws IOException in case of serialization error
+     */
+    void deliver(ServiceQueue manager, EventEnvelope event) throws IOException {
+        EventBus system = Platform.getInstance().getEventSystem();
+        String priority = event.getTag(PRIORITY);
+        String partitionKey = manager.getPartitionKey();
+        String partition = partitionKey == null? null : event.getHeader(partitionKey);
+        if (priority == null && partition == null) {
+            system.send(manager.getRoute(), event.toBytes());
+        } else {
+            DeliveryOptions options = new DeliveryOptions();
+            if (priority != null) {
+                options.addHeader(PRIORITY, priority);
+            }
+            if (partition != null) {
+                options.addHeader(ServiceQueue.PARTITION, partition);
+            }
+            system.send(manager.getRoute(), event.toBytes(), options);
         }
-        return null;
+    }
+
+    /**
+     * Set the absolute deadline of a RPC request before it is sent
+     * <p>
+     * An earlier deadline that is inherited from the parent request is retained.
+     * The deadline of an event that has been sent before is replaced.
+     *
+     * @param event of the RPC request
+     * @param timeout in milliseconds
+     */
+    public static void setDeadline(EventEnvelope event, long timeout) {
+        long deadline = System.currentTimeMillis() + timeout;
+        long inherited = event.getTag(RPC) == null? getDeadline(event) : 0;
+        event.addTag(DEADLINE, inherited > 0? Math.min(inherited, deadline) : deadline);
+    }
+
+    /**
+     * Get the absolute deadline of a RPC request
+     *
+     * @param event of the RPC request
+     * @return deadline in milliseconds since epoch or zero if not set
+     */
+    public static long getDeadline(EventEnvelope event) {
+        String deadline = event.getTag(DEADLINE);
+        return deadline == null? 0 : Math.max(0, Utility.getInstance().str2long(deadline));
+    }
+
+    /**
+     * Check if the caller of a RPC request has given up waiting
+     * <p>
+     * The deadline is a wall clock time so that it can be sent to another application instance.
+     * When the caller is in another application instance, the deadline is extended by a clock skew
+     * allowance because the clocks of the two instances are never perfectly synchronized.
+     *
+     * @param event of the RPC request
+     * @return true if the deadline has passed
+     */
+    public static boolean isExpired(EventEnvelope event) {
+        String replyTo = event.getReplyTo();
+        if (replyTo == null || event.getTag(RPC) == null) {
+            return false;
+        }
+        long deadline = getDeadline(event);
+        if (deadline == 0) {
+            return false;
+        }
+        boolean remote = replyTo.contains("@") && !replyTo.endsWith("@" + Platform.getInstance().getOrigin());
+        return System.currentTimeMillis() > (remote? deadline + CLOCK_SKEW_ALLOWANCE : deadline);
     }
 
     /**
@@ -726,7 +827,6 @@ public class EventEmitter {
             MultipartPayload.getInstance().outgoing(target.getManager(),
                     event.getBroadcastLevel() > 0? event.setBroadcastLevel(3) : event);
         } else {
-            EventBus system = Platform.getInstance().getEventSystem();
             /*
              * The target is the same memory space. We will route it to the cloud connector if broadcast.
              */
@@ -742,12 +842,12 @@ public class EventEmitter {
                     }
                 } else {
                     // set broadcast level to 3 for language pack clients if any
-                    system.send(target.getManager().getRoute(), event.setBroadcastLevel(3).toBytes());
+                    deliver(target.getManager(), event.setBroadcastLevel(3));
                 }
             } else {
                 // set broadcast level to 3 for language pack clients if any
                 EventEnvelope out = event.getBroadcastLevel() > 0? event.setBroadcastLevel(3) : event;
-                system.send(target.getManager().getRoute(), out.toBytes());
+                deliver(target.getManager(), out);
             }
         }
     }
@@ -950,12 +1050,13 @@ public class EventEmitter {
         AsyncInbox inbox = new AsyncInbox(event.getFrom(), to, event.getTraceId(), event.getTracePath(),
                                             timeout, timeoutException);
         event.setReplyTo(inbox.getId() + "@" + platform.getOrigin());
+        setDeadline(event, timeout);
         event.addTag(RPC, timeout);
         event.setBroadcastLevel(0);
         if (target.isCloud()) {
             MultipartPayload.getInstance().outgoing(target.getManager(), event);
         } else {
-            platform.getEventSystem().send(target.getManager().getRoute(), event.toBytes());
+            deliver(target.getManager(), event);
         }
         return inbox.getFuture();
     }
@@ -1027,18 +1128,18 @@ public class EventEmitter {
             destinations.add(discover(to, event.isEndOfRoute()));
         }
         Platform platform = Platform.getInstance();
-        EventBus system = platform.getEventSystem();
         String replyTo = inbox.getId() + "@" + platform.getOrigin();
         int n = 0;
         for (EventEnvelope event : events) {
             TargetRoute target = destinations.get(n++);
             event.setReplyTo(replyTo);
+            setDeadline(event, timeout);
             event.addTag(RPC, timeout);
             event.setBroadcastLevel(0);
             if (target.isCloud()) {
                 MultipartPayload.getInstance().outgoing(target.getManager(), event);
             } else {
-                system.send(target.getManager().getRoute(), event.toBytes());
+                deliver(target.getManager(), event);
             }
         }
         return inbox.getFuture();
@@ -1081,15 +1182,15 @@ public class EventEmitter {
             return true;
         }
         String dest = substituteRouteIfAny(route);
-        if (platform.hasRoute(dest)) {
+        int at = dest.indexOf('@');
+        if (getLocalRoute(at == -1? dest : dest.substring(0, at)) != null) {
             return true;
         }
         // check if the remote service is reachable
         if (Platform.isCloudSelected() &&
-                (platform.hasRoute(ServiceDiscovery.SERVICE_QUERY) || platform.hasRoute(CLOUD_CONNECTOR))) {
+                (routeCache.getLocal(ServiceDiscovery.SERVICE_QUERY) != null || routeCache.getCloud() != null)) {
             if (dest.contains(".")) {
-                ConcurrentMap<String, String> targets = cloudRoutes.get(dest);
-                return targets != null && !targets.isEmpty();
+                return routeCache.isRemote(dest);
             } else {
                 return cloudOrigins.containsKey(dest);
             }
@@ -1122,6 +1223,9 @@ public class EventEmitter {
             if (!remoteOnly && platform.hasRoute(actualRoute)) {
                 platform.getEventExecutor().submit(() ->
                         promise.complete(Collections.singletonList(platform.getOrigin())));
+            } else if (Platform.isCloudSelected() && routeCache.isUnknown(actualRoute)) {
+                // avoid repeated remote queries for a route that is not found recently
+                platform.getEventExecutor().submit(() -> promise.complete(Collections.emptyList()));
             } else if (Platform.isCloudSelected()) {
                 try {
                     if (platform.hasRoute(ServiceDiscovery.SERVICE_QUERY) || platform.hasRoute(CLOUD_CONNECTOR)) {
@@ -1131,7 +1235,11 @@ public class EventEmitter {
                         Future<EventEnvelope> response = asyncRequest(event, 3000);
                         response.onSuccess(evt -> {
                             if (evt.getBody() instanceof List) {
-                                promise.complete((List<String>) evt.getBody());
+                                List<String> origins = (List<String>) evt.getBody();
+                                if (origins.isEmpty()) {
+                                    routeCache.setUnknown(actualRoute);
+                                }
+                                promise.complete(origins);
                             } else {
                                 promise.complete(Collections.emptyList());
                             }
@@ -18,7 +18,11 @@
 
 package org.platformlambda.core.system;
 
+import io.vertx.core.buffer.Buffer;
 import org.platformlambda.core.models.Kv;
+import org.platformlambda.core.util.AppConfigReader;
+import org.platformlambda.core.util.Utility;
+import org.platformlambda.core.websocket.common.MultipartPayload;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -27,12 +31,79 @@ public class ObjectStreamWriter implements AutoCloseable {
     private static final String TYPE = "type";
     private static final String DATA = "data";
     private static final String END_OF_STREAM = "eof";
+    private static final int MIN_BLOCK_SIZE = 1024;
+    private static final int MAX_BLOCK_SIZE = 1024 * 1024;
+    private static final int CONFIG_BLOCK_SIZE = getConfiguredBlockSize();
 
     private final String streamId;
+    private final int blockSize;
+    private byte[] pending;
+    private int pendingLen = 0;
+    private long blocks = 0;
     private boolean eof = false;
 
+    /**
+     * Create a stream writer that sends each write as a block
+     *
+     * @param streamId output stream ID
+     */
     public ObjectStreamWriter(String streamId) {
         this.streamId = streamId;
+        this.blockSize = 0;
+    }
+
+    /**
+     * Create a stream writer that coalesces bytes into blocks of the given size
+     * <p>
+     * Bytes are held until a block is full or the writer is flushed or closed.
+     * Other payload types flush the pending bytes and are sent as individual blocks.
+     *
+     * @param streamId output stream ID
+     * @param blockSize in bytes. Zero means no coalescing.
+     */
+    public ObjectStreamWriter(String streamId, int blockSize) {
+        this.streamId = streamId;
+        this.blockSize = blockSize < 1? 0 : Math.min(MAX_BLOCK_SIZE, Math.max(MIN_BLOCK_SIZE, blockSize));
+    }
+
+    /**
+     * Get the block size from the "stream.block.size" parameter for system components
+     * <p>
+     * When a cloud connector is used, the block size is limited so that a block
+     * does not need to be segmented by the MultipartPayload.
+     *
+     * @return block size in bytes
+     */
+    public static int getDefaultBlockSize() {
+        if (CONFIG_BLOCK_SIZE > 0 && Platform.isCloudSelected()) {
+            int limit = MultipartPayload.getInstance().getMaxPayload() - MultipartPayload.OVERHEAD;
+            return Math.max(MIN_BLOCK_SIZE, Math.min(CONFIG_BLOCK_SIZE, limit));
+        }
+        return CONFIG_BLOCK_SIZE;
+    }
+
+    private static int getConfiguredBlockSize() {
+        AppConfigReader config = AppConfigReader.getInstance();
+        int n = Utility.getInstance().str2int(config.getProperty("stream.block.size", "65536"));
+        return n < 1? 0 : Math.min(MAX_BLOCK_SIZE, Math.max(MIN_BLOCK_SIZE, n));
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Get the number of data blocks that have been sent
+     *
+     * @return number of blocks
+     */
+    public long getBlockCount() {
+        return blocks;
+    }
+
+    private void send(Object block) throws IOException {
+        EventEmitter.getInstance().send(streamId, block, new Kv(TYPE, DATA));
+        blocks++;
     }
 
     public void write(Object payload) throws IOException {
@@ -44,7 +115,8 @@ public class ObjectStreamWriter implements AutoCloseable {
                 byte[] b = (byte[]) payload;
                 write(b, 0, b.length);
             } else {
-                EventEmitter.getInstance().send(streamId, payload, new Kv(TYPE, DATA));
+                flush();
+                send(payload);
             }
         }
     }
@@ -60,9 +132,75 @@ public class ObjectStreamWriter implements AutoCloseable {
             if (end > payload.length) {
                 throw new IOException("end pointer must not be larger than payload buffer size");
             }
-            // always create a new byte array
-            byte[] b = start == end? new byte[0] : Arrays.copyOfRange(payload, start, end);
-            EventEmitter.getInstance().send(streamId, b, new Kv(TYPE, DATA));
+            if (blockSize > 0) {
+                int pos = start;
+                while (pos < end) {
+                    int n = Math.min(end - pos, allocate());
+                    System.arraycopy(payload, pos, pending, pendingLen, n);
+                    pos += n;
+                    append(n);
+                }
+            } else {
+                // always create a new byte array
+                byte[] b = start == end? new byte[0] : Arrays.copyOfRange(payload, start, end);
+                send(b);
+            }
+        }
+    }
+
+    /**
+     * Write the content of a Vert.x buffer
+     * <p>
+     * When coalescing is enabled, the bytes are copied from the buffer into the pending block directly.
+     *
+     * @param buffer of bytes
+     * @throws IOException in case of routing error
+     */
+    public void write(Buffer buffer) throws IOException {
+        if (buffer == null) {
+            // null payload means EOF
+            close();
+        } else if (blockSize > 0) {
+            int len = buffer.length();
+            int pos = 0;
+            while (pos < len) {
+                int n = Math.min(len - pos, allocate());
+                buffer.getBytes(pos, pos + n, pending, pendingLen);
+                pos += n;
+                append(n);
+            }
+        } else {
+            send(buffer.getBytes());
+        }
+    }
+
+    private int allocate() {
+        if (pending == null) {
+            pending = new byte[blockSize];
+            pendingLen = 0;
+        }
+        return blockSize - pendingLen;
+    }
+
+    private void append(int n) throws IOException {
+        pendingLen += n;
+        if (pendingLen == blockSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Send the pending bytes as a block
+     *
+     * @throws IOException in case of routing error
+     */
+    public void flush() throws IOException {
+        if (pending != null && pendingLen > 0) {
+            // a full block is sent without copying because a new block is allocated for the next write
+            byte[] b = pendingLen == pending.length? pending : Arrays.copyOfRange(pending, 0, pendingLen);
+            pending = null;
+            pendingLen = 0;
+            send(b);
         }
     }
 
@@ -70,10 +208,12 @@ public class ObjectStreamWriter implements AutoCloseable {
     public void close() throws IOException {
         if (!eof) {
             eof = true;
-            EventEmitter.getInstance().send(streamId, new Kv(TYPE, END_OF_STREAM));
+            try {
+                flush();
+            } finally {
+                EventEmitter.getInstance().send(streamId, new Kv(TYPE, END_OF_STREAM));
+            }
         }
     }
 
 }
-
-
@@ -18,11 +18,12 @@
 
 package org.platformlambda.core.system;
 
-import io.github.classgraph.ClassInfo;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
 import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.metrics.MetricsOptions;
 import org.platformlambda.core.annotations.CloudConnector;
 import org.platformlambda.core.annotations.CloudService;
 import org.platformlambda.core.models.*;
@@ -79,8 +80,13 @@ public class Platform {
         if (initCounter.incrementAndGet() == 1) {
             AppConfigReader config = AppConfigReader.getInstance();
             int poolSize = Math.max(32, Utility.getInstance().str2int(config.getProperty("kernel.thread.pool", "100")));
-            system = Vertx.vertx().eventBus();
-            vertx = Vertx.vertx();
+            // a single vertx runtime provides the event bus, timers, HTTP server and clients
+            VertxOptions options = getVertxOptions(config);
+            vertx = Vertx.vertx(options);
+            system = vertx.eventBus();
+            if (options.getPreferNativeTransport() && !vertx.isNativeTransportEnabled()) {
+                log.warn("Native transport not available - {}", vertx.unavailableNativeTransportCause().getMessage());
+            }
             cache = SimpleCache.createCache("system.log.cache", 30000);
             executor = Executors.newWorkStealingPool(poolSize);
             log.info("Event system started with up to {} kernel threads", poolSize);
@@ -90,6 +96,38 @@ public class Platform {
         }
     }
 
+    private static VertxOptions getVertxOptions(AppConfigReader config) {
+        Utility util = Utility.getInstance();
+        VertxOptions options = new VertxOptions();
+        int eventLoops = util.str2int(config.getProperty("vertx.event.loop.size", "-1"));
+        if (eventLoops > 0) {
+            options.setEventLoopPoolSize(eventLoops);
+        }
+        int workers = util.str2int(config.getProperty("vertx.worker.pool.size", "-1"));
+        if (workers > 0) {
+            options.setWorkerPoolSize(workers);
+        }
+        long checkInterval = util.str2long(config.getProperty("vertx.blocked.thread.check.interval", "-1"));
+        if (checkInterval > 0) {
+            options.setBlockedThreadCheckInterval(checkInterval);
+        }
+        long maxExecTime = util.str2long(config.getProperty("vertx.max.event.loop.execute.time", "-1"));
+        if (maxExecTime > 0) {
+            options.setMaxEventLoopExecuteTime(maxExecTime);
+            options.setMaxEventLoopExecuteTimeUnit(TimeUnit.MILLISECONDS);
+        }
+        // native transport requires the netty-transport-native-epoll library with the platform classifier
+        options.setPreferNativeTransport("true".equals(config.getProperty("vertx.native.transport", "false")));
+        // metrics are collected when a VertxMetricsFactory (e.g. vertx-micrometer-metrics) is in the class path
+        if ("true".equals(config.getProperty("vertx.metrics", "false"))) {
+            options.setMetricsOptions(new MetricsOptions().setEnabled(true));
+        }
+        log.info("Vertx event loops = {}, worker pool = {}, native transport = {}, metrics = {}",
+                options.getEventLoopPoolSize(), options.getWorkerPoolSize(),
+                options.getPreferNativeTransport(), options.getMetricsOptions().isEnabled());
+        return options;
+    }
+
     /**
      * IMPORTANT: If this OPTIONAL value is set, the origin ID will be derived from this value.
      * <p>
@@ -218,7 +256,7 @@ public class Platform {
                 if (!list.isEmpty()) {
                     List<String> loaded = new ArrayList<>();
                     SimpleClassScanner scanner = SimpleClassScanner.getInstance();
-                    List<ClassInfo> services = scanner.getAnnotatedClasses(CloudService.class, true);
+                    List<String> services = scanner.getAnnotatedClassNames(CloudService.class, true);
                     for (String name: list) {
                         if (loaded.contains(name)) {
                             log.error("Cloud service ({}) already loaded", name);
@@ -259,7 +297,7 @@ public class Platform {
                 startCloudServices();
             } else {
                 SimpleClassScanner scanner = SimpleClassScanner.getInstance();
-                List<ClassInfo> services = scanner.getAnnotatedClasses(CloudConnector.class, true);
+                List<String> services = scanner.getAnnotatedClassNames(CloudConnector.class, true);
                 if (!startService(name, services, true)) {
                     log.error("Cloud connector ({}) not found", name);
                 }
@@ -267,17 +305,17 @@ public class Platform {
         }
     }
 
-    private boolean startService(String name, List<ClassInfo> services, boolean isConnector) {
+    private boolean startService(String name, List<String> services, boolean isConnector) {
         if (name == null) {
             return false;
         }
         final String type = isConnector? CONNECTOR : SERVICE;
-        for (ClassInfo info : services) {
+        for (String service : services) {
             final Class<?> cls;
             try {
-                cls = Class.forName(info.getName());
+                cls = Class.forName(service);
             } catch (ClassNotFoundException e) {
-                log.error("Unable to start cloud {} ({}) - {}", type, info.getName(), e.getMessage());
+                log.error("Unable to start cloud {} ({}) - {}", type, service, e.getMessage());
                 return false;
             }
             final String serviceName;
@@ -313,7 +351,7 @@ public class Platform {
 
                 } catch (NoSuchMethodException | InvocationTargetException |
                         InstantiationException | IllegalAccessException e) {
-                    log.error("Unable to start cloud {} ({}) - {}", type, info.getName(), e.getMessage());
+                    log.error("Unable to start cloud {} ({}) - {}", type, service, e.getMessage());
                 }
                 break;
             }
@@ -504,15 +542,19 @@ public class Platform {
             throw new IllegalArgumentException("Missing LambdaFunction instance");
         }
         String path = getValidatedRoute(route);
-        if (registry.containsKey(path)) {
-            log.warn("{} LambdaFunction {}", RELOADING, path);
-            release(path);
-        }
         ServiceDef service = new ServiceDef(path, lambda).setConcurrency(instances).setPrivate(isPrivate);
-        ServiceQueue manager = new ServiceQueue(service);
-        service.setManager(manager);
-        // save into local registry
-        registry.put(path, service);
+        // the route may be registered by more than one thread
+        synchronized (registry) {
+            if (registry.containsKey(path)) {
+                log.warn("{} LambdaFunction {}", RELOADING, path);
+                release(path);
+            }
+            ServiceQueue manager = new ServiceQueue(service);
+            service.setManager(manager);
+            // save into local registry
+            registry.put(path, service);
+        }
+        EventEmitter.getInstance().routingTableChanged();
         if (!isPrivate) {
             advertiseRoute(route);
         }
@@ -525,15 +567,19 @@ public class Platform {
             throw new IOException("Missing KotlinLambdaFunction instance");
         }
         String path = getValidatedRoute(route);
-        if (registry.containsKey(path)) {
-            log.warn("{} KotlinLambdaFunction {}", RELOADING, path);
-            release(path);
-        }
         ServiceDef service = new ServiceDef(path, lambda).setConcurrency(instances).setPrivate(isPrivate);
-        ServiceQueue manager = new ServiceQueue(service);
-        service.setManager(manager);
-        // save into local registry
-        registry.put(path, service);
+        // the route may be registered by more than one thread
+        synchronized (registry) {
+            if (registry.containsKey(path)) {
+                log.warn("{} KotlinLambdaFunction {}", RELOADING, path);
+                release(path);
+            }
+            ServiceQueue manager = new ServiceQueue(service);
+            service.setManager(manager);
+            // save into local registry
+            registry.put(path, service);
+        }
+        EventEmitter.getInstance().routingTableChanged();
         if (!isPrivate) {
             advertiseRoute(route);
         }
@@ -566,14 +612,18 @@ public class Platform {
             throw new IOException("Missing StreamFunction instance");
         }
         String path = getValidatedRoute(route);
-        if (registry.containsKey(path)) {
-            log.warn("{} StreamFunction {}", RELOADING, path);
-            release(path);
-        }
         ServiceDef service = new ServiceDef(path, lambda).setConcurrency(1).setPrivate(isPrivate);
-        ServiceQueue manager = new ServiceQueue(service);
-        service.setManager(manager);
-        registry.put(path, service);
+        // the route may be registered by more than one thread
+        synchronized (registry) {
+            if (registry.containsKey(path)) {
+                log.warn("{} StreamFunction {}", RELOADING, path);
+                release(path);
+            }
+            ServiceQueue manager = new ServiceQueue(service);
+            service.setManager(manager);
+            registry.put(path, service);
+        }
+        EventEmitter.getInstance().routingTableChanged();
         if (!isPrivate) {
             advertiseRoute(route);
         }
@@ -625,6 +675,12 @@ public class Platform {
      * @return true if successful
      */
     public boolean release(String route) {
+        synchronized (registry) {
+            return releaseRoute(route);
+        }
+    }
+
+    private boolean releaseRoute(String route) {
         if (route != null && registry.containsKey(route)) {
             ServiceDef def = registry.get(route);
             if (!def.isPrivate()) {
@@ -643,6 +699,7 @@ public class Platform {
             ServiceQueue manager = getManager(route);
             if (manager != null) {
                 registry.remove(route);
+                EventEmitter.getInstance().routingTableChanged();
                 manager.stop();
             }
             return true;
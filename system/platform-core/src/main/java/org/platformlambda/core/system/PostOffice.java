@@ -15,10 +15,12 @@ public class PostOffice {
     private static final String MY_ROUTE = "my_route";
     private static final String MY_TRACE_ID = "my_trace_id";
     private static final String MY_TRACE_PATH = "my_trace_path";
+    private static final String MY_DEADLINE = "my_deadline";
     public static final String MISSING_EVENT = "Missing outgoing event";
     private final String myRoute;
     private final String myTraceId;
     private final String myTracePath;
+    private final String myDeadline;
     private final int instance;
     private final CustomSerializer serializer;
 
@@ -34,6 +36,7 @@ public class PostOffice {
         myRoute = headers.get(MY_ROUTE);
         myTraceId = headers.get(MY_TRACE_ID);
         myTracePath = headers.get(MY_TRACE_PATH);
+        myDeadline = headers.get(MY_DEADLINE);
         this.instance = instance;
         this.serializer = null;
     }
@@ -49,6 +52,7 @@ public class PostOffice {
         myRoute = headers.get(MY_ROUTE);
         myTraceId = headers.get(MY_TRACE_ID);
         myTracePath = headers.get(MY_TRACE_PATH);
+        myDeadline = headers.get(MY_DEADLINE);
         this.instance = instance;
         this.serializer = serializer;
     }
@@ -65,6 +69,7 @@ public class PostOffice {
         this.myRoute = myRoute;
         this.myTraceId = myTraceId;
         this.myTracePath = myTracePath;
+        this.myDeadline = null;
         this.instance = 0;
         this.serializer = null;
     }
@@ -82,6 +87,7 @@ public class PostOffice {
         this.myRoute = myRoute;
         this.myTraceId = myTraceId;
         this.myTracePath = myTracePath;
+        this.myDeadline = null;
         this.instance = 0;
         this.serializer = serializer;
     }
@@ -329,7 +335,7 @@ public class PostOffice {
      * @throws IOException in case of routing error
      */
     public Future<EventEnvelope> asyncRequest(final EventEnvelope event, long timeout) throws IOException {
-        return po.asyncRequest(touch(event), timeout);
+        return po.asyncRequest(inheritDeadline(touch(event)), timeout);
     }
 
     /**
@@ -347,7 +353,7 @@ public class PostOffice {
      */
     public Future<EventEnvelope> asyncRequest(final EventEnvelope event, long timeout, boolean timeoutException)
             throws IOException {
-        return po.asyncRequest(touch(event), timeout, timeoutException);
+        return po.asyncRequest(inheritDeadline(touch(event)), timeout, timeoutException);
     }
 
     /**
@@ -367,7 +373,7 @@ public class PostOffice {
      * @throws IOException in case of error
      */
     public Future<List<EventEnvelope>> asyncRequest(final List<EventEnvelope> events, long timeout) throws IOException {
-        events.forEach(this::touch);
+        events.forEach(e -> inheritDeadline(touch(e)));
         return po.asyncRequest(events, timeout, true);
     }
 
@@ -387,4 +393,13 @@ public class PostOffice {
         return event;
     }
 
+    private EventEnvelope inheritDeadline(final EventEnvelope event) {
+        // a nested request must not outlive the request that is being served
+        if (myDeadline != null &&
+                (event.getTag(EventEmitter.RPC) != null || event.getTag(EventEmitter.DEADLINE) == null)) {
+            event.removeTag(EventEmitter.RPC).addTag(EventEmitter.DEADLINE, myDeadline);
+        }
+        return event;
+    }
+
 }
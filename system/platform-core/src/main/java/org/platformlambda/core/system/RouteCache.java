@@ -0,0 +1,161 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core.system;
+
+import org.platformlambda.core.models.TargetRoute;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IMPORTANT: Reserved for internal uses.
+ * <p>
+ * Copy-on-write snapshot of local and remote routes for route resolution.
+ * The snapshot is rebuilt lazily after the local or distributed routing table changes
+ * so that a lookup is a volatile read of an immutable map.
+ */
+public class RouteCache {
+    private static final long NEGATIVE_EXPIRY = 2000;
+    private final AtomicLong version = new AtomicLong(0);
+    private final ConcurrentMap<String, Long> unknownRoutes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentMap<String, String>> cloudRoutes;
+    private volatile Snapshot snapshot = new Snapshot(-1, Collections.emptyMap(), Collections.emptySet(), null);
+
+    public RouteCache(ConcurrentMap<String, ConcurrentMap<String, String>> cloudRoutes) {
+        this.cloudRoutes = cloudRoutes;
+    }
+
+    /**
+     * Invalidate the snapshot when a route is added or removed
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+        if (!unknownRoutes.isEmpty()) {
+            unknownRoutes.clear();
+        }
+    }
+
+    /**
+     * Get the target of a route in this application instance
+     *
+     * @param route name of a service
+     * @return target route or null if not found
+     */
+    public TargetRoute getLocal(String route) {
+        return getSnapshot().local.get(route);
+    }
+
+    /**
+     * Check if a route is available in one or more peers
+     *
+     * @param route name of a service
+     * @return true if found in the distributed routing table
+     */
+    public boolean isRemote(String route) {
+        return getSnapshot().remote.contains(route);
+    }
+
+    /**
+     * Get the cloud connector
+     *
+     * @return target route or null if the cloud connector is not available
+     */
+    public TargetRoute getCloud() {
+        return getSnapshot().cloud;
+    }
+
+    /**
+     * Check if a route has recently been searched without result
+     *
+     * @param route name of a service
+     * @return true if the negative entry has not expired
+     */
+    public boolean isUnknown(String route) {
+        Long expiry = unknownRoutes.get(route);
+        if (expiry == null) {
+            return false;
+        }
+        if (expiry < System.currentTimeMillis()) {
+            unknownRoutes.remove(route);
+            return false;
+        }
+        return true;
+    }
+
+    public void setUnknown(String route) {
+        long v = version.get();
+        unknownRoutes.put(route, System.currentTimeMillis() + NEGATIVE_EXPIRY);
+        if (v != version.get()) {
+            // the routing table has changed while the route was being searched
+            unknownRoutes.remove(route);
+        }
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        return current.version == version.get()? current : rebuild();
+    }
+
+    private synchronized Snapshot rebuild() {
+        // obtain the version before reading the routing tables so that a concurrent change is not missed
+        long v = version.get();
+        if (snapshot.version == v) {
+            return snapshot;
+        }
+        Map<String, TargetRoute> local = new HashMap<>();
+        for (Map.Entry<String, ServiceDef> kv: Platform.getInstance().getLocalRoutingTable().entrySet()) {
+            ServiceQueue manager = kv.getValue().getManager();
+            if (manager != null) {
+                local.put(kv.getKey(), new TargetRoute(manager, false));
+            }
+        }
+        Set<String> remote = new HashSet<>();
+        for (Map.Entry<String, ConcurrentMap<String, String>> kv: cloudRoutes.entrySet()) {
+            if (!kv.getValue().isEmpty()) {
+                remote.add(kv.getKey());
+            }
+        }
+        TargetRoute connector = local.get(EventEmitter.CLOUD_CONNECTOR);
+        TargetRoute cloud = connector == null? null : new TargetRoute(connector.getManager(), true);
+        Snapshot updated = new Snapshot(v, local, remote, cloud);
+        snapshot = updated;
+        return updated;
+    }
+
+    private static class Snapshot {
+        private final long version;
+        private final Map<String, TargetRoute> local;
+        private final Set<String> remote;
+        private final TargetRoute cloud;
+
+        private Snapshot(long version, Map<String, TargetRoute> local, Set<String> remote, TargetRoute cloud) {
+            this.version = version;
+            this.local = local;
+            this.remote = remote;
+            this.cloud = cloud;
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core.system;
+
+import org.platformlambda.core.models.ProcessStatus;
+import org.platformlambda.core.util.LatencyHistogram;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of a function that are updated by its workers
+ */
+public class RouteMetrics {
+    private static final float ONE_THOUSAND = 1000f;
+    private final ConcurrentMap<Integer, LongAdder> errors = new ConcurrentHashMap<>();
+    private final LatencyHistogram executionTime = new LatencyHistogram();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LongAdder expired = new LongAdder();
+
+    /**
+     * Record the outcome of a function execution
+     *
+     * @param ps process status of the event
+     */
+    public void record(ProcessStatus ps) {
+        executionTime.record((long) (ps.getExecutionTime() * ONE_THOUSAND));
+        if (!ps.isSuccess()) {
+            errors.computeIfAbsent(ps.getStatus(), k -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Record the time an event has waited for a worker
+     *
+     * @param micros waiting time in microseconds
+     */
+    public void recordQueueWait(long micros) {
+        queueWait.record(micros);
+    }
+
+    /**
+     * Record a RPC request that is rejected because its deadline has passed before execution
+     */
+    public void recordExpired() {
+        expired.increment();
+    }
+
+    /**
+     * Number of RPC requests that are rejected without execution because the caller has given up waiting
+     *
+     * @return expired request count
+     */
+    public long getExpired() {
+        return expired.sum();
+    }
+
+    /**
+     * Number of function executions
+     *
+     * @return count of the execution time histogram
+     */
+    public long getInvocations() {
+        return executionTime.getCount();
+    }
+
+    /**
+     * Number of failed executions by status
+     *
+     * @return map of status to count
+     */
+    public Map<Integer, Long> getErrors() {
+        Map<Integer, Long> result = new HashMap<>();
+        errors.forEach((k, v) -> result.put(k, v.sum()));
+        return result;
+    }
+
+    /**
+     * Percentiles of the execution and queue wait times in milliseconds
+     *
+     * @return statistics
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("invocations", getInvocations());
+        result.put("exec_time", getPercentiles(executionTime));
+        result.put("queue_time", getPercentiles(queueWait));
+        Map<Integer, Long> failed = getErrors();
+        if (!failed.isEmpty()) {
+            result.put("errors", failed);
+        }
+        long rejected = getExpired();
+        if (rejected > 0) {
+            result.put("expired", rejected);
+        }
+        return result;
+    }
+
+    private Map<String, Object> getPercentiles(LatencyHistogram histogram) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("p50", histogram.getPercentile(50) / ONE_THOUSAND);
+        result.put("p90", histogram.getPercentile(90) / ONE_THOUSAND);
+        result.put("p99", histogram.getPercentile(99) / ONE_THOUSAND);
+        result.put("max", histogram.getMax() / ONE_THOUSAND);
+        return result;
+    }
+
+    public LatencyHistogram getExecutionTime() {
+        return executionTime;
+    }
+
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+}
@@ -0,0 +1,275 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core.system;
+
+import org.platformlambda.core.util.AppConfigReader;
+import org.platformlambda.core.util.Utility;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sampling profiler for functions that run in kernel threads
+ * <p>
+ * When started, the stack of each worker thread that is executing a function is sampled periodically
+ * using ThreadMXBean. The samples are aggregated per route as collapsed stacks ("frame;frame;frame count")
+ * that can be rendered as flame graphs. Frames below the worker are omitted and the thread state is
+ * added as the last frame of a sample that is not running.
+ * <p>
+ * The number of distinct stacks of each route is bounded by "profiler.max.stacks".
+ * A sample of a new stack beyond the limit is counted as dropped.
+ */
+public class RouteProfiler {
+    private static final Logger log = LoggerFactory.getLogger(RouteProfiler.class);
+
+    private static final String PROFILER_ENABLED = "profiler.enabled";
+    private static final String PROFILER_INTERVAL = "profiler.interval";
+    private static final String PROFILER_MAX_STACKS = "profiler.max.stacks";
+    private static final String PROFILER_STACK_DEPTH = "profiler.stack.depth";
+    private static final String WORKER_HANDLER = WorkerHandler.class.getName();
+    private static final RouteProfiler instance = new RouteProfiler();
+    private final ConcurrentMap<Long, String> activeThreads = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, RouteSamples> profiles = new ConcurrentHashMap<>();
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final LongAdder ticks = new LongAdder();
+    private final LongAdder samplingTime = new LongAdder();
+    private final long interval;
+    private final int maxStacks;
+    private final int stackDepth;
+    private ScheduledExecutorService sampler;
+    private volatile boolean running = false;
+    private long startTime;
+
+    private RouteProfiler() {
+        AppConfigReader config = AppConfigReader.getInstance();
+        Utility util = Utility.getInstance();
+        interval = Math.max(1, util.str2long(config.getProperty(PROFILER_INTERVAL, "20")));
+        maxStacks = Math.max(1, util.str2int(config.getProperty(PROFILER_MAX_STACKS, "500")));
+        stackDepth = Math.max(1, util.str2int(config.getProperty(PROFILER_STACK_DEPTH, "64")));
+        if ("true".equals(config.getProperty(PROFILER_ENABLED, "false"))) {
+            start();
+        }
+    }
+
+    public static RouteProfiler getInstance() {
+        return instance;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Start sampling and discard the samples of the previous session
+     */
+    public synchronized void start() {
+        if (!running) {
+            profiles.clear();
+            ticks.reset();
+            samplingTime.reset();
+            startTime = System.currentTimeMillis();
+            sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "route.profiler");
+                t.setDaemon(true);
+                return t;
+            });
+            sampler.scheduleAtFixedRate(this::sample, interval, interval, TimeUnit.MILLISECONDS);
+            running = true;
+            log.info("Route profiler started, sampling interval {} ms", interval);
+        }
+    }
+
+    /**
+     * Stop sampling. The samples are kept until the profiler is started again.
+     */
+    public synchronized void stop() {
+        if (running) {
+            running = false;
+            sampler.shutdown();
+            sampler = null;
+            activeThreads.clear();
+            log.info("Route profiler stopped");
+        }
+    }
+
+    /**
+     * Internal API - associate the current thread with a route before executing a function
+     *
+     * @param route of the function
+     * @return true if the thread is associated and leave() must be called when the function ends
+     */
+    public boolean enter(String route) {
+        if (running) {
+            activeThreads.put(Thread.currentThread().getId(), route);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Internal API - remove the route association of the current thread
+     */
+    public void leave() {
+        activeThreads.remove(Thread.currentThread().getId());
+    }
+
+    private void sample() {
+        long begin = System.nanoTime();
+        try {
+            if (!activeThreads.isEmpty()) {
+                List<Long> threads = new ArrayList<>(activeThreads.keySet());
+                long[] ids = new long[threads.size()];
+                for (int i=0; i < ids.length; i++) {
+                    ids[i] = threads.get(i);
+                }
+                ThreadInfo[] info = threadBean.getThreadInfo(ids, stackDepth);
+                for (ThreadInfo ti: info) {
+                    // the thread may have finished the function while its stack is being sampled
+                    String route = ti == null? null : activeThreads.get(ti.getThreadId());
+                    if (route != null) {
+                        String stack = collapse(ti);
+                        if (stack != null) {
+                            profiles.computeIfAbsent(route, k -> new RouteSamples()).add(stack, maxStacks);
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // the sampler must not stop because of an unexpected error
+            log.warn("Unable to sample worker threads - {}", e.getMessage());
+        }
+        ticks.increment();
+        samplingTime.add(System.nanoTime() - begin);
+    }
+
+    private String collapse(ThreadInfo ti) {
+        StackTraceElement[] frames = ti.getStackTrace();
+        int end = frames.length;
+        for (int i=0; i < frames.length; i++) {
+            if (WORKER_HANDLER.equals(frames[i].getClassName())) {
+                end = i;
+                break;
+            }
+        }
+        if (end == 0) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i=end-1; i >= 0; i--) {
+            if (sb.length() > 0) {
+                sb.append(';');
+            }
+            sb.append(frames[i].getClassName()).append('.').append(frames[i].getMethodName());
+        }
+        if (ti.getThreadState() != Thread.State.RUNNABLE) {
+            sb.append(";[").append(ti.getThreadState()).append(']');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Retrieve the collapsed stacks of each route, with the most frequent stacks first
+     *
+     * @return profile
+     */
+    public Map<String, Object> getProfile() {
+        Map<String, Object> result = new HashMap<>();
+        long tickCount = ticks.sum();
+        result.put("running", running);
+        result.put("interval", interval);
+        result.put("ticks", tickCount);
+        result.put("sampling_time_us", tickCount == 0? 0 : samplingTime.sum() / tickCount / 1000);
+        if (startTime > 0) {
+            result.put("start", new Date(startTime));
+        }
+        Map<String, Object> routes = new HashMap<>();
+        for (Map.Entry<String, RouteSamples> kv: profiles.entrySet()) {
+            routes.put(kv.getKey(), kv.getValue().getSummary());
+        }
+        result.put("routes", routes);
+        return result;
+    }
+
+    /**
+     * Retrieve the samples in collapsed stack format where the route is the first frame
+     *
+     * @return text with one stack per line
+     */
+    public String getCollapsedStacks() {
+        StringBuilder sb = new StringBuilder();
+        for (String route: new TreeSet<>(profiles.keySet())) {
+            for (Map.Entry<String, Long> kv: profiles.get(route).getStacks()) {
+                sb.append(route).append(';').append(kv.getKey()).append(' ').append(kv.getValue()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static class RouteSamples {
+        private final Map<String, Long> stacks = new HashMap<>();
+        private long samples = 0;
+        private long dropped = 0;
+
+        private synchronized void add(String stack, int maxStacks) {
+            samples++;
+            Long count = stacks.get(stack);
+            if (count != null) {
+                stacks.put(stack, count + 1);
+            } else if (stacks.size() < maxStacks) {
+                stacks.put(stack, 1L);
+            } else {
+                dropped++;
+            }
+        }
+
+        private synchronized List<Map.Entry<String, Long>> getStacks() {
+            List<Map.Entry<String, Long>> result = new ArrayList<>();
+            for (Map.Entry<String, Long> kv: stacks.entrySet()) {
+                result.add(new AbstractMap.SimpleEntry<>(kv.getKey(), kv.getValue()));
+            }
+            result.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+            return result;
+        }
+
+        private Map<String, Object> getSummary() {
+            Map<String, Object> result = new HashMap<>();
+            Map<String, Object> ordered = new LinkedHashMap<>();
+            for (Map.Entry<String, Long> kv: getStacks()) {
+                ordered.put(kv.getKey(), kv.getValue());
+            }
+            synchronized (this) {
+                result.put("samples", samples);
+                result.put("dropped", dropped);
+            }
+            result.put("stacks", ordered);
+            return result;
+        }
+    }
+
+}
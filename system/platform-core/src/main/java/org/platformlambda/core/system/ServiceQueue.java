@@ -19,20 +19,59 @@
 package org.platformlambda.core.system;
 
 import io.vertx.core.Handler;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.eventbus.MessageConsumer;
+import org.platformlambda.core.annotations.AdaptiveConcurrency;
 import org.platformlambda.core.annotations.KernelThreadRunner;
+import org.platformlambda.core.annotations.PreLoad;
+import org.platformlambda.core.models.Kv;
+import org.platformlambda.core.util.AppConfigReader;
 import org.platformlambda.core.util.ElasticQueue;
+import org.platformlambda.core.util.LatencyHistogram;
+import org.platformlambda.core.util.Utility;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Service manager that dispatches events to the workers of a function
+ * <p>
+ * Only the first worker is created when the function is registered. Additional workers are
+ * created on demand, up to the configured number of instances, when events are queued because
+ * all existing workers are busy. A function that is rarely used therefore holds a single worker.
+ * <p>
+ * Each event is stamped with its arrival time so that a worker can measure how long
+ * the event has waited in memory or in the elastic queue before it is picked up.
+ * <p>
+ * When adaptive concurrency is enabled, a ConcurrencyController sets the number of workers that may
+ * process events. A worker above the limit is parked when it becomes ready and it is released
+ * when the limit is raised.
+ * <p>
+ * Buffered events wait in one of three priority lanes (high, normal and low) that are selected by
+ * the "priority" tag of an event. When a worker becomes ready, the next lane is chosen by smooth
+ * weighted round-robin among the lanes that have pending events, so that a backlog of low priority
+ * events cannot starve the high priority lane and vice versa.
+ * <p>
+ * When the function has a partition key, all workers are started upfront. An event that carries the
+ * partition key header is dispatched to the worker selected by consistent hashing of the header value.
+ * If that worker is busy, the event waits in the partition queue of the worker, which is served before
+ * the shared lanes when the worker becomes ready. Events of the same key are therefore processed in order.
+ */
 public class ServiceQueue {
     private static final Logger log = LoggerFactory.getLogger(ServiceQueue.class);
     private static final String READY = "ready";
@@ -41,38 +80,115 @@ public class ServiceQueue {
     private static final String KERNEL_THREAD_POOL = "using kernel thread pool";
     private static final String PUBLIC = "PUBLIC";
     private static final String PRIVATE = "PRIVATE";
-    private final ElasticQueue elasticQueue;
+    public static final String QUEUE_WAIT_ALERT = "queue.wait.alert";
+    public static final String ENQUEUED = "enqueued";
+    public static final String PARTITION = "partition";
+    private static final String ALERT_THRESHOLD = "queue.wait.alert.threshold";
+    private static final String TYPE = "type";
+    private static final String QUEUE_TIME = "queue_time";
+    private static final String THRESHOLD = "threshold";
+    private static final String ROUTE = "route";
+    private static final long ALERT_INTERVAL = 10000;
+    private static final String ADAPTIVE_CONCURRENCY = "adaptive.concurrency";
+    private static final String ADAPTIVE_INTERVAL = "adaptive.concurrency.interval";
+    private static final String LIMIT_CHANGED = "limit";
+    private static final String PRIORITY_WEIGHTS = "priority.lane.weights";
+    private static final String DEFAULT_WEIGHTS = "6, 3, 1";
+    private static final String HIGH = "high";
+    private static final String LOW = "low";
+    private static final String LANE_PREFIX = ".priority.";
+    private static final String PARTITION_PREFIX = ".partition.";
+    private static final int HIGH_LANE = 0;
+    private static final int NORMAL_LANE = 1;
+    private static final int LOW_LANE = 2;
+    private final Lane[] lanes;
+    private final Lane[] partitions;
+    private final List<Lane> allLanes = new ArrayList<>();
+    private final String partitionKey;
+    private final ExecutorService executor;
     private final String route;
     private final String readyPrefix;
     private final String streamRoute;
     private final EventBus system;
+    private final ServiceDef service;
+    private final int instances;
     private final ConcurrentLinkedQueue<String> fifo = new ConcurrentLinkedQueue<>();
     private final ConcurrentMap<String, Boolean> idx = new ConcurrentHashMap<>();
-    private final List<WorkerQueues> workers = new ArrayList<>();
+    private final List<WorkerQueues> workers = new CopyOnWriteArrayList<>();
+    private final RouteMetrics metrics = new RouteMetrics();
+    private final long alertThreshold;
+    private final AtomicLong lastAlert = new AtomicLong(0);
+    private final Set<String> parked = ConcurrentHashMap.newKeySet();
+    private final ConcurrencyController controller;
+    private final long adaptiveInterval;
+    private long adaptiveTimer = -1;
+    private long lastCount = 0;
+    private long lastSum = 0;
     private MessageConsumer<Object> consumer;
     private boolean buffering = true;
     private boolean stopped = false;
 
     public ServiceQueue(ServiceDef service) {
+        this.service = service;
         this.route = service.getRoute();
         this.readyPrefix = READY+":" + service.getRoute() + HASH;
-        this.elasticQueue = new ElasticQueue(route);
+        int[] weights = getLaneWeights();
+        this.lanes = new Lane[] {new Lane(route + LANE_PREFIX + HIGH, weights[HIGH_LANE]),
+                                 new Lane(route, weights[NORMAL_LANE]),
+                                 new Lane(route + LANE_PREFIX + LOW, weights[LOW_LANE])};
+        allLanes.addAll(Arrays.asList(lanes));
+        this.alertThreshold = getAlertThreshold(route);
         // create consumer
         system = Platform.getInstance().getEventSystem();
         consumer = system.localConsumer(service.getRoute(), new ServiceHandler());
         if (service.isStream()) {
+            instances = 1;
             streamRoute = route + HASH + 1;
             StreamQueue worker = new StreamQueue(service, streamRoute);
             workers.add(worker);
             boolean coroutine = service.getStreamFunction().getClass().getAnnotation(KernelThreadRunner.class) == null;
             log.info("STREAM {} started {}", route, coroutine ? AS_COROUTINE : KERNEL_THREAD_POOL);
+            controller = null;
+            adaptiveInterval = 0;
+            partitionKey = null;
+            partitions = null;
+            executor = null;
         } else {
             streamRoute = null;
-            int instances = service.getConcurrency();
-            for (int i = 0; i < instances; i++) {
-                int n = i + 1;
-                WorkerQueue worker = new WorkerQueue(service, route + HASH + n, n);
-                workers.add(worker);
+            instances = Math.max(1, service.getConcurrency());
+            PreLoad preload = getFunctionClass(service).getAnnotation(PreLoad.class);
+            partitionKey = preload == null || preload.partitionKey().isEmpty()? null : preload.partitionKey();
+            executor = preload == null? null : getDedicatedExecutor(service, preload.threads());
+            int min = getMinConcurrency(service);
+            if (partitionKey != null && min > 0) {
+                log.warn("{} ignores adaptive concurrency because it is partitioned by {}", route, partitionKey);
+                min = 0;
+            }
+            if (min > 0 && min < instances) {
+                controller = new ConcurrencyController(min, instances);
+                AppConfigReader config = AppConfigReader.getInstance();
+                adaptiveInterval = Math.max(100,
+                        Utility.getInstance().str2long(config.getProperty(ADAPTIVE_INTERVAL, "1000")));
+                adaptiveTimer = Platform.getInstance().getVertx().setPeriodic(adaptiveInterval,
+                                                                            t -> evaluateConcurrency());
+                log.info("{} adaptive concurrency between {} and {} workers", route, min, instances);
+            } else {
+                controller = null;
+                adaptiveInterval = 0;
+            }
+            if (partitionKey == null) {
+                partitions = null;
+                // more workers will be added when there is a backlog
+                addWorker();
+            } else {
+                // each partition is bound to a worker so all workers are needed
+                partitions = new Lane[instances];
+                for (int i=0; i < instances; i++) {
+                    partitions[i] = new Lane(route + PARTITION_PREFIX + (i + 1), 1);
+                    addWorker();
+                }
+                allLanes.addAll(Arrays.asList(partitions));
+                log.info("{} partitioned by {} into {} workers", route, partitionKey, instances);
             }
             if (service.isKotlin()) {
                 if (instances == 1) {
@@ -102,12 +218,304 @@ public class ServiceQueue {
         return idx.size();
     }
 
+    /**
+     * Number of workers that have been created so far
+     *
+     * @return worker count that does not exceed the configured instances
+     */
+    public int getWorkerCount() {
+        return workers.size();
+    }
+
+    /**
+     * Number of workers that are processing events
+     *
+     * @return busy worker count
+     */
+    public int getBusyWorkers() {
+        return Math.max(0, workers.size() - idx.size() - parked.size());
+    }
+
+    /**
+     * Number of workers that may process events
+     *
+     * @return adaptive concurrency limit or the configured instances
+     */
+    public int getConcurrencyLimit() {
+        return controller == null? instances : controller.getLimit();
+    }
+
+    /**
+     * Adaptive concurrency controller of this route
+     *
+     * @return controller or null if the number of workers is fixed
+     */
+    public ConcurrencyController getConcurrencyController() {
+        return controller;
+    }
+
+    /**
+     * Maximum number of workers
+     *
+     * @return configured instances
+     */
+    public int getInstances() {
+        return instances;
+    }
+
+    /**
+     * Number of events waiting for a worker
+     *
+     * @return queue depth
+     */
+    public long getQueueDepth() {
+        long depth = 0;
+        for (Lane lane: allLanes) {
+            depth += lane.getDepth();
+        }
+        return depth;
+    }
+
+    /**
+     * Number of events waiting for a worker in a priority lane
+     *
+     * @param priority high, normal or low
+     * @return queue depth of the lane
+     */
+    public long getQueueDepth(String priority) {
+        return getLane(priority).getDepth();
+    }
+
+    public RouteMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Name of the header that selects the worker of an event
+     *
+     * @return partition key or null if events are dispatched to any available worker
+     */
+    public String getPartitionKey() {
+        return partitionKey;
+    }
+
+    /**
+     * Executor for the workers of a function that uses the KernelThreadRunner annotation
+     *
+     * @return dedicated executor of this route or the shared kernel thread pool
+     */
+    public ExecutorService getExecutor() {
+        return executor == null? Platform.getInstance().getEventExecutor() : executor;
+    }
+
+    /**
+     * Select a partition using jump consistent hashing
+     * <p>
+     * The same key is always mapped to the same partition. When the number of partitions changes,
+     * only the keys that must move to the new partitions are remapped.
+     *
+     * @param key of an event
+     * @param partitions number of partitions
+     * @return partition from zero to partitions - 1
+     */
+    public static int getPartition(String key, int partitions) {
+        // mix the bits of the string hash code so that similar keys are spread evenly
+        long h = key.hashCode() * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        long b = -1;
+        long j = 0;
+        while (j < partitions) {
+            b = j;
+            h = h * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((h >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+
+    /**
+     * Queue wait alert threshold of this route
+     *
+     * @return milliseconds or zero if disabled
+     */
+    public long getAlertThreshold() {
+        return alertThreshold;
+    }
+
+    /**
+     * Record the time an event has waited before a worker picks it up
+     * <p>
+     * When the waiting time exceeds the alert threshold of the route, a warning is logged and
+     * an event is sent to the "queue.wait.alert" service if it exists. Alerts are sent at most
+     * once every 10 seconds per route.
+     *
+     * @param micros waiting time in microseconds
+     */
+    public void recordQueueWait(long micros) {
+        metrics.recordQueueWait(micros);
+        if (alertThreshold > 0 && micros > alertThreshold * 1000) {
+            long now = System.currentTimeMillis();
+            long last = lastAlert.get();
+            if (now - last > ALERT_INTERVAL && lastAlert.compareAndSet(last, now)) {
+                float ms = micros / 1000f;
+                log.warn("Queue wait of {} is {} ms, threshold {} ms", route, ms, alertThreshold);
+                EventEmitter po = EventEmitter.getInstance();
+                if (po.exists(QUEUE_WAIT_ALERT)) {
+                    try {
+                        po.send(QUEUE_WAIT_ALERT, new Kv(TYPE, QUEUE_TIME), new Kv(ROUTE, route),
+                                new Kv(QUEUE_TIME, ms), new Kv(THRESHOLD, alertThreshold));
+                    } catch (IOException e) {
+                        log.error("Unable to send to {} - {}", QUEUE_WAIT_ALERT, e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    private static long getAlertThreshold(String route) {
+        AppConfigReader config = AppConfigReader.getInstance();
+        Utility util = Utility.getInstance();
+        // a route specific threshold overrides the default threshold
+        String threshold = config.getProperty(ALERT_THRESHOLD + "." + route,
+                                config.getProperty(ALERT_THRESHOLD, "0"));
+        return Math.max(0, util.str2long(threshold));
+    }
+
+    private static int[] getLaneWeights() {
+        Utility util = Utility.getInstance();
+        String weights = AppConfigReader.getInstance().getProperty(PRIORITY_WEIGHTS, DEFAULT_WEIGHTS);
+        List<String> parts = util.split(weights, ", ");
+        if (parts.size() == 3) {
+            int[] result = new int[3];
+            for (int i=0; i < 3; i++) {
+                result[i] = util.str2int(parts.get(i));
+            }
+            if (result[HIGH_LANE] > 0 && result[NORMAL_LANE] > 0 && result[LOW_LANE] > 0) {
+                return result;
+            }
+        }
+        log.warn("Invalid {}={}, using default ({})", PRIORITY_WEIGHTS, weights, DEFAULT_WEIGHTS);
+        return new int[] {6, 3, 1};
+    }
+
+    private Lane getLane(String priority) {
+        if (HIGH.equals(priority)) {
+            return lanes[HIGH_LANE];
+        }
+        return LOW.equals(priority)? lanes[LOW_LANE] : lanes[NORMAL_LANE];
+    }
+
+    /**
+     * Select the next lane using smooth weighted round-robin
+     * <p>
+     * Each pending lane earns credits in proportion to its weight and the lane with the most credits
+     * is served. This interleaves the lanes evenly instead of serving them in bursts.
+     *
+     * @return lane or null if there are no pending events
+     */
+    private Lane nextLane() {
+        Lane selected = null;
+        int total = 0;
+        for (Lane lane: lanes) {
+            if (lane.getDepth() > 0) {
+                lane.credit += lane.weight;
+                total += lane.weight;
+                if (selected == null || lane.credit > selected.credit) {
+                    selected = lane;
+                }
+            }
+        }
+        if (selected != null) {
+            selected.credit -= total;
+        }
+        return selected;
+    }
+
+    private static Class<?> getFunctionClass(ServiceDef service) {
+        Object function = service.isKotlin()? service.getSuspendFunction() : service.getFunction();
+        return function.getClass();
+    }
+
+    private static ExecutorService getDedicatedExecutor(ServiceDef service, int threads) {
+        if (threads < 1) {
+            return null;
+        }
+        if (service.isCoroutine()) {
+            log.warn("{} ignores dedicated threads because it does not run in kernel threads", service.getRoute());
+            return null;
+        }
+        final String prefix = service.getRoute() + "-";
+        final AtomicInteger n = new AtomicInteger(0);
+        log.info("{} uses a dedicated pool of {} kernel thread{}", service.getRoute(), threads, threads == 1? "" : "s");
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, prefix + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static int getMinConcurrency(ServiceDef service) {
+        AdaptiveConcurrency adaptive = getFunctionClass(service).getAnnotation(AdaptiveConcurrency.class);
+        // a route specific parameter overrides the annotation
+        String min = AppConfigReader.getInstance().getProperty(ADAPTIVE_CONCURRENCY + "." + service.getRoute());
+        if (min != null) {
+            return Utility.getInstance().str2int(min);
+        }
+        return adaptive == null? 0 : adaptive.min();
+    }
+
+    private void evaluateConcurrency() {
+        LatencyHistogram executionTime = metrics.getExecutionTime();
+        long count = executionTime.getCount();
+        long sum = executionTime.getSum();
+        long completed = count - lastCount;
+        // mean execution time in milliseconds
+        double latency = completed > 0? (sum - lastSum) / 1000.0 / completed : 0;
+        lastCount = count;
+        lastSum = sum;
+        int previous = controller.getLimit();
+        int limit = controller.update(completed, latency, getQueueDepth(), getBusyWorkers(), adaptiveInterval);
+        if (limit != previous) {
+            // the service handler applies the new limit
+            system.send(route, LIMIT_CHANGED);
+        }
+    }
+
+    private boolean isAboveLimit(String worker) {
+        return controller != null && getInstance(worker) > controller.getLimit();
+    }
+
+    private static int getInstance(String worker) {
+        return Utility.getInstance().str2int(worker.substring(worker.lastIndexOf('#') + 1));
+    }
+
+    private void dispatch(String worker, byte[] event, long enqueued) {
+        system.send(worker, event, new DeliveryOptions().addHeader(ENQUEUED, String.valueOf(enqueued)));
+    }
+
+    private void addWorker() {
+        int n = workers.size() + 1;
+        if (n <= getConcurrencyLimit()) {
+            // the new worker will send a ready signal to pick up the next queued event
+            workers.add(new WorkerQueue(service, route + HASH + n, n));
+        }
+    }
+
     public long getReadCounter() {
-        return elasticQueue.getReadCounter();
+        long n = 0;
+        for (Lane lane: allLanes) {
+            n += lane.queue.getReadCounter();
+        }
+        return n;
     }
 
     public long getWriteCounter() {
-        return elasticQueue.getWriteCounter();
+        long n = 0;
+        for (Lane lane: allLanes) {
+            n += lane.queue.getWriteCounter();
+        }
+        return n;
     }
 
     public void stop() {
@@ -118,8 +526,18 @@ public class ServiceQueue {
             for (WorkerQueues w: workers) {
                 w.stop();
             }
-            // completely close the associated elastic queue
-            elasticQueue.destroy();
+            // completely close the associated elastic queues
+            for (Lane lane: allLanes) {
+                lane.queue.destroy();
+                lane.enqueueTimes.clear();
+            }
+            if (executor != null) {
+                // let the running events complete
+                executor.shutdown();
+            }
+            if (adaptiveTimer != -1) {
+                Platform.getInstance().getVertx().cancelTimer(adaptiveTimer);
+            }
             consumer = null;
             stopped = true;
             log.info("{} stopped", route);
@@ -131,50 +549,55 @@ public class ServiceQueue {
         @Override
         public void handle(Message<Object> message) {
             Object body = message.body();
-            if (body instanceof String) {
+            if (LIMIT_CHANGED.equals(body)) {
+                if (!stopped) {
+                    applyLimit();
+                }
+            } else if (body instanceof String) {
                 String worker = getWorker((String) body);
                 if (worker != null && !stopped) {
-                    // Just for the safe side, this guarantees that a unique worker is inserted
-                    idx.computeIfAbsent(worker, d -> {
-                        fifo.offer(worker);
-                        return true;
-                    });
-                    if (buffering) {
-                        byte[] event = elasticQueue.read();
-                        if (event == null) {
-                            // Close elastic queue when all messages are cleared
-                            buffering = false;
-                            elasticQueue.close();
-                        } else {
-                            // Guarantees that there is an available worker
-                            String nextWorker = fifo.poll();
-                            if (nextWorker != null) {
-                                idx.remove(nextWorker);
-                                system.send(nextWorker, event);
-                            }
-                        }
+                    if (isAboveLimit(worker)) {
+                        // the worker stays idle until the limit is raised
+                        parked.add(worker);
+                    } else {
+                        workerReady(worker);
                     }
                 }
             }
             if (body instanceof byte[]) {
                 byte[] event = (byte[]) body;
                 if (!stopped) {
-                    if (buffering) {
+                    long now = System.nanoTime();
+                    String key = partitions == null? null : message.headers().get(PARTITION);
+                    if (key != null) {
+                        int n = getPartition(key, instances);
+                        String worker = route + HASH + (n + 1);
+                        Lane pending = partitions[n];
+                        if (pending.getDepth() == 0 && idx.remove(worker) != null) {
+                            fifo.remove(worker);
+                            dispatch(worker, event, now);
+                        } else {
+                            // keep the order of the events of the same partition
+                            pending.write(event, now);
+                        }
+                    } else if (buffering) {
                         // Once elastic queue is started, we will continue buffering.
-                        elasticQueue.write(event);
+                        getLane(message.headers().get(EventEmitter.PRIORITY)).write(event, now);
+                        addWorker();
                     } else {
                         // Check if a next worker is available
                         String nextWorker = fifo.peek();
                         if (nextWorker == null) {
                             // Start persistent queue when no workers are available
                             buffering = true;
-                            elasticQueue.write(event);
+                            getLane(message.headers().get(EventEmitter.PRIORITY)).write(event, now);
+                            addWorker();
                         } else {
                             // Deliver event to the next worker
                             nextWorker = fifo.poll();
                             if (nextWorker != null) {
                                 idx.remove(nextWorker);
-                                system.send(nextWorker, event);
+                                dispatch(nextWorker, event, now);
                             }
                         }
                     }
@@ -182,6 +605,80 @@ public class ServiceQueue {
             }
         }
 
+        private void workerReady(String worker) {
+            if (partitions != null) {
+                // events of the partition bound to this worker are served first
+                Lane pending = partitions[getInstance(worker) - 1];
+                if (pending.getDepth() > 0) {
+                    byte[] event = pending.queue.read();
+                    long enqueued = pending.enqueueTimes.poll();
+                    if (pending.getDepth() == 0) {
+                        // a partition has no other lanes to wait for
+                        pending.close();
+                    }
+                    if (event != null) {
+                        dispatch(worker, event, enqueued);
+                        return;
+                    }
+                }
+            }
+            // Just for the safe side, this guarantees that a unique worker is inserted
+            idx.computeIfAbsent(worker, d -> {
+                fifo.offer(worker);
+                return true;
+            });
+            if (buffering) {
+                Lane lane = nextLane();
+                if (lane == null) {
+                    // Close elastic queues when all messages are cleared
+                    buffering = false;
+                    for (Lane each: lanes) {
+                        each.close();
+                    }
+                } else {
+                    byte[] event = lane.queue.read();
+                    long enqueued = lane.enqueueTimes.poll();
+                    if (lane.getDepth() == 0 && !lane.isSpilled()) {
+                        /*
+                         * Reset a lane that has not overflowed to disk so that the next burst is
+                         * buffered in memory first. A lane that has overflowed is closed when all
+                         * lanes are drained because closing it cleans the commit log.
+                         */
+                        lane.close();
+                    }
+                    // Guarantees that there is an available worker
+                    String nextWorker = event == null? null : fifo.poll();
+                    if (nextWorker != null) {
+                        idx.remove(nextWorker);
+                        dispatch(nextWorker, event, enqueued);
+                    }
+                }
+            }
+        }
+
+        private void applyLimit() {
+            // park idle workers above the limit
+            for (String worker: new ArrayList<>(fifo)) {
+                if (isAboveLimit(worker) && fifo.remove(worker)) {
+                    idx.remove(worker);
+                    parked.add(worker);
+                }
+            }
+            // release parked workers within the limit
+            for (String worker: new ArrayList<>(parked)) {
+                if (!isAboveLimit(worker)) {
+                    parked.remove(worker);
+                    workerReady(worker);
+                }
+            }
+            // start more workers to drain the backlog
+            long backlog = buffering? getQueueDepth() : 0;
+            int limit = getConcurrencyLimit();
+            while (backlog-- > 0 && workers.size() < limit) {
+                addWorker();
+            }
+        }
+
         private String getWorker(String input) {
             if (input.startsWith(readyPrefix)) {
                 return input.substring(READY.length()+1);
@@ -192,4 +689,84 @@ public class ServiceQueue {
         }
     }
 
+    /**
+     * Priority lane of buffered events
+     * <p>
+     * This is only used by the service handler except the counters that are read for statistics.
+     */
+    private static class Lane {
+        private final ElasticQueue queue;
+        private final EnqueueTimes enqueueTimes = new EnqueueTimes();
+        private final int weight;
+        private int credit = 0;
+
+        private Lane(String id, int weight) {
+            this.queue = new ElasticQueue(id);
+            this.weight = weight;
+        }
+
+        private void write(byte[] event, long time) {
+            queue.write(event);
+            enqueueTimes.add(time);
+        }
+
+        private long getDepth() {
+            return Math.max(0, queue.getWriteCounter() - queue.getReadCounter());
+        }
+
+        private boolean isSpilled() {
+            return queue.getWriteCounter() > ElasticQueue.MEMORY_BUFFER;
+        }
+
+        private void close() {
+            queue.close();
+            enqueueTimes.clear();
+            credit = 0;
+        }
+    }
+
+    /**
+     * Arrival times of the buffered events in the same order as the elastic queue
+     * <p>
+     * This is only used by the service handler so it does not need synchronization.
+     */
+    private static class EnqueueTimes {
+        private static final int INITIAL_SIZE = 64;
+        private long[] times = new long[INITIAL_SIZE];
+        private int head = 0;
+        private int size = 0;
+
+        private void add(long time) {
+            if (size == times.length) {
+                long[] expanded = new long[times.length * 2];
+                for (int i=0; i < size; i++) {
+                    expanded[i] = times[(head + i) % times.length];
+                }
+                times = expanded;
+                head = 0;
+            }
+            times[(head + size) % times.length] = time;
+            size++;
+        }
+
+        private long poll() {
+            if (size == 0) {
+                // unknown arrival time
+                return System.nanoTime();
+            }
+            long time = times[head];
+            head = (head + 1) % times.length;
+            size--;
+            return time;
+        }
+
+        private void clear() {
+            head = 0;
+            size = 0;
+            if (times.length > INITIAL_SIZE) {
+                times = new long[INITIAL_SIZE];
+            }
+        }
+    }
+
 }
@@ -0,0 +1,386 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core.system;
+
+import org.platformlambda.core.annotations.EventInterceptor;
+import org.platformlambda.core.annotations.ZeroTracing;
+import org.platformlambda.core.models.EventEnvelope;
+import org.platformlambda.core.models.LambdaFunction;
+import org.platformlambda.core.models.StreamInfo;
+import org.platformlambda.core.util.AppConfigReader;
+import org.platformlambda.core.util.ElasticQueue;
+import org.platformlambda.core.util.Utility;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * IMPORTANT: Reserved for internal uses.
+ * <p>
+ * A stream service that hosts all object streams of this application instance.
+ * The logical routes "stream.{id}.in" and "stream.{id}.out" are resolved to this service
+ * so that a new stream does not need its own service queue and worker.
+ * <p>
+ * The streams are sharded by stream ID across a few single-worker routes.
+ * The events of a stream are processed in order by its shard while
+ * different streams are processed in parallel.
+ */
+public class StreamMultiplexer {
+    private static final Logger log = LoggerFactory.getLogger(StreamMultiplexer.class);
+
+    public static final String STREAM_MANAGER = "object.stream.manager";
+    private static final String TYPE = "type";
+    private static final String READ = "read";
+    private static final String CLOSE = "close";
+    private static final String DATA = "data";
+    private static final String END_OF_STREAM = "eof";
+    private static final String CREDITS = "credits";
+    private static final String SEQ = "seq";
+    private static final String STREAM_PREFIX = "stream.";
+    private static final String IN = ".in";
+    private static final String OUT = ".out";
+    private static final String SHARDS = "stream.manager.shards";
+    private static final int MAX_SHARDS = 64;
+    private final ConcurrentMap<String, StreamChannel> channels = new ConcurrentHashMap<>();
+    private final int shards;
+    private volatile boolean started = false;
+    private static final StreamMultiplexer instance = new StreamMultiplexer();
+
+    private StreamMultiplexer() {
+        AppConfigReader config = AppConfigReader.getInstance();
+        int n = Utility.getInstance().str2int(config.getProperty(SHARDS, "4"));
+        shards = Math.max(1, Math.min(MAX_SHARDS, n));
+    }
+
+    public static StreamMultiplexer getInstance() {
+        return instance;
+    }
+
+    /**
+     * Open a logical stream
+     *
+     * @param in input route name of the stream, i.e. "stream.{id}.in"
+     * @param expirySeconds of inactivity
+     * @throws IOException if the stream service cannot be started
+     */
+    public void open(String in, int expirySeconds) throws IOException {
+        if (!started) {
+            start();
+        }
+        channels.put(in, new StreamChannel(in, expirySeconds));
+    }
+
+    private synchronized void start() throws IOException {
+        if (!started) {
+            Platform platform = Platform.getInstance();
+            for (int i=1; i <= shards; i++) {
+                // one worker per shard keeps the events of a stream in order
+                platform.registerPrivate(STREAM_MANAGER + "." + i, new StreamService(), 1);
+            }
+            started = true;
+        }
+    }
+
+    /**
+     * Get the stream service that hosts a stream
+     *
+     * @param route of the input or output of a stream without origin
+     * @return route name of the stream service shard
+     */
+    public String getServiceRoute(String route) {
+        String in = getInputRoute(route);
+        int hash = in == null? 0 : in.hashCode();
+        return STREAM_MANAGER + "." + ((hash & Integer.MAX_VALUE) % shards + 1);
+    }
+
+    public int getShardCount() {
+        return shards;
+    }
+
+    /**
+     * Check if a route is the input or output of an active stream
+     *
+     * @param route name without origin
+     * @return true if the stream is open
+     */
+    public boolean isActive(String route) {
+        if (route.startsWith(STREAM_PREFIX)) {
+            String in = getInputRoute(route);
+            return in != null && channels.containsKey(in);
+        }
+        return false;
+    }
+
+    /**
+     * Get the metadata of all active streams
+     *
+     * @return map of input route name to stream info
+     */
+    public Map<String, StreamInfo> getStreams() {
+        return Collections.unmodifiableMap(channels);
+    }
+
+    public int getStreamCount() {
+        return channels.size();
+    }
+
+    /**
+     * Get the number of data blocks that the stream service has received for a stream
+     *
+     * @param in input route name of the stream
+     * @return number of blocks or -1 if the stream is not open
+     */
+    public long getWrittenBlocks(String in) {
+        StreamChannel channel = channels.get(in);
+        return channel == null? -1 : channel.getWritten();
+    }
+
+    /**
+     * Run a task when the stream service has received a number of data blocks for a stream
+     * <p>
+     * The task runs immediately if the target has been reached or the stream is not open.
+     * It runs in the thread of the stream service otherwise.
+     * Only the last task of a stream is kept.
+     *
+     * @param in input route name of the stream
+     * @param target number of blocks
+     * @param task to run
+     */
+    public void whenWritten(String in, long target, Runnable task) {
+        StreamChannel channel = channels.get(in);
+        if (channel == null || !channel.setDrainTask(target, task)) {
+            task.run();
+        }
+    }
+
+    public void touch(String in) {
+        StreamChannel channel = channels.get(in);
+        if (channel != null) {
+            channel.updated = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Close a stream and release its buffer
+     *
+     * @param in input route name of the stream
+     * @return true if the stream was open
+     */
+    public boolean close(String in) {
+        StreamChannel channel = channels.remove(in);
+        if (channel != null) {
+            channel.close();
+            return true;
+        }
+        return false;
+    }
+
+    private String getInputRoute(String route) {
+        if (route.endsWith(IN)) {
+            return route;
+        }
+        if (route.endsWith(OUT)) {
+            return route.substring(0, route.length() - OUT.length()) + IN;
+        }
+        return null;
+    }
+
+    private void sendReply(String cb, EventEnvelope block, long seq) throws IOException {
+        EventEmitter po = EventEmitter.getInstance();
+        EventEnvelope reply = new EventEnvelope().setHeader(TYPE, block.getHeader(TYPE)).setBody(block.getRawBody());
+        if (seq > 0) {
+            reply.setHeader(SEQ, seq);
+        }
+        if (cb.contains("|")) {
+            int sep = cb.indexOf('|');
+            po.send(reply.setTo(cb.substring(0, sep)).setExtra(cb.substring(sep+1)));
+        } else {
+            po.send(reply.setTo(cb));
+        }
+    }
+
+    private class StreamChannel extends StreamInfo {
+        private final String in;
+        // recent blocks are held in memory and the overflow is spilled to an elastic queue in sequence
+        private final ArrayDeque<EventEnvelope> memory = new ArrayDeque<>();
+        private final ElasticQueue buffer;
+        private int spilled = 0;
+        private final ConcurrentLinkedQueue<String> callbacks = new ConcurrentLinkedQueue<>();
+        // credit-based flow control where blocks are pushed to a reader without individual read requests
+        private int credits = 0;
+        private long pushSeq = 0;
+        private String pushTarget;
+        private boolean eof = false;
+        private boolean closed = false;
+        // a writer waits for the stream service to catch up
+        private long written = 0;
+        private long drainTarget = 0;
+        private Runnable drainTask;
+
+        private StreamChannel(String in, int expirySeconds) {
+            super(expirySeconds);
+            this.in = in;
+            this.buffer = new ElasticQueue(in);
+        }
+
+        private synchronized long getWritten() {
+            return written;
+        }
+
+        private synchronized boolean setDrainTask(long target, Runnable task) {
+            if (closed || written >= target) {
+                return false;
+            }
+            drainTarget = target;
+            drainTask = task;
+            return true;
+        }
+
+        private void runDrainTask() {
+            Runnable task = drainTask;
+            drainTask = null;
+            task.run();
+        }
+
+        private synchronized void write(EventEnvelope block) throws IOException {
+            if (DATA.equals(block.getHeader(TYPE))) {
+                written++;
+                if (drainTask != null && written >= drainTarget) {
+                    runDrainTask();
+                }
+            }
+            if (!closed && !eof) {
+                eof = END_OF_STREAM.equals(block.getHeader(TYPE));
+                if (spilled == 0 && memory.size() < ElasticQueue.MEMORY_BUFFER) {
+                    memory.offer(block);
+                } else {
+                    buffer.write(block.toBytes());
+                    spilled++;
+                }
+                drain();
+            }
+        }
+
+        private synchronized void read(String target, String grant) throws IOException {
+            if (!closed) {
+                if (grant != null) {
+                    pushTarget = target;
+                    credits += Math.max(1, Utility.getInstance().str2int(grant));
+                } else {
+                    callbacks.offer(target);
+                }
+                updated = System.currentTimeMillis();
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            while (!memory.isEmpty() || spilled > 0) {
+                String cb = callbacks.poll();
+                long seq = 0;
+                if (cb == null) {
+                    if (pushTarget == null || credits < 1) {
+                        break;
+                    }
+                    cb = pushTarget;
+                    seq = ++pushSeq;
+                    credits--;
+                    updated = System.currentTimeMillis();
+                }
+                sendReply(cb, nextBlock(), seq);
+            }
+        }
+
+        private EventEnvelope nextBlock() throws IOException {
+            EventEnvelope block = memory.poll();
+            if (block != null) {
+                return block;
+            }
+            byte[] b = buffer.read();
+            if (b == null) {
+                spilled = 0;
+                throw new IOException("Missing block in "+in);
+            }
+            if (--spilled == 0) {
+                // reset the elastic queue when it has been drained
+                buffer.close();
+            }
+            return new EventEnvelope(b);
+        }
+
+        private synchronized void close() {
+            if (!closed) {
+                closed = true;
+                callbacks.clear();
+                memory.clear();
+                buffer.close();
+                if (drainTask != null) {
+                    runDrainTask();
+                }
+            }
+        }
+    }
+
+    @EventInterceptor
+    @ZeroTracing
+    private class StreamService implements LambdaFunction {
+
+        @Override
+        public Object handleEvent(Map<String, String> headers, Object input, int instance) throws Exception {
+            EventEnvelope event = (EventEnvelope) input;
+            String to = event.getTo();
+            String route = to == null? "" : (to.contains("@")? to.substring(0, to.indexOf('@')) : to);
+            String in = getInputRoute(route);
+            StreamChannel channel = in == null? null : channels.get(in);
+            String type = event.getHeader(TYPE);
+            String cb = event.getReplyTo();
+            String extra = event.getExtra();
+            if (CLOSE.equals(type)) {
+                if (channel != null) {
+                    StreamMultiplexer.this.close(in);
+                }
+                if (cb != null) {
+                    EventEmitter po = EventEmitter.getInstance();
+                    if (extra != null) {
+                        EventEnvelope eventExtra = new EventEnvelope();
+                        eventExtra.setTo(cb).setExtra(extra).setBody(true);
+                        po.send(eventExtra);
+                    } else {
+                        po.send(cb, true);
+                    }
+                }
+            } else if (channel == null) {
+                log.debug("Event to {} ignored because the stream is closed", route);
+            } else if (READ.equals(type) && cb != null && route.endsWith(IN)) {
+                channel.read(extra != null? cb + "|" + extra : cb, event.getHeader(CREDITS));
+            } else if ((DATA.equals(type) || END_OF_STREAM.equals(type)) && route.endsWith(OUT)) {
+                channel.write(event);
+            }
+            return null;
+        }
+    }
+
+}
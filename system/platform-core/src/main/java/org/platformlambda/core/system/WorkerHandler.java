@@ -32,6 +32,7 @@ import java.util.concurrent.TimeoutException;
 public class WorkerHandler {
     private static final Logger log = LoggerFactory.getLogger(WorkerHandler.class);
     private static final Utility util = Utility.getInstance();
+    private static final RouteProfiler profiler = RouteProfiler.getInstance();
     private static final String TYPE = "type";
     private static final String ID = "id";
     private static final String PATH = "path";
@@ -39,6 +40,7 @@ public class WorkerHandler {
     private static final String FROM = "from";
     private static final String UNKNOWN = "unknown";
     private static final String EXEC_TIME = "exec_time";
+    private static final String QUEUE_TIME = "queue_time";
     private static final String TIME = "time";
     private static final String APP = "app";
     private static final String PONG = "pong";
@@ -63,6 +65,7 @@ public class WorkerHandler {
     private static final String MY_ROUTE = "my_route";
     private static final String MY_TRACE_ID = "my_trace_id";
     private static final String MY_TRACE_PATH = "my_trace_path";
+    private static final String MY_DEADLINE = "my_deadline";
     private static final String READY = "ready:";
     private static final String HASH = "#";
     private final boolean tracing;
@@ -86,11 +89,39 @@ public class WorkerHandler {
         this.myOrigin = Platform.getInstance().getOrigin();
     }
 
-    public void executeFunction(EventEnvelope event) {
+    private void recordMetrics(ProcessStatus ps) {
+        ServiceQueue manager = def.getManager();
+        if (manager != null) {
+            manager.getMetrics().record(ps);
+        }
+    }
+
+    /**
+     * Execute the function for an event
+     *
+     * @param event to be processed
+     * @param queueTime in microseconds that the event has waited for this worker or -1 if unknown
+     */
+    public void executeFunction(EventEnvelope event, long queueTime) {
+        if (queueTime >= 0) {
+            ServiceQueue manager = def.getManager();
+            if (manager != null) {
+                manager.recordQueueWait(queueTime);
+            }
+        }
         String rpc = event.getTag(EventEmitter.RPC);
         EventEmitter po = EventEmitter.getInstance();
         String ref = tracing? po.startTracing(parentRoute, event.getTraceId(), event.getTracePath(), instance) : "?";
-        ProcessStatus ps = processEvent(event);
+        boolean profiled = profiler.enter(def.getRoute());
+        ProcessStatus ps;
+        try {
+            ps = processEvent(event);
+        } finally {
+            if (profiled) {
+                profiler.leave();
+            }
+        }
+        recordMetrics(ps);
         TraceInfo trace = po.stopTracing(ref);
         if (tracing && trace != null && trace.id != null && trace.path != null) {
             try {
@@ -113,6 +144,9 @@ public class WorkerHandler {
                     metrics.put(SUCCESS, ps.isSuccess());
                     metrics.put(FROM, event.getFrom() == null ? UNKNOWN : event.getFrom());
                     metrics.put(EXEC_TIME, ps.getExecutionTime());
+                    if (queueTime >= 0) {
+                        metrics.put(QUEUE_TIME, queueTime / 1000f);
+                    }
                     if (!ps.isSuccess()) {
                         metrics.put(STATUS, ps.getStatus());
                         metrics.put(EXCEPTION, ps.getException());
@@ -200,6 +234,10 @@ public class WorkerHandler {
             if (event.getTracePath() != null) {
                 parameters.put(MY_TRACE_PATH, event.getTracePath());
             }
+            String deadline = event.getTag(EventEmitter.DEADLINE);
+            if (deadline != null) {
+                parameters.put(MY_DEADLINE, deadline);
+            }
             Object result = ping? null : f.handleEvent(parameters, inputBody, instance);
             float delta = ping? 0 : (float) (System.nanoTime() - begin) / EventEmitter.ONE_MILLISECOND;
             // adjust precision to 3 decimal points
@@ -252,7 +290,8 @@ public class WorkerHandler {
                         }
                         for (Map.Entry<String, String> kv: headers.entrySet()) {
                             String k = kv.getKey();
-                            if (!MY_ROUTE.equals(k) && !MY_TRACE_ID.equals(k) && !MY_TRACE_PATH.equals(k)) {
+                            if (!MY_ROUTE.equals(k) && !MY_TRACE_ID.equals(k) && !MY_TRACE_PATH.equals(k)
+                                    && !MY_DEADLINE.equals(k)) {
                                 response.setHeader(k, kv.getValue());
                             }
                         }
@@ -0,0 +1,67 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Build-time generator of the class index for SimpleClassScanner
+ * <p>
+ * Run it after compilation with the application classpath so that the index covers the application
+ * and its libraries. e.g. using the exec-maven-plugin in the "process-classes" phase.
+ * <p>
+ * Usage: ClassIndexGenerator [output folder, default "target/classes"]
+ * <p>
+ * The index is used at runtime when the application sets "class.scan.index=true".
+ */
+public class ClassIndexGenerator {
+    private static final Logger log = LoggerFactory.getLogger(ClassIndexGenerator.class);
+
+    private static final String DEFAULT_FOLDER = "target/classes";
+
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args.length > 0? args[0] : DEFAULT_FOLDER);
+        File file = new File(dir, SimpleClassScanner.CLASS_INDEX);
+        int n = write(SimpleClassScanner.getInstance().createIndex(), file);
+        log.info("Class index of {} annotations saved to {}", n, file);
+    }
+
+    private static int write(Map<String, List<String>> index, File file) throws IOException {
+        File parent = file.getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("# Generated by ClassIndexGenerator - DO NOT EDIT\n");
+        for (Map.Entry<String, List<String>> kv: index.entrySet()) {
+            sb.append(kv.getKey()).append('=').append(String.join(",", kv.getValue())).append('\n');
+        }
+        Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+        return index.size() - 1;
+    }
+
+}
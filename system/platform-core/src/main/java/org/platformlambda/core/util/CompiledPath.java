@@ -0,0 +1,176 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core.util;
+
+import java.util.List;
+
+/**
+ * Composite path in dot-bracket format that is parsed once for repeated use with MultiLevelMap
+ * <p>
+ * e.g. "some.key", "some.array[3]", "hello.world[2][10][1]"
+ * <p>
+ * The most recently used paths are kept so that lookups using the same path string are not parsed again.
+ */
+public class CompiledPath {
+    private static final int MAX_CACHED_PATHS = 10000;
+    private static final LruCache<String, CompiledPath> compiledPaths = new LruCache<>(MAX_CACHED_PATHS);
+
+    final String path;
+    final boolean composite;
+    final String[] keys;
+    // list indexes of a segment or null if the segment is a map key
+    final int[][] indexes;
+    // false if a list element segment has an invalid first index
+    final boolean[] valid;
+    // the reconstructed composite up to each segment with and without its indexes
+    final String[] elementPrefixes;
+    final String[] segmentPrefixes;
+    private final String syntaxError;
+
+    private CompiledPath(String path) {
+        Utility util = Utility.getInstance();
+        this.path = path;
+        this.composite = path.contains(".") || path.contains("/") || path.contains("[") || path.contains("]");
+        List<String> segments = util.split(path, "./");
+        int len = segments.size();
+        this.keys = new String[len];
+        this.indexes = new int[len][];
+        this.valid = new boolean[len];
+        this.elementPrefixes = new String[len];
+        this.segmentPrefixes = new String[len];
+        StringBuilder composite = new StringBuilder();
+        for (int i=0; i < len; i++) {
+            String p = segments.get(i);
+            valid[i] = true;
+            if (p.contains("[") && p.endsWith("]") && !p.startsWith("[")) {
+                int start = p.indexOf('[');
+                int end = p.indexOf(']', start);
+                String index = p.substring(start+1, end).trim();
+                valid[i] = !index.isEmpty() && util.isDigits(index);
+                keys[i] = p.substring(0, start);
+                List<String> parts = util.split(p.substring(start), "[]");
+                indexes[i] = new int[parts.size()];
+                for (int j=0; j < parts.size(); j++) {
+                    indexes[i][j] = util.str2int(parts.get(j));
+                }
+            } else {
+                keys[i] = p;
+            }
+            elementPrefixes[i] = composite + keys[i];
+            segmentPrefixes[i] = composite + p;
+            composite.append(p).append('.');
+        }
+        this.syntaxError = checkSyntax(segments);
+    }
+
+    /**
+     * Parse a composite path
+     *
+     * @param path in dot-bracket format
+     * @return compiled path
+     */
+    public static CompiledPath compile(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Missing composite path");
+        }
+        CompiledPath compiled = compiledPaths.get(path);
+        if (compiled == null) {
+            compiled = new CompiledPath(path);
+            compiledPaths.put(path, compiled);
+        }
+        return compiled;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Number of segments in the path
+     *
+     * @return segment count
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Check if the composite path is in proper dot-bracket syntax
+     *
+     * @throws IllegalArgumentException if invalid format
+     */
+    public void validate() {
+        if (syntaxError != null) {
+            throw new IllegalArgumentException(syntaxError);
+        }
+    }
+
+    static String checkSyntax(List<String> segments) {
+        if (segments.isEmpty()) {
+            return "Missing composite path";
+        }
+        for (String s: segments) {
+            if (s.contains("[") || s.contains("]")) {
+                if (!s.contains("[")) {
+                    return "Invalid composite path - missing start bracket";
+                }
+                if (!s.endsWith("]")) {
+                    return "Invalid composite path - missing end bracket";
+                }
+                // check start-end pair
+                int sep1 = s.indexOf('[');
+                int sep2 = s.indexOf(']');
+                if (sep2 < sep1) {
+                    return "Invalid composite path - missing start bracket";
+                }
+                boolean start = false;
+                for (char c: s.substring(sep1).toCharArray()) {
+                    if (c == '[') {
+                        if (start) {
+                            return "Invalid composite path - missing end bracket";
+                        } else {
+                            start = true;
+                        }
+                    } else if (c == ']') {
+                        if (!start) {
+                            return "Invalid composite path - duplicated end bracket";
+                        } else {
+                            start = false;
+                        }
+                    } else {
+                        if (start) {
+                            if (c < '0' || c > '9') {
+                                return "Invalid composite path - indexes must be digits";
+                            }
+                        } else {
+                            return "Invalid composite path - invalid indexes";
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+
+}
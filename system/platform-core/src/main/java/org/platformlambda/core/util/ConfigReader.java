@@ -30,6 +30,7 @@ import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ConfigReader implements ConfigBase {
     private static final Logger log = LoggerFactory.getLogger(ConfigReader.class);
@@ -41,10 +42,16 @@ public class ConfigReader implements ConfigBase {
     private static final String YML = ".yml";
     private static final String YAML = ".yaml";
     private static final String DOT_PROPERTIES = ".properties";
+    private static final int MAX_CACHED_VALUES = 5000;
+    private static final Object NOT_FOUND = new Object();
+    // incremented when a config reader is loaded or its underlying map is retrieved
+    private static final AtomicLong generation = new AtomicLong(0);
 
     private static AppConfigReader baseConfig;
     private MultiLevelMap config = new MultiLevelMap();
     private final Map<String, Object> cachedFlatMap = new HashMap<>();
+    private final LruCache<String, Object> cachedElements = new LruCache<>(MAX_CACHED_VALUES);
+    private volatile long cachedGeneration = -1;
 
     /**
      * Set the base configuration reader (AppConfigReader)
@@ -101,10 +108,27 @@ public class ConfigReader implements ConfigBase {
         if (systemProperty != null) {
             return systemProperty;
         }
-        Object value = config.getElement(key);
-        if (value == null) {
-            value = defaultValue;
+        return resolve(key, getElement(key), defaultValue, loop);
+    }
+
+    private Object getElement(String key) {
+        // raw values are cached so that a placeholder is substituted with the current value of its reference
+        long current = generation.get();
+        if (cachedGeneration != current) {
+            cachedElements.clear();
+            cachedGeneration = current;
         }
+        Object cached = cachedElements.get(key);
+        if (cached != null) {
+            return cached == NOT_FOUND? null : cached;
+        }
+        Object value = config.getElement(key);
+        cachedElements.put(key, value == null? NOT_FOUND : value);
+        return value;
+    }
+
+    private Object resolve(String key, Object element, Object defaultValue, String... loop) {
+        Object value = element == null? defaultValue : element;
         if (value instanceof String) {
             String result = (String) value;
             int bracketStart = result.indexOf("${");
@@ -184,6 +208,8 @@ public class ConfigReader implements ConfigBase {
      */
     @Override
     public Map<String, Object> getMap() {
+        // the caller may update the map
+        generation.incrementAndGet();
         return config.getMap();
     }
 
@@ -278,20 +304,21 @@ public class ConfigReader implements ConfigBase {
                 String data = util.getUTF(util.stream2bytes(in, false));
                 Map<String, Object> m = yaml.load(data.contains("\t")? data.replace("\t", "  ") : data);
                 enforceKeysAsText(m);
-                config = new MultiLevelMap(normalizeMap(m));
+                setConfig(new MultiLevelMap(normalizeMap(m)));
             } else if (path.endsWith(JSON)) {
                 Map<String, Object> m = SimpleMapper.getInstance().getMapper().readValue(in, Map.class);
                 enforceKeysAsText(m);
-                config = new MultiLevelMap(normalizeMap(m));
+                setConfig(new MultiLevelMap(normalizeMap(m)));
             } else if (path.endsWith(DOT_PROPERTIES)) {
-                config = new MultiLevelMap();
+                MultiLevelMap multiMap = new MultiLevelMap();
                 Properties p = new Properties();
                 p.load(in);
                 Map<String, Object> map = new HashMap<>();
                 p.forEach((k,v) -> map.put(String.valueOf(k), v));
                 List<String> keys = new ArrayList<>(map.keySet());
                 Collections.sort(keys);
-                keys.forEach(k -> config.setElement(k, map.get(k)));
+                keys.forEach(k -> multiMap.setElement(k, map.get(k)));
+                setConfig(multiMap);
             }
         } finally {
             try {
@@ -309,7 +336,13 @@ public class ConfigReader implements ConfigBase {
      */
     public void load(Map<String, Object> map) {
         enforceKeysAsText(map);
-        config = new MultiLevelMap(normalizeMap(map));
+        setConfig(new MultiLevelMap(normalizeMap(map)));
+    }
+
+    private void setConfig(MultiLevelMap config) {
+        this.config = config;
+        cachedFlatMap.clear();
+        generation.incrementAndGet();
     }
 
     private Map<String, Object> normalizeMap(Map<String, Object> map) {
@@ -180,8 +180,9 @@ public class ElasticQueue implements AutoCloseable {
     @Override
     public void close() {
         if (!isClosed()) {
-            if (dbEnv != null && !dbEnv.isClosed()) {
-                if (readCounter < writeCounter && writeCounter > MEMORY_BUFFER) {
+            // the commit log is used only when the queue has overflowed the memory buffer
+            if (dbEnv != null && !dbEnv.isClosed() && writeCounter > MEMORY_BUFFER) {
+                if (readCounter < writeCounter) {
                     try {
                         EventEmitter.getInstance().send(CLEAN_UP_TASK, id + SLASH + currentVersion);
                     } catch (IOException e) {
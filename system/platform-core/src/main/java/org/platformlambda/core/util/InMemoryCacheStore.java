@@ -0,0 +1,79 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core.util;
+
+import org.platformlambda.core.models.RemoteCacheStore;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory implementation of the remote tier of a near-cache
+ * <p>
+ * It is intended for unit tests and standalone deployment.
+ * Please use a separate instance for each near-cache.
+ */
+public class InMemoryCacheStore implements RemoteCacheStore {
+
+    private final ConcurrentMap<String, byte[]> store = new ConcurrentHashMap<>();
+
+    @Override
+    public byte[] get(String key) {
+        return store.get(key);
+    }
+
+    @Override
+    public boolean compareAndSet(String key, byte[] expected, byte[] update) {
+        if (expected == null) {
+            return store.putIfAbsent(key, update) == null;
+        }
+        boolean[] updated = new boolean[1];
+        store.computeIfPresent(key, (k, current) -> {
+            if (Arrays.equals(current, expected)) {
+                updated[0] = true;
+                return update;
+            }
+            return current;
+        });
+        return updated[0];
+    }
+
+    @Override
+    public boolean remove(String key, byte[] expected) {
+        boolean[] removed = new boolean[1];
+        store.computeIfPresent(key, (k, current) -> {
+            if (Arrays.equals(current, expected)) {
+                removed[0] = true;
+                return null;
+            }
+            return current;
+        });
+        return removed[0];
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    public void clear() {
+        store.clear();
+    }
+
+}
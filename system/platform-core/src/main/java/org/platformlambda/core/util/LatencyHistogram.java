@@ -0,0 +1,159 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies in microseconds
+ * <p>
+ * Values are counted in log-linear buckets. Each power of 2 is divided into 8 buckets
+ * so that a value is reported with a precision of about 12.5 percent, similar to HdrHistogram
+ * with one significant digit. Recording a value is a few atomic increments without allocation.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // up to 2^36 microseconds (about 19 hours)
+    private static final int MAX_EXPONENT = 36;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram() {
+        // empty histogram
+    }
+
+    private LatencyHistogram(LatencyHistogram source) {
+        for (int i=0; i < BUCKETS; i++) {
+            counts.set(i, source.counts.get(i));
+        }
+        sum.add(source.sum.sum());
+        max.set(source.max.get());
+    }
+
+    /**
+     * Copy the current values so that the count, buckets and percentiles of a report
+     * are computed from the same values while new values are being recorded
+     *
+     * @return copy of the histogram
+     */
+    public LatencyHistogram getSnapshot() {
+        return new LatencyHistogram(this);
+    }
+
+    /**
+     * Record a value
+     *
+     * @param micros latency in microseconds
+     */
+    public void record(long micros) {
+        long value = Math.max(0, micros);
+        counts.incrementAndGet(getIndex(value));
+        sum.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i=0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Sum of the recorded values
+     *
+     * @return total microseconds
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Number of values that are less than or equal to a limit
+     * <p>
+     * A bucket is counted when its upper bound does not exceed the limit
+     * so the result is accurate to the precision of the buckets.
+     *
+     * @param micros limit
+     * @return count
+     */
+    public long getCountAtOrBelow(long micros) {
+        long total = 0;
+        for (int i=0; i < BUCKETS && getLowerBound(i + 1) - 1 <= micros; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Estimate a percentile
+     *
+     * @param percentile between 0 and 100
+     * @return highest value in the bucket of the percentile or 0 if there is no value
+     */
+    public long getPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0));
+        long running = 0;
+        for (int i=0; i < BUCKETS; i++) {
+            running += counts.get(i);
+            if (running >= target) {
+                return Math.min(getLowerBound(i + 1) - 1, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    private static int getIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (value >> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long getLowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long sub = index % SUB_BUCKETS;
+        return (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+    }
+
+}
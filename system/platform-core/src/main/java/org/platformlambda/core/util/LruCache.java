@@ -0,0 +1,101 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * IMPORTANT: Reserved for internal uses.
+ * e.g. CompiledPath and ConfigReader
+ * <p>
+ * LruCache is a size bounded map that evicts the least recently used entry.
+ * It has no expiry and does not depend on the platform so that it can be used
+ * before the platform is started.
+ * <p>
+ * Lookups read a ConcurrentHashMap without waiting. The access order is kept in a linked list
+ * that is guarded by a lock. A lookup skips the update of the access order when the lock is busy,
+ * so the order is approximate under contention.
+ * <b>
+ * Please use the ManagedCache for regular caching use cases
+ */
+public class LruCache<K, V> {
+    private final int maxItems;
+    private final ConcurrentHashMap<K, V> map = new ConcurrentHashMap<>();
+    // access order is guarded by the lock
+    private final LinkedHashMap<K, Boolean> order = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Create a cache with a size limit
+     *
+     * @param maxItems maximum number of entries
+     */
+    public LruCache(int maxItems) {
+        this.maxItems = Math.max(1, maxItems);
+    }
+
+    public V get(K key) {
+        V value = map.get(key);
+        if (value != null && lock.tryLock()) {
+            try {
+                order.get(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return value;
+    }
+
+    public void put(K key, V value) {
+        lock.lock();
+        try {
+            map.put(key, value);
+            order.put(key, true);
+            if (order.size() > maxItems) {
+                Iterator<K> eldest = order.keySet().iterator();
+                map.remove(eldest.next());
+                eldest.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            map.clear();
+            order.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+}
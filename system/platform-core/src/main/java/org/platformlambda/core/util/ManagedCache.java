@@ -18,18 +18,38 @@
 
 package org.platformlambda.core.util;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import org.platformlambda.core.system.Platform;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+/**
+ * Bounded in-memory cache with expiry
+ * <p>
+ * Reads are lock-free. Accesses are recorded in lossy striped buffers and writes in a queue.
+ * The buffers are replayed against the eviction policy under a lock that is only tried and never waited for.
+ * <p>
+ * The eviction policy is W-TinyLFU. A new entry enters a small LRU window. When it leaves the window,
+ * it is admitted to the main segmented LRU only if its estimated access frequency is higher than
+ * that of the entry that would be evicted. This keeps frequently used entries when a burst of
+ * one-off keys passes through the cache.
+ */
 public class ManagedCache {
     private static final Logger log = LoggerFactory.getLogger(ManagedCache.class);
 
@@ -39,19 +59,53 @@ public class ManagedCache {
     private static final AtomicInteger INIT_COUNTER = new AtomicInteger(0);
     private static final AtomicBoolean NOT_RUNNING = new AtomicBoolean(true);
     private static final long HOUSEKEEPING_INTERVAL = 10 * 60 * 1000L; // 10 minutes
+    private static final long ONE_SECOND = 1000L;
+    private static final int READ_BUFFER_STRIPES = 4;
+    private static final int READ_BUFFER_SIZE = 64;
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
     private final String name;
     private final long expiry;
     private final long maxItems;
-    private final Cache<String, Object> cache;
-    private long lastWrite = 0;
-    private long lastRead = 0;
+    private final boolean expireAfterAccess;
+    private final ConcurrentHashMap<String, Node> data = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Node> writeBuffer = new ConcurrentLinkedQueue<>();
+    private final ReadBuffer[] readBuffers = new ReadBuffer[READ_BUFFER_STRIPES];
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    // eviction policy guarded by the eviction lock
+    private final AccessQueue window = new AccessQueue();
+    private final AccessQueue probation = new AccessQueue();
+    private final AccessQueue protectedQueue = new AccessQueue();
+    private final FrequencySketch sketch;
+    private final long windowMax;
+    private final long protectedMax;
+    // statistics
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private volatile long refreshAhead = 0;
+    // updated at most once per second to avoid contention
+    private volatile long lastWrite = 0;
+    private volatile long lastRead = 0;
     private long lastReset = System.currentTimeMillis();
 
-    private ManagedCache(Cache<String, Object> cache, String name, long expiryMs, long maxItems) {
-        this.cache = cache;
+    private ManagedCache(String name, long expiryMs, long maxItems, boolean expireAfterAccess) {
         this.name = name;
         this.expiry = expiryMs;
         this.maxItems = maxItems;
+        this.expireAfterAccess = expireAfterAccess;
+        // the LRU window takes 1% of the capacity and the protected segment takes 80% of the rest
+        this.windowMax = Math.max(1, maxItems / 100);
+        this.protectedMax = (long) ((maxItems - windowMax) * 0.8);
+        this.sketch = new FrequencySketch(maxItems);
+        for (int i = 0; i < READ_BUFFER_STRIPES; i++) {
+            readBuffers[i] = new ReadBuffer();
+        }
         if (INIT_COUNTER.incrementAndGet() == 1) {
             Platform.getInstance().getVertx().setPeriodic(HOUSEKEEPING_INTERVAL, t -> removeExpiredCache());
             log.info("Housekeeper started");
@@ -80,18 +134,33 @@ public class ManagedCache {
      * @param maxItems maximum number of cached objects
      * @return cache instance
      */
-    public static synchronized ManagedCache createCache(String name, long expiryMs, long maxItems) {
+    public static ManagedCache createCache(String name, long expiryMs, long maxItems) {
+        return createCache(name, expiryMs, maxItems, false);
+    }
+
+    /**
+     * Obtain a ManagedCache instance
+     *
+     * @param name of cache store
+     * @param expiryMs in milliseconds
+     * @param maxItems maximum number of cached objects
+     * @param expireAfterAccess true to expire an item when it has not been read or written for the expiry period.
+     *                          Otherwise, an item expires after the expiry period since it was written.
+     * @return cache instance
+     */
+    public static synchronized ManagedCache createCache(String name, long expiryMs, long maxItems,
+                                                        boolean expireAfterAccess) {
         ManagedCache managedCache = getInstance(name);
         if (managedCache != null) {
             return managedCache;
         }
         long expiryTimer = Math.max(expiryMs, MIN_EXPIRY);
-        Cache<String, Object> cache = CacheBuilder.newBuilder().maximumSize(maxItems).expireAfterWrite(expiryTimer, TimeUnit.MILLISECONDS).build();
         // create cache
-        managedCache = new ManagedCache(cache, name, expiryTimer, maxItems);
+        managedCache = new ManagedCache(name, expiryTimer, Math.max(1, maxItems), expireAfterAccess);
         COLLECTION.put(name, managedCache);
         String timer = Utility.getInstance().elapsedTime(expiryTimer);
-        log.info("Created cache ({}), expiry {}, maxItems={}", name, timer, maxItems);
+        log.info("Created cache ({}), expiry {}{}, maxItems={}", name, timer,
+                expireAfterAccess? " after access" : "", maxItems);
         return managedCache;
     }
 
@@ -103,6 +172,19 @@ public class ManagedCache {
         return COLLECTION;
     }
 
+    /**
+     * Statistics of all caches
+     *
+     * @return map of cache name to statistics
+     */
+    public static Map<String, Object> getCacheStats() {
+        Map<String, Object> result = new TreeMap<>();
+        for (ManagedCache c: COLLECTION.values()) {
+            result.put(c.getName(), c.getStats());
+        }
+        return result;
+    }
+
     public String getName() {
         return name;
     }
@@ -115,10 +197,51 @@ public class ManagedCache {
         return maxItems;
     }
 
+    public boolean isExpireAfterAccess() {
+        return expireAfterAccess;
+    }
+
+    public long getRefreshAhead() {
+        return refreshAhead;
+    }
+
+    /**
+     * Reload an item in the background when it is read by "get(key, loader)" within
+     * the given period before its expiry. The current value is returned while the item is reloaded.
+     *
+     * @param refreshAheadMs period before expiry in milliseconds. Zero to disable.
+     * @return this
+     */
+    public ManagedCache setRefreshAhead(long refreshAheadMs) {
+        this.refreshAhead = Math.max(0, Math.min(refreshAheadMs, expiry));
+        return this;
+    }
+
     public void put(String key, Object value) {
-        if (key != null && key.length() > 0) {
-            lastWrite = System.currentTimeMillis();
-            cache.put(key, value);
+        if (key != null && !key.isEmpty()) {
+            if (value == null) {
+                remove(key);
+                return;
+            }
+            long now = System.currentTimeMillis();
+            touchWrite(now);
+            Node[] added = new Node[1];
+            data.compute(key, (k, existing) -> {
+                if (existing == null) {
+                    added[0] = new Node(k, value, now);
+                    return added[0];
+                }
+                existing.value = value;
+                existing.writeTime = now;
+                existing.accessTime = now;
+                return existing;
+            });
+            if (added[0] != null) {
+                writeBuffer.offer(added[0]);
+                maintenance();
+            } else {
+                afterRead(data.get(key));
+            }
         }
     }
 
@@ -127,38 +250,236 @@ public class ManagedCache {
     }
 
     public Object get(String key) {
-        if (key != null && key.length() > 0) {
-            lastRead = System.currentTimeMillis();
-            return cache.getIfPresent(key);
+        if (key != null && !key.isEmpty()) {
+            long now = System.currentTimeMillis();
+            Node node = getNode(key, now);
+            if (node == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return node.value;
         } else {
             return null;
         }
     }
 
+    /**
+     * Get an item or load it if it is not found
+     * <p>
+     * Only one loader runs for the same key at a time. Concurrent callers of the same key
+     * wait for the result of the running loader.
+     * <p>
+     * If refresh-ahead is enabled, an item that is close to its expiry is reloaded in the background.
+     *
+     * @param key of the item
+     * @param loader to return the value of a key. A null value is not cached.
+     * @return value or null
+     */
+    public Object get(String key, Function<String, Object> loader) {
+        if (key == null || key.isEmpty()) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        Node node = getNode(key, now);
+        if (node != null) {
+            hits.increment();
+            Object value = node.value;
+            long ahead = refreshAhead;
+            if (ahead > 0 && now - (expireAfterAccess? node.accessTime : node.writeTime) > expiry - ahead) {
+                refresh(key, loader);
+            }
+            return value;
+        }
+        misses.increment();
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> running = loading.putIfAbsent(key, future);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            // the item may have been loaded while this caller was looking it up
+            Node loaded = getNode(key, System.currentTimeMillis());
+            Object value = loaded != null? loaded.value : load(key, loader);
+            future.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    private void refresh(String key, Function<String, Object> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        if (loading.putIfAbsent(key, future) == null) {
+            Platform.getInstance().getEventExecutor().submit(() -> {
+                try {
+                    future.complete(load(key, loader));
+                } catch (RuntimeException e) {
+                    log.warn("Unable to refresh {} in cache ({}) - {}", key, name, e.getMessage());
+                    future.complete(null);
+                } finally {
+                    loading.remove(key, future);
+                }
+            });
+        }
+    }
+
+    private Object load(String key, Function<String, Object> loader) {
+        long begin = System.nanoTime();
+        try {
+            Object value = loader.apply(key);
+            if (value != null) {
+                put(key, value);
+            }
+            loads.increment();
+            return value;
+        } catch (RuntimeException e) {
+            loadFailures.increment();
+            throw e;
+        } finally {
+            loadNanos.add(System.nanoTime() - begin);
+        }
+    }
+
+    /**
+     * Get an item without updating statistics or access order
+     *
+     * @param key of the item
+     * @return value or null
+     */
+    Object peek(String key) {
+        Node node = data.get(key);
+        return node == null || isExpired(node, System.currentTimeMillis())? null : node.value;
+    }
+
+    private Node getNode(String key, long now) {
+        Node node = data.get(key);
+        if (node == null) {
+            return null;
+        }
+        if (isExpired(node, now)) {
+            if (data.remove(key, node)) {
+                node.alive = false;
+                writeBuffer.offer(node);
+                maintenance();
+            }
+            return null;
+        }
+        if (expireAfterAccess) {
+            node.accessTime = now;
+        }
+        if (now - lastRead > ONE_SECOND) {
+            lastRead = now;
+        }
+        afterRead(node);
+        return node;
+    }
+
+    private boolean isExpired(Node node, long now) {
+        return now - (expireAfterAccess? node.accessTime : node.writeTime) > expiry;
+    }
+
+    private void afterRead(Node node) {
+        if (node != null) {
+            ReadBuffer buffer = readBuffers[(int) Thread.currentThread().getId() & (READ_BUFFER_STRIPES - 1)];
+            if (buffer.offer(node) >= READ_BUFFER_SIZE / 2) {
+                maintenance();
+            }
+        }
+    }
+
     public void remove(String key) {
-        if (key != null && key.length() > 0) {
-            lastWrite = System.currentTimeMillis();
-            cache.invalidate(key);
+        if (key != null && !key.isEmpty()) {
+            touchWrite(System.currentTimeMillis());
+            Node node = data.remove(key);
+            if (node != null) {
+                node.alive = false;
+                writeBuffer.offer(node);
+                maintenance();
+            }
+        }
+    }
+
+    private void touchWrite(long now) {
+        if (now - lastWrite > ONE_SECOND) {
+            lastWrite = now;
         }
     }
 
     public void clear() {
         lastReset = System.currentTimeMillis();
-        cache.invalidateAll();
-        cache.cleanUp();
+        for (String key: data.keySet()) {
+            remove(key);
+        }
+        cleanUp();
     }
 
     public void cleanUp() {
         log.debug("Cleaning up {}", this.getName());
-        cache.cleanUp();
+        long now = System.currentTimeMillis();
+        for (Node node: data.values()) {
+            if (isExpired(node, now) && data.remove(node.key, node)) {
+                node.alive = false;
+                writeBuffer.offer(node);
+            }
+        }
+        evictionLock.lock();
+        try {
+            drainBuffers();
+        } finally {
+            evictionLock.unlock();
+        }
     }
 
     public long size() {
-        return cache.size();
+        return data.size();
     }
 
+    /**
+     * Get a snapshot of the cached items
+     *
+     * @return map of key-values
+     */
     public ConcurrentMap<String, Object> getMap() {
-        return cache.asMap();
+        long now = System.currentTimeMillis();
+        ConcurrentMap<String, Object> result = new ConcurrentHashMap<>();
+        for (Node node: data.values()) {
+            if (!isExpired(node, now)) {
+                result.put(node.key, node.value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Statistics of this cache
+     *
+     * @return size, hit ratio, evictions and loader metrics
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long loadCount = loads.sum() + loadFailures.sum();
+        Map<String, Object> result = new HashMap<>();
+        result.put("size", size());
+        result.put("max_items", maxItems);
+        result.put("hits", hitCount);
+        result.put("misses", missCount);
+        long total = hitCount + missCount;
+        result.put("hit_ratio", total == 0? 0.0 : Math.round(hitCount * 10000.0 / total) / 10000.0);
+        result.put("evictions", evictions.sum());
+        result.put("loads", loads.sum());
+        result.put("load_failures", loadFailures.sum());
+        result.put("average_load_ms", loadCount == 0? 0.0 :
+                        Math.round(loadNanos.sum() / 1000.0 / loadCount) / 1000.0);
+        return result;
     }
 
     public long getLastRead() {
@@ -173,6 +494,117 @@ public class ManagedCache {
         return lastReset;
     }
 
+    private void maintenance() {
+        // the buffers are drained by any caller that obtains the lock so no caller waits
+        while (evictionLock.tryLock()) {
+            try {
+                drainBuffers();
+            } finally {
+                evictionLock.unlock();
+            }
+            if (writeBuffer.isEmpty()) {
+                break;
+            }
+        }
+    }
+
+    private void drainBuffers() {
+        Node node;
+        while ((node = writeBuffer.poll()) != null) {
+            if (node.alive) {
+                if (node.queue < 0) {
+                    onAdd(node);
+                }
+            } else {
+                onRemove(node);
+            }
+        }
+        for (ReadBuffer buffer: readBuffers) {
+            buffer.drain(this::onAccess);
+        }
+        evictEntries();
+    }
+
+    private void onAdd(Node node) {
+        sketch.increment(node.hash);
+        node.queue = WINDOW;
+        window.addLast(node);
+    }
+
+    private void onRemove(Node node) {
+        if (node.queue >= 0) {
+            getQueue(node.queue).remove(node);
+            node.queue = -1;
+        }
+    }
+
+    private void onAccess(Node node) {
+        sketch.increment(node.hash);
+        if (!node.alive || node.queue < 0) {
+            return;
+        }
+        if (node.queue == WINDOW) {
+            window.moveToLast(node);
+        } else if (node.queue == PROBATION) {
+            // promote to the protected segment and demote its least recently used item if needed
+            probation.remove(node);
+            node.queue = PROTECTED;
+            protectedQueue.addLast(node);
+            if (protectedQueue.size > protectedMax) {
+                Node demoted = protectedQueue.pollFirst();
+                if (demoted != null) {
+                    demoted.queue = PROBATION;
+                    probation.addLast(demoted);
+                }
+            }
+        } else {
+            protectedQueue.moveToLast(node);
+        }
+    }
+
+    private void evictEntries() {
+        // move the overflow of the LRU window into the probation segment as candidates
+        long candidates = 0;
+        while (window.size > windowMax) {
+            Node node = window.pollFirst();
+            node.queue = PROBATION;
+            probation.addLast(node);
+            candidates++;
+        }
+        while (window.size + probation.size + protectedQueue.size > maxItems) {
+            Node victim = probation.peekFirst();
+            Node candidate = candidates > 0? probation.peekLast() : null;
+            if (victim == null) {
+                victim = protectedQueue.peekFirst();
+                if (victim == null) {
+                    victim = window.peekFirst();
+                }
+            }
+            if (candidate == null || candidate == victim) {
+                evict(victim);
+            } else if (sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+                // the candidate is admitted at the expense of the victim
+                evict(victim);
+            } else {
+                evict(candidate);
+                candidates--;
+            }
+        }
+    }
+
+    private void evict(Node node) {
+        getQueue(node.queue).remove(node);
+        node.queue = -1;
+        if (data.remove(node.key, node)) {
+            node.alive = false;
+            evictions.increment();
+        }
+    }
+
+    private AccessQueue getQueue(int queue) {
+        return queue == WINDOW? window : (queue == PROBATION? probation : protectedQueue);
+    }
+
     private void removeExpiredCache() {
         if (NOT_RUNNING.compareAndSet(true, false)) {
             Platform.getInstance().getEventExecutor().submit(() -> {
@@ -188,4 +620,201 @@ public class ManagedCache {
         }
     }
 
+    private static class Node {
+        private final String key;
+        private final int hash;
+        private volatile Object value;
+        private volatile long writeTime;
+        private volatile long accessTime;
+        private volatile boolean alive = true;
+        // fields below are guarded by the eviction lock
+        private int queue = -1;
+        private Node prev;
+        private Node next;
+
+        private Node(String key, Object value, long now) {
+            this.key = key;
+            this.hash = spread(key.hashCode());
+            this.value = value;
+            this.writeTime = now;
+            this.accessTime = now;
+        }
+
+        private static int spread(int h) {
+            h ^= h >>> 17;
+            h *= 0xed5ad4bb;
+            h ^= h >>> 11;
+            h *= 0xac4c1b51;
+            h ^= h >>> 15;
+            return h;
+        }
+    }
+
+    /**
+     * Doubly linked list in access order with the least recently used item at the head
+     */
+    private static class AccessQueue {
+        private Node head;
+        private Node tail;
+        private long size = 0;
+
+        private void addLast(Node node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            size++;
+        }
+
+        private void remove(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            size--;
+        }
+
+        private void moveToLast(Node node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        private Node peekFirst() {
+            return head;
+        }
+
+        private Node peekLast() {
+            return tail;
+        }
+
+        private Node pollFirst() {
+            Node node = head;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+    }
+
+    /**
+     * Bounded ring buffer that drops accesses when it is full
+     */
+    private static class ReadBuffer {
+        private final AtomicReferenceArray<Node> slots = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        private final AtomicLong writeCounter = new AtomicLong(0);
+        private volatile long readCounter = 0;
+
+        private long offer(Node node) {
+            long tail = writeCounter.get();
+            long pending = tail - readCounter;
+            if (pending < READ_BUFFER_SIZE && writeCounter.compareAndSet(tail, tail + 1)) {
+                slots.lazySet((int) (tail & (READ_BUFFER_SIZE - 1)), node);
+                return pending + 1;
+            }
+            return pending;
+        }
+
+        private void drain(Consumer<Node> consumer) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+            while (head < tail) {
+                int index = (int) (head & (READ_BUFFER_SIZE - 1));
+                Node node = slots.get(index);
+                if (node == null) {
+                    // the slot is reserved but not yet published
+                    break;
+                }
+                slots.lazySet(index, null);
+                consumer.accept(node);
+                head++;
+            }
+            readCounter = head;
+        }
+    }
+
+    /**
+     * Count-min sketch with 4-bit counters to estimate the access frequency of a key
+     * <p>
+     * The counters are halved periodically so that the estimate reflects recent popularity.
+     */
+    private static class FrequencySketch {
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+                                             0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+        private static final long ONE_MASK = 0x1111111111111111L;
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions = 0;
+
+        private FrequencySketch(long maxItems) {
+            int capacity = (int) Math.min(Math.max(maxItems, 16), 1 << 24);
+            int length = Integer.highestOneBit(capacity - 1) << 1;
+            this.table = new long[length];
+            this.tableMask = length - 1;
+            this.sampleSize = 10 * capacity;
+        }
+
+        private int frequency(int hash) {
+            int start = (hash & 3) << 2;
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        private void increment(int hash) {
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                added |= incrementAt(indexOf(hash, i), start + i);
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        private boolean incrementAt(int index, int counter) {
+            int offset = counter << 2;
+            long mask = 0xfL << offset;
+            if ((table[index] & mask) != mask) {
+                table[index] += 1L << offset;
+                return true;
+            }
+            return false;
+        }
+
+        private int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return ((int) h) & tableMask;
+        }
+
+        private void reset() {
+            int odd = 0;
+            for (int i = 0; i < table.length; i++) {
+                odd += Long.bitCount(table[i] & ONE_MASK);
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions = (additions - (odd >>> 2)) >>> 1;
+        }
+    }
+
 }
@@ -72,6 +72,18 @@ public class MultiLevelMap {
         return element != null && !(element instanceof NotFound);
     }
 
+    /**
+     * Check if a key-value exists
+     *
+     * @param compositePath that is compiled
+     *
+     * @return true if exists
+     */
+    public boolean exists(CompiledPath compositePath) {
+        Object element = getElement(compositePath, multiLevels);
+        return element != null && !(element instanceof NotFound);
+    }
+
     /**
      * Check if a key exists where the value can be empty
      *
@@ -84,6 +96,18 @@ public class MultiLevelMap {
         return !(element instanceof NotFound);
     }
 
+    /**
+     * Check if a key exists where the value can be empty
+     *
+     * @param compositePath that is compiled
+     *
+     * @return true if exists
+     */
+    public boolean keyExists(CompiledPath compositePath) {
+        Object element = getElement(compositePath, multiLevels);
+        return !(element instanceof NotFound);
+    }
+
     /**
      * Retrieve an element from a map using a composite path
      * (Nested array is supported)
@@ -112,12 +136,25 @@ public class MultiLevelMap {
         return element == null? defaultValue : element;
     }
 
+    /**
+     * Retrieve an element from a map using a compiled path
+     * <p>
+     * This avoids parsing the path for each lookup when the same path is used repeatedly.
+     *
+     * @param compositePath that is compiled
+     * @return element
+     */
+    public Object getElement(CompiledPath compositePath) {
+        Object element = getElement(compositePath, multiLevels);
+        return element instanceof NotFound? null : element;
+    }
+
     @SuppressWarnings("unchecked")
-    private Object getListElement(List<Integer> indexes, List<Object> data) {
+    private Object getListElement(int[] indexes, List<Object> data) {
         List<Object> current = data;
         int n = 0;
-        int len = indexes.size();
-        for (Integer i: indexes) {
+        int len = indexes.length;
+        for (int i: indexes) {
             n++;
             if (i < 0 || i >= current.size()) {
                 break;
@@ -135,7 +172,6 @@ public class MultiLevelMap {
         return null;
     }
 
-    @SuppressWarnings("unchecked")
     private Object getElement(String path, Map<String, Object> map) {
         if (path == null || map == null || map.isEmpty()) return null;
         if (map.containsKey(path)) {
@@ -144,26 +180,44 @@ public class MultiLevelMap {
         if (!isComposite(path)) {
             return null;
         }
-        Utility util = Utility.getInstance();
-        List<String> list = util.split(path, "./");
+        CompiledPath compiled = CompiledPath.compile(path);
+        return getElement(compiled, compiled.size(), false, map);
+    }
+
+    private Object getElement(CompiledPath path, Map<String, Object> map) {
+        if (path == null || map == null || map.isEmpty()) return null;
+        if (map.containsKey(path.path)) {
+            return map.get(path.path);
+        }
+        if (!path.composite) {
+            return null;
+        }
+        return getElement(path, path.size(), false, map);
+    }
+
+    /**
+     * Walk the first segments of a compiled path
+     *
+     * @param path that is compiled
+     * @param count number of segments to walk
+     * @param elementOnly true to ignore the list indexes of the last segment
+     * @param map of key-values
+     * @return element or NotFound
+     */
+    @SuppressWarnings("unchecked")
+    private Object getElement(CompiledPath path, int count, boolean elementOnly, Map<String, Object> map) {
         Map<String, Object> current = map;
-        int len = list.size();
-        int n = 0;
-        for (String p: list) {
-            n++;
-            if (isListElement(p)) {
-                int start = p.indexOf('[');
-                int end = p.indexOf(']', start);
-                if (end == -1) break;
-                String key = p.substring(0, start);
-                String index = p.substring(start+1, end).trim();
-                if (index.length() == 0 || !util.isDigits(index)) break;
+        for (int i=0; i < count; i++) {
+            boolean last = i == count - 1;
+            String key = path.keys[i];
+            int[] indexes = elementOnly && last? null : path.indexes[i];
+            if (indexes != null) {
+                if (!path.valid[i]) break;
                 if (current.containsKey(key)) {
                     Object nextList = current.get(key);
                     if (nextList instanceof List) {
-                        List<Integer> indexes = getIndexes(p.substring(start));
                         Object next = getListElement(indexes, (List<Object>) nextList);
-                        if (n == len) {
+                        if (last) {
                             return next;
                         }
                         if (next instanceof Map) {
@@ -173,9 +227,9 @@ public class MultiLevelMap {
                     }
                 }
             } else {
-                if (current.containsKey(p)) {
-                    Object next = current.get(p);
-                    if (n == len) {
+                if (current.containsKey(key)) {
+                    Object next = current.get(key);
+                    if (last) {
                         return next;
                     } else if (next instanceof Map) {
                         current = (Map<String, Object>) next;
@@ -189,6 +243,19 @@ public class MultiLevelMap {
         return new NotFound();
     }
 
+    private Object getPrefixElement(CompiledPath path, int count, boolean elementOnly, Map<String, Object> map) {
+        // same as a lookup using the reconstructed composite of the first segments
+        String prefix = elementOnly? path.elementPrefixes[count-1] : path.segmentPrefixes[count-1];
+        if (map.isEmpty()) return null;
+        if (map.containsKey(prefix)) {
+            return map.get(prefix);
+        }
+        if (!isComposite(prefix)) {
+            return null;
+        }
+        return getElement(path, count, elementOnly, map);
+    }
+
     /**
      * Set a key-value
      *
@@ -197,7 +264,18 @@ public class MultiLevelMap {
      * @return this
      */
     public MultiLevelMap setElement(String compositePath, Object value) {
-        validateCompositePathSyntax(compositePath);
+        return setElement(CompiledPath.compile(compositePath), value);
+    }
+
+    /**
+     * Set a key-value
+     *
+     * @param compositePath that is compiled
+     * @param value to be inserted
+     * @return this
+     */
+    public MultiLevelMap setElement(CompiledPath compositePath, Object value) {
+        compositePath.validate();
         setElement(compositePath, value, multiLevels, false);
         return this;
     }
@@ -209,42 +287,47 @@ public class MultiLevelMap {
      * @return this
      */
     public MultiLevelMap removeElement(String compositePath) {
-        validateCompositePathSyntax(compositePath);
+        return removeElement(CompiledPath.compile(compositePath));
+    }
+
+    /**
+     * Remove a key-value
+     *
+     * @param compositePath that is compiled
+     * @return this
+     */
+    public MultiLevelMap removeElement(CompiledPath compositePath) {
+        compositePath.validate();
         setElement(compositePath, null, multiLevels, true);
         return this;
     }
 
     @SuppressWarnings("unchecked")
-    private void setElement(String path, Object value, Map<String, Object> map, boolean delete) {
-        Utility util = Utility.getInstance();
-        List<String> segments = util.split(path, "./");
-        if (segments.isEmpty()) {
+    private void setElement(CompiledPath path, Object value, Map<String, Object> map, boolean delete) {
+        int len = path.size();
+        if (len == 0) {
             return;
         }
         Map<String, Object> current = map;
-        int len = segments.size();
         int n = 0;
-        // reconstruct the composite as we walk the path segments
-        StringBuilder composite = new StringBuilder();
-        for (String p : segments) {
+        for (int i=0; i < len; i++) {
+            String p = path.keys[i];
             n++;
-            if (isListElement(p)) {
-                int sep = p.indexOf('[');
-                List<Integer> indexes = getIndexes(p.substring(sep));
-                String element = p.substring(0, sep);
-                Object parent = getElement(composite+element, map);
+            if (path.indexes[i] != null) {
+                int[] indexes = path.indexes[i];
+                Object parent = getPrefixElement(path, n, true, map);
                 if (n == len) {
                     if (parent instanceof List) {
                         setListElement(indexes, (List<Object>) parent, value);
                     } else {
                         List<Object> newList = new ArrayList<>();
                         setListElement(indexes, newList, value);
-                        current.put(element, newList);
+                        current.put(p, newList);
                     }
                     break;
                 } else {
                     if (parent instanceof List) {
-                        Object next = getElement(composite+p, map);
+                        Object next = getPrefixElement(path, n, false, map);
                         if (next instanceof Map) {
                             current = (Map<String, Object>) next;
                         } else {
@@ -256,7 +339,7 @@ public class MultiLevelMap {
                         Map<String, Object> nextMap = new HashMap<>();
                         List<Object> newList = new ArrayList<>();
                         setListElement(indexes, newList, nextMap);
-                        current.put(element, newList);
+                        current.put(p, newList);
                         current = nextMap;
                     }
                 }
@@ -280,16 +363,15 @@ public class MultiLevelMap {
                     }
                 }
             }
-            composite.append(p).append('.');
         }
     }
 
     @SuppressWarnings("unchecked")
-    private void setListElement(List<Integer> indexes, List<Object> dataset, Object value) {
+    private void setListElement(int[] indexes, List<Object> dataset, Object value) {
         List<Object> current = expandList(indexes, dataset);
-        int len = indexes.size();
+        int len = indexes.length;
         for (int i=0; i < len; i++) {
-            int idx = indexes.get(i);
+            int idx = indexes[i];
             if (i == len - 1) {
                 current.set(idx, value);
             } else {
@@ -302,11 +384,11 @@ public class MultiLevelMap {
     }
 
     @SuppressWarnings("unchecked")
-    private List<Object> expandList(List<Integer> indexes, List<Object> dataset) {
+    private List<Object> expandList(int[] indexes, List<Object> dataset) {
         List<Object> current = dataset;
-        int len = indexes.size();
+        int len = indexes.length;
         for (int i=0; i < len; i++) {
-            int idx = indexes.get(i);
+            int idx = indexes[i];
             if (idx >= current.size()) {
                 int diff = idx - current.size();
                 while (diff-- >= 0) {
@@ -332,20 +414,6 @@ public class MultiLevelMap {
         return item.contains(".") || item.contains("/") || item.contains("[") || item.contains("]");
     }
 
-    private boolean isListElement(String item) {
-        return (item.contains("[") && item.endsWith("]") && !item.startsWith("["));
-    }
-
-    private List<Integer> getIndexes(String indexSegment) {
-        Utility util = Utility.getInstance();
-        List<String> indexes = util.split(indexSegment, "[]");
-        List<Integer> result = new ArrayList<>();
-        for (String s: indexes) {
-            result.add(util.str2int(s));
-        }
-        return result;
-    }
-
     /**
      * Check if the composite path is in proper dot-bracket syntax
      *
@@ -353,50 +421,9 @@ public class MultiLevelMap {
      * @throws IllegalArgumentException if invalid format
      */
     public void validateCompositePathSyntax(String path) {
-        Utility util = Utility.getInstance();
-        List<String> segments = util.split(path, "./");
-        if (segments.isEmpty()) {
-            throw new IllegalArgumentException("Missing composite path");
-        }
-        for (String s: segments) {
-            if (s.contains("[") || s.contains("]")) {
-                if (!s.contains("[")) {
-                    throw new IllegalArgumentException("Invalid composite path - missing start bracket");
-                }
-                if (!s.endsWith("]")) {
-                    throw new IllegalArgumentException("Invalid composite path - missing end bracket");
-                }
-                // check start-end pair
-                int sep1 = s.indexOf('[');
-                int sep2 = s.indexOf(']');
-                if (sep2 < sep1) {
-                    throw new IllegalArgumentException("Invalid composite path - missing start bracket");
-                }
-                boolean start = false;
-                for (char c: s.substring(sep1).toCharArray()) {
-                    if (c == '[') {
-                        if (start) {
-                            throw new IllegalArgumentException("Invalid composite path - missing end bracket");
-                        } else {
-                            start = true;
-                        }
-                    } else if (c == ']') {
-                        if (!start) {
-                            throw new IllegalArgumentException("Invalid composite path - duplicated end bracket");
-                        } else {
-                            start = false;
-                        }
-                    } else {
-                        if (start) {
-                            if (c < '0' || c > '9') {
-                                throw new IllegalArgumentException("Invalid composite path - indexes must be digits");
-                            }
-                        } else {
-                            throw new IllegalArgumentException("Invalid composite path - invalid indexes");
-                        }
-                    }
-                }
-            }
+        String error = CompiledPath.checkSyntax(Utility.getInstance().split(path, "./"));
+        if (error != null) {
+            throw new IllegalArgumentException(error);
         }
     }
 
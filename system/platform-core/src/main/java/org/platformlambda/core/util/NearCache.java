@@ -0,0 +1,471 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core.util;
+
+import org.platformlambda.core.annotations.ZeroTracing;
+import org.platformlambda.core.models.EventEnvelope;
+import org.platformlambda.core.models.RemoteCacheStore;
+import org.platformlambda.core.models.TypedLambdaFunction;
+import org.platformlambda.core.system.EventEmitter;
+import org.platformlambda.core.system.Platform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Near-cache for reference data that is shared by multiple application instances
+ * <p>
+ * Each instance keeps a local ManagedCache in front of an optional remote tier.
+ * When an item is updated or removed, the key and its new version are queued. The queue is
+ * broadcast periodically as an invalidation bundle to the peers that have a near-cache of the same name.
+ * Repeated writes to the same key within the flush interval are sent as a single invalidation.
+ * <p>
+ * Every item carries a version. A write with a version that is not newer than the known version
+ * of the item is rejected so that a delayed write cannot overwrite a newer value.
+ * A removed item is kept as a versioned tombstone in the local cache and the remote tier
+ * for "near.cache.tombstone.ttl" (default 60000 ms) so that a delayed write cannot restore it.
+ * <p>
+ * The methods may block on the remote tier. Please call them from a worker thread.
+ */
+public class NearCache {
+    private static final Logger log = LoggerFactory.getLogger(NearCache.class);
+
+    private static final String ROUTE_PREFIX = "near.cache.";
+    private static final String FLUSH_INTERVAL = "near.cache.flush.interval";
+    private static final String TOMBSTONE_TTL = "near.cache.tombstone.ttl";
+    private static final String ORIGIN = "origin";
+    private static final String VERSION = "version";
+    private static final String REMOVED = "removed";
+    private static final int MAX_BUNDLE_SIZE = 1000;
+    private static final int MAX_RETRY = 10;
+    private static final ConcurrentMap<String, NearCache> COLLECTION = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, List<NearCache>> MEMBERS = new ConcurrentHashMap<>();
+    private static final AtomicLong CLOCK = new AtomicLong(0);
+    private final String name;
+    private final String route;
+    private final String origin;
+    private final long tombstoneTtl;
+    private final ManagedCache local;
+    private final RemoteCacheStore remote;
+    private final ConcurrentMap<String, Long> pending = new ConcurrentHashMap<>();
+    private final LongAdder bundlesSent = new LongAdder();
+    private final LongAdder invalidationsSent = new LongAdder();
+    private final LongAdder invalidationsReceived = new LongAdder();
+    private final LongAdder staleWrites = new LongAdder();
+
+    private NearCache(String name, long expiryMs, long maxItems, RemoteCacheStore remote, String origin)
+            throws IOException {
+        Platform platform = Platform.getInstance();
+        this.name = name;
+        this.route = ROUTE_PREFIX + name;
+        this.origin = origin;
+        this.local = ManagedCache.createCache(origin.equals(platform.getOrigin())? route : route + "." + origin,
+                                                expiryMs, maxItems);
+        this.remote = remote;
+        if (!MEMBERS.containsKey(name)) {
+            platform.register(route, new InvalidationService(name), 1);
+        }
+        MEMBERS.computeIfAbsent(name, k -> new CopyOnWriteArrayList<>()).add(this);
+        Utility util = Utility.getInstance();
+        AppConfigReader config = AppConfigReader.getInstance();
+        this.tombstoneTtl = Math.max(1000, util.str2long(config.getProperty(TOMBSTONE_TTL, "60000")));
+        long interval = Math.max(10, util.str2long(config.getProperty(FLUSH_INTERVAL, "200")));
+        platform.getVertx().setPeriodic(interval, t -> flush());
+    }
+
+    /**
+     * Obtain a near-cache instance
+     *
+     * @param name of the near-cache. It must contain only 0-9, a-z, period, underscore and hyphen.
+     * @param expiryMs of the local cache in milliseconds
+     * @param maxItems of the local cache
+     * @param remote tier or null if the near-cache only keeps the local copies coherent
+     * @return near-cache instance
+     * @throws IOException if the invalidation service cannot be registered
+     */
+    public static synchronized NearCache createCache(String name, long expiryMs, long maxItems,
+                                                     RemoteCacheStore remote) throws IOException {
+        NearCache cache = COLLECTION.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        if (!Utility.getInstance().validServiceName(name)) {
+            throw new IllegalArgumentException("Invalid near-cache name - use 0-9, a-z, period, hyphen or underscore");
+        }
+        cache = new NearCache(name, expiryMs, maxItems, remote, Platform.getInstance().getOrigin());
+        COLLECTION.put(name, cache);
+        log.info("Created near-cache ({}), remote tier {}", name,
+                remote == null? "disabled" : remote.getClass().getSimpleName());
+        return cache;
+    }
+
+    /**
+     * Create another instance of a near-cache that acts as a peer with its own origin
+     * <p>
+     * This emulates a near-cache of the same name in another application instance. e.g. in a unit test
+     *
+     * @param name of the near-cache
+     * @param expiryMs of the local cache in milliseconds
+     * @param maxItems of the local cache
+     * @param remote tier or null
+     * @param origin of the emulated application instance
+     * @return near-cache instance
+     * @throws IOException if the invalidation service cannot be registered
+     */
+    public static synchronized NearCache createPeer(String name, long expiryMs, long maxItems,
+                                                    RemoteCacheStore remote, String origin) throws IOException {
+        if (!Utility.getInstance().validServiceName(name)) {
+            throw new IllegalArgumentException("Invalid near-cache name - use 0-9, a-z, period, hyphen or underscore");
+        }
+        if (origin == null || origin.equals(Platform.getInstance().getOrigin())) {
+            throw new IllegalArgumentException("A peer must have a different origin");
+        }
+        return new NearCache(name, expiryMs, maxItems, remote, origin);
+    }
+
+    public static NearCache getInstance(String name) {
+        return COLLECTION.get(name);
+    }
+
+    /**
+     * Generate a version that is newer than any version seen by this application instance
+     *
+     * @return version
+     */
+    public static long nextVersion() {
+        long now = System.currentTimeMillis() * 1000;
+        return CLOCK.updateAndGet(last -> Math.max(last + 1, now));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ManagedCache getLocalCache() {
+        return local;
+    }
+
+    /**
+     * Get an item from the local cache or the remote tier
+     *
+     * @param key of the item
+     * @return value or null
+     */
+    public Object get(String key) {
+        Versioned item = getLocal(key);
+        if (item == null) {
+            item = getRemote(key);
+            if (item != null) {
+                local.put(key, item);
+            }
+        }
+        return item == null? null : item.value;
+    }
+
+    /**
+     * Get an item from the local cache, the remote tier or the loader
+     * <p>
+     * A loaded value is saved to the remote tier without invalidating the peers.
+     *
+     * @param key of the item
+     * @param loader to return the value of a key. A null value is not cached.
+     * @return value or null
+     */
+    public Object get(String key, Function<String, Object> loader) {
+        Versioned current = getLocal(key);
+        if (current != null) {
+            if (!current.isRemoved()) {
+                return current.value;
+            }
+            // a removed item is loaded again with a newer version
+            local.remove(key);
+        }
+        Versioned item = (Versioned) local.get(key, k -> {
+            Versioned found = getRemote(k);
+            if (found != null && !found.isRemoved()) {
+                return found;
+            }
+            Object value = loader.apply(k);
+            if (value == null) {
+                return null;
+            }
+            Versioned loaded = new Versioned(value, nextVersion());
+            if (remote != null && !putRemote(k, loaded)) {
+                // another instance has saved a newer value in the meantime
+                Versioned newer = getRemote(k);
+                return newer != null? newer : loaded;
+            }
+            return loaded;
+        });
+        return item == null? null : item.value;
+    }
+
+    /**
+     * Save an item with a new version
+     *
+     * @param key of the item
+     * @param value of the item
+     * @return true if saved
+     */
+    public boolean put(String key, Object value) {
+        return put(key, value, nextVersion());
+    }
+
+    /**
+     * Save an item with a given version
+     *
+     * @param key of the item
+     * @param value of the item
+     * @param version of the item that must be newer than the current version
+     * @return true if saved or false if the version is stale
+     */
+    public boolean put(String key, Object value, long version) {
+        if (value == null) {
+            throw new IllegalArgumentException("Missing value");
+        }
+        CLOCK.accumulateAndGet(version, Math::max);
+        Versioned current = (Versioned) local.peek(key);
+        if (current != null && current.version >= version) {
+            staleWrites.increment();
+            return false;
+        }
+        Versioned item = new Versioned(value, version);
+        if (remote != null && !putRemote(key, item)) {
+            staleWrites.increment();
+            local.remove(key);
+            return false;
+        }
+        local.put(key, item);
+        pending.merge(key, version, Math::max);
+        return true;
+    }
+
+    /**
+     * Remove an item
+     * <p>
+     * The item is replaced by a tombstone with a new version so that a delayed write
+     * with an older version is rejected until the tombstone expires.
+     *
+     * @param key of the item
+     * @return true if removed or false if another instance has saved a newer version
+     */
+    public boolean remove(String key) {
+        long version = nextVersion();
+        Versioned tombstone = new Versioned(null, version, System.currentTimeMillis() + tombstoneTtl);
+        if (remote != null && !putRemote(key, tombstone)) {
+            staleWrites.increment();
+            local.remove(key);
+            return false;
+        }
+        local.put(key, tombstone);
+        pending.merge(key, version, Math::max);
+        return true;
+    }
+
+    /**
+     * Get the version of an item or its tombstone in the local cache
+     *
+     * @param key of the item
+     * @return version or -1 if not found
+     */
+    public long getVersion(String key) {
+        Versioned item = (Versioned) local.peek(key);
+        return item == null? -1 : item.version;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = local.getStats();
+        result.put("bundles_sent", bundlesSent.sum());
+        result.put("invalidations_sent", invalidationsSent.sum());
+        result.put("invalidations_received", invalidationsReceived.sum());
+        result.put("stale_writes", staleWrites.sum());
+        return result;
+    }
+
+    /**
+     * Broadcast pending invalidations to the peers
+     */
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<String, Object> bundle = new HashMap<>();
+        for (String key: pending.keySet()) {
+            Long version = pending.remove(key);
+            if (version != null) {
+                bundle.put(key, version);
+                if (bundle.size() >= MAX_BUNDLE_SIZE) {
+                    sendBundle(bundle);
+                    bundle = new HashMap<>();
+                }
+            }
+        }
+        if (!bundle.isEmpty()) {
+            sendBundle(bundle);
+        }
+    }
+
+    private void sendBundle(Map<String, Object> bundle) {
+        EventEnvelope event = new EventEnvelope().setTo(route).setBody(bundle)
+                                    .setHeader(ORIGIN, origin);
+        try {
+            EventEmitter.getInstance().broadcast(event);
+            bundlesSent.increment();
+            invalidationsSent.add(bundle.size());
+        } catch (IOException e) {
+            log.error("Unable to send invalidations for near-cache ({}) - {}", name, e.getMessage());
+        }
+    }
+
+    private Versioned getLocal(String key) {
+        Versioned item = (Versioned) local.get(key);
+        if (item != null && item.isExpired()) {
+            local.remove(key);
+            return null;
+        }
+        return item;
+    }
+
+    private Versioned getRemote(String key) {
+        if (remote != null) {
+            byte[] b = remote.get(key);
+            if (b != null) {
+                try {
+                    Versioned item = decode(b);
+                    if (item.isExpired()) {
+                        // the tombstone is dropped unless the entry has been updated in the meantime
+                        remote.remove(key, b);
+                        return null;
+                    }
+                    return item;
+                } catch (IOException e) {
+                    log.warn("Unable to decode {} from near-cache ({}) - {}", key, name, e.getMessage());
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean putRemote(String key, Versioned item) {
+        try {
+            EventEnvelope event = new EventEnvelope().setHeader(VERSION, item.version);
+            if (item.isRemoved()) {
+                event.setHeader(REMOVED, item.expiry);
+            } else {
+                event.setBody(item.value);
+            }
+            byte[] update = event.toBytes();
+            for (int i=0; i < MAX_RETRY; i++) {
+                byte[] current = remote.get(key);
+                if (current != null) {
+                    Versioned found = decode(current);
+                    if (!found.isExpired() && found.version >= item.version) {
+                        return false;
+                    }
+                }
+                if (remote.compareAndSet(key, current, update)) {
+                    return true;
+                }
+            }
+            log.warn("Unable to update {} in near-cache ({}) - too much contention", key, name);
+        } catch (IOException e) {
+            log.error("Unable to update {} in near-cache ({}) - {}", key, name, e.getMessage());
+        }
+        return false;
+    }
+
+    private Versioned decode(byte[] b) throws IOException {
+        Utility util = Utility.getInstance();
+        EventEnvelope event = new EventEnvelope(b);
+        long version = util.str2long(event.getHeader(VERSION));
+        String removed = event.getHeader(REMOVED);
+        return removed == null? new Versioned(event.getBody(), version) :
+                                new Versioned(null, version, util.str2long(removed));
+    }
+
+    private void invalidate(String key, long version) {
+        Versioned item = (Versioned) local.peek(key);
+        if (item != null && item.version < version) {
+            local.remove(key);
+            invalidationsReceived.increment();
+        }
+    }
+
+    private static class Versioned {
+        private final Object value;
+        private final long version;
+        // expiry time of a tombstone or zero for a value
+        private final long expiry;
+
+        private Versioned(Object value, long version) {
+            this(value, version, 0);
+        }
+
+        private Versioned(Object value, long version, long expiry) {
+            this.value = value;
+            this.version = version;
+            this.expiry = expiry;
+        }
+
+        private boolean isRemoved() {
+            return expiry > 0;
+        }
+
+        private boolean isExpired() {
+            return expiry > 0 && System.currentTimeMillis() > expiry;
+        }
+    }
+
+    @ZeroTracing
+    private static class InvalidationService implements TypedLambdaFunction<Map<String, Object>, Void> {
+        private final String name;
+
+        private InvalidationService(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Void handleEvent(Map<String, String> headers, Map<String, Object> input, int instance) {
+            String sender = headers.get(ORIGIN);
+            Utility util = Utility.getInstance();
+            for (NearCache member: MEMBERS.getOrDefault(name, Collections.emptyList())) {
+                if (!member.origin.equals(sender)) {
+                    for (Map.Entry<String, Object> kv: input.entrySet()) {
+                        long version = util.str2long(String.valueOf(kv.getValue()));
+                        CLOCK.accumulateAndGet(version, Math::max);
+                        member.invalidate(kv.getKey(), version);
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+}
@@ -18,23 +18,34 @@
 
 package org.platformlambda.core.util;
 
-import org.platformlambda.core.models.TimedItem;
 import org.platformlambda.core.system.Platform;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
 
 /**
  * IMPORTANT: Reserved for internal uses.
- * e.g. MultipartPayload class for segmentation of large event payload
+ * e.g. PayloadMapper class for caching of Java class names
  * <p>
  * SimpleCache is a simple ConcurrentHashMap with automatic removal of inactive entries
+ * <p>
+ * Since all entries of a cache share the same expiry period, the entries are kept in the order of
+ * their write time and the housekeeper removes expired entries from the head, so the cost of expiry
+ * is proportional to the number of expired entries rather than the size of the cache.
+ * <p>
+ * A cache without size or weight limit is written without locking. Its write order is a lock-free queue
+ * that is maintained by the housekeeper.
+ * <p>
+ * A cache with size or weight limit keeps its entries in a linked list guarded by a lock.
+ * The list decides which entries are evicted first when a limit is reached. A write also removes
+ * a few expired entries from the head of the list and leaves the rest to the housekeeper.
  * <b>
  * Please use the ManagedCache for regular caching use cases
  */
@@ -45,13 +56,31 @@ public class SimpleCache {
     private static final AtomicInteger INIT_COUNTER = new AtomicInteger(0);
     private static final AtomicBoolean NOT_RUNNING = new AtomicBoolean(true);
     private static final long HOUSEKEEPING_INTERVAL = 30 * 1000L;    // 30 seconds
+    private static final int MAX_INLINE_EXPIRY = 16;
     private final String name;
     private final long expiry;
-    private final ConcurrentMap<String, TimedItem> cache = new ConcurrentHashMap<>();
+    private final long maxItems;
+    private final long maxWeight;
+    private final ToLongFunction<Object> weigher;
+    private final boolean bounded;
+    private final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<>();
+    // write order of a cache without limits
+    private final ConcurrentLinkedQueue<Entry> writeOrder = new ConcurrentLinkedQueue<>();
+    // expiry order of a cache with limits is guarded by the lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Entry head = new Entry(null);
+    private long weight = 0;
+    private long evictions = 0;
 
-    private SimpleCache(String name, long expiryMs) {
+    private SimpleCache(String name, long expiryMs, long maxItems, long maxWeight, ToLongFunction<Object> weigher) {
         this.name = name;
         this.expiry = expiryMs;
+        this.maxItems = maxItems;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.bounded = maxItems > 0 || maxWeight > 0;
+        head.prev = head;
+        head.next = head;
         if (INIT_COUNTER.incrementAndGet() == 1) {
             Platform.getInstance().getVertx().setPeriodic(HOUSEKEEPING_INTERVAL, t -> removeExpiredCache());
             log.info("Housekeeper started");
@@ -68,16 +97,54 @@ public class SimpleCache {
      * @param expiryMs timer
      * @return simple cache object
      */
-    public static synchronized SimpleCache createCache(String name, long expiryMs) {
+    public static SimpleCache createCache(String name, long expiryMs) {
+        return createCache(name, expiryMs, 0);
+    }
+
+    /**
+     * Create a simple cache with expiry timer and size limit
+     *
+     * @param name cache label
+     * @param expiryMs timer
+     * @param maxItems maximum number of entries. Zero means unlimited.
+     * @return simple cache object
+     */
+    public static SimpleCache createCache(String name, long expiryMs, long maxItems) {
+        return createCache(name, expiryMs, maxItems, 0, null);
+    }
+
+    /**
+     * Create a simple cache with expiry timer, size and weight limits
+     * <p>
+     * The oldest entries are evicted when either limit is exceeded.
+     *
+     * @param name cache label
+     * @param expiryMs timer
+     * @param maxItems maximum number of entries. Zero means unlimited.
+     * @param maxWeight maximum total weight of the entries. Zero means unlimited.
+     * @param weigher to return the weight of a value (e.g. number of bytes). Null if weight limit is not used.
+     * @return simple cache object
+     */
+    public static synchronized SimpleCache createCache(String name, long expiryMs, long maxItems,
+                                                       long maxWeight, ToLongFunction<Object> weigher) {
         SimpleCache simpleCache = getInstance(name);
         if (simpleCache != null) {
             return simpleCache;
         }
+        if (maxWeight > 0 && weigher == null) {
+            throw new IllegalArgumentException("Missing weigher for cache ("+name+") with weight limit");
+        }
         long expiryTimer = Math.max(expiryMs, MIN_EXPIRY);
-        simpleCache = new SimpleCache(name, expiryTimer);
+        simpleCache = new SimpleCache(name, expiryTimer, Math.max(0, maxItems), Math.max(0, maxWeight),
+                                        maxWeight > 0? weigher : null);
         COLLECTION.put(name, simpleCache);
         String timer = Utility.getInstance().elapsedTime(expiryTimer);
-        log.info("Created cache ({}), expiry {}", name, timer);
+        if (maxItems > 0 || maxWeight > 0) {
+            log.info("Created cache ({}), expiry {}, maxItems={}, maxWeight={}", name, timer,
+                    simpleCache.maxItems, simpleCache.maxWeight);
+        } else {
+            log.info("Created cache ({}), expiry {}", name, timer);
+        }
         return simpleCache;
     }
 
@@ -86,29 +153,92 @@ public class SimpleCache {
     }
 
     public void put(String key, Object o) {
-        cache.put(key, new TimedItem(System.currentTimeMillis(), o));
+        long now = System.currentTimeMillis();
+        if (!bounded) {
+            cache.compute(key, (k, v) -> {
+                Entry e = v == null? new Entry(k) : v;
+                e.payload = o;
+                e.time = now;
+                if (v == null) {
+                    e.queued = now;
+                    writeOrder.offer(e);
+                }
+                return e;
+            });
+            return;
+        }
+        long w = weigher == null? 0 : weigher.applyAsLong(o);
+        lock.lock();
+        try {
+            Entry entry = cache.get(key);
+            if (entry == null) {
+                entry = new Entry(key);
+                cache.put(key, entry);
+            } else {
+                unlink(entry);
+                weight -= entry.weight;
+            }
+            entry.payload = o;
+            entry.time = now;
+            entry.weight = w;
+            weight += w;
+            linkLast(entry);
+            removeExpired(now, MAX_INLINE_EXPIRY);
+            // evict the oldest entries when the cache is full
+            while (head.next != head && ((maxItems > 0 && cache.size() > maxItems) ||
+                                         (maxWeight > 0 && weight > maxWeight))) {
+                removeEntry(head.next);
+                evictions++;
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     public void remove(String key) {
-        TimedItem item = cache.get(key);
-        cache.remove(key);
-        if (item != null) {
-            // remove references
-            item.time = null;
-            item.payload = null;
+        if (!bounded) {
+            Entry entry = cache.remove(key);
+            if (entry != null) {
+                // remove reference
+                entry.payload = null;
+            }
+            return;
+        }
+        lock.lock();
+        try {
+            Entry entry = cache.get(key);
+            if (entry != null) {
+                removeEntry(entry);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
     public Object get(String key) {
-        TimedItem item = cache.get(key);
-        if (item == null) {
+        Entry entry = cache.get(key);
+        if (entry == null) {
             return null;
         } else {
-            if (System.currentTimeMillis() - item.time > expiry) {
-                cache.remove(key);
+            long now = System.currentTimeMillis();
+            if (now - entry.time > expiry) {
+                if (!bounded) {
+                    // the entry may have been updated in the meantime
+                    cache.computeIfPresent(key, (k, v) -> v == entry && now - v.time > expiry? null : v);
+                    return null;
+                }
+                lock.lock();
+                try {
+                    // the entry may have been updated in the meantime
+                    if (cache.get(key) == entry && now - entry.time > expiry) {
+                        removeEntry(entry);
+                    }
+                } finally {
+                    lock.unlock();
+                }
                 return null;
             } else {
-                return item.payload;
+                return entry.payload;
             }
         }
     }
@@ -125,23 +255,64 @@ public class SimpleCache {
         return expiry;
     }
 
+    public long getMaxItems() {
+        return maxItems;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public long getWeight() {
+        lock.lock();
+        try {
+            return weight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of entries that are evicted due to size or weight limit
+     *
+     * @return eviction count
+     */
+    public long getEvictions() {
+        lock.lock();
+        try {
+            return evictions;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public void clear() {
-        cache.clear();
+        if (!bounded) {
+            cache.clear();
+            writeOrder.clear();
+            return;
+        }
+        lock.lock();
+        try {
+            while (head.next != head) {
+                removeEntry(head.next);
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     public void cleanUp() {
         log.debug("Cleaning up {}", this.getName());
-        long now = System.currentTimeMillis();
-        // clean up cache
-        List<String> expired = new ArrayList<>();
-        cache.keySet().forEach(k -> {
-            TimedItem item = cache.get(k);
-            if (now - item.time > expiry) {
-                expired.add(k);
+        lock.lock();
+        try {
+            if (bounded) {
+                removeExpired(System.currentTimeMillis(), Integer.MAX_VALUE);
+            } else {
+                removeExpiredFromQueue(System.currentTimeMillis());
             }
-        });
-        for (String k : expired) {
-            remove(k);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -149,6 +320,70 @@ public class SimpleCache {
         return cache.size();
     }
 
+    private void removeExpired(long now, int limit) {
+        // entries are in write time order so the scan stops at the first unexpired entry
+        int n = 0;
+        while (n++ < limit && head.next != head && now - head.next.time > expiry) {
+            removeEntry(head.next);
+        }
+    }
+
+    private void removeExpiredFromQueue(long now) {
+        // an entry that has been rewritten since it was queued is moved to the tail
+        int requeued = 0;
+        int maxRequeued = cache.size() + 1;
+        Entry entry;
+        while (requeued < maxRequeued && (entry = writeOrder.peek()) != null) {
+            final Entry current = entry;
+            if (cache.get(current.key) != current) {
+                // removed or replaced
+                writeOrder.poll();
+            } else if (now - current.time > expiry) {
+                writeOrder.poll();
+                cache.computeIfPresent(current.key, (k, v) -> v == current && now - v.time > expiry? null : v);
+                if (cache.get(current.key) == current) {
+                    // updated in the meantime
+                    current.queued = current.time;
+                    writeOrder.offer(current);
+                    requeued++;
+                } else {
+                    current.payload = null;
+                }
+            } else if (current.queued < current.time) {
+                writeOrder.poll();
+                current.queued = current.time;
+                writeOrder.offer(current);
+                requeued++;
+            } else {
+                break;
+            }
+        }
+    }
+
+    private void removeEntry(Entry entry) {
+        cache.remove(entry.key, entry);
+        unlink(entry);
+        weight -= entry.weight;
+        // remove reference
+        entry.payload = null;
+    }
+
+    private void linkLast(Entry entry) {
+        entry.prev = head.prev;
+        entry.next = head;
+        head.prev.next = entry;
+        head.prev = entry;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+            entry.next.prev = entry.prev;
+            entry.prev = null;
+            entry.next = null;
+        }
+    }
+
     private void removeExpiredCache() {
         if (NOT_RUNNING.compareAndSet(true, false)) {
             Platform.getInstance().getEventExecutor().submit(() -> {
@@ -164,4 +399,20 @@ public class SimpleCache {
         }
     }
 
+    private static class Entry {
+        private final String key;
+        private volatile long time;
+        private volatile Object payload;
+        // time when the entry is queued in the write order of a cache without limits
+        private volatile long queued;
+        // fields below are guarded by the lock
+        private long weight;
+        private Entry prev;
+        private Entry next;
+
+        private Entry(String key) {
+            this.key = key;
+        }
+    }
+
 }
@@ -18,23 +18,44 @@
 
 package org.platformlambda.core.util;
 
+import io.github.classgraph.AnnotationInfo;
 import io.github.classgraph.ClassGraph;
 import io.github.classgraph.ClassInfo;
 import io.github.classgraph.ScanResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.annotation.Annotation;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Find annotated classes in the application packages
+ * <p>
+ * The classpath is scanned once for each package and the class details of the annotated classes are kept
+ * until the application has started so that subsequent lookups do not scan the classpath again.
+ * <p>
+ * Optionally, a class index can be generated at build time with the ClassIndexGenerator.
+ * When "class.scan.index=true", the class names are read from the index and classpath scanning is skipped.
+ */
 public class SimpleClassScanner {
+    private static final Logger log = LoggerFactory.getLogger(SimpleClassScanner.class);
 
+    public static final String CLASS_INDEX = "META-INF/platform-lambda/class-index.properties";
+    public static final String INDEXED_PACKAGES = "packages";
+    private static final String SCAN_INDEX = "class.scan.index";
     private static final String[] COMPONENT_SCAN = {"web.component.scan"};
+    private static final String[] SYSTEM_ANNOTATIONS = {"java.", "javax.annotation.", "jdk.", "kotlin."};
     private static final String PLATFORM_LAMBDA = "org.platformlambda";
     private static final String EX_START = "Invalid package path (";
     private static final String EX_END = "). A proper package should have at least one dot character.";
     private static final SimpleClassScanner INSTANCE = new SimpleClassScanner();
+    private final List<ScanData> scans = new CopyOnWriteArrayList<>();
+    private Map<String, List<String>> index;
+    private boolean indexLoaded = false;
 
     private SimpleClassScanner() {
         // singleton
@@ -57,9 +78,101 @@ public class SimpleClassScanner {
         if (!scanPath.contains(".")) {
             throw new IllegalArgumentException(EX_START + scanPath + EX_END);
         }
-        try (ScanResult sr = new ClassGraph().enableAllInfo().acceptPackages(scanPath).scan()) {
-            return new ArrayList<>(sr.getClassesWithAnnotation(type));
+        List<ClassInfo> result = new ArrayList<>();
+        List<ClassInfo> classes = getScanData(scanPath).classes.get(type.getName());
+        if (classes != null) {
+            for (ClassInfo info : classes) {
+                if (inPackage(info.getName(), scanPath)) {
+                    result.add(info);
+                }
+            }
         }
+        return result;
+    }
+
+    private List<String> getScannedClassNames(String scanPath, Class<? extends Annotation> type) {
+        List<String> result = new ArrayList<>();
+        for (ClassInfo info : getAnnotatedClasses(scanPath, type)) {
+            result.add(info.getName());
+        }
+        return result;
+    }
+
+    /**
+     * Get the names of annotated classes using the class index if enabled or the classpath scan result
+     *
+     * @param type of annotation
+     * @param includeBasePackage true to include the platform packages
+     * @return class names
+     */
+    public List<String> getAnnotatedClassNames(Class<? extends Annotation> type, boolean includeBasePackage) {
+        List<String> result = new ArrayList<>();
+        Set<String> packages = getPackages(includeBasePackage);
+        for (String p : packages) {
+            result.addAll(getAnnotatedClassNames(p, type));
+        }
+        return result;
+    }
+
+    /**
+     * Get the names of annotated classes using the class index if enabled or the classpath scan result
+     *
+     * @param scanPath package name
+     * @param type of annotation
+     * @return class names
+     */
+    public List<String> getAnnotatedClassNames(String scanPath, Class<? extends Annotation> type) {
+        if (!scanPath.contains(".")) {
+            throw new IllegalArgumentException(EX_START + scanPath + EX_END);
+        }
+        Map<String, List<String>> classIndex = getIndex();
+        if (classIndex == null) {
+            return getScannedClassNames(scanPath, type);
+        }
+        List<String> result = new ArrayList<>();
+        for (String name : classIndex.getOrDefault(type.getName(), Collections.emptyList())) {
+            if (inPackage(name, scanPath)) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Create a class index of the application packages
+     *
+     * @return map of annotation name to class names where the "packages" key lists the indexed packages
+     */
+    public Map<String, List<String>> createIndex() {
+        Set<String> packages = getPackages(true);
+        Map<String, List<String>> result = new TreeMap<>();
+        result.put(INDEXED_PACKAGES, new ArrayList<>(new TreeSet<>(packages)));
+        for (String p : packages) {
+            for (Map.Entry<String, List<ClassInfo>> kv : getScanData(p).classes.entrySet()) {
+                String annotation = kv.getKey();
+                if (!isSystemAnnotation(annotation)) {
+                    for (ClassInfo info : kv.getValue()) {
+                        String name = info.getName();
+                        if (inPackage(name, p)) {
+                            List<String> names = result.computeIfAbsent(annotation, k -> new ArrayList<>());
+                            if (!names.contains(name)) {
+                                names.add(name);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Release the scan results when the application has started
+     * <p>
+     * A package is scanned again if it is requested afterwards.
+     */
+    public void clearCache() {
+        scans.clear();
     }
 
     public Set<String> getPackages(boolean includeBasePackage) {
@@ -74,6 +187,115 @@ public class SimpleClassScanner {
         return result;
     }
 
+    private boolean inPackage(String className, String packageName) {
+        return className.startsWith(packageName) && className.length() > packageName.length() &&
+                className.charAt(packageName.length()) == '.';
+    }
+
+    private boolean isSystemAnnotation(String name) {
+        for (String prefix: SYSTEM_ANNOTATIONS) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ScanData getScanData(String scanPath) {
+        ScanData data = findScanData(scanPath);
+        return data != null? data : scan(scanPath);
+    }
+
+    private ScanData findScanData(String scanPath) {
+        for (ScanData data: scans) {
+            if (data.scanPath.equals(scanPath) || inPackage(scanPath, data.scanPath)) {
+                return data;
+            }
+        }
+        return null;
+    }
+
+    private synchronized ScanData scan(String scanPath) {
+        ScanData data = findScanData(scanPath);
+        if (data != null) {
+            return data;
+        }
+        long begin = System.currentTimeMillis();
+        Map<String, List<ClassInfo>> classes = new HashMap<>();
+        try (ScanResult sr = new ClassGraph().enableAllInfo().acceptPackages(scanPath).scan()) {
+            // collect the annotations in use so that the annotated classes of each can be kept
+            Set<String> annotations = new HashSet<>();
+            for (ClassInfo info: sr.getAllClasses()) {
+                for (AnnotationInfo annotation: info.getAnnotationInfo()) {
+                    annotations.add(annotation.getName());
+                }
+            }
+            for (String annotation: annotations) {
+                classes.put(annotation, new ArrayList<>(sr.getClassesWithAnnotation(annotation)));
+            }
+        }
+        data = new ScanData(scanPath, classes);
+        scans.add(data);
+        log.info("Scanned package {} in {} ms", scanPath, System.currentTimeMillis() - begin);
+        return data;
+    }
+
+    private synchronized Map<String, List<String>> getIndex() {
+        if (!indexLoaded) {
+            indexLoaded = true;
+            if ("true".equals(AppConfigReader.getInstance().getProperty(SCAN_INDEX, "false"))) {
+                index = loadIndex();
+            }
+        }
+        return index;
+    }
+
+    private Map<String, List<String>> loadIndex() {
+        Utility util = Utility.getInstance();
+        Map<String, List<String>> result = new HashMap<>();
+        Set<String> indexed = new HashSet<>();
+        int n = 0;
+        try {
+            Enumeration<URL> resources = SimpleClassScanner.class.getClassLoader().getResources(CLASS_INDEX);
+            while (resources.hasMoreElements()) {
+                URL url = resources.nextElement();
+                Properties p = new Properties();
+                try (InputStream in = url.openStream()) {
+                    p.load(in);
+                }
+                for (String key: p.stringPropertyNames()) {
+                    List<String> names = util.split(p.getProperty(key), ", ");
+                    if (INDEXED_PACKAGES.equals(key)) {
+                        indexed.addAll(names);
+                    } else {
+                        List<String> merged = result.computeIfAbsent(key, k -> new ArrayList<>());
+                        for (String name: names) {
+                            if (!merged.contains(name)) {
+                                merged.add(name);
+                            }
+                        }
+                    }
+                }
+                n++;
+            }
+        } catch (IOException e) {
+            log.error("Unable to read {} - {}", CLASS_INDEX, e.getMessage());
+            return null;
+        }
+        if (n == 0) {
+            log.warn("{} not found - fall back to classpath scanning", CLASS_INDEX);
+            return null;
+        }
+        Set<String> missing = new HashSet<>(getPackages(true));
+        missing.removeAll(indexed);
+        if (!missing.isEmpty()) {
+            log.warn("Packages {} are not in {} - fall back to classpath scanning", missing, CLASS_INDEX);
+            return null;
+        }
+        log.info("Loaded class index of {} annotations from {}", result.size(), CLASS_INDEX);
+        return result;
+    }
+
     private Set<String> getScanComponents(String components) {
         Set<String> result = new HashSet<>();
         AppConfigReader reader = AppConfigReader.getInstance();
@@ -93,4 +315,15 @@ public class SimpleClassScanner {
         return result;
     }
 
+    private static class ScanData {
+        private final String scanPath;
+        // annotation name to annotated classes
+        private final Map<String, List<ClassInfo>> classes;
+
+        private ScanData(String scanPath, Map<String, List<ClassInfo>> classes) {
+            this.scanPath = scanPath;
+            this.classes = classes;
+        }
+    }
+
 }
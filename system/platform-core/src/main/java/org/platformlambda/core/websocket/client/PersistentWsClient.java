@@ -93,7 +93,7 @@ public class PersistentWsClient extends Thread {
 
     @Override
     public void run() {
-        vertx = Vertx.vertx();
+        vertx = Platform.getInstance().getVertx();
         client = vertx.createWebSocketClient();
         Runtime.getRuntime().addShutdownHook(new Thread(this::close));
         Utility util = Utility.getInstance();
@@ -245,7 +245,6 @@ public class PersistentWsClient extends Thread {
                 log.debug("{} already released", session);
             }
             client.close();
-            vertx.close();
         }
     }
 
@@ -18,36 +18,49 @@
 package org.platformlambda.core.websocket.common;
 
 import io.vertx.core.eventbus.EventBus;
-import org.platformlambda.core.models.EventBlocks;
 import org.platformlambda.core.models.EventEnvelope;
 import org.platformlambda.core.system.Platform;
 import org.platformlambda.core.system.EventEmitter;
 import org.platformlambda.core.system.ServiceQueue;
 import org.platformlambda.core.util.AppConfigReader;
-import org.platformlambda.core.util.SimpleCache;
 import org.platformlambda.core.util.Utility;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.text.NumberFormat;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 public class MultipartPayload {
     private static final Logger log = LoggerFactory.getLogger(MultipartPayload.class);
     private static final String DEFAULT_PAYLOAD_SIZE = "65536";
     private static final String BINARY_SIZE = "websocket.binary.size";
+    private static final String COMPRESSION = "payload.compression.enabled";
+    private static final String COMPRESSION_THRESHOLD = "payload.compression.threshold";
+    private static final String DEFAULT_COMPRESSION_THRESHOLD = "8192";
     public static final String ID = "_id_";
+    public static final String ZIP = "_zip_";
     public static final String COUNT = "_blk_";
     public static final String TOTAL = "_max_";
     public static final String TO = "to";
     public static final String BROADCAST = "broadcast";
     public static final int OVERHEAD = 256;
     private static final String TO_MONITOR = "@monitor";
-    private static final SimpleCache cache = SimpleCache.createCache("payload.segmentation", 60000);
     private final int maxPayload;
+    private final boolean compression;
+    private final int compressionThreshold;
+    private final AtomicLong compressedEvents = new AtomicLong(0);
+    private final AtomicLong originalBytes = new AtomicLong(0);
+    private final AtomicLong compressedBytes = new AtomicLong(0);
     private static final MultipartPayload instance = new MultipartPayload();
 
     private MultipartPayload() {
@@ -56,6 +69,13 @@ public class MultipartPayload {
         maxPayload = util.str2int(reader.getProperty(BINARY_SIZE, DEFAULT_PAYLOAD_SIZE)) - OVERHEAD;
         String threshold = NumberFormat.getInstance().format(maxPayload);
         log.info("Automatic segmentation when event payload exceeds {}", threshold);
+        compression = "true".equals(reader.getProperty(COMPRESSION, "false"));
+        compressionThreshold = Math.max(OVERHEAD,
+                util.str2int(reader.getProperty(COMPRESSION_THRESHOLD, DEFAULT_COMPRESSION_THRESHOLD)));
+        if (compression) {
+            log.info("Automatic compression when event payload exceeds {}",
+                    NumberFormat.getInstance().format(compressionThreshold));
+        }
     }
 
     public static MultipartPayload getInstance() {
@@ -72,6 +92,11 @@ public class MultipartPayload {
                 message.setTo(to.substring(0, to.indexOf(TO_MONITOR)));
             }
             po.send(message);
+        } else if (control.size() == 1 && control.containsKey(ZIP) && message.getBody() instanceof byte[]) {
+            // compressed event
+            EventEnvelope decompressed = new EventEnvelope();
+            decompressed.load(decompress((byte[]) message.getBody(), Utility.getInstance().str2int(control.get(ZIP))));
+            incoming(decompressed);
         } else if (isDataBlock(control) && control.containsKey(ID) &&
                 control.containsKey(COUNT) && control.containsKey(TOTAL)) {
             // segmented incoming event
@@ -82,20 +107,17 @@ public class MultipartPayload {
             if (message.getBody() instanceof byte[] && count != -1 && total != -1 && count <= total) {
                 byte[] data = (byte[]) message.getBody();
                 log.debug("Receiving block {} of {} as {} - {} bytes", count, total, id, data.length);
-                Object o = cache.get(id);
-                EventBlocks segments = o instanceof EventBlocks ? (EventBlocks) o : new EventBlocks(id);
-                if (segments.exists(count)) {
-                    log.error("Duplicated block {} for event {} dropped", count, id);
-                } else {
-                    segments.put(count, data);
-                    if (total == segments.size()) {
-                        EventEnvelope reconstructed = new EventEnvelope();
-                        reconstructed.load(segments.toBytes());
-                        cache.remove(id);
-                        po.send(reconstructed);
-                    } else {
-                        cache.put(id, segments);
+                ReassemblyManager manager = ReassemblyManager.getInstance();
+                ByteBuffer buffer = manager.put(id, count, total, data);
+                if (buffer != null) {
+                    EventEnvelope reconstructed = new EventEnvelope();
+                    try {
+                        reconstructed.load(buffer);
+                    } finally {
+                        manager.free(buffer);
                     }
+                    // the reconstructed event may be a compressed event
+                    incoming(reconstructed);
                 }
             }
         }
@@ -122,6 +144,10 @@ public class MultipartPayload {
         if (dest != null && event != null) {
             event.setEndOfRoute();
             byte[] payload = event.toBytes();
+            if (compression && payload.length > compressionThreshold) {
+                // compression is done before segmentation
+                payload = compress(payload);
+            }
             EventBus system = Platform.getInstance().getEventSystem();
             if (payload.length > maxPayload) {
                 int total = (payload.length / maxPayload) + (payload.length % maxPayload == 0 ? 0 : 1);
@@ -167,4 +193,97 @@ public class MultipartPayload {
         }
     }
 
+    /**
+     * Compress an event into a wrapper event if it reduces the payload size
+     *
+     * @param payload of an event
+     * @return bytes of the wrapper event or the original payload
+     */
+    private byte[] compress(byte[] payload) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(payload);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 2);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+                if (out.size() + OVERHEAD >= payload.length) {
+                    // not compressible
+                    return payload;
+                }
+            }
+            byte[] wrapper = new EventEnvelope().setHeader(ZIP, payload.length).setBody(out.toByteArray()).toBytes();
+            compressedEvents.incrementAndGet();
+            originalBytes.addAndGet(payload.length);
+            compressedBytes.addAndGet(wrapper.length);
+            return wrapper;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private byte[] decompress(byte[] data, int size) throws IOException {
+        if (size < 1) {
+            throw new IOException("Invalid compressed event - original size "+size);
+        }
+        // the original size comes from the sender so it must be checked before allocating memory
+        long limit = ReassemblyManager.getInstance().getMemoryLimit();
+        if (size > limit) {
+            throw new IOException("Compressed event rejected - original size "+size+
+                                    " exceeds limit of "+limit+" bytes");
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] result = new byte[size];
+            int n = 0;
+            while (n < size && !inflater.finished()) {
+                int len = inflater.inflate(result, n, size - n);
+                if (len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += len;
+            }
+            if (n != size || !inflater.finished()) {
+                throw new IOException("Invalid compressed event - size mismatch");
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid compressed event - "+e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    public boolean isCompressionEnabled() {
+        return compression;
+    }
+
+    /**
+     * Get the largest serialized event that is sent without segmentation
+     *
+     * @return size in bytes
+     */
+    public int getMaxPayload() {
+        return maxPayload;
+    }
+
+    /**
+     * Compression statistics for outgoing events
+     *
+     * @return count, original bytes, compressed bytes and bytes saved
+     */
+    public Map<String, Object> getCompressionStats() {
+        long before = originalBytes.get();
+        long after = compressedBytes.get();
+        Map<String, Object> result = new HashMap<>();
+        result.put("events", compressedEvents.get());
+        result.put("original_bytes", before);
+        result.put("compressed_bytes", after);
+        result.put("bytes_saved", before - after);
+        return result;
+    }
+
 }
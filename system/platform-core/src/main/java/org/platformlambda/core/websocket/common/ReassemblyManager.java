@@ -0,0 +1,350 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+package org.platformlambda.core.websocket.common;
+
+import org.platformlambda.core.system.Platform;
+import org.platformlambda.core.util.AppConfigReader;
+import org.platformlambda.core.util.Utility;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IMPORTANT: Reserved for internal uses.
+ * <p>
+ * Reassembly of segmented events into a pre-sized direct byte buffer.
+ * The total size of the buffers, the block bitmaps and the last blocks that arrive early
+ * is bounded by a memory budget so that a burst of large events cannot exhaust the heap.
+ * <p>
+ * The block count of an event is checked against the block size in "websocket.binary.size",
+ * so the application instances must use the same value.
+ * <p>
+ * The memory of a completed event remains reserved until the consumer
+ * returns the buffer with the "free" method.
+ */
+public class ReassemblyManager {
+    private static final Logger log = LoggerFactory.getLogger(ReassemblyManager.class);
+    private static final String MEMORY_LIMIT = "payload.reassembly.memory.limit";
+    private static final String DEFAULT_MEMORY_LIMIT = "128";
+    private static final String BINARY_SIZE = "websocket.binary.size";
+    private static final String DEFAULT_BINARY_SIZE = "65536";
+    private static final int MAX_REJECTED_EVENTS = 10000;
+    private static final long ONE_MB = 1024 * 1024L;
+    private static final long EXPIRY = 60 * 1000L;
+    private static final long HOUSEKEEPING_INTERVAL = 20 * 1000L;
+    private static final ReassemblyManager instance = new ReassemblyManager();
+    private final ConcurrentMap<String, PartialEvent> partialEvents = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> rejectedEvents = new ConcurrentHashMap<>();
+    private final AtomicBoolean housekeeperPending = new AtomicBoolean(true);
+    private final AtomicLong reserved = new AtomicLong(0);
+    private final AtomicLong completed = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+    private final AtomicLong expired = new AtomicLong(0);
+    private final long budget;
+    private final int maxBlockSize;
+
+    private ReassemblyManager() {
+        Utility util = Utility.getInstance();
+        AppConfigReader config = AppConfigReader.getInstance();
+        budget = Math.max(1, util.str2long(config.getProperty(MEMORY_LIMIT, DEFAULT_MEMORY_LIMIT))) * ONE_MB;
+        maxBlockSize = Math.max(1, util.str2int(config.getProperty(BINARY_SIZE, DEFAULT_BINARY_SIZE))
+                                    - MultipartPayload.OVERHEAD);
+        log.info("Reassembly of segmented events limited to {} bytes", NumberFormat.getInstance().format(budget));
+    }
+
+    public static ReassemblyManager getInstance() {
+        return instance;
+    }
+
+    /**
+     * Save a block of a segmented event
+     * <p>
+     * Blocks are written to their final position in a direct buffer
+     * so that no concatenation is required when the last block arrives.
+     *
+     * @param id of the event
+     * @param count of the block (1 to total)
+     * @param total number of blocks
+     * @param data of the block
+     * @return the reassembled event from position 0 to limit when complete, otherwise null.
+     *         The caller must return the buffer with the "free" method after use.
+     */
+    public ByteBuffer put(String id, int count, int total, byte[] data) {
+        if (count < 1 || count > total) {
+            log.error("Invalid block {} of {} for event {} dropped", count, total, id);
+            return null;
+        }
+        if (rejectedEvents.containsKey(id)) {
+            log.debug("Block {} of {} for rejected event {} dropped", count, total, id);
+            return null;
+        }
+        // the block count comes from the sender so it must be checked before any memory is allocated
+        if ((long) (total - 1) * maxBlockSize >= budget || (long) total * data.length > budget) {
+            markRejected(id);
+            log.error("Event {} rejected - {} blocks of up to {} bytes exceed reassembly memory limit of {} bytes",
+                    id, total, maxBlockSize, NumberFormat.getInstance().format(budget));
+            return null;
+        }
+        if (data.length > maxBlockSize) {
+            markRejected(id);
+            log.error("Event {} rejected - block {} of {} bytes exceeds {} bytes", id, count, data.length,
+                    maxBlockSize);
+            return null;
+        }
+        startHousekeeper();
+        PartialEvent partial = partialEvents.computeIfAbsent(id, k -> new PartialEvent(total));
+        synchronized (partial) {
+            if (partial.isClosed()) {
+                // the event has been completed, expired or rejected in another thread
+                return null;
+            }
+            if (partial.overhead == 0) {
+                // the block bitmap is counted against the memory budget
+                long bitmap = ((total + 63) / 64) * 8L;
+                if (!reserve(bitmap)) {
+                    reject(id, partial);
+                    return null;
+                }
+                partial.overhead = bitmap;
+            }
+            if (partial.total != total || partial.received.get(count - 1)) {
+                log.error("Duplicated block {} for event {} dropped", count, id);
+                return null;
+            }
+            if (partial.buffer == null) {
+                if (count < total || total == 1) {
+                    // the block size is known from any block except the last one
+                    if (!allocate(partial, data.length)) {
+                        reject(id, partial);
+                        return null;
+                    }
+                    if (partial.pendingLastBlock != null) {
+                        if (partial.pendingLastBlock.length > partial.blockSize) {
+                            log.error("Invalid size of block {} of {} for event {} - expect {} or less, actual {}",
+                                    total, total, id, partial.blockSize, partial.pendingLastBlock.length);
+                            reject(id, partial);
+                            return null;
+                        }
+                        partial.write(total, partial.pendingLastBlock);
+                        reserved.addAndGet(-partial.pendingLastBlock.length);
+                        partial.overhead -= partial.pendingLastBlock.length;
+                        partial.pendingLastBlock = null;
+                    }
+                } else {
+                    // the last block arrives early and is held until the block size is known
+                    if (!reserve(data.length)) {
+                        reject(id, partial);
+                        return null;
+                    }
+                    partial.overhead += data.length;
+                    partial.pendingLastBlock = data;
+                    partial.received.set(count - 1);
+                    partial.touch();
+                    return null;
+                }
+            }
+            if (data.length > partial.blockSize || (count < total && data.length != partial.blockSize)) {
+                log.error("Invalid size of block {} of {} for event {} - expect {}, actual {}",
+                        count, total, id, partial.blockSize, data.length);
+                reject(id, partial);
+                return null;
+            }
+            partial.write(count, data);
+            if (partial.received.cardinality() == total) {
+                partialEvents.remove(id);
+                // the reservation of the buffer is kept until the consumer frees it
+                partial.closed = true;
+                reserved.addAndGet(-partial.overhead);
+                partial.overhead = 0;
+                completed.incrementAndGet();
+                ByteBuffer result = partial.buffer;
+                result.position(0);
+                result.limit(partial.length);
+                return result;
+            }
+            return null;
+        }
+    }
+
+    private boolean allocate(PartialEvent partial, int blockSize) {
+        long capacity = (long) blockSize * partial.total;
+        if (capacity > Integer.MAX_VALUE || !reserve(capacity)) {
+            return false;
+        }
+        partial.blockSize = blockSize;
+        partial.capacity = capacity;
+        partial.buffer = ByteBuffer.allocateDirect((int) capacity);
+        return true;
+    }
+
+    private boolean reserve(long bytes) {
+        while (true) {
+            long current = reserved.get();
+            if (current + bytes > budget) {
+                return false;
+            }
+            if (reserved.compareAndSet(current, current + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Return the buffer of a completed event so that its memory can be reserved by another event
+     *
+     * @param buffer from the "put" method
+     */
+    public void free(ByteBuffer buffer) {
+        if (buffer != null) {
+            reserved.addAndGet(-buffer.capacity());
+        }
+    }
+
+    private void release(PartialEvent partial) {
+        partial.closed = true;
+        if (partial.capacity > 0) {
+            reserved.addAndGet(-partial.capacity);
+            partial.capacity = 0;
+        }
+        if (partial.overhead > 0) {
+            reserved.addAndGet(-partial.overhead);
+            partial.overhead = 0;
+        }
+        partial.pendingLastBlock = null;
+    }
+
+    private void markRejected(String id) {
+        // remaining blocks of a rejected event are dropped without checking them again
+        if (rejectedEvents.size() < MAX_REJECTED_EVENTS) {
+            rejectedEvents.put(id, System.currentTimeMillis());
+        }
+        rejected.incrementAndGet();
+    }
+
+    private void reject(String id, PartialEvent partial) {
+        partialEvents.remove(id);
+        release(partial);
+        markRejected(id);
+        log.error("Event {} rejected - reassembly memory {} of {} bytes in use", id,
+                NumberFormat.getInstance().format(reserved.get()), NumberFormat.getInstance().format(budget));
+    }
+
+    private void startHousekeeper() {
+        if (housekeeperPending.get() && housekeeperPending.compareAndSet(true, false)) {
+            Platform.getInstance().getVertx().setPeriodic(HOUSEKEEPING_INTERVAL, t -> removeExpiredEvents());
+        }
+    }
+
+    private void removeExpiredEvents() {
+        long now = System.currentTimeMillis();
+        List<String> expiredList = new ArrayList<>();
+        partialEvents.forEach((k, v) -> {
+            if (now - v.lastWrite > EXPIRY) {
+                expiredList.add(k);
+            }
+        });
+        for (String id: expiredList) {
+            PartialEvent partial = partialEvents.remove(id);
+            if (partial != null) {
+                synchronized (partial) {
+                    release(partial);
+                }
+                expired.incrementAndGet();
+                log.warn("Incomplete event {} expired - received {} of {} blocks", id,
+                        partial.received.cardinality(), partial.total);
+            }
+        }
+        rejectedEvents.entrySet().removeIf(kv -> now - kv.getValue() > EXPIRY);
+    }
+
+    /**
+     * Get the memory budget for reassembly of segmented events
+     * <p>
+     * This is also the largest event that can be received from a peer.
+     *
+     * @return limit in bytes
+     */
+    public long getMemoryLimit() {
+        return budget;
+    }
+
+    /**
+     * Statistics of the reassembly buffers
+     *
+     * @return in-flight events, reserved bytes, memory limit, block size limit and counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("in_flight", partialEvents.size());
+        result.put("reserved_bytes", reserved.get());
+        result.put("limit_bytes", budget);
+        result.put("max_block_bytes", maxBlockSize);
+        result.put("completed", completed.get());
+        result.put("rejected", rejected.get());
+        result.put("expired", expired.get());
+        return result;
+    }
+
+    private static class PartialEvent {
+        private final int total;
+        private final BitSet received;
+        private ByteBuffer buffer;
+        private byte[] pendingLastBlock;
+        private int blockSize;
+        private int length;
+        private long capacity;
+        // memory of the block bitmap and the pending last block
+        private long overhead;
+        private long lastWrite = System.currentTimeMillis();
+        private boolean closed = false;
+
+        private PartialEvent(int total) {
+            this.total = total;
+            this.received = new BitSet(total);
+        }
+
+        private void write(int count, byte[] data) {
+            int offset = (count - 1) * blockSize;
+            buffer.position(offset);
+            buffer.put(data);
+            length = Math.max(length, offset + data.length);
+            received.set(count - 1);
+            touch();
+        }
+
+        private void touch() {
+            lastWrite = System.currentTimeMillis();
+        }
+
+        private boolean isClosed() {
+            return closed;
+        }
+    }
+
+}
@@ -36,7 +36,7 @@ import io.vertx.core.buffer.Buffer;
 import java.util.*;
 
 /**
- * HTTP admin endpoints for info, health, env, shutdown, suspend and resume
+ * HTTP admin endpoints for info, health, env, metrics, profile, shutdown, suspend and resume
  * to be available with the same port when websocket server is deployed.
  * i.e. when user defined websocket server using WebSocketService is found.
  */
@@ -74,8 +74,12 @@ public class MinimalistHttpHandler implements Handler<HttpServerRequest> {
     private static final String[] HEALTH_SERVICE = {"/health", "health"};
     private static final String[] ENV_SERVICE = {"/env", "env"};
     private static final String[] LIVENESSPROBE = {"/livenessprobe", "livenessprobe"};
+    private static final String[] METRICS = {"/metrics", "metrics"};
+    private static final String[] PROFILE = {"/profile", "profile"};
     private static final String[][] ADMIN_ENDPOINTS = {INFO_SERVICE, INFO_LIB, INFO_ROUTES,
-            HEALTH_SERVICE, ENV_SERVICE, LIVENESSPROBE};
+            HEALTH_SERVICE, ENV_SERVICE, LIVENESSPROBE, METRICS, PROFILE};
+    private static final String[][] PROFILER_CONTROLS = {{"/profile/start", "profile_start"},
+            {"/profile/stop", "profile_stop"}};
     private static final long GRACE_PERIOD = 5000;
 
     @Override
@@ -98,9 +102,13 @@ public class MinimalistHttpHandler implements Handler<HttpServerRequest> {
             return;
         }
         boolean processed = false;
-        if (GET.equals(method)) {
-            String type = getAdminEndpointType(uri);
-            if (type != null) {
+        if (GET.equals(method) || POST.equals(method)) {
+            String type = GET.equals(method)? getAdminEndpointType(uri) : getProfilerControlType(uri);
+            if (type != null && POST.equals(method) && origin == null) {
+                // like shutdown, a profiler control changes the state of an application instance
+                sendError(response, uri, 400, "Missing "+ APP_INSTANCE +" in request header");
+                processed = true;
+            } else if (type != null) {
                 EventEnvelope event = new EventEnvelope().setHeader(TYPE, type);
                 event.setTo(origin != null? EventEmitter.ACTUATOR_SERVICES+"@"+origin : EventEmitter.ACTUATOR_SERVICES);
                 String accept = request.getHeader(ACCEPT);
@@ -112,8 +120,9 @@ public class MinimalistHttpHandler implements Handler<HttpServerRequest> {
                                                         .getOrDefault(CONTENT_TYPE.toLowerCase(), APPLICATION_JSON);
                             final Object data = result.getRawBody();
                             final byte[] b;
-                            if (TEXT_PLAIN.equals(contentType) && data instanceof String) {
-                                response.putHeader(CONTENT_TYPE, TEXT_PLAIN);
+                            if (contentType.startsWith(TEXT_PLAIN) && data instanceof String) {
+                                // keep parameters such as the version of the Prometheus text format
+                                response.putHeader(CONTENT_TYPE, contentType);
                                 b = util.getUTF((String) data);
                             } else {
                                 if (APPLICATION_XML.equals(contentType)) {
@@ -125,7 +134,7 @@ public class MinimalistHttpHandler implements Handler<HttpServerRequest> {
                                     }
                                 } else {
                                     if (data instanceof Map) {
-                                        b = SimpleMapper.getInstance().getMapper().writeValueAsBytes(data);
+                                        b = SimpleMapper.getInstance().getPrettyMapper().writeValueAsBytes(data);
                                     } else {
                                         b = util.getUTF(data == null? "" : data.toString());
                                     }
@@ -246,4 +255,13 @@ public class MinimalistHttpHandler implements Handler<HttpServerRequest> {
         return null;
     }
 
+    private String getProfilerControlType(String path) {
+        for (String[] control: PROFILER_CONTROLS) {
+            if (path.equals(control[0])) {
+                return control[1];
+            }
+        }
+        return null;
+    }
+
 }
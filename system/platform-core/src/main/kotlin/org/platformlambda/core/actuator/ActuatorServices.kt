@@ -45,10 +45,16 @@ class ActuatorServices : KotlinLambdaFunction<EventEnvelope, Any> {
         private const val SUSPEND = "suspend"
         private const val RESUME = "resume"
         private const val LIVENESS_PROBE = "livenessprobe"
+        private const val METRICS = "metrics"
+        private const val PROFILE = "profile"
+        private const val PROFILE_START = "profile_start"
+        private const val PROFILE_STOP = "profile_stop"
         private const val USER = "user"
         private const val WHEN = "when"
         private val infoFunction = InfoService()
         private val healthFunction = HealthService()
+        private val metricsFunction = MetricsService()
+        private val profilerFunction = ProfilerService()
         private val healthStatus = AtomicBoolean(true)
     }
 
@@ -71,6 +77,12 @@ class ActuatorServices : KotlinLambdaFunction<EventEnvelope, Any> {
             if (HEALTH == type) {
                 return healthFunction.handleEvent(headers, input, instance)
             }
+            if (METRICS == type) {
+                return metricsFunction.handleEvent(headers, input, instance)
+            }
+            if (PROFILE == type || PROFILE_START == type || PROFILE_STOP == type) {
+                return profilerFunction.handleEvent(headers, input, instance)
+            }
             if (INFO == type || LIB == type || ROUTES == type || ENV == type) {
                 return infoFunction.handleEvent(headers, input, instance)
             }
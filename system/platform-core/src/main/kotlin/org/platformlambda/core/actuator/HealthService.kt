@@ -17,6 +17,13 @@
  */
 package org.platformlambda.core.actuator
 
+import io.vertx.kotlin.coroutines.dispatcher
+import kotlinx.coroutines.DelicateCoroutinesApi
+import kotlinx.coroutines.GlobalScope
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
 import org.platformlambda.core.exception.AppException
 import org.platformlambda.core.models.EventEnvelope
 import org.platformlambda.core.models.KotlinLambdaFunction
@@ -29,40 +36,56 @@ import org.platformlambda.core.util.SimpleCache
 import org.platformlambda.core.util.Utility
 import org.slf4j.LoggerFactory
 import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
 
+/**
+ * Health check of the mandatory and optional dependencies
+ *
+ * The dependencies are checked concurrently and the whole check is bounded by "health.check.timeout".
+ * When "health.check.cache.ttl" is set, the status of a dependency is reused within the TTL.
+ * An expired status is returned while it is refreshed in the background unless it is older than
+ * three times the TTL (stale-while-revalidate).
+ */
 class HealthService : KotlinLambdaFunction<EventEnvelope, Any> {
     private val requiredServices: List<String>
     private val optionalServices: List<String>
+    private val deadline: Long
+    private val cacheTtl: Long
 
     init {
         val reader = AppConfigReader.getInstance()
-        requiredServices = Utility.getInstance().split(reader.getProperty(REQUIRED_SERVICES, ""), ", ")
+        val util = Utility.getInstance()
+        requiredServices = util.split(reader.getProperty(REQUIRED_SERVICES, ""), ", ")
         if (requiredServices.isNotEmpty()) {
             log.info("Mandatory service dependencies - {}", requiredServices)
         }
-        optionalServices = Utility.getInstance().split(reader.getProperty(OPTIONAL_SERVICES, ""), ", ")
+        optionalServices = util.split(reader.getProperty(OPTIONAL_SERVICES, ""), ", ")
         if (optionalServices.isNotEmpty()) {
             log.info("Optional services dependencies - {}", optionalServices)
         }
+        deadline = util.str2long(reader.getProperty(HEALTH_CHECK_TIMEOUT, "10000")).coerceAtLeast(1000)
+        cacheTtl = util.str2long(reader.getProperty(HEALTH_CHECK_CACHE_TTL, "0")).coerceAtLeast(0)
     }
 
     override suspend fun handleEvent(headers: Map<String, String>, input: EventEnvelope, instance: Int): Any {
         val fastRPC = FastRPC(headers)
         val platform = Platform.getInstance()
         val po = EventEmitter.getInstance();
-        var up = true
         val result: MutableMap<String, Any> = HashMap()
         /*
-         * Checking dependencies
+         * Checking dependencies concurrently
          */
-        val upstream: MutableList<Map<String, Any?>> = ArrayList()
-        checkServices(fastRPC, upstream, optionalServices, false)
-        if (!checkServices(fastRPC, upstream, requiredServices, true)) {
-            up = false
+        val dependencies = optionalServices.map { it to false } + requiredServices.map { it to true }
+        val begin = System.currentTimeMillis()
+        val statusList = coroutineScope {
+            dependencies.map { (route, required) ->
+                async { getStatus(fastRPC, route, required, begin) }
+            }.awaitAll()
         }
+        val up = statusList.all { it.up || !it.required }
         // save the current health status
         po.send(EventEmitter.ACTUATOR_SERVICES, up, Kv(TYPE, HEALTH_STATUS))
-        // checkServices will update the "upstream" service list
+        val upstream: List<Map<String, Any?>> = statusList.map { it.status }
         result[UPSTREAM] = upstream
         if (upstream.isEmpty()) {
             result[MESSAGE] = "Did you forget to define $REQUIRED_SERVICES or $OPTIONAL_SERVICES"
@@ -81,61 +104,105 @@ class HealthService : KotlinLambdaFunction<EventEnvelope, Any> {
         return response
     }
 
-    private suspend fun checkServices(fastRPC: FastRPC, upstream: MutableList<Map<String, Any?>>,
-                                      services: List<String>, required: Boolean): Boolean {
-        var up = true
-        for (route in services) {
-            val m: MutableMap<String, Any?> = HashMap()
-            m[ROUTE] = route
-            m[REQUIRED] = required
-            upstream.add(m)
-            try {
-                val key = "$INFO/$route"
-                if (!cache.exists(key)) {
-                    val req = EventEnvelope().setTo(route).setHeader(TYPE, INFO)
-                    val res = fastRPC.awaitRequest(req, 3000)
-                    if (res.body is Map<*, *>) {
-                        cache.put(key, res.body)
-                    }
+    private suspend fun getStatus(fastRPC: FastRPC, route: String, required: Boolean, begin: Long): DependencyStatus {
+        if (cacheTtl == 0L) {
+            return checkService(fastRPC, route, required, begin)
+        }
+        val key = "$route/$required"
+        val cached = statusCache[key]
+        if (cached != null) {
+            val age = System.currentTimeMillis() - cached.time
+            if (age < cacheTtl) {
+                return cached
+            }
+            if (age < cacheTtl * MAX_STALE_FACTOR) {
+                refreshInBackground(key, route, required)
+                return cached
+            }
+        }
+        val status = checkService(fastRPC, route, required, begin)
+        statusCache[key] = status
+        return status
+    }
+
+    @OptIn(DelicateCoroutinesApi::class)
+    private fun refreshInBackground(key: String, route: String, required: Boolean) {
+        if (refreshing.add(key)) {
+            GlobalScope.launch(Platform.getInstance().vertx.dispatcher()) {
+                try {
+                    statusCache[key] = checkService(FastRPC(HashMap()), route, required, System.currentTimeMillis())
+                } finally {
+                    refreshing.remove(key)
                 }
-                val info = cache[key]
-                if (info is Map<*, *>) {
-                    for (kv in info) {
-                        if (kv.key != null) {
-                            m[kv.key.toString()] = kv.value
-                        }
-                    }
+            }
+        }
+    }
+
+    private suspend fun checkService(fastRPC: FastRPC, route: String, required: Boolean,
+                                     begin: Long): DependencyStatus {
+        var up = true
+        val m: MutableMap<String, Any?> = HashMap()
+        m[ROUTE] = route
+        m[REQUIRED] = required
+        try {
+            val key = "$INFO/$route"
+            if (!cache.exists(key)) {
+                val req = EventEnvelope().setTo(route).setHeader(TYPE, INFO)
+                val res = fastRPC.awaitRequest(req, INFO_TIMEOUT.coerceAtMost(getRemainingTime(begin)))
+                if (res.body is Map<*, *>) {
+                    cache.put(key, res.body)
                 }
-                val req = EventEnvelope().setTo(route).setHeader(TYPE, HEALTH)
-                val res = fastRPC.awaitRequest(req, 10000)
-                if (res.body is String) {
-                    m[STATUS_CODE] = res.status
-                    m[MESSAGE] = res.body
-                    if (res.status != 200) {
-                        up = false
+            }
+            val info = cache[key]
+            if (info is Map<*, *>) {
+                for (kv in info) {
+                    if (kv.key != null) {
+                        m[kv.key.toString()] = kv.value
                     }
                 }
-            } catch (e: IOException) {
-                up = false
-                if (e.message!!.contains(NOT_FOUND)) {
-                    m[STATUS_CODE] = 404
-                    m[MESSAGE] = PLEASE_CHECK + e.message
-                } else {
-                    m[STATUS_CODE] = 500
-                    m[MESSAGE] = e.message
+            }
+            val req = EventEnvelope().setTo(route).setHeader(TYPE, HEALTH)
+            val res = fastRPC.awaitRequest(req, getRemainingTime(begin))
+            if (res.body is String) {
+                m[STATUS_CODE] = res.status
+                m[MESSAGE] = res.body
+                if (res.status != 200) {
+                    up = false
                 }
-            } catch (e: AppException) {
-                up = false
-                m[STATUS_CODE] = e.status
+            }
+        } catch (e: IOException) {
+            up = false
+            if (e.message!!.contains(NOT_FOUND)) {
+                m[STATUS_CODE] = 404
+                m[MESSAGE] = PLEASE_CHECK + e.message
+            } else {
+                m[STATUS_CODE] = 500
                 m[MESSAGE] = e.message
             }
+        } catch (e: AppException) {
+            up = false
+            m[STATUS_CODE] = e.status
+            m[MESSAGE] = e.message
         }
-        return up
+        return DependencyStatus(m, required, up, System.currentTimeMillis())
     }
 
+    private fun getRemainingTime(begin: Long): Long {
+        return (deadline - (System.currentTimeMillis() - begin)).coerceAtLeast(1)
+    }
+
+    private class DependencyStatus(val status: Map<String, Any?>, val required: Boolean,
+                                   val up: Boolean, val time: Long)
+
     companion object {
         private val log = LoggerFactory.getLogger(HealthService::class.java)
         private val cache = SimpleCache.createCache("health.info", 5000)
+        private val statusCache = ConcurrentHashMap<String, DependencyStatus>()
+        private val refreshing: MutableSet<String> = ConcurrentHashMap.newKeySet()
+        private const val HEALTH_CHECK_TIMEOUT = "health.check.timeout"
+        private const val HEALTH_CHECK_CACHE_TTL = "health.check.cache.ttl"
+        private const val INFO_TIMEOUT = 3000L
+        private const val MAX_STALE_FACTOR = 3
         private const val TYPE = "type"
         private const val ACCEPT = "accept"
         private const val INFO = "info"
@@ -22,7 +22,10 @@ import org.platformlambda.core.models.EventEnvelope
 import org.platformlambda.core.models.KotlinLambdaFunction
 import org.platformlambda.core.system.*
 import org.platformlambda.core.util.AppConfigReader
+import org.platformlambda.core.util.ManagedCache
 import org.platformlambda.core.util.Utility
+import org.platformlambda.core.websocket.common.MultipartPayload
+import org.platformlambda.core.websocket.common.ReassemblyManager
 import java.text.NumberFormat
 import java.util.*
 import kotlin.collections.HashMap
@@ -94,6 +97,8 @@ class InfoService : KotlinLambdaFunction<EventEnvelope, Any> {
             ENV -> {
                 result[ENV] = env
                 result[ROUTING] = registeredServices
+                result[LATENCY] = routeLatency
+                result[CONCURRENCY] = adaptiveConcurrency
             }
             else -> {
                 // java VM information
@@ -118,6 +123,14 @@ class InfoService : KotlinLambdaFunction<EventEnvelope, Any> {
                      * check streams resources if any
                      */
                 result[STREAMS] = ObjectStreamIO.getStreamCount()
+                val multipart = MultipartPayload.getInstance()
+                if (multipart.isCompressionEnabled) {
+                    result[COMPRESSION] = multipart.compressionStats
+                }
+                result[REASSEMBLY] = ReassemblyManager.getInstance().stats
+                if (ManagedCache.getCacheCollection().isNotEmpty()) {
+                    result[CACHES] = ManagedCache.getCacheStats()
+                }
                 val more = getAdditionalInfo(fastRPC)
                 if (more != null) {
                     result["additional_info"] = more
@@ -184,6 +197,30 @@ class InfoService : KotlinLambdaFunction<EventEnvelope, Any> {
             return result
         }
 
+    private val adaptiveConcurrency: Map<String, Any>
+        get() {
+            val result: MutableMap<String, Any> = HashMap()
+            val map: Map<String, ServiceDef> = Platform.getInstance().localRoutingTable
+            for ((route, service) in map) {
+                val controller = service.manager?.concurrencyController ?: continue
+                result[route] = controller.status
+            }
+            return result
+        }
+
+    private val routeLatency: Map<String, Any>
+        get() {
+            val result: MutableMap<String, Any> = HashMap()
+            val map: Map<String, ServiceDef> = Platform.getInstance().localRoutingTable
+            for ((route, service) in map) {
+                val metrics = service.manager?.metrics ?: continue
+                if (metrics.invocations > 0) {
+                    result[route] = metrics.stats
+                }
+            }
+            return result
+        }
+
     private fun getLocalRoutingDetails(isPrivate: Boolean): List<String> {
         val result: MutableList<String> = ArrayList()
         val map: Map<String, ServiceDef> = Platform.getInstance().localRoutingTable
@@ -256,6 +293,11 @@ class InfoService : KotlinLambdaFunction<EventEnvelope, Any> {
         private const val ADDITIONAL_INFO = "additional.info"
         private const val ERROR_FETCHING_INFO = "Unable to check additional.info - "
         private const val STREAMS = "streams"
+        private const val COMPRESSION = "compression"
+        private const val REASSEMBLY = "reassembly"
+        private const val CACHES = "caches"
+        private const val LATENCY = "latency"
+        private const val CONCURRENCY = "concurrency"
         private const val JAVA_VERSION = "java.version"
         private const val JAVA_VM_VERSION = "java.vm.version"
         private const val JAVA_RUNTIME_VERSION = "java.runtime.version"
@@ -0,0 +1,129 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core.actuator
+
+import org.platformlambda.core.models.EventEnvelope
+import org.platformlambda.core.models.KotlinLambdaFunction
+import org.platformlambda.core.system.Platform
+import org.platformlambda.core.util.LatencyHistogram
+
+/**
+ * Per-route metrics in Prometheus text exposition format
+ *
+ * Histogram buckets are derived from the log-linear buckets of LatencyHistogram
+ * so the cumulative counts are accurate to about 12.5 percent of the bucket limit.
+ */
+class MetricsService : KotlinLambdaFunction<EventEnvelope, Any> {
+
+    override suspend fun handleEvent(headers: Map<String, String>, input: EventEnvelope, instance: Int): Any {
+        val routes = Platform.getInstance().localRoutingTable
+        val names = routes.keys.sorted()
+        val sb = StringBuilder()
+        family(sb, "invocations_total", "counter", "Number of function executions")
+        for (route in names) {
+            val manager = routes[route]?.manager ?: continue
+            sample(sb, "invocations_total", route, null, manager.metrics.invocations.toString())
+        }
+        family(sb, "errors_total", "counter", "Number of function executions that returned a non-success status")
+        for (route in names) {
+            val manager = routes[route]?.manager ?: continue
+            for ((status, count) in manager.metrics.errors.toSortedMap()) {
+                sample(sb, "errors_total", route, "status=\"$status\"", count.toString())
+            }
+        }
+        family(sb, "expired_total", "counter", "Number of RPC requests rejected because their deadline had passed")
+        for (route in names) {
+            val manager = routes[route]?.manager ?: continue
+            sample(sb, "expired_total", route, null, manager.metrics.expired.toString())
+        }
+        family(sb, "queue_depth", "gauge", "Number of events waiting for a worker")
+        for (route in names) {
+            val manager = routes[route]?.manager ?: continue
+            sample(sb, "queue_depth", route, null, manager.queueDepth.toString())
+        }
+        family(sb, "workers", "gauge", "Number of workers that have been started")
+        for (route in names) {
+            val manager = routes[route]?.manager ?: continue
+            sample(sb, "workers", route, null, manager.workerCount.toString())
+        }
+        family(sb, "concurrency_limit", "gauge", "Number of workers that may process events")
+        for (route in names) {
+            val manager = routes[route]?.manager ?: continue
+            sample(sb, "concurrency_limit", route, null, manager.concurrencyLimit.toString())
+        }
+        family(sb, "worker_utilization", "gauge", "Ratio of busy workers to the maximum number of workers")
+        for (route in names) {
+            val manager = routes[route]?.manager ?: continue
+            val ratio = manager.busyWorkers.toDouble() / manager.instances.coerceAtLeast(1)
+            sample(sb, "worker_utilization", route, null, ratio.toString())
+        }
+        family(sb, "execution_seconds", "histogram", "Function execution time")
+        for (route in names) {
+            val manager = routes[route]?.manager ?: continue
+            histogram(sb, "execution_seconds", route, manager.metrics.executionTime)
+        }
+        family(sb, "queue_wait_seconds", "histogram", "Time an event has waited for a worker")
+        for (route in names) {
+            val manager = routes[route]?.manager ?: continue
+            histogram(sb, "queue_wait_seconds", route, manager.metrics.queueWait)
+        }
+        return EventEnvelope().setBody(sb.toString()).setHeader(CONTENT_TYPE, TEXT_PLAIN)
+    }
+
+    private fun family(sb: StringBuilder, name: String, type: String, help: String) {
+        sb.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n')
+        sb.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n')
+    }
+
+    private fun sample(sb: StringBuilder, name: String, route: String, label: String?, value: String) {
+        sb.append(PREFIX).append(name).append("{route=\"").append(route).append('"')
+        if (label != null) {
+            sb.append(',').append(label)
+        }
+        sb.append("} ").append(value).append('\n')
+    }
+
+    private fun histogram(sb: StringBuilder, name: String, route: String, histogram: LatencyHistogram) {
+        // the buckets and count of a histogram must come from the same values to stay cumulative
+        val snapshot = histogram.snapshot
+        val count = snapshot.count
+        for (limit in BUCKETS) {
+            sample(sb, name + "_bucket", route, "le=\"${seconds(limit)}\"",
+                snapshot.getCountAtOrBelow(limit).toString())
+        }
+        sample(sb, name + "_bucket", route, "le=\"+Inf\"", count.toString())
+        sample(sb, name + "_sum", route, null, seconds(snapshot.sum))
+        sample(sb, name + "_count", route, null, count.toString())
+    }
+
+    private fun seconds(micros: Long): String {
+        return (micros / ONE_MILLION).toString()
+    }
+
+    companion object {
+        private const val PREFIX = "mercury_route_"
+        private const val CONTENT_TYPE = "content-type"
+        // Prometheus text exposition format
+        private const val TEXT_PLAIN = "text/plain; version=0.0.4; charset=utf-8"
+        private const val ONE_MILLION = 1000000.0
+        // bucket limits in microseconds
+        private val BUCKETS = longArrayOf(100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000,
+            100000, 250000, 500000, 1000000, 2500000, 5000000, 10000000)
+    }
+}
@@ -0,0 +1,88 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core.actuator
+
+import org.platformlambda.core.models.EventEnvelope
+import org.platformlambda.core.models.KotlinLambdaFunction
+import org.platformlambda.core.system.Platform
+import org.platformlambda.core.system.RouteProfiler
+import org.platformlambda.core.util.AppConfigReader
+import org.platformlambda.core.util.Utility
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Start, stop and retrieve the route profiler
+ *
+ * The profile is returned as JSON or, when text/plain is requested, as collapsed stacks for flame graph tools.
+ * Retrieval is limited to one request per "profiler.request.interval" milliseconds.
+ */
+class ProfilerService : KotlinLambdaFunction<EventEnvelope, Any> {
+    private val requestInterval: Long
+
+    init {
+        val config = AppConfigReader.getInstance()
+        requestInterval = Utility.getInstance().str2long(config.getProperty(PROFILER_REQUEST_INTERVAL, "1000"))
+    }
+
+    override suspend fun handleEvent(headers: Map<String, String>, input: EventEnvelope, instance: Int): Any {
+        val profiler = RouteProfiler.getInstance()
+        val type = headers[TYPE]
+        val accept = headers[ACCEPT] ?: "?"
+        val contentType = if (accept.startsWith(APPLICATION_XML)) APPLICATION_XML else APPLICATION_JSON
+        val result: MutableMap<String, Any> = HashMap()
+        if (PROFILE_START == type || PROFILE_STOP == type) {
+            if (PROFILE_START == type) profiler.start() else profiler.stop()
+            result[RUNNING] = profiler.isRunning
+            result[ORIGIN] = Platform.getInstance().origin
+            return EventEnvelope().setHeader(CONTENT_TYPE, contentType).setBody(result)
+        }
+        val now = System.currentTimeMillis()
+        val last = lastRequest.get()
+        if (now - last < requestInterval || !lastRequest.compareAndSet(last, now)) {
+            result[TYPE] = ERROR
+            result[STATUS] = 429
+            result[MESSAGE] = "Too many requests. Please retry after $requestInterval ms"
+            return EventEnvelope().setHeader(CONTENT_TYPE, contentType).setBody(result).setStatus(429)
+        }
+        if (accept.startsWith(TEXT_PLAIN)) {
+            return EventEnvelope().setHeader(CONTENT_TYPE, TEXT_PLAIN).setBody(profiler.collapsedStacks)
+        }
+        result.putAll(profiler.profile)
+        result[ORIGIN] = Platform.getInstance().origin
+        return EventEnvelope().setHeader(CONTENT_TYPE, contentType).setBody(result)
+    }
+
+    companion object {
+        private const val PROFILER_REQUEST_INTERVAL = "profiler.request.interval"
+        private const val TYPE = "type"
+        private const val PROFILE_START = "profile_start"
+        private const val PROFILE_STOP = "profile_stop"
+        private const val RUNNING = "running"
+        private const val ORIGIN = "origin"
+        private const val ERROR = "error"
+        private const val STATUS = "status"
+        private const val MESSAGE = "message"
+        private const val ACCEPT = "accept"
+        private const val CONTENT_TYPE = "content-type"
+        private const val TEXT_PLAIN = "text/plain"
+        private const val APPLICATION_JSON = "application/json"
+        private const val APPLICATION_XML = "application/xml"
+        private val lastRequest = AtomicLong(0)
+    }
+}
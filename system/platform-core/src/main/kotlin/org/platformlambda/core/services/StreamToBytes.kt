@@ -21,40 +21,34 @@ package org.platformlambda.core.services
 import org.platformlambda.core.annotations.PreLoad
 import org.platformlambda.core.annotations.ZeroTracing
 import org.platformlambda.core.exception.AppException
+import io.vertx.kotlin.coroutines.coAwait
 import org.platformlambda.core.models.EventEnvelope
 import org.platformlambda.core.models.KotlinLambdaFunction
-import org.platformlambda.core.models.Kv
-import org.platformlambda.core.system.EventEmitter
-import org.platformlambda.core.system.FastRPC
+import org.platformlambda.core.system.AsyncObjectStreamReader
 import org.platformlambda.core.util.Utility
 import java.io.ByteArrayOutputStream
+import java.util.concurrent.TimeoutException
 
 @ZeroTracing
 @PreLoad(route = "stream.to.bytes", instances = 50)
 class StreamToBytes : KotlinLambdaFunction<EventEnvelope, ByteArray> {
     override suspend fun handleEvent(headers: Map<String, String>, input: EventEnvelope, instance: Int): ByteArray {
-        val fastRPC = FastRPC(headers)
         val util = Utility.getInstance()
         val streamId = headers[STREAM]
         val timeout = headers[TIMEOUT]
         val out = ByteArrayOutputStream()
-
-        var n = 0
         if (streamId != null && timeout != null) {
-            val req = EventEnvelope().setTo(streamId).setHeader(TYPE, READ)
-            while (true) {
-                val event = fastRPC.awaitRequest(req, 100L.coerceAtLeast(util.str2long(timeout)))
-                if (event.status == 408) {
-                    throw AppException(408, "timeout for $timeout ms")
-                }
-                if (EOF == event.headers[TYPE]) {
-                    EventEmitter.getInstance().send(streamId, Kv(TYPE, CLOSE))
-                    break
-                }
-                if (DATA == event.headers[TYPE]) {
-                    val block = event.body
+            // the stream pushes blocks within the credit window instead of one read request per block
+            val reader = AsyncObjectStreamReader(streamId, 100L.coerceAtLeast(util.str2long(timeout)),
+                                                    AsyncObjectStreamReader.getDefaultCredits())
+            reader.use {
+                while (true) {
+                    val block = try {
+                        reader.get().coAwait()
+                    } catch (e: TimeoutException) {
+                        throw AppException(408, "timeout for $timeout ms")
+                    } ?: break
                     if (block is ByteArray) {
-                        n++
                         out.write(block)
                     }
                 }
@@ -64,11 +58,6 @@ class StreamToBytes : KotlinLambdaFunction<EventEnvelope, ByteArray> {
     }
 
     companion object {
-        private const val TYPE = "type"
-        private const val READ = "read"
-        private const val DATA = "data"
-        private const val EOF = "eof"
-        private const val CLOSE = "close"
         private const val STREAM = "stream"
         private const val TIMEOUT = "timeout"
     }
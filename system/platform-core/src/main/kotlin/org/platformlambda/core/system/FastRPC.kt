@@ -34,6 +34,7 @@ class FastRPC(headers: Map<String, String>) {
     private val myRoute: String? = headers[MY_ROUTE]
     private val myTraceId: String? = headers[MY_TRACE_ID]
     private val myTracePath: String? = headers[MY_TRACE_PATH]
+    private val myDeadline: String? = headers[MY_DEADLINE]
 
     /**
      * Make a non-blocking RPC call to a service
@@ -72,6 +73,8 @@ class FastRPC(headers: Map<String, String>) {
         val inbox = NonBlockingInbox()
         val returnPath = inbox.id
         request.replyTo = returnPath + "@" + platform.origin
+        inheritDeadline(request)
+        EventEmitter.setDeadline(request, timeout)
         request.addTag(EventEmitter.RPC, timeout)
         // broadcast is not possible with RPC call
         request.broadcastLevel = 0
@@ -87,7 +90,7 @@ class FastRPC(headers: Map<String, String>) {
         if (target.isCloud) {
             MultipartPayload.getInstance().outgoing(target.manager, request)
         } else {
-            platform.eventSystem.send(target.manager.route, request.toBytes())
+            po.deliver(target.manager, request)
         }
         val message = adapter.receive()
         if (consumer.isRegistered) {
@@ -237,13 +240,15 @@ class FastRPC(headers: Map<String, String>) {
         for ((n, event) in requests.withIndex()) {
             val target = destinations[n]
             event.replyTo = returnPath + "@" + platform.origin
+            inheritDeadline(event)
+            EventEmitter.setDeadline(event, timeout)
             event.addTag(EventEmitter.RPC, timeout)
             // broadcast is not possible with RPC call
             event.broadcastLevel = 0
             if (target.isCloud) {
                 MultipartPayload.getInstance().outgoing(target.manager, event)
             } else {
-                platform.eventSystem.send(target.manager.route, event.toBytes())
+                po.deliver(target.manager, event)
             }
         }
         for (i in requests.indices) {
@@ -282,6 +287,14 @@ class FastRPC(headers: Map<String, String>) {
         }
     }
 
+    private fun inheritDeadline(event: EventEnvelope) {
+        // a nested request must not outlive the request that is being served
+        if (myDeadline != null &&
+                (event.getTag(EventEmitter.RPC) != null || event.getTag(EventEmitter.DEADLINE) == null)) {
+            event.removeTag(EventEmitter.RPC).addTag(EventEmitter.DEADLINE, myDeadline)
+        }
+    }
+
     private fun sendTrace(result: EventEnvelope,
                           start: String, from: String, to: String, traceId: String, tracePath: String) {
         val annotations: MutableMap<String, Any> = HashMap()
@@ -355,6 +368,7 @@ class FastRPC(headers: Map<String, String>) {
         private const val MY_ROUTE = "my_route"
         private const val MY_TRACE_ID = "my_trace_id"
         private const val MY_TRACE_PATH = "my_trace_path"
+        private const val MY_DEADLINE = "my_deadline"
         private const val POST = "POST"
         private const val CONTENT_TYPE = "content-type"
         private const val ACCEPT = "accept"
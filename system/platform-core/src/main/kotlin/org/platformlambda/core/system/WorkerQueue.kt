@@ -66,30 +66,69 @@ class WorkerQueue(def: ServiceDef, route: String, private val instance: Int) : W
                     event.headers.remove(MY_ROUTE)
                     event.headers.remove(MY_TRACE_ID)
                     event.headers.remove(MY_TRACE_PATH)
+                    event.headers.remove(MY_DEADLINE)
                 } catch (e: IOException) {
                     log.error("Unable to decode event - {}", e.message)
                     return
                 }
-                if (coroutine || async) {
+                // arrival time of the event at the service queue
+                val enqueued = message.headers()[ServiceQueue.ENQUEUED]?.toLongOrNull()
+                if (EventEmitter.isExpired(event)) {
+                    // the caller has given up waiting so the function is not executed
+                    val queueTime = getQueueTime(enqueued)
+                    if (queueTime >= 0) {
+                        def.manager?.recordQueueWait(queueTime)
+                    }
+                    rejectExpired(event)
+                    Platform.getInstance().eventSystem.send(def.route, READY + route)
+                } else if (coroutine || async) {
                     // execute function as a coroutine
                     GlobalScope.launch(Platform.getInstance().vertx.dispatcher()) {
-                        executeFunction(event)
+                        executeFunction(event, getQueueTime(enqueued))
                     }
                 } else {
-                    // execute function as a runnable
-                    executor.submit {
+                    // execute function as a runnable in the dedicated executor of the route if any
+                    (def.manager?.executor ?: executor).submit {
                         val worker = WorkerHandler(def, route, instance, tracing, interceptor, useEnvelope)
-                        worker.executeFunction(event)
+                        worker.executeFunction(event, getQueueTime(enqueued))
                     }
                 }
             }
         }
 
-        private suspend fun executeFunction(event: EventEnvelope) {
+        private fun rejectExpired(event: EventEnvelope) {
+            def.manager?.metrics?.recordExpired()
+            val response = EventEnvelope().setTo(event.replyTo).setFrom(def.route).setStatus(408)
+                                .setBody("Deadline exceeded before $parentRoute could start")
+            if (event.correlationId != null) {
+                response.correlationId = event.correlationId
+            }
+            if (event.extra != null) {
+                response.extra = event.extra
+            }
+            if (event.traceId != null) {
+                response.setTrace(event.traceId, event.tracePath)
+            }
+            try {
+                EventEmitter.getInstance().send(response)
+            } catch (e: IOException) {
+                log.warn("Unable to reject expired request to {} - {}", parentRoute, e.message)
+            }
+        }
+
+        private fun getQueueTime(enqueued: Long?): Long {
+            return if (enqueued == null) -1 else ((System.nanoTime() - enqueued) / 1000).coerceAtLeast(0)
+        }
+
+        private suspend fun executeFunction(event: EventEnvelope, queueTime: Long) {
+            if (queueTime >= 0) {
+                def.manager?.recordQueueWait(queueTime)
+            }
             val rpc = event.getTag(EventEmitter.RPC)
             val po = EventEmitter.getInstance()
             val ref = if (tracing) po.startTracing(parentRoute, event.traceId, event.tracePath, instance) else "?"
             val ps = processEvent(event)
+            def.manager?.metrics?.record(ps)
             val trace = po.stopTracing(ref)
             if (tracing && trace != null && trace.id != null && trace.path != null) {
                 try {
@@ -112,6 +151,9 @@ class WorkerQueue(def: ServiceDef, route: String, private val instance: Int) : W
                         metrics[SUCCESS] = ps.isSuccess
                         metrics[FROM] = if (event.from == null) UNKNOWN else event.from
                         metrics[EXEC_TIME] = ps.executionTime
+                        if (queueTime >= 0) {
+                            metrics[QUEUE_TIME] = queueTime / 1000f
+                        }
                         if (!ps.isSuccess) {
                             metrics[STATUS] = ps.status
                             metrics[EXCEPTION] = ps.exception
@@ -202,6 +244,10 @@ class WorkerQueue(def: ServiceDef, route: String, private val instance: Int) : W
                 if (event.tracePath != null) {
                     parameters[MY_TRACE_PATH] = event.tracePath
                 }
+                val deadline = event.getTag(EventEmitter.DEADLINE)
+                if (deadline != null) {
+                    parameters[MY_DEADLINE] = deadline
+                }
                 var result: Any? = null
                 if (!ping) {
                     result = if (def.isKotlin) {
@@ -258,7 +304,8 @@ class WorkerQueue(def: ServiceDef, route: String, private val instance: Int) : W
                                 }
                             }
                             for ((key, value) in headers) {
-                                if (key != MY_ROUTE && key != MY_TRACE_ID && key != MY_TRACE_PATH) {
+                                if (key != MY_ROUTE && key != MY_TRACE_ID && key != MY_TRACE_PATH
+                                    && key != MY_DEADLINE) {
                                     response.setHeader(key, value)
                                 }
                             }
@@ -441,8 +488,10 @@ class WorkerQueue(def: ServiceDef, route: String, private val instance: Int) : W
         private const val JOURNAL = "journal"
         private const val RPC = "rpc"
         private const val DELIVERED = "delivered"
+        private const val QUEUE_TIME = "queue_time"
         private const val MY_ROUTE = "my_route"
         private const val MY_TRACE_ID = "my_trace_id"
         private const val MY_TRACE_PATH = "my_trace_path"
+        private const val MY_DEADLINE = "my_deadline"
     }
 }
\ No newline at end of file
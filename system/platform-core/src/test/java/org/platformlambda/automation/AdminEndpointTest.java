@@ -21,20 +21,33 @@ package org.platformlambda.automation;
 import org.junit.Assert;
 import org.junit.Test;
 import org.platformlambda.common.TestBase;
+import org.platformlambda.core.actuator.HealthService;
+import org.platformlambda.core.annotations.KernelThreadRunner;
 import org.platformlambda.core.exception.AppException;
 import org.platformlambda.core.mock.MockCloud;
 import org.platformlambda.core.models.EventEnvelope;
+import org.platformlambda.core.models.LambdaFunction;
+import org.platformlambda.core.system.EventEmitter;
 import org.platformlambda.core.system.Platform;
+import org.platformlambda.core.system.RouteMetrics;
+import org.platformlambda.core.system.RouteProfiler;
 import org.platformlambda.core.util.MultiLevelMap;
 import org.platformlambda.core.util.Utility;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AdminEndpointTest extends TestBase {
+    private static final Logger log = LoggerFactory.getLogger(AdminEndpointTest.class);
 
     @SuppressWarnings("unchecked")
     @Test
@@ -163,6 +176,109 @@ public class AdminEndpointTest extends TestBase {
         Assert.assertEquals("OK", response.getBody());
     }
 
+    @Test
+    public void metricsEndpointTest() throws IOException, InterruptedException {
+        final BlockingQueue<EventEnvelope> bench = new ArrayBlockingQueue<>(1);
+        EventEmitter po = EventEmitter.getInstance();
+        po.asyncRequest(new EventEnvelope().setTo(HELLO_WORLD).setBody("test"), 5000).onSuccess(bench::offer);
+        Assert.assertNotNull(bench.poll(5, TimeUnit.SECONDS));
+        EventEnvelope response = httpGet(localHost, "/metrics", null);
+        assert response != null;
+        Assert.assertEquals(200, response.getStatus());
+        Assert.assertTrue(response.getBody() instanceof String);
+        String text = (String) response.getBody();
+        Assert.assertTrue(text.contains("# TYPE mercury_route_invocations_total counter"));
+        Assert.assertTrue(text.contains("# TYPE mercury_route_execution_seconds histogram"));
+        Assert.assertTrue(text.contains("mercury_route_invocations_total{route=\"hello.world\"} "));
+        Assert.assertTrue(text.contains("mercury_route_execution_seconds_bucket{route=\"hello.world\",le=\"+Inf\"} "));
+        Assert.assertTrue(text.contains("mercury_route_queue_depth{route=\"hello.world\"} 0"));
+        Assert.assertEquals("text/plain; version=0.0.4; charset=utf-8", response.getHeader("content-type"));
+        // the +Inf bucket and the count of a histogram are taken from the same snapshot
+        String inf = getSampleValue(text, "mercury_route_execution_seconds_bucket{route=\"hello.world\",le=\"+Inf\"}");
+        String count = getSampleValue(text, "mercury_route_execution_seconds_count{route=\"hello.world\"}");
+        Assert.assertNotNull(inf);
+        Assert.assertEquals(inf, count);
+        RouteMetrics metrics = Platform.getInstance().getManager(HELLO_WORLD).getMetrics();
+        Assert.assertTrue(metrics.getInvocations() > 0);
+    }
+
+    private String getSampleValue(String text, String sample) {
+        for (String line: text.split("\n")) {
+            if (line.startsWith(sample + " ")) {
+                return line.substring(sample.length() + 1);
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void profileEndpointTest() throws IOException, InterruptedException {
+        final String PROFILED = "profiled.function";
+        final int CYCLES = 5;
+        Platform.getInstance().register(PROFILED, new ProfiledFunction(), CYCLES);
+        Map<String, String> instance = new HashMap<>();
+        instance.put("X-App-Instance", Platform.getInstance().getOrigin());
+        EventEnvelope response = httpPost(localHost, "/profile/start", instance, new HashMap<>());
+        assert response != null;
+        Assert.assertEquals(200, response.getStatus());
+        Assert.assertEquals(true, ((Map<String, Object>) response.getBody()).get("running"));
+        final BlockingQueue<EventEnvelope> bench = new ArrayBlockingQueue<>(CYCLES);
+        EventEmitter po = EventEmitter.getInstance();
+        for (int i=0; i < CYCLES; i++) {
+            po.asyncRequest(new EventEnvelope().setTo(PROFILED).setBody(i), 5000).onSuccess(bench::offer);
+        }
+        for (int i=0; i < CYCLES; i++) {
+            Assert.assertNotNull(bench.poll(5, TimeUnit.SECONDS));
+        }
+        response = httpGet(localHost, "/profile", null);
+        assert response != null;
+        Assert.assertEquals(200, response.getStatus());
+        MultiLevelMap map = new MultiLevelMap((Map<String, Object>) response.getBody());
+        Assert.assertEquals(true, map.getElement("running"));
+        Map<String, Object> routes = (Map<String, Object>) map.getElement("routes");
+        Assert.assertTrue(routes.containsKey(PROFILED));
+        Map<String, Object> profile = (Map<String, Object>) routes.get(PROFILED);
+        Assert.assertTrue(((Number) profile.get("samples")).longValue() > 0);
+        Map<String, Object> stacks = (Map<String, Object>) profile.get("stacks");
+        String top = stacks.keySet().iterator().next();
+        Assert.assertTrue(top, top.startsWith(ProfiledFunction.class.getName() + ".handleEvent;"));
+        Assert.assertTrue(top, top.endsWith(";[TIMED_WAITING]"));
+        log.info("Profiler sampling time {} us per tick for {} samples",
+                map.getElement("sampling_time_us"), profile.get("samples"));
+        // retrieval is rate limited
+        response = httpGet(localHost, "/profile", null);
+        assert response != null;
+        Assert.assertEquals(429, response.getStatus());
+        Thread.sleep(1000);
+        Map<String, String> headers = new HashMap<>();
+        headers.put("accept", "text/plain");
+        response = httpGet(localHost, "/profile", headers);
+        assert response != null;
+        Assert.assertEquals(200, response.getStatus());
+        Assert.assertTrue(response.getBody() instanceof String);
+        Assert.assertTrue(((String) response.getBody()).startsWith(PROFILED + ";"));
+        response = httpPost(localHost, "/profile/stop", instance, new HashMap<>());
+        assert response != null;
+        Assert.assertEquals(200, response.getStatus());
+        Assert.assertEquals(false, ((Map<String, Object>) response.getBody()).get("running"));
+        Assert.assertFalse(RouteProfiler.getInstance().isRunning());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void profilerControlWithoutAppInstanceWillFail() throws IOException, InterruptedException {
+        for (String path: new String[]{"/profile/start", "/profile/stop"}) {
+            EventEnvelope response = httpPost(localHost, path, null, new HashMap<>());
+            assert response != null;
+            Assert.assertEquals(400, response.getStatus());
+            Assert.assertTrue(response.getBody() instanceof Map);
+            Map<String, Object> result = (Map<String, Object>) response.getBody();
+            Assert.assertEquals("Missing X-App-Instance in request header", result.get("message"));
+        }
+        Assert.assertFalse(RouteProfiler.getInstance().isRunning());
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     public void simulateHealthCheckFailureTest() throws IOException, InterruptedException {
@@ -192,6 +308,114 @@ public class AdminEndpointTest extends TestBase {
         Assert.assertEquals("OK", response.getBody());
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void concurrentHealthCheckTest() throws IOException, InterruptedException {
+        final String HEALTH_CHECK = "health.check.test";
+        final String SLOW = "health.dep.slow";
+        final String HANGING = "health.dep.hanging";
+        Platform platform = Platform.getInstance();
+        platform.register(SLOW, new SlowDependency(), 2);
+        platform.register(HANGING, new HangingDependency(), 2);
+        // the hanging dependency is checked first so that a sequential check would time out the slow one
+        System.setProperty("optional.health.dependencies", HANGING);
+        System.setProperty("mandatory.health.dependencies", SLOW);
+        System.setProperty("health.check.timeout", "2000");
+        System.setProperty("health.check.cache.ttl", "1500");
+        try {
+            platform.registerKotlin(HEALTH_CHECK, new HealthService(), 1);
+        } finally {
+            System.clearProperty("optional.health.dependencies");
+            System.clearProperty("mandatory.health.dependencies");
+            System.clearProperty("health.check.timeout");
+            System.clearProperty("health.check.cache.ttl");
+        }
+        long start = System.currentTimeMillis();
+        EventEnvelope response = checkHealth(HEALTH_CHECK);
+        long elapsed = System.currentTimeMillis() - start;
+        Assert.assertTrue("health check took " + elapsed + " ms", elapsed < 2800);
+        // an optional dependency does not affect the health status
+        Assert.assertEquals(200, response.getStatus());
+        MultiLevelMap map = new MultiLevelMap((Map<String, Object>) response.getBody());
+        Assert.assertEquals("UP", map.getElement("status"));
+        Assert.assertEquals(HANGING, map.getElement("upstream[0].route"));
+        Assert.assertEquals(408, map.getElement("upstream[0].status_code"));
+        Assert.assertEquals(SLOW, map.getElement("upstream[1].route"));
+        Assert.assertEquals(200, map.getElement("upstream[1].status_code"));
+        Assert.assertEquals("fine", map.getElement("upstream[1].message"));
+        Assert.assertEquals(1, SlowDependency.checks.get());
+        // the cached status is used within the TTL
+        start = System.currentTimeMillis();
+        checkHealth(HEALTH_CHECK);
+        Assert.assertTrue(System.currentTimeMillis() - start < 500);
+        Assert.assertEquals(1, SlowDependency.checks.get());
+        // an expired status is returned while it is refreshed in the background
+        Thread.sleep(1600);
+        start = System.currentTimeMillis();
+        response = checkHealth(HEALTH_CHECK);
+        Assert.assertTrue(System.currentTimeMillis() - start < 500);
+        map = new MultiLevelMap((Map<String, Object>) response.getBody());
+        Assert.assertEquals("fine", map.getElement("upstream[1].message"));
+        Thread.sleep(400);
+        Assert.assertEquals(2, SlowDependency.checks.get());
+        platform.release(HEALTH_CHECK);
+    }
+
+    private EventEnvelope checkHealth(String route) throws IOException, InterruptedException {
+        final BlockingQueue<EventEnvelope> bench = new ArrayBlockingQueue<>(1);
+        EventEmitter po = EventEmitter.getInstance();
+        po.asyncRequest(new EventEnvelope().setTo(route).setHeader("type", "health"), 5000)
+                .onSuccess(bench::offer);
+        EventEnvelope response = bench.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(response);
+        return response;
+    }
+
+    @KernelThreadRunner
+    private static class ProfiledFunction implements LambdaFunction {
+
+        @Override
+        public Object handleEvent(Map<String, String> headers, Object input, int instance)
+                throws InterruptedException {
+            Thread.sleep(200);
+            return input;
+        }
+    }
+
+    @KernelThreadRunner
+    private static class SlowDependency implements LambdaFunction {
+        private static final AtomicInteger checks = new AtomicInteger(0);
+
+        @Override
+        public Object handleEvent(Map<String, String> headers, Object input, int instance)
+                throws InterruptedException {
+            if ("health".equals(headers.get("type"))) {
+                checks.incrementAndGet();
+                Thread.sleep(800);
+                return "fine";
+            }
+            Map<String, Object> result = new HashMap<>();
+            result.put("service", "slow");
+            return result;
+        }
+    }
+
+    @KernelThreadRunner
+    private static class HangingDependency implements LambdaFunction {
+
+        @Override
+        public Object handleEvent(Map<String, String> headers, Object input, int instance)
+                throws InterruptedException {
+            if ("health".equals(headers.get("type"))) {
+                Thread.sleep(3000);
+                return "too late";
+            }
+            Map<String, Object> result = new HashMap<>();
+            result.put("service", "hanging");
+            return result;
+        }
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     public void remoteHealthEndpointTest() throws IOException, InterruptedException {
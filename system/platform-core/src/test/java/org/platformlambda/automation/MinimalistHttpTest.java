@@ -24,6 +24,7 @@ import org.platformlambda.common.TestBase;
 import org.platformlambda.core.mock.MockCloud;
 import org.platformlambda.core.models.EventEnvelope;
 import org.platformlambda.core.system.Platform;
+import org.platformlambda.core.system.RouteProfiler;
 import org.platformlambda.core.util.MultiLevelMap;
 
 import java.io.IOException;
@@ -363,6 +364,45 @@ public class MinimalistHttpTest extends TestBase {
         Assert.assertEquals(200, result.get("status"));
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void profilerControlWithoutAppInstanceWillFail() throws IOException, InterruptedException {
+        for (String path: new String[]{"/profile/start", "/profile/stop"}) {
+            EventEnvelope response = httpPost("http://127.0.0.1:"+ HTTP_PORT, path, null, new HashMap<>());
+            assert response != null;
+            Assert.assertTrue(response.getBody() instanceof Map);
+            Map<String, Object> result = (Map<String, Object>) response.getBody();
+            Assert.assertEquals(400, result.get("status"));
+            Assert.assertEquals("Missing X-App-Instance in request header", result.get("message"));
+        }
+        Assert.assertFalse(RouteProfiler.getInstance().isRunning());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void profilerControlWithAppInstance() throws IOException, InterruptedException {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("X-App-Instance", Platform.getInstance().getOrigin());
+        EventEnvelope response = httpPost("http://127.0.0.1:"+ HTTP_PORT, "/profile/start", headers, new HashMap<>());
+        assert response != null;
+        Assert.assertEquals(200, response.getStatus());
+        Assert.assertEquals(true, ((Map<String, Object>) response.getBody()).get("running"));
+        response = httpPost("http://127.0.0.1:"+ HTTP_PORT, "/profile/stop", headers, new HashMap<>());
+        assert response != null;
+        Assert.assertEquals(200, response.getStatus());
+        Assert.assertEquals(false, ((Map<String, Object>) response.getBody()).get("running"));
+    }
+
+    @Test
+    public void metricsEndpointTest() throws IOException, InterruptedException {
+        EventEnvelope response = httpGet("http://127.0.0.1:"+ HTTP_PORT, "/metrics", null);
+        assert response != null;
+        Assert.assertEquals(200, response.getStatus());
+        Assert.assertEquals("text/plain; version=0.0.4; charset=utf-8", response.getHeader("content-type"));
+        Assert.assertTrue(response.getBody() instanceof String);
+        Assert.assertTrue(((String) response.getBody()).contains("# TYPE mercury_route_invocations_total counter"));
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     public void pageNotExists() throws IOException, InterruptedException {
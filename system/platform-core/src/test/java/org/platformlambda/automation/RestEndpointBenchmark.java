@@ -0,0 +1,121 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.automation;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.platformlambda.common.TestBase;
+import org.platformlambda.core.models.AsyncHttpRequest;
+import org.platformlambda.core.models.EventEnvelope;
+import org.platformlambda.core.models.LambdaFunction;
+import org.platformlambda.core.system.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload throughput of a stream that is echoed through the REST automation gateway
+ */
+public class RestEndpointBenchmark extends TestBase {
+    private static final Logger log = LoggerFactory.getLogger(RestEndpointBenchmark.class);
+
+    private static final String HTTP_REQUEST = "async.http.request";
+
+    @Before
+    public void setupAuthenticator() throws IOException {
+        Platform platform = Platform.getInstance();
+        if (!platform.hasRoute("v1.api.auth")) {
+            LambdaFunction f = (headers, input, instance) -> true;
+            platform.registerPrivate("v1.api.auth", f, 1);
+        }
+    }
+
+    @Test
+    public void uploadStreamBenchmark() throws IOException, InterruptedException {
+        final int MB = 1024 * 1024;
+        final int SIZE = 16 * MB;
+        final BlockingQueue<EventEnvelope> bench1 = new ArrayBlockingQueue<>(1);
+        final BlockingQueue<Boolean> bench2 = new ArrayBlockingQueue<>(1);
+        EventEmitter po = EventEmitter.getInstance();
+        byte[] block = new byte[MB];
+        Arrays.fill(block, (byte) 'x');
+        long begin = System.nanoTime();
+        ObjectStreamIO stream = new ObjectStreamIO();
+        try (ObjectStreamWriter out = new ObjectStreamWriter(stream.getOutputStreamId(),
+                                            ObjectStreamWriter.getDefaultBlockSize())) {
+            for (int i = 0; i < SIZE / MB; i++) {
+                out.write(block);
+            }
+        }
+        AsyncHttpRequest req = new AsyncHttpRequest();
+        req.setMethod("PUT");
+        req.setUrl("/api/hello/world");
+        req.setTargetHost("http://127.0.0.1:"+port);
+        req.setHeader("accept", "application/octet-stream");
+        req.setHeader("content-type", "application/octet-stream");
+        req.setContentLength(SIZE);
+        req.setStreamRoute(stream.getInputStreamId());
+        EventEnvelope request = new EventEnvelope().setTo(HTTP_REQUEST).setBody(req);
+        // the service echoes the uploaded stream to the HTTP response
+        po.asyncRequest(request, 60000).onSuccess(bench1::offer);
+        EventEnvelope response = bench1.poll(60, TimeUnit.SECONDS);
+        Assert.assertNotNull(response);
+        String streamId = response.getHeader("stream");
+        Assert.assertNotNull(streamId);
+        AsyncObjectStreamReader in = new AsyncObjectStreamReader(streamId, 60000,
+                                        AsyncObjectStreamReader.getDefaultCredits());
+        final long[] total = new long[1];
+        countBytes(in, total).onSuccess(bench2::offer);
+        Boolean done = bench2.poll(60, TimeUnit.SECONDS);
+        Assert.assertEquals(Boolean.TRUE, done);
+        Assert.assertEquals(SIZE, total[0]);
+        long ms = Math.max(1, (System.nanoTime() - begin) / 1000000);
+        log.info("Upload and echo of {} MB through the gateway in {} ms, {} MB/s with block size of {}",
+                SIZE / MB, ms, SIZE / MB * 1000 / ms, ObjectStreamWriter.getDefaultBlockSize());
+    }
+
+    private Future<Boolean> countBytes(AsyncObjectStreamReader in, long[] total) {
+        return Future.future(promise -> fetchNextCount(promise, in, total));
+    }
+
+    private void fetchNextCount(Promise<Boolean> promise, AsyncObjectStreamReader in, long[] total) {
+        in.get().onSuccess(block -> {
+            if (block instanceof byte[]) {
+                total[0] += ((byte[]) block).length;
+                fetchNextCount(promise, in, total);
+            } else {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ok to ignore
+                }
+                promise.complete(true);
+            }
+        }).onFailure(promise::fail);
+    }
+
+}
@@ -23,6 +23,8 @@ import io.vertx.core.Promise;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.platformlambda.automation.config.RoutingEntry;
+import org.platformlambda.automation.models.AssignedRoute;
 import org.platformlambda.common.TestBase;
 import org.platformlambda.core.models.AsyncHttpRequest;
 import org.platformlambda.core.models.EventEnvelope;
@@ -43,7 +45,6 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 public class RestEndpointTest extends TestBase {
-
     private static final String MULTIPART_FORM_DATA = "multipart/form-data";
     private static final String HTTP_REQUEST = "async.http.request";
     private static final long RPC_TIMEOUT = 10000;
@@ -408,6 +409,66 @@ public class RestEndpointTest extends TestBase {
         Assert.assertArrayEquals(bytes.toByteArray(), result.toByteArray());
     }
 
+    @Test
+    public void uploadStreamTest() throws IOException, InterruptedException {
+        final int MB = 1024 * 1024;
+        final int SIZE = 4 * MB;
+        final BlockingQueue<EventEnvelope> bench1 = new ArrayBlockingQueue<>(1);
+        final BlockingQueue<Boolean> bench2 = new ArrayBlockingQueue<>(1);
+        EventEmitter po = EventEmitter.getInstance();
+        byte[] block = new byte[MB];
+        Arrays.fill(block, (byte) 'x');
+        ObjectStreamIO stream = new ObjectStreamIO();
+        try (ObjectStreamWriter out = new ObjectStreamWriter(stream.getOutputStreamId(),
+                                            ObjectStreamWriter.getDefaultBlockSize())) {
+            for (int i = 0; i < SIZE / MB; i++) {
+                out.write(block);
+            }
+        }
+        AsyncHttpRequest req = new AsyncHttpRequest();
+        req.setMethod("PUT");
+        req.setUrl("/api/hello/world");
+        req.setTargetHost("http://127.0.0.1:"+port);
+        req.setHeader("accept", "application/octet-stream");
+        req.setHeader("content-type", "application/octet-stream");
+        req.setContentLength(SIZE);
+        req.setStreamRoute(stream.getInputStreamId());
+        EventEnvelope request = new EventEnvelope().setTo(HTTP_REQUEST).setBody(req);
+        // the service echoes the uploaded stream to the HTTP response
+        po.asyncRequest(request, 60000).onSuccess(bench1::offer);
+        EventEnvelope response = bench1.poll(60, TimeUnit.SECONDS);
+        Assert.assertNotNull(response);
+        String streamId = response.getHeader("stream");
+        Assert.assertNotNull(streamId);
+        AsyncObjectStreamReader in = new AsyncObjectStreamReader(streamId, 60000,
+                                        AsyncObjectStreamReader.getDefaultCredits());
+        final long[] total = new long[1];
+        countBytes(in, total).onSuccess(bench2::offer);
+        Boolean done = bench2.poll(60, TimeUnit.SECONDS);
+        Assert.assertEquals(Boolean.TRUE, done);
+        Assert.assertEquals(SIZE, total[0]);
+    }
+
+    private Future<Boolean> countBytes(AsyncObjectStreamReader in, long[] total) {
+        return Future.future(promise -> fetchNextCount(promise, in, total));
+    }
+
+    private void fetchNextCount(Promise<Boolean> promise, AsyncObjectStreamReader in, long[] total) {
+        in.get().onSuccess(block -> {
+            if (block instanceof byte[]) {
+                total[0] += ((byte[]) block).length;
+                fetchNextCount(promise, in, total);
+            } else {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ok to ignore
+                }
+                promise.complete(true);
+            }
+        }).onFailure(promise::fail);
+    }
+
     @Test
     public void uploadMultipartWithPost() throws IOException, InterruptedException {
         final BlockingQueue<EventEnvelope> bench1 = new ArrayBlockingQueue<>(1);
@@ -624,6 +685,8 @@ public class RestEndpointTest extends TestBase {
         Assert.assertTrue(map.getElement("body") instanceof Map);
         Map<String, Object> received = (Map<String, Object>) map.getElement("body");
         Assert.assertEquals(data, received);
+        AssignedRoute route = RoutingEntry.getInstance().getRouteInfo("POST", "/api/hello/list");
+        Assert.assertEquals(Boolean.TRUE, route.info.compactJson);
     }
 
     @SuppressWarnings("unchecked")
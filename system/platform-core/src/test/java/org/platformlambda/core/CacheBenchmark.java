@@ -0,0 +1,85 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.junit.Test;
+import org.platformlambda.core.util.ManagedCache;
+import org.platformlambda.core.util.SimpleCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hit ratio of ManagedCache versus LRU with a skewed workload and SimpleCache clean up cost
+ */
+public class CacheBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(CacheBenchmark.class);
+
+    @Test
+    public void skewedWorkloadBenchmark() {
+        final int CAPACITY = 1000;
+        final int CYCLES = 500000;
+        String[] workload = CacheTest.createSkewedWorkload(50000, CYCLES);
+        ManagedCache cache = ManagedCache.createCache("skewed.workload.benchmark", 60000, CAPACITY);
+        Cache<String, Object> lru = CacheBuilder.newBuilder().maximumSize(CAPACITY)
+                                        .expireAfterWrite(60000, TimeUnit.MILLISECONDS).build();
+        int lruHits = 0;
+        long t1 = System.nanoTime();
+        for (String key: workload) {
+            if (lru.getIfPresent(key) != null) {
+                lruHits++;
+            } else {
+                lru.put(key, key);
+            }
+        }
+        long t2 = System.nanoTime();
+        int hits = 0;
+        for (String key: workload) {
+            if (cache.get(key) != null) {
+                hits++;
+            } else {
+                cache.put(key, key);
+            }
+        }
+        long t3 = System.nanoTime();
+        log.info("LRU hit ratio {}, {} ms", (double) lruHits / CYCLES, (t2 - t1) / 1000000);
+        log.info("W-TinyLFU hit ratio {}, {} ms", (double) hits / CYCLES, (t3 - t2) / 1000000);
+    }
+
+    @Test
+    public void simpleCacheCleanUpBenchmark() throws InterruptedException {
+        final int ITEMS = 200000;
+        SimpleCache cache = SimpleCache.createCache("simple.expiry.benchmark", 1000);
+        for (int i=0; i < ITEMS; i++) {
+            cache.put("k" + i, i);
+        }
+        Thread.sleep(1050);
+        cache.put("fresh", true);
+        long t1 = System.nanoTime();
+        for (int i=0; i < 1000; i++) {
+            cache.cleanUp();
+        }
+        long t2 = System.nanoTime();
+        log.info("1000 clean up of unexpired cache in {} us", (t2 - t1) / 1000);
+    }
+
+}
@@ -18,11 +18,28 @@
 
 package org.platformlambda.core;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.junit.Assert;
 import org.junit.Test;
+import org.platformlambda.core.models.EventEnvelope;
+import org.platformlambda.core.system.EventEmitter;
+import org.platformlambda.core.util.InMemoryCacheStore;
+import org.platformlambda.core.util.LruCache;
 import org.platformlambda.core.util.ManagedCache;
+import org.platformlambda.core.util.NearCache;
 import org.platformlambda.core.util.SimpleCache;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class CacheTest {
 
     // note that the cache expiry has a minimum value of 1000 ms
@@ -51,6 +68,343 @@ public class CacheTest {
         cache1.clear();
     }
 
+    @Test
+    public void singleFlightLoader() throws InterruptedException {
+        ManagedCache cache = ManagedCache.createCache("single.flight", 5000, 100);
+        AtomicInteger calls = new AtomicInteger(0);
+        CountDownLatch ready = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(8);
+        List<Object> results = new ArrayList<>();
+        for (int i=0; i < 8; i++) {
+            new Thread(() -> {
+                try {
+                    ready.await();
+                    Object value = cache.get("k1", k -> {
+                        calls.incrementAndGet();
+                        try {
+                            Thread.sleep(200);
+                        } catch (InterruptedException e) {
+                            // ok to ignore
+                        }
+                        return "v-" + k;
+                    });
+                    synchronized (results) {
+                        results.add(value);
+                    }
+                } catch (InterruptedException e) {
+                    // ok to ignore
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        ready.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, calls.get());
+        Assert.assertEquals(8, results.size());
+        for (Object o: results) {
+            Assert.assertEquals("v-k1", o);
+        }
+        // null value is not cached
+        Assert.assertNull(cache.get("k2", k -> null));
+        Assert.assertFalse(cache.exists("k2"));
+        Map<String, Object> stats = cache.getStats();
+        Assert.assertEquals(2L, stats.get("loads"));
+        Assert.assertTrue(stats.containsKey("hit_ratio"));
+        Assert.assertTrue(stats.containsKey("average_load_ms"));
+        Assert.assertTrue(ManagedCache.getCacheStats().containsKey("single.flight"));
+    }
+
+    @Test
+    public void frequentItemsSurviveScan() {
+        ManagedCache cache = ManagedCache.createCache("tiny.lfu", 60000, 100);
+        for (int n=0; n < 10; n++) {
+            for (int i=0; i < 50; i++) {
+                String key = "hot-" + i;
+                if (cache.get(key) == null) {
+                    cache.put(key, i);
+                }
+            }
+        }
+        // one-off keys should not displace frequently used keys
+        for (int i=0; i < 1000; i++) {
+            cache.put("scan-" + i, i);
+        }
+        cache.cleanUp();
+        Assert.assertTrue(cache.size() <= 100);
+        int found = 0;
+        for (int i=0; i < 50; i++) {
+            if (cache.getMap().containsKey("hot-" + i)) {
+                found++;
+            }
+        }
+        Assert.assertTrue("Only " + found + " hot keys retained", found >= 45);
+        Assert.assertTrue((long) cache.getStats().get("evictions") >= 950);
+    }
+
+    @Test
+    public void expireAfterAccess() throws InterruptedException {
+        ManagedCache cache = ManagedCache.createCache("access.expiry", 1000, 100, true);
+        Assert.assertTrue(cache.isExpireAfterAccess());
+        cache.put("k1", "v1");
+        cache.put("k2", "v2");
+        for (int i=0; i < 4; i++) {
+            Thread.sleep(400);
+            // reading k1 extends its lifetime
+            Assert.assertEquals("v1", cache.get("k1"));
+        }
+        Assert.assertNull(cache.get("k2"));
+    }
+
+    @Test
+    public void refreshAhead() throws InterruptedException {
+        ManagedCache cache = ManagedCache.createCache("refresh.ahead", 1000, 100).setRefreshAhead(500);
+        AtomicInteger version = new AtomicInteger(0);
+        Assert.assertEquals(1, cache.get("k1", k -> version.incrementAndGet()));
+        Thread.sleep(600);
+        // the current value is returned while the item is reloaded in the background
+        Assert.assertEquals(1, cache.get("k1", k -> version.incrementAndGet()));
+        Thread.sleep(200);
+        Assert.assertEquals(2, cache.get("k1"));
+        Thread.sleep(500);
+        // the refreshed item has a new lifetime
+        Assert.assertEquals(2, cache.get("k1"));
+    }
+
+    @Test
+    public void skewedWorkloadHitRatio() {
+        final int CAPACITY = 1000;
+        String[] workload = createSkewedWorkload(50000, 100000);
+        ManagedCache cache = ManagedCache.createCache("skewed.workload", 60000, CAPACITY);
+        Cache<String, Object> lru = CacheBuilder.newBuilder().maximumSize(CAPACITY)
+                                        .expireAfterWrite(60000, TimeUnit.MILLISECONDS).build();
+        int lruHits = 0;
+        for (String key: workload) {
+            if (lru.getIfPresent(key) != null) {
+                lruHits++;
+            } else {
+                lru.put(key, key);
+            }
+        }
+        int hits = 0;
+        for (String key: workload) {
+            if (cache.get(key) != null) {
+                hits++;
+            } else {
+                cache.put(key, key);
+            }
+        }
+        // W-TinyLFU keeps the frequent keys that LRU evicts under a skewed workload
+        Assert.assertTrue(hits > lruHits);
+    }
+
+    /**
+     * Create a workload with a zipf-like key distribution
+     *
+     * @param keys number of distinct keys
+     * @param cycles number of requests
+     * @return list of keys
+     */
+    static String[] createSkewedWorkload(int keys, int cycles) {
+        Random random = new Random(100);
+        double[] cdf = new double[keys];
+        double sum = 0;
+        for (int i=0; i < keys; i++) {
+            sum += 1.0 / (i + 1);
+            cdf[i] = sum;
+        }
+        String[] workload = new String[cycles];
+        for (int i=0; i < cycles; i++) {
+            double r = random.nextDouble() * sum;
+            int lo = 0, hi = keys - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (cdf[mid] < r) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            workload[i] = "key-" + lo;
+        }
+        return workload;
+    }
+
+    @Test
+    public void lruCacheEviction() {
+        LruCache<String, Integer> cache = new LruCache<>(3);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        // reading an entry makes it the most recently used one
+        Assert.assertEquals(Integer.valueOf(1), cache.get("a"));
+        cache.put("d", 4);
+        Assert.assertEquals(3, cache.size());
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals(Integer.valueOf(1), cache.get("a"));
+        Assert.assertEquals(Integer.valueOf(3), cache.get("c"));
+        Assert.assertEquals(Integer.valueOf(4), cache.get("d"));
+        // rewriting an entry does not add a new one
+        cache.put("c", 30);
+        Assert.assertEquals(3, cache.size());
+        Assert.assertEquals(Integer.valueOf(30), cache.get("c"));
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void simpleCacheLimits() {
+        SimpleCache sized = SimpleCache.createCache("simple.sized", 60000, 3);
+        Assert.assertEquals(3, sized.getMaxItems());
+        sized.put("a", 1);
+        sized.put("b", 2);
+        sized.put("c", 3);
+        // rewriting an entry makes it the newest one
+        sized.put("a", 10);
+        sized.put("d", 4);
+        Assert.assertEquals(3, sized.size());
+        Assert.assertNull(sized.get("b"));
+        Assert.assertEquals(10, sized.get("a"));
+        Assert.assertEquals(1, sized.getEvictions());
+        SimpleCache weighted = SimpleCache.createCache("simple.weighted", 60000, 0, 1000,
+                                    o -> o instanceof byte[]? ((byte[]) o).length : 0);
+        for (int i=0; i < 5; i++) {
+            weighted.put("k" + i, new byte[300]);
+        }
+        Assert.assertEquals(3, weighted.size());
+        Assert.assertEquals(900, weighted.getWeight());
+        Assert.assertFalse(weighted.exists("k0"));
+        Assert.assertTrue(weighted.exists("k4"));
+        weighted.remove("k4");
+        Assert.assertEquals(600, weighted.getWeight());
+        weighted.clear();
+        Assert.assertEquals(0, weighted.size());
+        Assert.assertEquals(0, weighted.getWeight());
+    }
+
+    @Test
+    public void simpleCacheExpiryCleanUp() throws InterruptedException {
+        final int ITEMS = 200000;
+        SimpleCache cache = SimpleCache.createCache("simple.expiry", 1000);
+        for (int i=0; i < ITEMS; i++) {
+            cache.put("k" + i, i);
+        }
+        Thread.sleep(600);
+        // a rewritten entry is kept for another expiry period
+        cache.put("k0", 0);
+        Thread.sleep(450);
+        cache.put("fresh", true);
+        // a cache without limits leaves expiry to the housekeeper
+        Assert.assertEquals(ITEMS + 1, cache.size());
+        cache.cleanUp();
+        Assert.assertEquals(2, cache.size());
+        Assert.assertTrue(cache.exists("k0"));
+        Assert.assertTrue(cache.exists("fresh"));
+        // clean up stops at the first unexpired entry
+        cache.cleanUp();
+        Assert.assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void simpleCacheInlineExpiryIsBounded() throws InterruptedException {
+        final int ITEMS = 1000;
+        SimpleCache cache = SimpleCache.createCache("simple.expiry.sized", 1000, ITEMS * 2);
+        for (int i=0; i < ITEMS; i++) {
+            cache.put("k" + i, i);
+        }
+        Thread.sleep(1050);
+        cache.put("fresh", true);
+        // a write removes only a few expired entries
+        Assert.assertTrue(cache.size() > ITEMS - 20);
+        cache.cleanUp();
+        Assert.assertEquals(1, cache.size());
+        Assert.assertTrue(cache.exists("fresh"));
+        Assert.assertEquals(0, cache.getEvictions());
+    }
+
+    @Test
+    public void nearCacheVersioning() throws IOException {
+        InMemoryCacheStore store = new InMemoryCacheStore();
+        NearCache cache = NearCache.createCache("near.versioning", 60000, 100, store);
+        Assert.assertTrue(cache.put("k1", "v10", 10));
+        // a delayed write with an older version is rejected
+        Assert.assertFalse(cache.put("k1", "v5", 5));
+        Assert.assertEquals("v10", cache.get("k1"));
+        Assert.assertEquals(10, cache.getVersion("k1"));
+        Assert.assertEquals(1L, cache.getStats().get("stale_writes"));
+        // new versions are always newer than the versions seen so far
+        Assert.assertTrue(NearCache.nextVersion() > 10);
+        Assert.assertTrue(cache.put("k1", "v11"));
+        Assert.assertEquals("v11", cache.get("k1"));
+        // the remote tier is used when the item is not found locally
+        cache.getLocalCache().remove("k1");
+        Assert.assertEquals("v11", cache.get("k1"));
+        Assert.assertEquals("loaded", cache.get("k2", k -> "loaded"));
+        Assert.assertEquals(2, store.size());
+        long version = cache.getVersion("k1");
+        Assert.assertTrue(cache.remove("k1"));
+        Assert.assertNull(cache.get("k1"));
+        // the tombstone rejects a delayed write that is older than the removal
+        Assert.assertEquals(2, store.size());
+        Assert.assertFalse(cache.put("k1", "late", version + 1));
+        cache.getLocalCache().remove("k1");
+        Assert.assertFalse(cache.put("k1", "late", version + 1));
+        Assert.assertNull(cache.get("k1"));
+        // a removed item is loaded again with a newer version
+        Assert.assertEquals("reloaded", cache.get("k1", k -> "reloaded"));
+        Assert.assertTrue(cache.getVersion("k1") > version);
+    }
+
+    @Test
+    public void nearCacheInvalidation() throws IOException, InterruptedException {
+        InMemoryCacheStore store = new InMemoryCacheStore();
+        NearCache cacheA = NearCache.createCache("near.peer", 60000, 100, store);
+        NearCache cacheB = NearCache.createPeer("near.peer", 60000, 100, store, "mock-origin");
+        Assert.assertTrue(cacheA.put("k1", "v1"));
+        Assert.assertEquals("v1", cacheB.get("k1"));
+        // hot key writes are coalesced into a few invalidations
+        for (int i=0; i < 100; i++) {
+            Assert.assertTrue(cacheA.put("k1", "v" + i));
+        }
+        cacheA.flush();
+        long sent = (long) cacheA.getStats().get("invalidations_sent");
+        Assert.assertTrue(sent >= 1 && sent < 50);
+        // the peer drops its local copy when it receives the invalidation and reads the remote tier again
+        waitForInvalidations(cacheB, 1);
+        Assert.assertEquals("v99", cacheB.get("k1"));
+        Assert.assertEquals(0L, cacheA.getStats().get("invalidations_received"));
+        // updates from the peer invalidate this instance
+        Assert.assertTrue(cacheB.put("k1", "peer"));
+        cacheB.flush();
+        waitForInvalidations(cacheA, 1);
+        Assert.assertEquals("peer", cacheA.get("k1"));
+        // a removal reaches the peer as an invalidation and a delayed write cannot restore the item
+        long version = cacheB.getVersion("k1");
+        Assert.assertTrue(cacheA.remove("k1"));
+        cacheA.flush();
+        waitForInvalidations(cacheB, 2);
+        Assert.assertNull(cacheB.get("k1"));
+        Assert.assertFalse(cacheB.put("k1", "late", version + 1));
+        Assert.assertNull(cacheA.get("k1"));
+        // an invalidation with an older version is ignored
+        Map<String, Object> bundle = new HashMap<>();
+        bundle.put("k1", 1L);
+        EventEmitter.getInstance().broadcast(new EventEnvelope().setTo("near.cache.near.peer")
+                .setHeader("origin", "peer").setBody(bundle));
+        Thread.sleep(200);
+        Assert.assertEquals(1L, cacheA.getStats().get("invalidations_received"));
+        Assert.assertEquals(2L, cacheB.getStats().get("invalidations_received"));
+    }
+
+    private void waitForInvalidations(NearCache cache, long n) throws InterruptedException {
+        long begin = System.currentTimeMillis();
+        while ((long) cache.getStats().get("invalidations_received") < n &&
+                System.currentTimeMillis() - begin < 5000) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(n, cache.getStats().get("invalidations_received"));
+    }
+
     /**
      * SimpleCache is reserved for internal use
      * <p>
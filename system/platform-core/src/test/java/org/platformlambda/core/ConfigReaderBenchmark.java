@@ -0,0 +1,77 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.platformlambda.core.util.AppConfigReader;
+import org.platformlambda.core.util.CompiledPath;
+import org.platformlambda.core.util.ConfigReader;
+import org.platformlambda.core.util.MultiLevelMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lookup rate of deep configuration paths
+ */
+public class ConfigReaderBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(ConfigReaderBenchmark.class);
+
+    @BeforeClass
+    public static void setup() {
+        ConfigReader.setBaseConfig(AppConfigReader.getInstance());
+    }
+
+    @Test
+    public void deepPathBenchmark() {
+        final int CYCLES = 1000000;
+        MultiLevelMap mm = new MultiLevelMap();
+        String path = "level1.level2[3].level3.level4[1][2].level5.value";
+        mm.setElement(path, "hello");
+        CompiledPath compiled = CompiledPath.compile(path);
+        ConfigReader reader = new ConfigReader();
+        reader.load(mm.getMap());
+        Assert.assertEquals("hello", mm.getElement(compiled));
+        Assert.assertEquals("hello", reader.get(path));
+        // warm up
+        for (int i=0; i < CYCLES / 10; i++) {
+            mm.getElement(compiled);
+            mm.getElement(path);
+            reader.get(path);
+        }
+        long t1 = System.nanoTime();
+        for (int i=0; i < CYCLES; i++) {
+            mm.getElement(compiled);
+        }
+        long t2 = System.nanoTime();
+        for (int i=0; i < CYCLES; i++) {
+            mm.getElement(path);
+        }
+        long t3 = System.nanoTime();
+        for (int i=0; i < CYCLES; i++) {
+            reader.get(path);
+        }
+        long t4 = System.nanoTime();
+        log.info("Deep path lookups/s: compiled {}, by path {}, config {}",
+                CYCLES * 1000000000L / (t2 - t1), CYCLES * 1000000000L / (t3 - t2),
+                CYCLES * 1000000000L / (t4 - t3));
+    }
+
+}
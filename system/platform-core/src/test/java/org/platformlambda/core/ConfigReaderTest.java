@@ -22,12 +22,14 @@ import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.platformlambda.core.util.AppConfigReader;
+import org.platformlambda.core.util.CompiledPath;
 import org.platformlambda.core.util.ConfigReader;
 import org.platformlambda.core.util.MultiLevelMap;
 import org.platformlambda.core.util.Utility;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -264,4 +266,67 @@ public class ConfigReaderTest {
         Assert.assertEquals("hello world", value);
     }
 
+    @Test
+    public void compiledPathTest() {
+        MultiLevelMap mm = new MultiLevelMap();
+        CompiledPath deep = CompiledPath.compile("hello.world[1][2].test/item");
+        Assert.assertSame(deep, CompiledPath.compile("hello.world[1][2].test/item"));
+        Assert.assertEquals(4, deep.size());
+        mm.setElement(deep, "x");
+        Assert.assertEquals("x", mm.getElement(deep));
+        Assert.assertEquals("x", mm.getElement("hello.world[1][2].test.item"));
+        Assert.assertTrue(mm.exists(deep));
+        Assert.assertNull(mm.getElement(CompiledPath.compile("hello.world[1][0]")));
+        Assert.assertTrue(mm.keyExists(CompiledPath.compile("hello.world[1][0]")));
+        Assert.assertFalse(mm.keyExists(CompiledPath.compile("hello.world[x]")));
+        mm.removeElement(deep);
+        Assert.assertFalse(mm.exists(deep));
+        Assert.assertTrue(mm.keyExists("hello.world[1][2].test"));
+        // a flat key takes precedence
+        mm.getMap().put("flat.key", 1);
+        Assert.assertEquals(1, mm.getElement(CompiledPath.compile("flat.key")));
+        IllegalArgumentException ex = Assert.assertThrows(IllegalArgumentException.class,
+                () -> mm.setElement(CompiledPath.compile("hello[1"), true));
+        Assert.assertEquals("Invalid composite path - missing end bracket", ex.getMessage());
+    }
+
+    @Test
+    public void resolvedValuesAreReloaded() {
+        ConfigReader reader = new ConfigReader();
+        Map<String, Object> map = new HashMap<>();
+        map.put("a.b", "${application.name}-1");
+        reader.load(map);
+        String expected = AppConfigReader.getInstance().getProperty("application.name") + "-1";
+        Assert.assertEquals(expected, reader.getProperty("a.b"));
+        Assert.assertEquals(expected, reader.getProperty("a.b"));
+        Assert.assertNull(reader.getProperty("a.c"));
+        map.clear();
+        map.put("a.b", "2");
+        map.put("a.c", "3");
+        reader.load(map);
+        Assert.assertEquals("2", reader.getProperty("a.b"));
+        Assert.assertEquals("3", reader.getProperty("a.c"));
+    }
+
+    @Test
+    public void substitutedValueFollowsSystemProperty() throws IOException {
+        ConfigReader reader = new ConfigReader();
+        reader.load("classpath:/test.properties");
+        System.setProperty("sample.system.property", "first");
+        Assert.assertEquals("first", reader.getProperty("my.system.property"));
+        System.setProperty("sample.system.property", "second");
+        Assert.assertEquals("second", reader.getProperty("my.system.property"));
+    }
+
+    @Test
+    public void mapUpdateIsVisible() {
+        ConfigReader reader = new ConfigReader();
+        Map<String, Object> map = new HashMap<>();
+        map.put("x", "1");
+        reader.load(map);
+        Assert.assertEquals("1", reader.getProperty("x"));
+        reader.getMap().put("x", "2");
+        Assert.assertEquals("2", reader.getProperty("x"));
+    }
+
 }
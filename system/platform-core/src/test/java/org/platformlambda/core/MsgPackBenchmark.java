@@ -0,0 +1,122 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.platformlambda.core.models.MsgPackVisitor;
+import org.platformlambda.core.serializers.MsgPack;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pack and unpack throughput of MsgPack for payloads of different sizes
+ */
+public class MsgPackBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(MsgPackBenchmark.class);
+    private static final MsgPack msgPack = new MsgPack();
+
+    @Test
+    public void packUnpackBenchmark() throws IOException {
+        final long TOTAL_BYTES = 32 * 1024 * 1024;
+        for (int size: new int[] {1024, 64 * 1024, 1024 * 1024}) {
+            Map<String, Object> payload = createPayload(size);
+            byte[] b = msgPack.pack(payload);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(b.length);
+            int cycles = (int) Math.max(20, TOTAL_BYTES / b.length);
+            // warm up
+            for (int i=0; i < Math.max(10, cycles / 10); i++) {
+                msgPack.unpack(msgPack.pack(payload));
+            }
+            long begin = System.nanoTime();
+            for (int i=0; i < cycles; i++) {
+                msgPack.pack(payload);
+            }
+            long pack = System.nanoTime() - begin;
+            begin = System.nanoTime();
+            for (int i=0; i < cycles; i++) {
+                buffer.clear();
+                msgPack.pack(payload, buffer);
+            }
+            long packBuffer = System.nanoTime() - begin;
+            begin = System.nanoTime();
+            for (int i=0; i < cycles; i++) {
+                msgPack.unpack(b);
+            }
+            long unpack = System.nanoTime() - begin;
+            AtomicInteger found = new AtomicInteger();
+            MsgPackVisitor visitor = new MsgPackVisitor() {
+                @Override
+                public boolean select(String path) {
+                    return path.equals("size");
+                }
+
+                @Override
+                public void onValue(String path, Object value) {
+                    found.incrementAndGet();
+                }
+            };
+            begin = System.nanoTime();
+            for (int i=0; i < cycles; i++) {
+                msgPack.visit(b, visitor);
+            }
+            long visit = System.nanoTime() - begin;
+            Assert.assertEquals(cycles, found.get());
+            log.info("Payload {} bytes, {} cycles - pack {} MB/s, pack to direct buffer {} MB/s, " +
+                            "unpack {} MB/s, visit one field {} MB/s", b.length, cycles,
+                    throughput(b.length, cycles, pack), throughput(b.length, cycles, packBuffer),
+                    throughput(b.length, cycles, unpack), throughput(b.length, cycles, visit));
+        }
+    }
+
+    private long throughput(int size, int cycles, long nanoseconds) {
+        return (long) size * cycles * 1000 / Math.max(1, nanoseconds);
+    }
+
+    /**
+     * Create a representative event payload of approximately the given size
+     *
+     * @param size in bytes
+     * @return payload
+     */
+    private Map<String, Object> createPayload(int size) {
+        Map<String, Object> result = new HashMap<>();
+        List<Object> records = new ArrayList<>();
+        result.put("size", size);
+        result.put("records", records);
+        int n = Math.max(1, size / 80);
+        for (int i=0; i < n; i++) {
+            Map<String, Object> record = new HashMap<>();
+            record.put("id", i);
+            record.put("name", "record-"+i);
+            record.put("amount", i * 1.5d);
+            record.put("active", i % 2 == 0);
+            record.put("tags", Arrays.asList("alpha", "beta"));
+            record.put("created", System.currentTimeMillis() + 100000000000L);
+            records.add(record);
+        }
+        return result;
+    }
+
+}
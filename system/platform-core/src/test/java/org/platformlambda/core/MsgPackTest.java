@@ -20,6 +20,7 @@ package org.platformlambda.core;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.platformlambda.core.models.MsgPackVisitor;
 import org.platformlambda.core.models.PoJo;
 import org.platformlambda.core.serializers.MsgPack;
 import org.platformlambda.core.serializers.PayloadMapper;
@@ -28,6 +29,8 @@ import org.platformlambda.core.util.Utility;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -291,4 +294,118 @@ public class MsgPackTest {
         Assert.assertEquals(input.getAddress(), result.getAddress());
     }
 
+    @Test
+    public void packIntoByteBuffer() throws IOException {
+        Map<String, Object> input = createPayload(2000);
+        byte[] b = msgPack.pack(input);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(b.length + 10);
+        buffer.position(5);
+        int n = msgPack.pack(input, buffer);
+        Assert.assertEquals(b.length, n);
+        Assert.assertEquals(5 + n, buffer.position());
+        buffer.flip().position(5);
+        byte[] copy = new byte[n];
+        buffer.duplicate().get(copy);
+        Assert.assertArrayEquals(b, copy);
+        Assert.assertEquals(input, msgPack.unpack(buffer));
+        // buffer is not changed when there is not enough space
+        ByteBuffer small = ByteBuffer.allocate(b.length - 1);
+        Assert.assertThrows(BufferOverflowException.class, () -> msgPack.pack(input, small));
+        Assert.assertEquals(0, small.position());
+        // PoJo is packed as a typed payload
+        PoJo pojo = new PoJo();
+        pojo.setName("hello world");
+        ByteBuffer pojoBuffer = ByteBuffer.allocate(1024);
+        msgPack.pack(pojo, pojoBuffer);
+        pojoBuffer.flip();
+        Object o = msgPack.unpack(pojoBuffer);
+        Assert.assertTrue(o instanceof PoJo);
+        Assert.assertEquals("hello world", ((PoJo) o).getName());
+    }
+
+    @Test
+    public void pooledPackerAfterLargePayload() throws IOException {
+        Map<String, Object> large = createPayload(1024 * 1024);
+        Map<String, Object> small = createPayload(1000);
+        Assert.assertEquals(large, msgPack.unpack(msgPack.pack(large)));
+        Assert.assertEquals(small, msgPack.unpack(msgPack.pack(small)));
+        Assert.assertEquals(large, msgPack.unpack(msgPack.pack(large)));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void visitorSkipsUnusedFields() throws IOException {
+        Map<String, Object> input = createPayload(5000);
+        input.put("name", "demo");
+        input.put("tags", Arrays.asList("a", null, "c"));
+        byte[] b = msgPack.pack(input);
+        Map<String, Object> values = new HashMap<>();
+        List<String> lists = new ArrayList<>();
+        List<String> skipped = new ArrayList<>();
+        msgPack.visit(b, new MsgPackVisitor() {
+            @Override
+            public boolean select(String path) {
+                boolean selected = path.equals("name") || path.startsWith("tags") ||
+                                    path.equals("records") || path.startsWith("records[0]");
+                if (!selected) {
+                    skipped.add(path);
+                }
+                return selected;
+            }
+
+            @Override
+            public void onList(String path, int size) {
+                lists.add(path+"="+size);
+            }
+
+            @Override
+            public void onValue(String path, Object value) {
+                values.put(path, value);
+            }
+        });
+        Assert.assertEquals("demo", values.get("name"));
+        Assert.assertEquals("a", values.get("tags[0]"));
+        Assert.assertTrue(values.containsKey("tags[1]"));
+        Assert.assertNull(values.get("tags[1]"));
+        Assert.assertEquals("c", values.get("tags[2]"));
+        Assert.assertEquals(0, values.get("records[0].id"));
+        Assert.assertEquals("record-0", values.get("records[0].name"));
+        Assert.assertFalse(values.containsKey("records[1].id"));
+        Assert.assertTrue(skipped.contains("records[1]"));
+        Assert.assertTrue(skipped.contains("size"));
+        List<Object> records = (List<Object>) input.get("records");
+        Assert.assertTrue(lists.contains("tags=3"));
+        Assert.assertTrue(lists.contains("records="+records.size()));
+        // the visitor receives all elements when it does not skip
+        List<String> paths = new ArrayList<>();
+        msgPack.visit(b, (path, value) -> paths.add(path));
+        Assert.assertTrue(paths.contains("records[1].tags[1]"));
+        Assert.assertTrue(paths.contains("records[1].amount"));
+    }
+
+    /**
+     * Create a representative event payload of approximately the given size
+     *
+     * @param size in bytes
+     * @return payload
+     */
+    private Map<String, Object> createPayload(int size) {
+        Map<String, Object> result = new HashMap<>();
+        List<Object> records = new ArrayList<>();
+        result.put("size", size);
+        result.put("records", records);
+        int n = Math.max(1, size / 80);
+        for (int i=0; i < n; i++) {
+            Map<String, Object> record = new HashMap<>();
+            record.put("id", i);
+            record.put("name", "record-"+i);
+            record.put("amount", i * 1.5d);
+            record.put("active", i % 2 == 0);
+            record.put("tags", Arrays.asList("alpha", "beta"));
+            record.put("created", System.currentTimeMillis() + 100000000000L);
+            records.add(record);
+        }
+        return result;
+    }
+
 }
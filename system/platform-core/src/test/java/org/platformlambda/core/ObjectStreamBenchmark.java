@@ -0,0 +1,109 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.platformlambda.core.system.AsyncObjectStreamReader;
+import org.platformlambda.core.system.ObjectStreamIO;
+import org.platformlambda.core.system.ObjectStreamWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read throughput and open-close cost of object streams
+ */
+public class ObjectStreamBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(ObjectStreamBenchmark.class);
+
+    @Test
+    public void pullVersusCreditBenchmark() throws IOException, InterruptedException {
+        final int BLOCKS = 2000;
+        byte[] block = new byte[4096];
+        for (int credits: new int[] {0, 16}) {
+            ObjectStreamIO stream = new ObjectStreamIO(10);
+            try (ObjectStreamWriter out = new ObjectStreamWriter(stream.getOutputStreamId())) {
+                for (int i = 0; i < BLOCKS; i++) {
+                    out.write(block);
+                }
+            }
+            List<Object> received = new ArrayList<>();
+            BlockingQueue<Integer> bench = new ArrayBlockingQueue<>(1);
+            AsyncObjectStreamReader in = new AsyncObjectStreamReader(stream.getInputStreamId(), 10000, credits);
+            long begin = System.nanoTime();
+            fetchNextBlock(in, received, bench);
+            Integer count = bench.poll(30, TimeUnit.SECONDS);
+            long diff = System.nanoTime() - begin;
+            Assert.assertNotNull(count);
+            Assert.assertEquals(BLOCKS, count.intValue());
+            log.info("Read {} blocks of {} bytes with {} in {} ms", BLOCKS, block.length,
+                    credits == 0? "one request per block" : credits+" credits", diff / 1000000);
+        }
+    }
+
+    @Test
+    public void streamChurnBenchmark() throws IOException, InterruptedException {
+        final int STREAMS = 1000;
+        // exclude the one-time start up of the stream multiplexer and the elastic queue
+        new ObjectStreamIO(1);
+        long begin = System.nanoTime();
+        for (int i = 0; i < STREAMS; i++) {
+            ObjectStreamIO stream = new ObjectStreamIO(10);
+            try (ObjectStreamWriter out = new ObjectStreamWriter(stream.getOutputStreamId())) {
+                out.write(new byte[] {(byte) i});
+            }
+            List<Object> received = new ArrayList<>();
+            BlockingQueue<Integer> bench = new ArrayBlockingQueue<>(1);
+            AsyncObjectStreamReader in = new AsyncObjectStreamReader(stream.getInputStreamId(), 5000,
+                                            AsyncObjectStreamReader.getDefaultCredits());
+            fetchNextBlock(in, received, bench);
+            Integer count = bench.poll(10, TimeUnit.SECONDS);
+            Assert.assertNotNull(count);
+            Assert.assertEquals(1, count.intValue());
+        }
+        long diff = System.nanoTime() - begin;
+        log.info("Created, used and closed {} small streams in {} ms, average {} us per stream",
+                STREAMS, diff / 1000000, diff / STREAMS / 1000);
+    }
+
+    private void fetchNextBlock(AsyncObjectStreamReader in, List<Object> received, BlockingQueue<Integer> bench) {
+        in.get().onSuccess(b -> {
+            if (b != null) {
+                received.add(b);
+                fetchNextBlock(in, received, bench);
+            } else {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    log.error("Unable to close stream - {}", e.getMessage());
+                } finally {
+                    bench.offer(received.size());
+                }
+            }
+        });
+    }
+
+}
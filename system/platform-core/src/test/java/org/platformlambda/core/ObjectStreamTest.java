@@ -19,17 +19,22 @@
 package org.platformlambda.core;
 
 import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
 import org.junit.Assert;
 import org.junit.Test;
 import org.platformlambda.core.system.AsyncObjectStreamReader;
+import org.platformlambda.core.system.EventEmitter;
 import org.platformlambda.core.system.ObjectStreamIO;
 import org.platformlambda.core.system.ObjectStreamWriter;
+import org.platformlambda.core.system.Platform;
+import org.platformlambda.core.system.StreamMultiplexer;
 import org.platformlambda.core.util.Utility;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -84,6 +89,33 @@ public class ObjectStreamTest {
         Assert.assertFalse(allStreams.containsKey(id));
     }
 
+    @Test
+    public void drainNotification() throws IOException, InterruptedException {
+        final BlockingQueue<Boolean> bench = new ArrayBlockingQueue<>(1);
+        int CYCLES = 10;
+        StreamMultiplexer multiplexer = StreamMultiplexer.getInstance();
+        ObjectStreamIO stream = new ObjectStreamIO(5);
+        String id = stream.getInputStreamId().substring(0, stream.getInputStreamId().indexOf('@'));
+        Assert.assertEquals(0, multiplexer.getWrittenBlocks(id));
+        multiplexer.whenWritten(id, CYCLES, () -> bench.offer(true));
+        try (ObjectStreamWriter out = new ObjectStreamWriter(stream.getOutputStreamId())) {
+            for (int i = 0; i < CYCLES; i++) {
+                out.write("hello world " + i);
+            }
+            Assert.assertEquals(CYCLES, out.getBlockCount());
+        }
+        Assert.assertEquals(Boolean.TRUE, bench.poll(10, TimeUnit.SECONDS));
+        Assert.assertEquals(CYCLES, multiplexer.getWrittenBlocks(id));
+        // a target that has been reached runs the task immediately
+        multiplexer.whenWritten(id, CYCLES, () -> bench.offer(true));
+        Assert.assertEquals(Boolean.TRUE, bench.poll(0, TimeUnit.SECONDS));
+        // closing a stream releases a waiting task
+        multiplexer.whenWritten(id, CYCLES * 2, () -> bench.offer(true));
+        Assert.assertTrue(multiplexer.close(id));
+        Assert.assertEquals(Boolean.TRUE, bench.poll(10, TimeUnit.SECONDS));
+        Assert.assertEquals(-1, multiplexer.getWrittenBlocks(id));
+    }
+
     @Test
     public void asyncReadWrite() throws IOException, InterruptedException {
         int CYCLES = 10;
@@ -111,6 +143,158 @@ public class ObjectStreamTest {
         Assert.assertTrue(in.isClosed());
     }
 
+    @Test
+    public void creditBasedReadWrite() throws IOException, InterruptedException {
+        int CYCLES = 100;
+        String TEXT = "hello world";
+        ObjectStreamIO stream = new ObjectStreamIO(5);
+        try (ObjectStreamWriter out = new ObjectStreamWriter(stream.getOutputStreamId())) {
+            for (int i = 0; i < CYCLES; i++) {
+                out.write(TEXT + " " + i);
+            }
+        }
+        List<Object> received = new ArrayList<>();
+        BlockingQueue<Integer> bench = new ArrayBlockingQueue<>(1);
+        // a small window to exercise the granting of more credits
+        AsyncObjectStreamReader in = new AsyncObjectStreamReader(stream.getInputStreamId(), 8000, 4);
+        fetchNextBlock(in, received, bench);
+        Integer count = bench.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(count);
+        Assert.assertEquals(CYCLES, count.intValue());
+        for (int i = 0; i < CYCLES; i++) {
+            Assert.assertEquals(TEXT + " " + i, received.get(i));
+        }
+        Assert.assertTrue(in.isStreamEnd());
+        Assert.assertTrue(in.isClosed());
+    }
+
+    @Test
+    public void creditBasedReadBeforeWrite() throws IOException, InterruptedException {
+        ObjectStreamIO stream = new ObjectStreamIO(5);
+        List<Object> received = new ArrayList<>();
+        BlockingQueue<Integer> bench = new ArrayBlockingQueue<>(1);
+        AsyncObjectStreamReader in = new AsyncObjectStreamReader(stream.getInputStreamId(), 8000, 8);
+        // the reader waits for the blocks that are written later
+        fetchNextBlock(in, received, bench);
+        try (ObjectStreamWriter out = new ObjectStreamWriter(stream.getOutputStreamId())) {
+            for (int i = 0; i < 20; i++) {
+                Thread.sleep(i % 5 == 0? 10 : 0);
+                out.write(new byte[] {(byte) i});
+            }
+        }
+        Integer count = bench.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(count);
+        Assert.assertEquals(20, count.intValue());
+        for (int i = 0; i < 20; i++) {
+            Assert.assertArrayEquals(new byte[] {(byte) i}, (byte[]) received.get(i));
+        }
+    }
+
+    @Test
+    public void coalescedWrites() throws IOException, InterruptedException {
+        ObjectStreamIO stream = new ObjectStreamIO(5);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (ObjectStreamWriter out = new ObjectStreamWriter(stream.getOutputStreamId(), 1024)) {
+            Assert.assertEquals(1024, out.getBlockSize());
+            for (int i = 0; i < 100; i++) {
+                byte[] b = new byte[100];
+                Arrays.fill(b, (byte) i);
+                expected.write(b);
+                // mix byte arrays and Vert.x buffers
+                if (i % 2 == 0) {
+                    out.write(b);
+                } else {
+                    out.write(Buffer.buffer(b));
+                }
+            }
+            // a text block flushes the pending bytes
+            out.write("hello world");
+        }
+        List<Object> received = new ArrayList<>();
+        BlockingQueue<Integer> bench = new ArrayBlockingQueue<>(1);
+        AsyncObjectStreamReader in = new AsyncObjectStreamReader(stream.getInputStreamId(), 5000);
+        fetchNextBlock(in, received, bench);
+        Integer count = bench.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(count);
+        // 10,000 bytes are delivered as 9 blocks of 1,024 bytes and a block of 784 bytes
+        Assert.assertEquals(11, count.intValue());
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        for (int i = 0; i < 10; i++) {
+            byte[] b = (byte[]) received.get(i);
+            Assert.assertEquals(i < 9? 1024 : 784, b.length);
+            result.write(b);
+        }
+        Assert.assertArrayEquals(expected.toByteArray(), result.toByteArray());
+        Assert.assertEquals("hello world", received.get(10));
+    }
+
+    @Test
+    public void streamsShareOneRoute() throws IOException, InterruptedException {
+        Platform platform = Platform.getInstance();
+        EventEmitter po = EventEmitter.getInstance();
+        // the first stream starts the stream multiplexer
+        new ObjectStreamIO(5);
+        int routes = platform.getLocalRoutingTable().size();
+        List<ObjectStreamIO> streams = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            streams.add(new ObjectStreamIO(5));
+        }
+        Assert.assertEquals(routes, platform.getLocalRoutingTable().size());
+        // the streams are spread over the shards of the stream multiplexer
+        StreamMultiplexer multiplexer = StreamMultiplexer.getInstance();
+        Set<String> shards = new HashSet<>();
+        for (ObjectStreamIO s: streams) {
+            String id = s.getInputStreamId().substring(0, s.getInputStreamId().indexOf('@'));
+            String shard = multiplexer.getServiceRoute(id);
+            Assert.assertTrue(platform.hasRoute(shard));
+            Assert.assertEquals(shard, multiplexer.getServiceRoute(id.replace(".in", ".out")));
+            shards.add(shard);
+        }
+        Assert.assertEquals(multiplexer.getShardCount(), shards.size());
+        ObjectStreamIO stream = streams.get(50);
+        String in = stream.getInputStreamId().substring(0, stream.getInputStreamId().indexOf('@'));
+        Assert.assertFalse(platform.hasRoute(in));
+        Assert.assertTrue(po.exists(stream.getInputStreamId()));
+        Assert.assertTrue(po.exists(stream.getOutputStreamId()));
+        try (ObjectStreamWriter out = new ObjectStreamWriter(stream.getOutputStreamId())) {
+            out.write("hello world");
+        }
+        List<Object> received = new ArrayList<>();
+        BlockingQueue<Integer> bench = new ArrayBlockingQueue<>(1);
+        AsyncObjectStreamReader reader = new AsyncObjectStreamReader(stream.getInputStreamId(), 5000);
+        fetchNextBlock(reader, received, bench);
+        Integer count = bench.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(count);
+        Assert.assertEquals(1, count.intValue());
+        Assert.assertEquals("hello world", received.get(0));
+        // closing the reader removes the logical stream
+        long t1 = System.currentTimeMillis();
+        while (po.exists(stream.getInputStreamId()) && System.currentTimeMillis() - t1 < 5000) {
+            Thread.sleep(10);
+        }
+        Assert.assertFalse(po.exists(stream.getInputStreamId()));
+        IOException ex = Assert.assertThrows(IOException.class, () ->
+                po.send(stream.getOutputStreamId(), "hello world"));
+        Assert.assertEquals("Route "+stream.getOutputStreamId()+" not found", ex.getMessage());
+    }
+
+    private void fetchNextBlock(AsyncObjectStreamReader in, List<Object> received, BlockingQueue<Integer> bench) {
+        in.get().onSuccess(b -> {
+            if (b != null) {
+                received.add(b);
+                fetchNextBlock(in, received, bench);
+            } else {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    log.error("Unable to close stream - {}", e.getMessage());
+                } finally {
+                    bench.offer(received.size());
+                }
+            }
+        });
+    }
+
     private void fetchNextBlock(AsyncObjectStreamReader in, int count, BlockingQueue<Integer> bench) {
         Future<Object> block = in.get();
         block.onSuccess(b -> {
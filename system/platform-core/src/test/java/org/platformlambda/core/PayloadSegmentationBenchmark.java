@@ -0,0 +1,56 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+
+/**
+ * Round trip of a large payload with and without compression
+ */
+public class PayloadSegmentationBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(PayloadSegmentationBenchmark.class);
+
+    @Test
+    public void compressionBenchmark() throws IOException, InterruptedException {
+        // compare the time to deliver the event with and without compression
+        final int CYCLES = 20;
+        byte[] data = PayloadSegmentationTest.createCompressiblePayload();
+        long t1 = System.nanoTime();
+        for (int i=0; i < CYCLES; i++) {
+            Assert.assertNotNull(PayloadSegmentationTest.sendLargePayload("compressed.payload.benchmark", data));
+        }
+        long t2 = System.nanoTime();
+        byte[] noise = new byte[data.length];
+        new SecureRandom().nextBytes(noise);
+        for (int i=0; i < CYCLES; i++) {
+            Assert.assertNotNull(PayloadSegmentationTest.sendLargePayload("compressed.payload.benchmark", noise));
+        }
+        long t3 = System.nanoTime();
+        log.info("Average round trip for {} bytes - compressed {} ms, uncompressed {} ms", data.length,
+                String.format("%.3f", (t2 - t1) / 1000000.0 / CYCLES),
+                String.format("%.3f", (t3 - t2) / 1000000.0 / CYCLES));
+    }
+
+}
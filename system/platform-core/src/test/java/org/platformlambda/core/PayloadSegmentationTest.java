@@ -26,15 +26,21 @@ import org.platformlambda.core.system.Platform;
 import org.platformlambda.core.system.EventEmitter;
 import org.platformlambda.core.util.Utility;
 import org.platformlambda.core.websocket.common.MultipartPayload;
+import org.platformlambda.core.websocket.common.ReassemblyManager;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.*;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class PayloadSegmentationTest {
     private static final String TEST_STRING = "123456789.";
     private static final int CYCLE = 30000;
+    private static final AtomicInteger counter = new AtomicInteger(0);
 
     @Test
     public void multiPart() throws IOException, InterruptedException {
@@ -81,4 +87,201 @@ public class PayloadSegmentationTest {
         Assert.assertEquals((int) size, sb.length());
     }
 
+    @Test
+    public void incompressiblePayload() throws IOException, InterruptedException {
+        // random bytes cannot be compressed so the event will be segmented as is
+        byte[] data = new byte[500000];
+        new SecureRandom().nextBytes(data);
+        Map<String, Object> stats = MultipartPayload.getInstance().getCompressionStats();
+        long before = (long) stats.get("events");
+        byte[] result = sendLargePayload("incompressible.payload.receiver", data);
+        Assert.assertArrayEquals(data, result);
+        stats = MultipartPayload.getInstance().getCompressionStats();
+        Assert.assertEquals(before, (long) stats.get("events"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void compressedPayload() throws IOException, InterruptedException {
+        MultipartPayload multipart = MultipartPayload.getInstance();
+        Map<String, Object> stats = multipart.getCompressionStats();
+        long events = (long) stats.get("events");
+        long saved = (long) stats.get("bytes_saved");
+        byte[] data = createCompressiblePayload();
+        byte[] result = sendLargePayload("compressed.payload.receiver", data);
+        Assert.assertArrayEquals(data, result);
+        stats = multipart.getCompressionStats();
+        Assert.assertEquals(events + 1, (long) stats.get("events"));
+        long reduced = (long) stats.get("bytes_saved") - saved;
+        Assert.assertTrue(reduced > 0);
+    }
+
+    /**
+     * Generate a representative payload of about 500 KB
+     * (a list of records that is larger than a segment after compression)
+     *
+     * @return serialized event
+     * @throws IOException in case of serialization error
+     */
+    static byte[] createCompressiblePayload() throws IOException {
+        Utility util = Utility.getInstance();
+        SecureRandom random = new SecureRandom();
+        List<Map<String, Object>> records = new ArrayList<>();
+        int size = 0;
+        int n = 0;
+        while (size < 500000) {
+            byte[] b = new byte[24];
+            random.nextBytes(b);
+            Map<String, Object> record = new HashMap<>();
+            record.put("id", ++n);
+            record.put("name", "user-"+n);
+            record.put("status", n % 3 == 0? "active" : "inactive");
+            record.put("token", util.bytes2hex(b));
+            record.put("created", util.date2str(new Date()));
+            records.add(record);
+            size += 125;
+        }
+        Map<String, Object> body = new HashMap<>();
+        body.put("records", records);
+        return new EventEnvelope().setBody(body).toBytes();
+    }
+
+    @Test
+    public void oversizedCompressedEvent() {
+        MultipartPayload multipart = MultipartPayload.getInstance();
+        long limit = ReassemblyManager.getInstance().getMemoryLimit();
+        // the original size in the wrapper is provided by the sender and must not be trusted
+        EventEnvelope wrapper = new EventEnvelope().setHeader(MultipartPayload.ZIP, limit + 1)
+                                    .setBody(new byte[100]);
+        IOException ex = Assert.assertThrows(IOException.class, () -> multipart.incoming(wrapper));
+        Assert.assertTrue(ex.getMessage().startsWith("Compressed event rejected"));
+    }
+
+    @Test
+    public void reassemblyOutOfOrder() throws IOException {
+        ReassemblyManager manager = ReassemblyManager.getInstance();
+        byte[] data = new EventEnvelope().setTo("hello.world").setBody(TEST_STRING).toBytes();
+        int blockSize = data.length / 3 + 1;
+        List<byte[]> blocks = new ArrayList<>();
+        for (int i=0; i < data.length; i += blockSize) {
+            blocks.add(Arrays.copyOfRange(data, i, Math.min(data.length, i + blockSize)));
+        }
+        int total = blocks.size();
+        String id = "out.of.order";
+        // last block arrives first
+        Assert.assertNull(manager.put(id, total, total, blocks.get(total - 1)));
+        for (int i=0; i < total - 2; i++) {
+            Assert.assertNull(manager.put(id, i + 1, total, blocks.get(i)));
+        }
+        // duplicated block is dropped
+        Assert.assertNull(manager.put(id, 1, total, blocks.get(0)));
+        ByteBuffer buffer = manager.put(id, total - 1, total, blocks.get(total - 2));
+        Assert.assertNotNull(buffer);
+        Assert.assertTrue(buffer.isDirect());
+        Assert.assertEquals(data.length, buffer.remaining());
+        EventEnvelope event = new EventEnvelope();
+        event.load(buffer);
+        Assert.assertEquals("hello.world", event.getTo());
+        Assert.assertEquals(TEST_STRING, event.getBody());
+        // the memory remains reserved until the buffer is returned
+        long reserved = (long) manager.getStats().get("reserved_bytes");
+        Assert.assertTrue(reserved >= buffer.capacity());
+        manager.free(buffer);
+        Assert.assertEquals(reserved - buffer.capacity(), (long) manager.getStats().get("reserved_bytes"));
+    }
+
+    @Test
+    public void reassemblyMemoryLimit() {
+        ReassemblyManager manager = ReassemblyManager.getInstance();
+        long rejected = (long) manager.getStats().get("rejected");
+        long limit = (long) manager.getStats().get("limit_bytes");
+        int blockSize = 65536;
+        int total = (int) (limit / blockSize) + 1;
+        String id = "too.large";
+        Assert.assertNull(manager.put(id, 1, total, new byte[blockSize]));
+        Assert.assertEquals(rejected + 1, (long) manager.getStats().get("rejected"));
+        // subsequent blocks of a rejected event are dropped without allocating memory
+        long reserved = (long) manager.getStats().get("reserved_bytes");
+        Assert.assertNull(manager.put(id, 2, total, new byte[blockSize]));
+        Assert.assertEquals(reserved, (long) manager.getStats().get("reserved_bytes"));
+    }
+
+    @Test
+    public void reassemblyInvalidBlockCount() {
+        ReassemblyManager manager = ReassemblyManager.getInstance();
+        long rejected = (long) manager.getStats().get("rejected");
+        int inFlight = (int) manager.getStats().get("in_flight");
+        // a bogus block count is rejected before any memory is allocated for the event
+        Assert.assertNull(manager.put("bogus.count", Integer.MAX_VALUE, Integer.MAX_VALUE, new byte[100]));
+        Assert.assertEquals(rejected + 1, (long) manager.getStats().get("rejected"));
+        Assert.assertEquals(inFlight, (int) manager.getStats().get("in_flight"));
+    }
+
+    @Test
+    public void reassemblyInvalidBlockCountWithShortLastBlock() {
+        ReassemblyManager manager = ReassemblyManager.getInstance();
+        long rejected = (long) manager.getStats().get("rejected");
+        long reserved = (long) manager.getStats().get("reserved_bytes");
+        int inFlight = (int) manager.getStats().get("in_flight");
+        long limit = (long) manager.getStats().get("limit_bytes");
+        int maxBlock = (int) manager.getStats().get("max_block_bytes");
+        int total = (int) (limit / maxBlock) + 2;
+        // the block count is checked against the maximum block size, not the size of a short last block
+        Assert.assertNull(manager.put("short.last", total, total, new byte[1]));
+        Assert.assertEquals(rejected + 1, (long) manager.getStats().get("rejected"));
+        Assert.assertEquals(inFlight, (int) manager.getStats().get("in_flight"));
+        Assert.assertEquals(reserved, (long) manager.getStats().get("reserved_bytes"));
+    }
+
+    @Test
+    public void reassemblyOverheadIsReleased() throws IOException {
+        ReassemblyManager manager = ReassemblyManager.getInstance();
+        long reserved = (long) manager.getStats().get("reserved_bytes");
+        byte[] data = new EventEnvelope().setTo("hello.world").setBody(TEST_STRING).toBytes();
+        int blockSize = data.length / 2 + 1;
+        byte[] first = Arrays.copyOfRange(data, 0, blockSize);
+        byte[] last = Arrays.copyOfRange(data, blockSize, data.length);
+        String id = "pending.last";
+        // the pending last block and the block bitmap are counted against the memory budget
+        Assert.assertNull(manager.put(id, 2, 2, last));
+        Assert.assertEquals(reserved + 8 + last.length, (long) manager.getStats().get("reserved_bytes"));
+        ByteBuffer buffer = manager.put(id, 1, 2, first);
+        Assert.assertNotNull(buffer);
+        Assert.assertEquals(reserved + buffer.capacity(), (long) manager.getStats().get("reserved_bytes"));
+        manager.free(buffer);
+        Assert.assertEquals(reserved, (long) manager.getStats().get("reserved_bytes"));
+    }
+
+    static byte[] sendLargePayload(String name, byte[] data) throws IOException, InterruptedException {
+        String receiver = name + "." + counter.incrementAndGet();
+        BlockingQueue<byte[]> bench = new ArrayBlockingQueue<>(1);
+        MultipartPayload multipart = MultipartPayload.getInstance();
+        Platform platform = Platform.getInstance();
+        LambdaFunction f = (headers, input, instance) -> {
+            if (input instanceof byte[]) {
+                byte[] b = (byte[]) input;
+                if (headers.containsKey("to")) {
+                    EventEnvelope e = new EventEnvelope();
+                    e.load(b);
+                    if (e.getTo() != null) {
+                        EventEmitter.getInstance().send(e);
+                    } else {
+                        // segmented or compressed payload
+                        multipart.incoming(e);
+                    }
+                } else {
+                    bench.offer(b);
+                }
+            }
+            return true;
+        };
+        platform.registerPrivate(receiver, f, 1);
+        try {
+            multipart.outgoing(receiver, new EventEnvelope().setTo(receiver).setBody(data));
+            return bench.poll(5, TimeUnit.SECONDS);
+        } finally {
+            platform.release(receiver);
+        }
+    }
+
 }
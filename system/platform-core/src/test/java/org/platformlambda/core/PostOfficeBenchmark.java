@@ -0,0 +1,178 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.platformlambda.common.TestBase;
+import org.platformlambda.core.mock.PartitionedSequence;
+import org.platformlambda.core.mock.SequenceCheck;
+import org.platformlambda.core.models.LambdaFunction;
+import org.platformlambda.core.system.EventEmitter;
+import org.platformlambda.core.system.Platform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Route lookup, registration, RPC latency and partitioned ordering of the event system
+ */
+public class PostOfficeBenchmark extends TestBase {
+    private static final Logger log = LoggerFactory.getLogger(PostOfficeBenchmark.class);
+
+    @Test
+    public void routeCacheBenchmark() throws IOException, InterruptedException {
+        final int ROUTES = 1000;
+        final int ORIGINS = 100;
+        final int CYCLES = 20000;
+        final String LOCAL_ROUTE = "route.cache.benchmark";
+        final BlockingQueue<Boolean> bench = new ArrayBlockingQueue<>(1);
+        final AtomicInteger received = new AtomicInteger(0);
+        Platform platform = Platform.getInstance();
+        EventEmitter po = EventEmitter.getInstance();
+        LambdaFunction f = (headers, input, instance) -> {
+            if (received.incrementAndGet() == CYCLES) {
+                bench.offer(true);
+            }
+            return null;
+        };
+        platform.registerPrivate(LOCAL_ROUTE, f, 10);
+        // emulate a distributed routing table of 1,000 routes from 100 peers
+        ConcurrentMap<String, ConcurrentMap<String, String>> cloudRoutes = po.getCloudRoutes();
+        ConcurrentMap<String, Long> cloudOrigins = po.getCloudOrigins();
+        for (int i=0; i < ORIGINS; i++) {
+            cloudOrigins.put("peer-"+i, System.currentTimeMillis());
+        }
+        for (int i=0; i < ROUTES; i++) {
+            ConcurrentMap<String, String> origins = new ConcurrentHashMap<>();
+            for (int j=0; j < 3; j++) {
+                origins.put("peer-"+((i + j) % ORIGINS), "APP");
+            }
+            cloudRoutes.put("remote.route."+i, origins);
+        }
+        po.routingTableChanged();
+        try {
+            long begin = System.nanoTime();
+            for (int i=0; i < CYCLES; i++) {
+                po.exists("remote.route."+(i % ROUTES));
+            }
+            long lookup = System.nanoTime() - begin;
+            begin = System.nanoTime();
+            for (int i=0; i < CYCLES; i++) {
+                po.send(LOCAL_ROUTE, i);
+            }
+            long send = System.nanoTime() - begin;
+            Assert.assertEquals(true, bench.poll(10, TimeUnit.SECONDS));
+            log.info("{} routes from {} peers - exists() {} ns, send() {} ns per call", ROUTES, ORIGINS,
+                    lookup / CYCLES, send / CYCLES);
+        } finally {
+            for (int i=0; i < ROUTES; i++) {
+                cloudRoutes.remove("remote.route."+i);
+            }
+            for (int i=0; i < ORIGINS; i++) {
+                cloudOrigins.remove("peer-"+i);
+            }
+            po.routingTableChanged();
+            platform.release(LOCAL_ROUTE);
+        }
+    }
+
+    @Test
+    public void lazyWorkerBenchmark() throws IOException {
+        final int ROUTES = 50;
+        final int INSTANCES = 100;
+        final String LAZY_ROUTE = "lazy.worker.benchmark.";
+        Platform platform = Platform.getInstance();
+        LambdaFunction f = (headers, input, instance) -> null;
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heap = runtime.totalMemory() - runtime.freeMemory();
+        long begin = System.nanoTime();
+        try {
+            for (int i=0; i < ROUTES; i++) {
+                platform.registerPrivate(LAZY_ROUTE+i, f, INSTANCES);
+            }
+            long elapsed = System.nanoTime() - begin;
+            System.gc();
+            long used = runtime.totalMemory() - runtime.freeMemory() - heap;
+            log.info("Registered {} routes of {} instances in {} ms, heap increased by {} KB", ROUTES, INSTANCES,
+                    elapsed / 1000000, Math.max(0, used) / 1024);
+        } finally {
+            for (int i=0; i < ROUTES; i++) {
+                platform.release(LAZY_ROUTE+i);
+            }
+        }
+    }
+
+    @Test
+    public void rpcLatencyBenchmark() throws IOException, InterruptedException {
+        final int CYCLES = 2000;
+        final int WARMUP = 500;
+        final String ECHO_ROUTE = "rpc.latency.echo";
+        Platform platform = Platform.getInstance();
+        EventEmitter po = EventEmitter.getInstance();
+        LambdaFunction f = (headers, input, instance) -> input;
+        platform.registerPrivate(ECHO_ROUTE, f, 20);
+        try {
+            PostOfficeTest.runRpcBatch(po, ECHO_ROUTE, WARMUP);
+            long begin = System.nanoTime();
+            long[] latency = PostOfficeTest.runRpcBatch(po, ECHO_ROUTE, CYCLES);
+            long elapsed = System.nanoTime() - begin;
+            Arrays.sort(latency);
+            log.info("{} RPC with 20 outstanding requests in {} ms, {} requests/s, latency p50 {} us, p99 {} us, max {} us", CYCLES,
+                    elapsed / 1000000, CYCLES * 1000000000L / elapsed, latency[CYCLES / 2] / 1000,
+                    latency[CYCLES * 99 / 100] / 1000, latency[CYCLES - 1] / 1000);
+        } finally {
+            platform.release(ECHO_ROUTE);
+        }
+    }
+
+    @Test
+    public void partitionedExecutionBenchmark() throws IOException, InterruptedException {
+        final String SINGLE = "sequence.benchmark.single";
+        final String SHARED = "sequence.benchmark.shared";
+        final String PARTITIONED = "sequence.benchmark.partitioned";
+        final int INSTANCES = 4;
+        Platform platform = Platform.getInstance();
+        SequenceCheck single = new SequenceCheck();
+        SequenceCheck shared = new SequenceCheck();
+        SequenceCheck partitioned = new PartitionedSequence();
+        platform.registerPrivate(SINGLE, single, 1);
+        platform.registerPrivate(SHARED, shared, INSTANCES);
+        platform.registerPrivate(PARTITIONED, partitioned, INSTANCES);
+        try {
+            long singleTime = PostOfficeTest.runSequence(SINGLE, single);
+            long sharedTime = PostOfficeTest.runSequence(SHARED, shared);
+            long partitionedTime = PostOfficeTest.runSequence(PARTITIONED, partitioned);
+            log.info("Ordered events - single worker {} ms, {} out of order with {} workers in {} ms, " +
+                            "{} partitioned workers {} ms", singleTime, shared.getOutOfOrder(), INSTANCES,
+                    sharedTime, INSTANCES, partitionedTime);
+            Assert.assertEquals(0, partitioned.getOutOfOrder());
+        } finally {
+            platform.release(SINGLE);
+            platform.release(SHARED);
+            platform.release(PARTITIONED);
+        }
+    }
+
+}
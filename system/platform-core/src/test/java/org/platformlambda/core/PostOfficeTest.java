@@ -24,15 +24,23 @@ import org.junit.Test;
 import org.platformlambda.common.JacksonSerializer;
 import org.platformlambda.common.SimplePoJo;
 import org.platformlambda.common.TestBase;
+import org.platformlambda.core.annotations.AdaptiveConcurrency;
 import org.platformlambda.core.annotations.EventInterceptor;
+import org.platformlambda.core.annotations.KernelThreadRunner;
 import org.platformlambda.core.exception.AppException;
+import org.platformlambda.core.mock.PartitionedSequence;
+import org.platformlambda.core.mock.SequenceCheck;
 import org.platformlambda.core.models.*;
+import org.platformlambda.core.services.AdaptiveDelay;
+import org.platformlambda.core.system.ConcurrencyController;
 import org.platformlambda.core.system.EventEmitter;
 import org.platformlambda.core.system.Platform;
 import org.platformlambda.core.system.PostOffice;
 import org.platformlambda.core.system.ServiceDef;
+import org.platformlambda.core.system.ServiceQueue;
 import org.platformlambda.core.util.AppConfigReader;
 import org.platformlambda.core.util.CryptoApi;
+import org.platformlambda.core.util.LatencyHistogram;
 import org.platformlambda.core.util.MultiLevelMap;
 import org.platformlambda.core.util.Utility;
 import org.platformlambda.core.websocket.client.PersistentWsClient;
@@ -463,6 +471,570 @@ public class PostOfficeTest extends TestBase {
         Assert.assertTrue(po.exists(platform.getOrigin()));
     }
 
+    @Test
+    public void routeCacheTest() throws IOException, InterruptedException {
+        final int ROUTES = 1000;
+        final int ORIGINS = 100;
+        final String LOCAL_ROUTE = "route.cache.test";
+        Platform platform = Platform.getInstance();
+        EventEmitter po = EventEmitter.getInstance();
+        LambdaFunction f = (headers, input, instance) -> null;
+        platform.registerPrivate(LOCAL_ROUTE, f, 10);
+        // emulate a distributed routing table of 1,000 routes from 100 peers
+        ConcurrentMap<String, ConcurrentMap<String, String>> cloudRoutes = po.getCloudRoutes();
+        ConcurrentMap<String, Long> cloudOrigins = po.getCloudOrigins();
+        for (int i=0; i < ORIGINS; i++) {
+            cloudOrigins.put("peer-"+i, System.currentTimeMillis());
+        }
+        for (int i=0; i < ROUTES; i++) {
+            ConcurrentMap<String, String> origins = new ConcurrentHashMap<>();
+            for (int j=0; j < 3; j++) {
+                origins.put("peer-"+((i + j) % ORIGINS), "APP");
+            }
+            cloudRoutes.put("remote.route."+i, origins);
+        }
+        po.routingTableChanged();
+        try {
+            Assert.assertTrue(po.exists("remote.route.0", "remote.route.999", LOCAL_ROUTE));
+            Assert.assertFalse(po.exists("remote.route.1000"));
+            Assert.assertTrue(po.exists("peer-99"));
+            Assert.assertTrue(po.discover("remote.route.10", false).isCloud());
+            Assert.assertFalse(po.discover(LOCAL_ROUTE, false).isCloud());
+            // the snapshot is rebuilt after a route is removed
+            cloudRoutes.remove("remote.route.0");
+            po.routingTableChanged();
+            Assert.assertFalse(po.exists("remote.route.0"));
+            Assert.assertThrows(IOException.class, () -> po.discover("remote.route.0", false));
+            // a route that is not found is cached as a negative entry
+            final BlockingQueue<List<String>> result = new ArrayBlockingQueue<>(1);
+            for (int i=0; i < 2; i++) {
+                po.search("unknown.remote.route", true).onSuccess(result::offer);
+                List<String> origins = result.poll(5, TimeUnit.SECONDS);
+                Assert.assertNotNull(origins);
+                Assert.assertTrue(origins.isEmpty());
+            }
+        } finally {
+            for (int i=0; i < ROUTES; i++) {
+                cloudRoutes.remove("remote.route."+i);
+            }
+            for (int i=0; i < ORIGINS; i++) {
+                cloudOrigins.remove("peer-"+i);
+            }
+            po.routingTableChanged();
+            platform.release(LOCAL_ROUTE);
+        }
+        Assert.assertFalse(po.exists("remote.route.1"));
+    }
+
+    @Test
+    public void concurrentRpcTest() throws IOException, InterruptedException {
+        final String ECHO_ROUTE = "rpc.concurrent.echo";
+        Platform platform = Platform.getInstance();
+        EventEmitter po = EventEmitter.getInstance();
+        LambdaFunction f = (headers, input, instance) -> input;
+        platform.registerPrivate(ECHO_ROUTE, f, 20);
+        try {
+            // each response is matched to its request
+            long[] latency = runRpcBatch(po, ECHO_ROUTE, 200);
+            for (long n: latency) {
+                Assert.assertTrue(n > 0);
+            }
+        } finally {
+            platform.release(ECHO_ROUTE);
+        }
+    }
+
+    static long[] runRpcBatch(EventEmitter po, String route, int count) throws IOException, InterruptedException {
+        final int CONCURRENCY = 20;
+        final long[] latency = new long[count];
+        final CountDownLatch done = new CountDownLatch(count);
+        final Semaphore outstanding = new Semaphore(CONCURRENCY);
+        for (int i=0; i < count; i++) {
+            final int n = i;
+            Assert.assertTrue(outstanding.tryAcquire(10, TimeUnit.SECONDS));
+            final long start = System.nanoTime();
+            po.asyncRequest(new EventEnvelope().setTo(route).setBody(n), 10000).onSuccess(response -> {
+                if (Integer.valueOf(n).equals(response.getBody())) {
+                    latency[n] = System.nanoTime() - start;
+                    done.countDown();
+                }
+                outstanding.release();
+            });
+        }
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        return latency;
+    }
+
+    @Test
+    public void partitionHashTest() {
+        final int KEYS = 4000;
+        final int[] counts = new int[4];
+        for (int i=0; i < KEYS; i++) {
+            String key = "account-" + i;
+            int n = ServiceQueue.getPartition(key, 4);
+            Assert.assertEquals(n, ServiceQueue.getPartition(key, 4));
+            counts[n]++;
+            // adding a partition only moves keys to the new partition
+            int moved = ServiceQueue.getPartition(key, 5);
+            Assert.assertTrue(moved == n || moved == 4);
+        }
+        for (int count: counts) {
+            Assert.assertTrue(count > KEYS / 4 * 0.8 && count < KEYS / 4 * 1.2);
+        }
+    }
+
+    @Test
+    public void concurrentRegistrationTest() throws IOException, InterruptedException {
+        final String ROUTE = "concurrent.registration";
+        final int THREADS = 8;
+        Platform platform = Platform.getInstance();
+        EventEmitter po = EventEmitter.getInstance();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final CountDownLatch registered = new CountDownLatch(THREADS);
+            for (int i=0; i < THREADS; i++) {
+                final int n = i;
+                executor.execute(() -> {
+                    try {
+                        platform.registerPrivate(ROUTE, (headers, input, instance) -> n, 1);
+                    } catch (IOException e) {
+                        // not expected
+                    }
+                    registered.countDown();
+                });
+            }
+            Assert.assertTrue(registered.await(10, TimeUnit.SECONDS));
+            // the functions that were overridden must not receive any event
+            Set<Object> responders = new HashSet<>();
+            for (int i=0; i < 20; i++) {
+                final BlockingQueue<EventEnvelope> bench = new ArrayBlockingQueue<>(1);
+                po.asyncRequest(new EventEnvelope().setTo(ROUTE).setBody(i), 5000).onSuccess(bench::offer);
+                EventEnvelope response = bench.poll(5, TimeUnit.SECONDS);
+                Assert.assertNotNull(response);
+                responders.add(response.getBody());
+            }
+            Assert.assertEquals(1, responders.size());
+        } finally {
+            executor.shutdown();
+            platform.release(ROUTE);
+        }
+    }
+
+    @Test
+    public void partitionedExecutionTest() throws IOException, InterruptedException {
+        final String SINGLE = "sequence.single.worker";
+        final String PARTITIONED = "sequence.partitioned";
+        final int INSTANCES = 4;
+        Platform platform = Platform.getInstance();
+        // the preloaded function is configured with the PreLoad annotation
+        ServiceQueue preloaded = platform.getManager("partitioned.sequence");
+        Assert.assertEquals("account", preloaded.getPartitionKey());
+        Assert.assertEquals(4, preloaded.getWorkerCount());
+        SequenceCheck single = new SequenceCheck();
+        SequenceCheck partitioned = new PartitionedSequence();
+        platform.registerPrivate(SINGLE, single, 1);
+        platform.registerPrivate(PARTITIONED, partitioned, INSTANCES);
+        ServiceQueue manager = platform.getManager(PARTITIONED);
+        ExecutorService executor = manager.getExecutor();
+        try {
+            Assert.assertNotEquals(platform.getEventExecutor(), executor);
+            Assert.assertEquals(platform.getEventExecutor(), platform.getManager(SINGLE).getExecutor());
+            runSequence(SINGLE, single);
+            runSequence(PARTITIONED, partitioned);
+            Assert.assertEquals(0, single.getOutOfOrder());
+            // each account is bound to one worker so its events are processed in order
+            Assert.assertEquals(0, partitioned.getOutOfOrder());
+            Assert.assertEquals(0, partitioned.getMisrouted());
+            // the partitioned function runs in its dedicated threads
+            Assert.assertFalse(partitioned.getThreads().isEmpty());
+            for (String thread: partitioned.getThreads()) {
+                Assert.assertTrue(thread.startsWith(PARTITIONED + "-"));
+            }
+            Assert.assertEquals(0, manager.getQueueDepth());
+        } finally {
+            platform.release(SINGLE);
+            platform.release(PARTITIONED);
+        }
+        // the dedicated threads are released with the route
+        Assert.assertTrue(executor.isShutdown());
+    }
+
+    static long runSequence(String route, SequenceCheck function) throws IOException, InterruptedException {
+        final int ACCOUNTS = 20;
+        final int EVENTS = 1000;
+        EventEmitter po = EventEmitter.getInstance();
+        long begin = System.currentTimeMillis();
+        for (int i=0; i < EVENTS; i++) {
+            po.send(new EventEnvelope().setTo(route).setHeader("account", "a" + (i % ACCOUNTS)).setBody(i));
+        }
+        for (int i=0; i < 300 && function.getProcessed() < EVENTS; i++) {
+            Thread.sleep(20);
+        }
+        Assert.assertEquals(EVENTS, function.getProcessed());
+        return System.currentTimeMillis() - begin;
+    }
+
+    @Test
+    public void lazyWorkerStartup() throws IOException, InterruptedException {
+        final int ROUTES = 50;
+        final int INSTANCES = 100;
+        final int SLOW_INSTANCES = 5;
+        final int CYCLES = 20;
+        final String LAZY_ROUTE = "lazy.worker.";
+        final String SLOW_ROUTE = "lazy.worker.slow";
+        final BlockingQueue<Boolean> bench = new ArrayBlockingQueue<>(1);
+        final AtomicInteger received = new AtomicInteger(0);
+        Platform platform = Platform.getInstance();
+        EventEmitter po = EventEmitter.getInstance();
+        LambdaFunction f = (headers, input, instance) -> null;
+        try {
+            for (int i=0; i < ROUTES; i++) {
+                platform.registerPrivate(LAZY_ROUTE+i, f, INSTANCES);
+            }
+            // only one worker per route is created until events are queued
+            for (int i=0; i < ROUTES; i++) {
+                Assert.assertEquals(1, platform.getManager(LAZY_ROUTE+i).getWorkerCount());
+            }
+            // workers grow up to the configured instances when there is a backlog
+            platform.registerPrivate(SLOW_ROUTE, new SlowFunction(() -> {
+                if (received.incrementAndGet() == CYCLES) {
+                    bench.offer(true);
+                }
+            }), SLOW_INSTANCES);
+            for (int i=0; i < CYCLES; i++) {
+                po.send(SLOW_ROUTE, i);
+            }
+            Assert.assertEquals(true, bench.poll(10, TimeUnit.SECONDS));
+            Assert.assertEquals(SLOW_INSTANCES, platform.getManager(SLOW_ROUTE).getWorkerCount());
+        } finally {
+            for (int i=0; i < ROUTES; i++) {
+                platform.release(LAZY_ROUTE+i);
+            }
+            platform.release(SLOW_ROUTE);
+        }
+    }
+
+    @Test
+    public void queueWaitAlertTest() throws IOException, InterruptedException {
+        final int CYCLES = 5;
+        final String SLOW_ROUTE = "queue.wait.slow";
+        final String THRESHOLD = "queue.wait.alert.threshold." + SLOW_ROUTE;
+        final BlockingQueue<Boolean> bench = new ArrayBlockingQueue<>(1);
+        final BlockingQueue<Map<String, String>> alerts = new ArrayBlockingQueue<>(CYCLES);
+        final AtomicInteger received = new AtomicInteger(0);
+        Platform platform = Platform.getInstance();
+        EventEmitter po = EventEmitter.getInstance();
+        System.setProperty(THRESHOLD, "100");
+        LambdaFunction alert = (headers, input, instance) -> {
+            alerts.offer(headers);
+            return null;
+        };
+        try {
+            platform.registerPrivate(ServiceQueue.QUEUE_WAIT_ALERT, alert, 1);
+            // a single worker makes the events wait for each other
+            platform.registerPrivate(SLOW_ROUTE, new SlowFunction(() -> {
+                if (received.incrementAndGet() == CYCLES) {
+                    bench.offer(true);
+                }
+            }), 1);
+            ServiceQueue manager = platform.getManager(SLOW_ROUTE);
+            Assert.assertEquals(100, manager.getAlertThreshold());
+            for (int i=0; i < CYCLES; i++) {
+                po.send(SLOW_ROUTE, i);
+            }
+            Assert.assertEquals(true, bench.poll(10, TimeUnit.SECONDS));
+            // the last event has waited for the other four events
+            LatencyHistogram queueWait = manager.getMetrics().getQueueWait();
+            Assert.assertEquals(CYCLES, queueWait.getCount());
+            Assert.assertTrue(queueWait.getMax() >= 150000);
+            Map<String, String> headers = alerts.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(headers);
+            Assert.assertEquals(SLOW_ROUTE, headers.get("route"));
+            Assert.assertEquals("queue_time", headers.get("type"));
+            Assert.assertEquals("100", headers.get("threshold"));
+            // alerts are rate limited
+            Assert.assertNull(alerts.poll(500, TimeUnit.MILLISECONDS));
+        } finally {
+            System.clearProperty(THRESHOLD);
+            platform.release(SLOW_ROUTE);
+            platform.release(ServiceQueue.QUEUE_WAIT_ALERT);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void adaptiveConcurrencySimulationTest() {
+        // I/O bound function - 400 events per second with 50 ms execution time need 20 workers
+        ConcurrencyController controller = new ConcurrencyController(1, 100);
+        long backlog = simulateLoad(controller, 400, 50, 0, 12, 0);
+        Assert.assertEquals(0, backlog);
+        Assert.assertTrue("limit " + controller.getLimit(),
+                controller.getLimit() >= 20 && controller.getLimit() <= 30);
+        // idle function returns to the minimum
+        simulateLoad(controller, 0, 50, 0, 6, 0);
+        Assert.assertEquals(1, controller.getLimit());
+        // CPU bound function - execution time rises beyond 8 concurrent events and the load exceeds capacity
+        controller = new ConcurrencyController(1, 100);
+        simulateLoad(controller, 400, 50, 8, 40, 0);
+        Assert.assertTrue("limit " + controller.getLimit(),
+                controller.getLimit() >= 8 && controller.getLimit() <= 16);
+        List<Map<String, Object>> decisions = (List<Map<String, Object>>) controller.getStatus().get("decisions");
+        Assert.assertTrue(decisions.stream().anyMatch(d -> "contention".equals(d.get("reason"))));
+    }
+
+    /**
+     * Simulate a function for a number of one-second windows
+     *
+     * @param controller of the function
+     * @param rate of arrival per second
+     * @param latency of execution in milliseconds without contention
+     * @param knee concurrency beyond which execution time rises in proportion or zero if there is no contention
+     * @param windows to simulate
+     * @param backlog at the beginning
+     * @return backlog at the end
+     */
+    private long simulateLoad(ConcurrencyController controller, long rate, double latency, int knee,
+                              int windows, long backlog) {
+        long queued = backlog;
+        for (int i=0; i < windows; i++) {
+            int limit = controller.getLimit();
+            int busy = (int) Math.min(limit, Math.ceil(rate * latency / 1000 + queued));
+            double executionTime = knee > 0? latency * Math.max(1.0, (double) busy / knee) : latency;
+            long capacity = busy == 0? 0 : (long) (busy * 1000 / executionTime);
+            long completed = Math.min(queued + rate, capacity);
+            queued = queued + rate - completed;
+            int next = controller.update(completed, completed > 0? executionTime : 0, queued, busy, 1000);
+            log.info("Simulation window {}, limit {}, busy {}, completed {}, backlog {}, new limit {}",
+                    i+1, limit, busy, completed, queued, next);
+        }
+        return queued;
+    }
+
+    @Test
+    public void adaptiveConcurrencyTest() throws IOException, InterruptedException {
+        final String KERNEL_ROUTE = "adaptive.kernel.function";
+        final String COROUTINE_ROUTE = "adaptive.coroutine.function";
+        final int INSTANCES = 20;
+        Platform platform = Platform.getInstance();
+        System.setProperty("adaptive.concurrency.interval", "200");
+        try {
+            platform.registerPrivate(KERNEL_ROUTE, new AdaptiveFunction(), INSTANCES);
+            platform.registerKotlinPrivate(COROUTINE_ROUTE, new AdaptiveDelay(), INSTANCES);
+        } finally {
+            System.clearProperty("adaptive.concurrency.interval");
+        }
+        for (String route: new String[]{KERNEL_ROUTE, COROUTINE_ROUTE}) {
+            ServiceQueue manager = platform.getManager(route);
+            ConcurrencyController controller = manager.getConcurrencyController();
+            Assert.assertNotNull(controller);
+            Assert.assertEquals(1, controller.getLimit());
+            final int EVENTS = 200;
+            final BlockingQueue<Boolean> bench = new ArrayBlockingQueue<>(1);
+            final AtomicInteger completed = new AtomicInteger(0);
+            EventEmitter po = EventEmitter.getInstance();
+            long start = System.currentTimeMillis();
+            for (int i=0; i < EVENTS; i++) {
+                po.asyncRequest(new EventEnvelope().setTo(route).setBody(i), 20000).onSuccess(res -> {
+                    if (completed.incrementAndGet() == EVENTS) {
+                        bench.offer(true);
+                    }
+                });
+            }
+            Assert.assertEquals(true, bench.poll(20, TimeUnit.SECONDS));
+            long elapsed = System.currentTimeMillis() - start;
+            int workers = manager.getWorkerCount();
+            log.info("{} completed {} events in {} ms with {} workers - {}",
+                    route, EVENTS, elapsed, workers, controller.getStatus().get("decisions"));
+            // the backlog has raised the limit beyond the single initial worker
+            Assert.assertTrue(workers > 1 && workers <= INSTANCES);
+            // running serially would take 10 seconds
+            Assert.assertTrue(elapsed < 8000);
+            // the limit returns to the minimum when the function becomes idle
+            for (int i=0; i < 50 && controller.getLimit() > 1; i++) {
+                Thread.sleep(100);
+            }
+            Assert.assertEquals(1, controller.getLimit());
+            Assert.assertEquals(1, manager.getConcurrencyLimit());
+        }
+        platform.release(KERNEL_ROUTE);
+        platform.release(COROUTINE_ROUTE);
+    }
+
+    @Test
+    public void deadlineGoodputTest() throws IOException, InterruptedException {
+        final String ROUTE = "overloaded.function";
+        final int REQUESTS = 40;
+        final List<Object> executed = new CopyOnWriteArrayList<>();
+        Platform platform = Platform.getInstance();
+        platform.registerPrivate(ROUTE, new OverloadedFunction(executed), 1);
+        ServiceQueue manager = platform.getManager(ROUTE);
+        final BlockingQueue<Boolean> bench = new ArrayBlockingQueue<>(1);
+        final AtomicInteger completed = new AtomicInteger(0);
+        final AtomicInteger goodput = new AtomicInteger(0);
+        EventEmitter po = EventEmitter.getInstance();
+        // 40 requests of 50 ms each arrive at once but the callers wait for 300 ms only
+        for (int i=0; i < REQUESTS; i++) {
+            po.asyncRequest(new EventEnvelope().setTo(ROUTE).setBody(i), 300, false).onSuccess(res -> {
+                if (res.getStatus() == 200) {
+                    goodput.incrementAndGet();
+                }
+                if (completed.incrementAndGet() == REQUESTS) {
+                    bench.offer(true);
+                }
+            });
+        }
+        Assert.assertEquals(true, bench.poll(5, TimeUnit.SECONDS));
+        for (int i=0; i < 50 && executed.size() + manager.getMetrics().getExpired() < REQUESTS; i++) {
+            Thread.sleep(100);
+        }
+        long expired = manager.getMetrics().getExpired();
+        log.info("Overloaded function executed {} of {} requests with goodput of {}, {} expired requests rejected",
+                executed.size(), REQUESTS, goodput.get(), expired);
+        // every request is either executed or rejected
+        Assert.assertEquals(REQUESTS, executed.size() + expired);
+        // without deadlines, the worker would spend 2 seconds on requests that nobody waits for
+        Assert.assertTrue(executed.size() <= 10);
+        Assert.assertTrue(goodput.get() >= 3);
+        // at most the executions that were running when the callers timed out are wasted
+        Assert.assertTrue(executed.size() - goodput.get() <= 2);
+        platform.release(ROUTE);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void deadlinePropagationTest() throws IOException, InterruptedException {
+        final String PARENT = "deadline.parent";
+        final String CHILD = "deadline.child";
+        Platform platform = Platform.getInstance();
+        platform.registerPrivate(PARENT, new DeadlineParent(CHILD), 1);
+        platform.registerPrivate(CHILD, (headers, input, instance) -> headers.get("my_deadline"), 1);
+        EventEmitter po = EventEmitter.getInstance();
+        long now = System.currentTimeMillis();
+        final BlockingQueue<EventEnvelope> bench = new ArrayBlockingQueue<>(1);
+        po.asyncRequest(new EventEnvelope().setTo(PARENT).setBody("hi"), 3000).onSuccess(bench::offer);
+        EventEnvelope response = bench.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(response);
+        Assert.assertEquals(200, response.getStatus());
+        Assert.assertTrue(response.getBody() instanceof Map);
+        Map<String, Object> result = (Map<String, Object>) response.getBody();
+        long deadline = Utility.getInstance().str2long(String.valueOf(result.get("parent")));
+        Assert.assertTrue(deadline >= now + 3000 && deadline < now + 4000);
+        // the nested request with a longer timeout inherits the earlier deadline of the parent
+        Assert.assertEquals(String.valueOf(deadline), result.get("child"));
+        platform.release(PARENT);
+        platform.release(CHILD);
+    }
+
+    @Test
+    public void priorityLaneTest() throws IOException, InterruptedException {
+        final String ROUTE = "priority.lane.function";
+        final int LOW_EVENTS = 30;
+        final int HIGH_REQUESTS = 5;
+        final List<Object> executed = new CopyOnWriteArrayList<>();
+        Platform platform = Platform.getInstance();
+        platform.registerPrivate(ROUTE, new OverloadedFunction(executed), 1);
+        ServiceQueue manager = platform.getManager(ROUTE);
+        EventEmitter po = EventEmitter.getInstance();
+        // a backlog of bulk events
+        for (int i=0; i < LOW_EVENTS; i++) {
+            po.send(new EventEnvelope().setTo(ROUTE).setBody("low-" + i).addTag(EventEmitter.PRIORITY, "low"));
+        }
+        // delivery is asynchronous so wait for the backlog to build up
+        for (int i=0; i < 100 && manager.getQueueDepth("low") < LOW_EVENTS - 5; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(manager.getQueueDepth("low") > 0);
+        final BlockingQueue<Boolean> bench = new ArrayBlockingQueue<>(1);
+        final AtomicInteger completed = new AtomicInteger(0);
+        final AtomicInteger lowCompleted = new AtomicInteger(0);
+        for (int i=0; i < HIGH_REQUESTS; i++) {
+            EventEnvelope request = new EventEnvelope().setTo(ROUTE).setBody("high-" + i)
+                                            .addTag(EventEmitter.PRIORITY, "high");
+            po.asyncRequest(request, 5000).onSuccess(res -> {
+                if (completed.incrementAndGet() == HIGH_REQUESTS) {
+                    lowCompleted.set((int) executed.stream().filter(v -> v.toString().startsWith("low")).count());
+                    bench.offer(true);
+                }
+            });
+        }
+        Assert.assertEquals(true, bench.poll(5, TimeUnit.SECONDS));
+        log.info("{} high priority requests completed after {} of {} low priority events",
+                HIGH_REQUESTS, lowCompleted.get(), LOW_EVENTS);
+        // the high priority lane is served about 6 times as often as the low priority lane
+        Assert.assertTrue(lowCompleted.get() < 5);
+        // the low priority backlog is still served
+        for (int i=0; i < 50 && executed.size() < LOW_EVENTS + HIGH_REQUESTS; i++) {
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(LOW_EVENTS + HIGH_REQUESTS, executed.size());
+        Assert.assertEquals(0, manager.getQueueDepth());
+        platform.release(ROUTE);
+    }
+
+    @AdaptiveConcurrency(min = 1)
+    @KernelThreadRunner
+    private static class AdaptiveFunction implements LambdaFunction {
+
+        @Override
+        public Object handleEvent(Map<String, String> headers, Object input, int instance) throws Exception {
+            Thread.sleep(50);
+            return input;
+        }
+    }
+
+    @KernelThreadRunner
+    private static class OverloadedFunction implements LambdaFunction {
+        private final List<Object> executed;
+
+        private OverloadedFunction(List<Object> executed) {
+            this.executed = executed;
+        }
+
+        @Override
+        public Object handleEvent(Map<String, String> headers, Object input, int instance) throws Exception {
+            executed.add(input);
+            Thread.sleep(50);
+            return input;
+        }
+    }
+
+    @KernelThreadRunner
+    private static class DeadlineParent implements LambdaFunction {
+        private final String child;
+
+        private DeadlineParent(String child) {
+            this.child = child;
+        }
+
+        @Override
+        public Object handleEvent(Map<String, String> headers, Object input, int instance) throws Exception {
+            PostOffice po = new PostOffice(headers, instance);
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            po.asyncRequest(new EventEnvelope().setTo(child).setBody(input), 10000)
+                    .onSuccess(res -> future.complete(res.getBody()));
+            Map<String, Object> result = new HashMap<>();
+            result.put("parent", headers.get("my_deadline"));
+            result.put("child", future.get(5, TimeUnit.SECONDS));
+            return result;
+        }
+    }
+
+    @KernelThreadRunner
+    private static class SlowFunction implements LambdaFunction {
+        private final Runnable done;
+
+        private SlowFunction(Runnable done) {
+            this.done = done;
+        }
+
+        @Override
+        public Object handleEvent(Map<String, String> headers, Object input, int instance) throws Exception {
+            Thread.sleep(50);
+            done.run();
+            return null;
+        }
+    }
+
     @Test
     public void testNonExistRoute() {
         EventEmitter po = EventEmitter.getInstance();
@@ -0,0 +1,91 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core;
+
+import com.google.gson.Gson;
+import org.junit.Assert;
+import org.junit.Test;
+import org.platformlambda.core.models.PoJo;
+import org.platformlambda.core.serializers.SimpleMapper;
+import org.platformlambda.core.serializers.SimpleObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Direct conversion between PoJo and map versus Gson
+ */
+public class SimpleMapperBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(SimpleMapperBenchmark.class);
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void directConversionBenchmark() {
+        final int CYCLES = 20000;
+        SimpleMapper simpleMapper = SimpleMapper.getInstance();
+        SimpleObjectMapper mapper = simpleMapper.getSnakeCaseMapper();
+        Gson mapGson = simpleMapper.getJson(true, true);
+        Gson objGson = simpleMapper.getJson(true, false);
+        PoJo pojo = new PoJo();
+        pojo.setName("demo");
+        pojo.setFullName("demo user");
+        pojo.setAddress("100 World Blvd");
+        pojo.setNumber(100);
+        pojo.setLongNumber(System.currentTimeMillis());
+        pojo.setBigInteger(new BigInteger("123456789012345678901234567890"));
+        pojo.setBigDecimal(new BigDecimal("12345.6789"));
+        pojo.setDate(new Date());
+        pojo.setTime(LocalDateTime.now());
+        Map<String, Object> map = mapper.readValue(pojo, Map.class);
+        Assert.assertEquals(mapGson.fromJson(mapGson.toJsonTree(pojo), Map.class), map);
+        // warm up
+        for (int i=0; i < CYCLES / 10; i++) {
+            mapper.readValue(mapper.readValue(pojo, Map.class), PoJo.class);
+            objGson.fromJson(objGson.toJsonTree(mapGson.fromJson(mapGson.toJsonTree(pojo), Map.class)), PoJo.class);
+        }
+        long begin = System.nanoTime();
+        for (int i=0; i < CYCLES; i++) {
+            mapper.readValue(pojo, Map.class);
+        }
+        long directToMap = System.nanoTime() - begin;
+        begin = System.nanoTime();
+        for (int i=0; i < CYCLES; i++) {
+            mapGson.fromJson(mapGson.toJsonTree(pojo), Map.class);
+        }
+        long gsonToMap = System.nanoTime() - begin;
+        begin = System.nanoTime();
+        for (int i=0; i < CYCLES; i++) {
+            mapper.readValue(map, PoJo.class);
+        }
+        long directFromMap = System.nanoTime() - begin;
+        begin = System.nanoTime();
+        for (int i=0; i < CYCLES; i++) {
+            objGson.fromJson(objGson.toJsonTree(map), PoJo.class);
+        }
+        long gsonFromMap = System.nanoTime() - begin;
+        log.info("PoJo to map - direct {} ns, gson {} ns per call", directToMap / CYCLES, gsonToMap / CYCLES);
+        log.info("Map to PoJo - direct {} ns, gson {} ns per call", directFromMap / CYCLES, gsonFromMap / CYCLES);
+    }
+
+}
@@ -18,7 +18,9 @@
 
 package org.platformlambda.core;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonPrimitive;
+import com.google.gson.annotations.SerializedName;
 import org.junit.Assert;
 import org.junit.Test;
 import org.platformlambda.core.models.PoJo;
@@ -27,10 +29,9 @@ import org.platformlambda.core.serializers.SimpleObjectMapper;
 import org.platformlambda.core.util.Utility;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.time.LocalDateTime;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -183,6 +184,221 @@ public class SimpleMapperTest {
         Assert.assertEquals(NUMBER, restoredFromCamel.caseDemo.toPlainString());
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void compactJsonTest() {
+        SimpleMapper simpleMapper = SimpleMapper.getInstance();
+        SimpleObjectMapper compact = simpleMapper.getCompactMapper();
+        SimpleObjectMapper pretty = simpleMapper.getPrettyMapper();
+        ComplexPoJo pojo = createComplexPoJo();
+        String compactJson = compact.writeValueAsString(pojo);
+        String prettyJson = pretty.writeValueAsString(pojo);
+        Assert.assertFalse(compactJson.contains("\n"));
+        Assert.assertTrue(prettyJson.contains("\n"));
+        Assert.assertTrue(compactJson.length() < prettyJson.length());
+        Assert.assertEquals(compact.readValue(prettyJson, Map.class), compact.readValue(compactJson, Map.class));
+        // bytes are encoded directly as UTF-8 without an intermediate string
+        Assert.assertArrayEquals(Utility.getInstance().getUTF(compactJson), compact.writeValueAsBytes(pojo));
+        Assert.assertArrayEquals(Utility.getInstance().getUTF(prettyJson), pretty.writeValueAsBytes(pojo));
+        Assert.assertEquals("null", Utility.getInstance().getUTF(compact.writeValueAsBytes(null)));
+        // the reusable buffer must work after serializing a large object
+        Map<String, Object> large = new HashMap<>();
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i < 10000; i++) {
+            sb.append("\u4f60\u597d world ");
+        }
+        large.put("text", sb.toString());
+        byte[] b = compact.writeValueAsBytes(large);
+        Assert.assertEquals(large, compact.readValue(b, Map.class));
+        Map<String, Object> small = new HashMap<>();
+        small.put("hello", "world");
+        Assert.assertEquals("{\"hello\":\"world\"}", Utility.getInstance().getUTF(compact.writeValueAsBytes(small)));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void directConversionTest() {
+        SimpleMapper simpleMapper = SimpleMapper.getInstance();
+        for (boolean snake: new boolean[] {true, false}) {
+            SimpleObjectMapper mapper = snake? simpleMapper.getSnakeCaseMapper() : simpleMapper.getCamelCaseMapper();
+            Gson mapGson = simpleMapper.getJson(snake, true);
+            Gson objGson = simpleMapper.getJson(snake, false);
+            ComplexPoJo pojo = createComplexPoJo();
+            Map<String, Object> direct = mapper.readValue(pojo, Map.class);
+            // the result must be the same as a round trip through a Gson JSON tree
+            Map<String, Object> viaTree = mapGson.fromJson(mapGson.toJsonTree(pojo), Map.class);
+            Assert.assertEquals(viaTree, direct);
+            Assert.assertEquals("deep-blue", direct.get("color"));
+            Assert.assertEquals("hello", direct.get("tag_line"));
+            Assert.assertFalse(direct.containsKey("secret"));
+            Assert.assertFalse(direct.containsKey("nothing"));
+            Assert.assertEquals(Integer.class, direct.get("count").getClass());
+            Assert.assertEquals(Long.class, direct.get(snake? "long_total" : "longTotal").getClass());
+            ComplexPoJo restored = mapper.readValue(direct, ComplexPoJo.class);
+            ComplexPoJo restoredViaTree = objGson.fromJson(objGson.toJsonTree(direct), ComplexPoJo.class);
+            Assert.assertEquals(mapGson.fromJson(mapGson.toJsonTree(restoredViaTree), Map.class),
+                                mapper.readValue(restored, Map.class));
+            Assert.assertEquals(Color.BLUE, restored.color);
+            Assert.assertEquals(2, restored.items.size());
+            Assert.assertEquals("item-1", restored.items.get(1).getName());
+            Assert.assertEquals(pojo.created, restored.created);
+            Assert.assertEquals(pojo.updated, restored.updated);
+            Assert.assertEquals(1.0d, restored.extra.get("one"));
+            Assert.assertArrayEquals(pojo.blob, restored.blob);
+            // a class with a type that is not supported by direct conversion falls back to Gson
+            FallbackPoJo fallback = new FallbackPoJo();
+            fallback.id = UUID.randomUUID();
+            fallback.name = "fallback";
+            Map<String, Object> fallbackMap = mapper.readValue(fallback, Map.class);
+            Assert.assertEquals(fallback.id.toString(), fallbackMap.get("id"));
+            Assert.assertEquals(fallback.id, mapper.readValue(fallbackMap, FallbackPoJo.class).id);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void directConversionMatchesGson() {
+        SimpleMapper simpleMapper = SimpleMapper.getInstance();
+        SamplePoJo sample = new SamplePoJo();
+        sample.number = 10;
+        sample.smallLong = 200L;
+        sample.longNumber = System.currentTimeMillis();
+        sample.floatNumber = 13.3f;
+        sample.smallDouble = 26.6d;
+        sample.doubleNumber = 3.5E38d;
+        sample.userName = "hello world";
+        sample.created = new Date();
+        sample.updated = LocalDateTime.now();
+        sample.bigInteger = new BigInteger("36210000122335678901234002030");
+        sample.bigDecimal = new BigDecimal("123456789012345890201231.1416");
+        sample.zero = new BigDecimal("0E-10");
+        sample.scientific = new BigDecimal("1.5E-12");
+        for (boolean snake: new boolean[] {true, false}) {
+            SimpleObjectMapper mapper = snake? simpleMapper.getSnakeCaseMapper() : simpleMapper.getCamelCaseMapper();
+            Gson mapGson = simpleMapper.getJson(snake, true);
+            Gson objGson = simpleMapper.getJson(snake, false);
+            Map<String, Object> direct = mapper.readValue(sample, Map.class);
+            Assert.assertEquals(mapGson.fromJson(mapGson.toJsonTree(sample), Map.class), direct);
+            Assert.assertEquals("hello world", direct.get(snake? "user_name" : "userName"));
+            Assert.assertEquals(Utility.getInstance().date2str(sample.created), direct.get("created"));
+            Assert.assertEquals("0", direct.get("zero"));
+            Assert.assertEquals("0.0000000000015", direct.get("scientific"));
+            SamplePoJo restored = mapper.readValue(direct, SamplePoJo.class);
+            SamplePoJo restoredViaTree = objGson.fromJson(objGson.toJsonTree(direct), SamplePoJo.class);
+            Assert.assertEquals(mapGson.fromJson(mapGson.toJsonTree(restoredViaTree), Map.class),
+                                mapGson.fromJson(mapGson.toJsonTree(restored), Map.class));
+            Assert.assertEquals(sample.created, restored.created);
+            Assert.assertEquals(sample.updated, restored.updated);
+            Assert.assertEquals(sample.bigDecimal, restored.bigDecimal);
+            // a nested field with a type that is not supported makes the outer class fall back to Gson
+            NestedFallback outer = new NestedFallback();
+            outer.name = "outer";
+            outer.inner = new FallbackPoJo();
+            outer.inner.id = UUID.randomUUID();
+            outer.inner.name = "inner";
+            Map<String, Object> outerMap = mapper.readValue(outer, Map.class);
+            Assert.assertEquals(mapGson.fromJson(mapGson.toJsonTree(outer), Map.class), outerMap);
+            Assert.assertEquals(outer.inner.id, mapper.readValue(outerMap, NestedFallback.class).inner.id);
+        }
+    }
+
+    private ComplexPoJo createComplexPoJo() {
+        ComplexPoJo pojo = new ComplexPoJo();
+        pojo.name = "demo";
+        pojo.count = 100;
+        pojo.longTotal = System.currentTimeMillis();
+        pojo.ratio = 0.25;
+        pojo.weight = 1.5f;
+        pojo.active = true;
+        pojo.grade = 'A';
+        pojo.amount = new BigDecimal("12345.6789");
+        pojo.big = new BigInteger("123456789012345678901234567890");
+        pojo.created = new Date();
+        pojo.updated = LocalDateTime.now();
+        pojo.color = Color.BLUE;
+        pojo.tagLine = "hello";
+        pojo.items = new ArrayList<>();
+        pojo.lookup = new HashMap<>();
+        for (int i=0; i < 2; i++) {
+            PoJo item = new PoJo();
+            item.setName("item-"+i);
+            item.setNumber(i);
+            item.setDate(pojo.created);
+            item.setBigDecimal(BigDecimal.ZERO);
+            pojo.items.add(item);
+            pojo.lookup.put(item.getName(), item);
+        }
+        pojo.nested = pojo.items.get(0);
+        pojo.extra = new HashMap<>();
+        pojo.extra.put("one", 1);
+        pojo.extra.put("text", "x");
+        pojo.extra.put("list", Arrays.asList(1, 2L, "3"));
+        pojo.tags = Arrays.asList("a", null, "c");
+        pojo.scores = new int[] {1, 2, 3};
+        pojo.blob = new byte[] {1, 2, 3};
+        pojo.secret = "secret";
+        return pojo;
+    }
+
+    private enum Color {
+        RED, @SerializedName("deep-blue") BLUE
+    }
+
+    @SuppressWarnings("unused")
+    private static class ComplexPoJo {
+        private String name;
+        private int count;
+        private long longTotal;
+        private double ratio;
+        private float weight;
+        private boolean active;
+        private Boolean verified;
+        private char grade;
+        private BigDecimal amount;
+        private BigInteger big;
+        private Date created;
+        private LocalDateTime updated;
+        private Color color;
+        @SerializedName("tag_line")
+        private String tagLine;
+        private List<PoJo> items;
+        private Map<String, PoJo> lookup;
+        private Map<String, Object> extra;
+        private List<String> tags;
+        private int[] scores;
+        private byte[] blob;
+        private PoJo nested;
+        private transient String secret;
+        private String nothing;
+    }
+
+    private static class FallbackPoJo {
+        private UUID id;
+        private String name;
+    }
+
+    private static class NestedFallback {
+        private String name;
+        private FallbackPoJo inner;
+    }
+
+    @SuppressWarnings("unused")
+    private static class SamplePoJo {
+        private int number;
+        private long longNumber;
+        private long smallLong;
+        private float floatNumber;
+        private double smallDouble;
+        private double doubleNumber;
+        private String userName;
+        private Date created;
+        private LocalDateTime updated;
+        private BigInteger bigInteger;
+        private BigDecimal bigDecimal;
+        private BigDecimal zero;
+        private BigDecimal scientific;
+    }
+
     private static class SimpleNumber {
         public BigDecimal number;
 
@@ -0,0 +1,68 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core;
+
+import org.junit.Test;
+import org.platformlambda.core.models.ProcessStatus;
+import org.platformlambda.core.system.RouteMetrics;
+import org.platformlambda.core.system.RouteProfiler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Overhead of route metrics and the profiler per event
+ */
+public class UtilityBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(UtilityBenchmark.class);
+
+    @Test
+    public void routeMetricsBenchmark() {
+        // recording must be cheap because it happens for every event
+        final int CYCLES = 2000000;
+        RouteMetrics metrics = new RouteMetrics();
+        ProcessStatus ps = new ProcessStatus().setExecutionTime(0.25f);
+        for (int i=0; i < CYCLES; i++) {
+            metrics.record(ps);
+        }
+        long begin = System.nanoTime();
+        for (int i=0; i < CYCLES; i++) {
+            metrics.record(ps);
+        }
+        long perEvent = (System.nanoTime() - begin) / CYCLES;
+        log.info("Route metrics overhead is {} ns per event", perEvent);
+    }
+
+    @Test
+    public void profilerOverheadBenchmark() {
+        // overhead of the route association for each event when the profiler is running
+        RouteProfiler profiler = RouteProfiler.getInstance();
+        profiler.start();
+        final int EVENTS = 1000000;
+        long begin = System.nanoTime();
+        for (int i=0; i < EVENTS; i++) {
+            if (profiler.enter("profiled.function")) {
+                profiler.leave();
+            }
+        }
+        long elapsed = System.nanoTime() - begin;
+        profiler.stop();
+        log.info("Profiler overhead {} ns per event", elapsed / EVENTS);
+    }
+
+}
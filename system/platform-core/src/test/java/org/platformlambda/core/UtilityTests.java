@@ -22,11 +22,17 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.platformlambda.automation.util.SimpleHttpUtility;
+import io.github.classgraph.ClassInfo;
+import org.platformlambda.core.annotations.PreLoad;
 import org.platformlambda.core.models.LambdaFunction;
 import org.platformlambda.core.models.MockPubSub;
+import org.platformlambda.core.models.ProcessStatus;
 import org.platformlambda.core.system.PubSub;
+import org.platformlambda.core.system.RouteMetrics;
 import org.platformlambda.core.system.ServerPersonality;
+import org.platformlambda.core.util.LatencyHistogram;
 import org.platformlambda.core.util.MultiLevelMap;
+import org.platformlambda.core.util.SimpleClassScanner;
 import org.platformlambda.core.util.Utility;
 
 import java.io.File;
@@ -50,6 +56,67 @@ public class UtilityTests {
         }
     }
 
+    @Test
+    public void latencyHistogramTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i=1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(500500, histogram.getSum());
+        Assert.assertEquals(1000, histogram.getMax());
+        // percentiles are accurate to the precision of the log-linear buckets
+        long p50 = histogram.getPercentile(50);
+        long p99 = histogram.getPercentile(99);
+        Assert.assertTrue(p50 >= 500 && p50 <= 500 * 1.125);
+        Assert.assertTrue(p99 >= 990 && p99 <= 1000);
+        Assert.assertEquals(7, histogram.getCountAtOrBelow(7));
+        Assert.assertEquals(1000, histogram.getCountAtOrBelow(1023));
+        long below = histogram.getCountAtOrBelow(250);
+        Assert.assertTrue(below <= 250 && below >= 250 / 1.125);
+        // a snapshot is not changed by new values
+        LatencyHistogram snapshot = histogram.getSnapshot();
+        histogram.record(2000);
+        Assert.assertEquals(1000, snapshot.getCount());
+        Assert.assertEquals(1000, snapshot.getCountAtOrBelow(1023));
+        Assert.assertEquals(500500, snapshot.getSum());
+        Assert.assertEquals(1001, histogram.getCount());
+        final int CYCLES = 1000;
+        RouteMetrics metrics = new RouteMetrics();
+        ProcessStatus ps = new ProcessStatus().setExecutionTime(0.25f);
+        for (int i=0; i < CYCLES; i++) {
+            metrics.record(ps);
+        }
+        Assert.assertEquals(CYCLES, metrics.getInvocations());
+        Assert.assertEquals(250, metrics.getExecutionTime().getSum() / CYCLES);
+    }
+
+    @Test
+    public void classScannerTest() {
+        SimpleClassScanner scanner = SimpleClassScanner.getInstance();
+        List<String> names = scanner.getAnnotatedClassNames(PreLoad.class, true);
+        Assert.assertTrue(names.contains("org.platformlambda.core.mock.EventApiAuth"));
+        // class info is kept from the shared scan result
+        List<ClassInfo> classes = scanner.getAnnotatedClasses("org.platformlambda.core.mock", PreLoad.class);
+        Assert.assertFalse(classes.isEmpty());
+        for (ClassInfo info: classes) {
+            Assert.assertTrue(info.getName().startsWith("org.platformlambda.core.mock."));
+            Assert.assertTrue(names.contains(info.getName()));
+        }
+        Assert.assertEquals(scanner.getAnnotatedClassNames("org.platformlambda.core.mock", PreLoad.class).size(),
+                            classes.size());
+        // a repeated lookup returns the same class info without scanning again
+        Assert.assertSame(classes.get(0),
+                scanner.getAnnotatedClasses("org.platformlambda.core.mock", PreLoad.class).get(0));
+        // the package is scanned again after the cache is cleared
+        scanner.clearCache();
+        Assert.assertEquals(new HashSet<>(names), new HashSet<>(scanner.getAnnotatedClassNames(PreLoad.class, true)));
+        Map<String, List<String>> index = scanner.createIndex();
+        Assert.assertTrue(index.get(SimpleClassScanner.INDEXED_PACKAGES).contains("org.platformlambda"));
+        Assert.assertEquals(new HashSet<>(names), new HashSet<>(index.get(PreLoad.class.getName())));
+        Assert.assertFalse(index.containsKey(Override.class.getName()));
+    }
+
     @Test
     public void setServerPersonality() {
         ServerPersonality personality = ServerPersonality.getInstance();
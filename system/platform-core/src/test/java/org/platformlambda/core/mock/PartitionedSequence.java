@@ -0,0 +1,28 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core.mock;
+
+import org.platformlambda.core.annotations.KernelThreadRunner;
+import org.platformlambda.core.annotations.PreLoad;
+
+@KernelThreadRunner
+@PreLoad(route="partitioned.sequence", instances = 4, partitionKey = "account", threads = 4)
+public class PartitionedSequence extends SequenceCheck {
+    // the partition key and dedicated threads are configured by the annotation
+}
@@ -0,0 +1,79 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core.mock;
+
+import org.platformlambda.core.annotations.KernelThreadRunner;
+import org.platformlambda.core.models.TypedLambdaFunction;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Check that the events of each account arrive in sequence at a single worker
+ */
+@KernelThreadRunner
+public class SequenceCheck implements TypedLambdaFunction<Integer, Void> {
+
+    private static final String ACCOUNT = "account";
+    private final ConcurrentMap<String, Integer> lastSequence = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Integer> workers = new ConcurrentHashMap<>();
+    private final Set<String> threads = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger outOfOrder = new AtomicInteger(0);
+    private final AtomicInteger misrouted = new AtomicInteger(0);
+    private final AtomicInteger processed = new AtomicInteger(0);
+
+    @Override
+    public Void handleEvent(Map<String, String> headers, Integer input, int instance) throws Exception {
+        String account = headers.get(ACCOUNT);
+        if (account != null) {
+            Integer previous = lastSequence.put(account, input);
+            if (previous != null && previous >= input) {
+                outOfOrder.incrementAndGet();
+            }
+            Integer worker = workers.putIfAbsent(account, instance);
+            if (worker != null && worker != instance) {
+                misrouted.incrementAndGet();
+            }
+        }
+        threads.add(Thread.currentThread().getName());
+        // emulate a short blocking call
+        Thread.sleep(1);
+        processed.incrementAndGet();
+        return null;
+    }
+
+    public Set<String> getThreads() {
+        return threads;
+    }
+
+    public int getOutOfOrder() {
+        return outOfOrder.get();
+    }
+
+    public int getMisrouted() {
+        return misrouted.get();
+    }
+
+    public int getProcessed() {
+        return processed.get();
+    }
+}
@@ -0,0 +1,36 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.core.services
+
+import kotlinx.coroutines.delay
+import org.platformlambda.core.annotations.AdaptiveConcurrency
+import org.platformlambda.core.models.EventEnvelope
+import org.platformlambda.core.models.KotlinLambdaFunction
+
+@AdaptiveConcurrency(min = 1)
+class AdaptiveDelay: KotlinLambdaFunction<EventEnvelope, Any> {
+    override suspend fun handleEvent(headers: Map<String, String>, input: EventEnvelope, instance: Int): Any {
+        delay(DELAY)
+        return input
+    }
+
+    companion object {
+        private const val DELAY = 50L
+    }
+}
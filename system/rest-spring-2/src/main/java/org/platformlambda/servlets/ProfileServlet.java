@@ -0,0 +1,60 @@
+/*
+
+    Copyright 2018-2024 Accenture Technology
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+        http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License.
+
+ */
+
+package org.platformlambda.servlets;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+@WebServlet(urlPatterns={"/profile", "/profile/*"}, asyncSupported=true)
+public class ProfileServlet extends ServletBase {
+    private static final long serialVersionUID = 7391846250138473926L;
+    private static final String PROFILE = "profile";
+    private static final String PROFILE_START = "profile_start";
+    private static final String PROFILE_STOP = "profile_stop";
+    private static final String APP_INSTANCE = "X-App-Instance";
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String path = request.getPathInfo();
+        if (path == null || "/".equals(path)) {
+            submit(PROFILE, request, response);
+        } else {
+            response.sendError(404, "Resource not found");
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (request.getHeader(APP_INSTANCE) == null) {
+            response.sendError(400, "Missing "+ APP_INSTANCE +" in request header");
+            return;
+        }
+        String path = request.getPathInfo();
+        if ("/start".equals(path)) {
+            submit(PROFILE_START, request, response);
+        } else if ("/stop".equals(path)) {
+            submit(PROFILE_STOP, request, response);
+        } else {
+            response.sendError(404, "Resource not found");
+        }
+    }
+
+}
@@ -363,6 +363,52 @@ public class ServletTest extends TestBase {
         Assert.assertEquals("does-not-exist is not reachable", result.get("message"));
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void profileStartWithoutAppInstanceWillFail() throws IOException, InterruptedException {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("accept", "application/json");
+        EventEnvelope response = httpPost("http://127.0.0.1:"+port, "/profile/start", headers, new HashMap<>());
+        assert response != null;
+        Assert.assertTrue(response.getBody() instanceof Map);
+        Map<String, Object> result = (Map<String, Object>) response.getBody();
+        Assert.assertEquals(400, response.getStatus());
+        Assert.assertEquals(400, result.get("status"));
+        Assert.assertEquals("Missing X-App-Instance in request header", result.get("message"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void profileStopWithIncorrectAppInstanceWillFail() throws IOException, InterruptedException {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("accept", "application/json");
+        headers.put("x-app-instance", "does-not-exist");
+        EventEnvelope response = httpPost("http://127.0.0.1:"+port, "/profile/stop", headers, new HashMap<>());
+        assert response != null;
+        Assert.assertTrue(response.getBody() instanceof Map);
+        Map<String, Object> result = (Map<String, Object>) response.getBody();
+        Assert.assertEquals(404, response.getStatus());
+        Assert.assertEquals(404, result.get("status"));
+        Assert.assertEquals("does-not-exist is not reachable", result.get("message"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void profileStartAndStopWithAppInstanceOK() throws IOException, InterruptedException {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("X-App-Instance", Platform.getInstance().getOrigin());
+        EventEnvelope response = httpPost("http://127.0.0.1:"+port, "/profile/start", headers, new HashMap<>());
+        assert response != null;
+        Assert.assertEquals(200, response.getStatus());
+        Assert.assertTrue(response.getBody() instanceof Map);
+        Assert.assertEquals(true, ((Map<String, Object>) response.getBody()).get("running"));
+        response = httpPost("http://127.0.0.1:"+port, "/profile/stop", headers, new HashMap<>());
+        assert response != null;
+        Assert.assertEquals(200, response.getStatus());
+        Assert.assertTrue(response.getBody() instanceof Map);
+        Assert.assertEquals(false, ((Map<String, Object>) response.getBody()).get("running"));
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     public void suspendAppInstanceOK() throws IOException, InterruptedException {